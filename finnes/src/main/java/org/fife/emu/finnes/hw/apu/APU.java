@@ -0,0 +1,422 @@
+package org.fife.emu.finnes.hw.apu;
+
+import java.io.Serializable;
+
+import org.fife.emu.EventHandler;
+import org.fife.emu.EventScheduler;
+import org.fife.emu.finnes.hw.nes.NES;
+
+
+/**
+ * The NES's audio processing unit, part of the 2A03.<p>
+ *
+ * Like the {@link org.fife.emu.finnes.hw.ppu.PPU}, the APU catches up
+ * to the CPU's cycle count when its registers are accessed and at the
+ * end of each frame, rather than being stepped alongside it.  Each
+ * channel's timer is run a whole period at a time, and the output is
+ * averaged over each sample period, which doubles as a low-pass filter.
+ * The frame counter's and DMC's IRQs are predicted and scheduled as
+ * events.<p>
+ *
+ * With the sample rate set to <code>0</code>, no sound is produced, and
+ * only the parts of the APU the CPU can see are run: the frame counter,
+ * the length counters and the DMC.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class APU implements EventHandler, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The default sample rate, in Hz.
+	 */
+	public static final int DEFAULT_SAMPLE_RATE = 44100;
+
+	/**
+	 * The CPU cycles at which each step of the frame counter's sequence
+	 * happens, in 4-step and 5-step mode.  The last entry is the
+	 * sequence's length.
+	 */
+	private static final int[] FOUR_STEP_CYCLES = { 7457, 14913, 22371, 29829, 29830 };
+	private static final int[] FIVE_STEP_CYCLES = { 7457, 14913, 22371, 37281, 37282 };
+
+	/**
+	 * The step of the 4-step sequence at which the frame IRQ is raised.
+	 */
+	private static final int IRQ_STEP = 3;
+
+	private final NES nes;
+	private final EventScheduler scheduler;
+	private final int event;
+
+	private final Pulse pulse1;
+	private final Pulse pulse2;
+	private final Triangle triangle;
+	private final Noise noise;
+	private final Dmc dmc;
+	private final Channel[] channels;
+
+	private boolean fiveStep;
+	private boolean irqInhibit;
+	private boolean frameIrq;
+	private int frameCycle;
+	private int frameStep;
+
+	/**
+	 * The CPU cycle this APU has caught up to.
+	 */
+	private int lastCycle;
+
+	private int sampleRate;
+	private double cyclesPerSample;
+	private double cyclesUntilSample;
+	private int pulseSum;
+	private int triangleSum;
+	private int noiseSum;
+	private int dmcSum;
+	private int sumCycles;
+
+	private short[] samples;
+	private int sampleCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param nes The machine this APU is part of.
+	 */
+	public APU(NES nes) {
+		this.nes = nes;
+		scheduler = nes.getEventScheduler();
+		event = scheduler.addEvent(this);
+		pulse1 = new Pulse(true);
+		pulse2 = new Pulse(false);
+		triangle = new Triangle();
+		noise = new Noise();
+		dmc = new Dmc(this);
+		channels = new Channel[] { pulse1, pulse2, triangle, noise };
+		setSampleRate(DEFAULT_SAMPLE_RATE);
+	}
+
+	/**
+	 * Runs this APU up to a CPU cycle.
+	 *
+	 * @param cycle The CPU cycle.  If this APU is already there, this
+	 *        method does nothing.
+	 */
+	public void catchUp(int cycle) {
+
+		int cycles = cycle - lastCycle;
+		if (cycles <= 0) {
+			return;
+		}
+		lastCycle = cycle;
+
+		int[] steps = fiveStep ? FIVE_STEP_CYCLES : FOUR_STEP_CYCLES;
+		while (cycles > 0) {
+			int chunk = Math.min(cycles, steps[frameStep] - frameCycle);
+			runChannels(chunk);
+			frameCycle += chunk;
+			cycles -= chunk;
+			if (frameCycle == steps[frameStep]) {
+				clockFrameCounter();
+			}
+		}
+
+		updateIrq();
+
+	}
+
+	private void clockFrameCounter() {
+
+		switch (frameStep) {
+			case 0:
+			case 2:
+				clockQuarterFrame();
+				break;
+			case 1:
+			case 3:
+				clockQuarterFrame();
+				clockHalfFrame();
+				if (frameStep == IRQ_STEP && !fiveStep && !irqInhibit) {
+					frameIrq = true;
+				}
+				break;
+			default:
+				frameCycle = 0;
+				frameStep = -1;
+				break;
+		}
+
+		frameStep++;
+
+	}
+
+	private void clockHalfFrame() {
+		for (Channel channel : channels) {
+			channel.clockLength();
+		}
+	}
+
+	private void clockQuarterFrame() {
+		for (Channel channel : channels) {
+			channel.clockQuarterFrame();
+		}
+	}
+
+	/**
+	 * Fetches a byte of a DMC sample.  The CPU is stalled while this
+	 * happens.
+	 *
+	 * @param address The address of the byte.
+	 * @return The byte.
+	 */
+	int fetchDmcByte(int address) {
+		nes.getCpu().burnCycles(4);
+		return nes.readByte(address);
+	}
+
+	/**
+	 * Returns the number of CPU cycles until the frame counter raises its
+	 * IRQ.
+	 *
+	 * @return The number of cycles, or <code>-1</code> if it won't as
+	 *         things stand.
+	 */
+	private int getCyclesUntilFrameIrq() {
+		if (fiveStep || irqInhibit || frameIrq) {
+			return -1;
+		}
+		int irqCycle = FOUR_STEP_CYCLES[IRQ_STEP];
+		int cycles = irqCycle - frameCycle;
+		return cycles > 0 ? cycles : cycles + FOUR_STEP_CYCLES[IRQ_STEP + 1];
+	}
+
+	/**
+	 * Copies the sound output since the last call to this method into an
+	 * array.
+	 *
+	 * @param dest The array to copy 16-bit mono samples into.
+	 * @return The number of samples copied.  Any that don't fit are kept
+	 *         for the next call.
+	 */
+	public int getSamples(short[] dest) {
+		int count = Math.min(dest.length, sampleCount);
+		System.arraycopy(samples, 0, dest, 0, count);
+		System.arraycopy(samples, count, samples, 0, sampleCount - count);
+		sampleCount -= count;
+		return count;
+	}
+
+	/**
+	 * Returns the sample rate sound is output at.
+	 *
+	 * @return The sample rate, in Hz, or <code>0</code> if no sound is
+	 *         output.
+	 * @see #setSampleRate(int)
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public void handleEvent(int event, int time) {
+		catchUp(time);
+		scheduleEvent();
+	}
+
+	/**
+	 * Mixes the channels' average output levels, with the non-linear
+	 * response of the real mixer.
+	 *
+	 * @return The sample.
+	 */
+	private short mix() {
+		double pulse = (double)pulseSum / sumCycles;
+		double tnd = triangleSum / 8227.0 / sumCycles + noiseSum / 12241.0 / sumCycles + dmcSum / 22638.0 / sumCycles;
+		double pulseOut = pulse > 0 ? 95.88 / (8128 / pulse + 100) : 0;
+		double tndOut = tnd > 0 ? 159.79 / (1 / tnd + 100) : 0;
+		return (short)((pulseOut + tndOut) * Short.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the value of <code>$4015</code> without any side effects.
+	 *
+	 * @return The channels' status.
+	 * @see #readStatus()
+	 */
+	public int peekStatus() {
+		int status = 0;
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i].length > 0) {
+				status |= 1 << i;
+			}
+		}
+		if (dmc.getBytesRemaining() > 0) {
+			status |= 0x10;
+		}
+		if (frameIrq) {
+			status |= 0x40;
+		}
+		if (dmc.irq) {
+			status |= 0x80;
+		}
+		return status;
+	}
+
+	/**
+	 * Reads <code>$4015</code>, which acknowledges the frame IRQ.
+	 *
+	 * @return Whether each channel's length counter is nonzero, whether
+	 *         the DMC is playing, and the IRQ flags.
+	 */
+	public int readStatus() {
+		catchUp(nes.getCpu().getCycles());
+		int status = peekStatus();
+		frameIrq = false;
+		updateIrq();
+		scheduleEvent();
+		return status;
+	}
+
+	/**
+	 * Shifts this APU's notion of the CPU's cycle count back, when the
+	 * machine rebases it at the end of a frame.
+	 *
+	 * @param delta The number of cycles to shift back by.
+	 */
+	public void rebase(int delta) {
+		lastCycle -= delta;
+	}
+
+	/**
+	 * Resets this APU.  All channels are silenced.
+	 */
+	public void reset() {
+		for (Channel channel : channels) {
+			channel.reset();
+		}
+		dmc.reset();
+		fiveStep = irqInhibit = frameIrq = false;
+		frameCycle = frameStep = 0;
+		lastCycle = nes.getCpu().getCycles();
+		updateIrq();
+		scheduleEvent();
+	}
+
+	private void runChannels(int cycles) {
+
+		if (sampleRate == 0) {
+			dmc.run(cycles);
+			return;
+		}
+
+		while (cycles > 0) {
+			int chunk = Math.min(cycles, (int)Math.ceil(cyclesUntilSample));
+			pulseSum += pulse1.run(chunk) + pulse2.run(chunk);
+			triangleSum += triangle.run(chunk);
+			noiseSum += noise.run(chunk);
+			dmcSum += dmc.run(chunk);
+			sumCycles += chunk;
+			cycles -= chunk;
+			cyclesUntilSample -= chunk;
+			if (cyclesUntilSample <= 0) {
+				if (sampleCount < samples.length) {
+					samples[sampleCount++] = mix();
+				}
+				pulseSum = triangleSum = noiseSum = dmcSum = sumCycles = 0;
+				cyclesUntilSample += cyclesPerSample;
+			}
+		}
+
+	}
+
+	/**
+	 * Schedules the event for the next IRQ.
+	 */
+	private void scheduleEvent() {
+		int frameIrqCycles = getCyclesUntilFrameIrq();
+		int dmcIrqCycles = dmc.getCyclesUntilIrq();
+		int cycles = Math.min(frameIrqCycles < 0 ? Integer.MAX_VALUE : frameIrqCycles,
+			dmcIrqCycles < 0 ? Integer.MAX_VALUE : dmcIrqCycles);
+		if (cycles == Integer.MAX_VALUE) {
+			scheduler.cancel(event);
+		}
+		else {
+			scheduler.schedule(event, lastCycle + cycles);
+		}
+	}
+
+	/**
+	 * Sets the sample rate sound is output at.  Samples are buffered for
+	 * up to a tenth of a second; callers should drain them with
+	 * {@link #getSamples(short[])} more often than that.
+	 *
+	 * @param sampleRate The sample rate, in Hz, or <code>0</code> to not
+	 *        output sound.
+	 * @see #getSampleRate()
+	 */
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+		if (sampleRate > 0) {
+			cyclesPerSample = NES.CLOCK_SPEED / sampleRate;
+			cyclesUntilSample = cyclesPerSample;
+			samples = new short[sampleRate / 10];
+		}
+		else {
+			samples = new short[0];
+		}
+		sampleCount = 0;
+		pulseSum = triangleSum = noiseSum = dmcSum = sumCycles = 0;
+	}
+
+	private void updateIrq() {
+		nes.getCpu().setIRQ(NES.IRQ_FRAME_COUNTER, frameIrq);
+		nes.getCpu().setIRQ(NES.IRQ_DMC, dmc.irq);
+	}
+
+	/**
+	 * Handles a write to one of the APU's registers.
+	 *
+	 * @param address The register's address, from <code>$4000</code> to
+	 *        <code>$4017</code>.
+	 * @param value The value written.
+	 */
+	public void write(int address, int value) {
+
+		catchUp(nes.getCpu().getCycles());
+
+		if (address < 0x4010) {
+			channels[(address >> 2) & 3].write(address & 3, value);
+		}
+		else if (address < 0x4014) {
+			dmc.write(address & 3, value);
+		}
+		else if (address == 0x4015) {
+			for (int i = 0; i < channels.length; i++) {
+				channels[i].setEnabled((value & (1 << i)) != 0);
+			}
+			dmc.setEnabled((value & 0x10) != 0);
+		}
+		else if (address == 0x4017) {
+			fiveStep = (value & 0x80) != 0;
+			irqInhibit = (value & 0x40) != 0;
+			if (irqInhibit) {
+				frameIrq = false;
+			}
+			// The sequence restarts a few cycles after the write
+			frameCycle = -3;
+			frameStep = 0;
+			if (fiveStep) {
+				clockQuarterFrame();
+				clockHalfFrame();
+			}
+		}
+
+		updateIrq();
+		scheduleEvent();
+
+	}
+
+}
\ No newline at end of file
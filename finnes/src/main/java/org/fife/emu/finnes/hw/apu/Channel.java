@@ -0,0 +1,94 @@
+package org.fife.emu.finnes.hw.apu;
+
+import java.io.Serializable;
+
+
+/**
+ * Base class for the APU's sound channels.  Every channel but the DMC
+ * has a length counter, which silences it when it runs out.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+abstract class Channel implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The length counter load values, indexed by the top 5 bits of a
+	 * channel's last register.
+	 */
+	private static final int[] LENGTHS = {
+		10, 254, 20, 2, 40, 4, 80, 6, 160, 8, 60, 10, 14, 12, 26, 14,
+		12, 16, 24, 18, 48, 20, 96, 22, 192, 24, 72, 26, 16, 28, 32, 30,
+	};
+
+	private boolean enabled;
+	int length;
+	boolean halt;
+
+	/**
+	 * Clocks the length counter, on each half frame.
+	 */
+	void clockLength() {
+		if (length > 0 && !halt) {
+			length--;
+		}
+	}
+
+	/**
+	 * Clocks the channel's envelope or linear counter, on each quarter
+	 * frame.  The default implementation does nothing.
+	 */
+	void clockQuarterFrame() {
+	}
+
+	/**
+	 * Loads the length counter, if the channel is enabled.
+	 *
+	 * @param value The value written to the channel's last register.
+	 */
+	void loadLength(int value) {
+		if (enabled) {
+			length = LENGTHS[value >> 3];
+		}
+	}
+
+	/**
+	 * Resets the channel, as on power up.
+	 */
+	void reset() {
+		enabled = halt = false;
+		length = 0;
+	}
+
+	/**
+	 * Runs the channel's timer.
+	 *
+	 * @param cycles The number of CPU cycles to run for.
+	 * @return The channel's output, summed over each cycle run.
+	 */
+	abstract int run(int cycles);
+
+	/**
+	 * Enables or disables the channel, via <code>$4015</code>.  Disabling
+	 * it clears its length counter.
+	 *
+	 * @param enabled Whether the channel is enabled.
+	 */
+	void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			length = 0;
+		}
+	}
+
+	/**
+	 * Handles a write to one of the channel's 4 registers.
+	 *
+	 * @param register The register, from <code>0</code> to <code>3</code>.
+	 * @param value The value written.
+	 */
+	abstract void write(int register, int value);
+
+}
\ No newline at end of file
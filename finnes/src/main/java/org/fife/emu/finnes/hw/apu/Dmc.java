@@ -0,0 +1,210 @@
+package org.fife.emu.finnes.hw.apu;
+
+import java.io.Serializable;
+
+
+/**
+ * The delta modulation channel, at <code>$4010-$4013</code>.  It plays
+ * 1-bit delta encoded samples, fetching them from memory a byte at a
+ * time, which steals cycles from the CPU.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class Dmc implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The NTSC timer periods, in CPU cycles.
+	 */
+	private static final int[] PERIODS = {
+		428, 380, 340, 320, 286, 254, 226, 214, 190, 160, 142, 128, 106, 84, 72, 54,
+	};
+
+	private final APU apu;
+
+	private boolean irqEnabled;
+	private boolean loop;
+	private int period;
+	private int timer;
+	private int level;
+
+	private int sampleAddress;
+	private int sampleLength;
+	private int address;
+	private int bytesRemaining;
+
+	private int buffer;
+	private boolean bufferFull;
+	private int shift;
+	private int bitsRemaining;
+	private boolean silence;
+
+	boolean irq;
+
+	Dmc(APU apu) {
+		this.apu = apu;
+	}
+
+	/**
+	 * Clocks the output unit, at the end of each timer period.
+	 */
+	private void clock() {
+		if (!silence) {
+			if ((shift & 1) != 0) {
+				if (level <= 125) {
+					level += 2;
+				}
+			}
+			else if (level >= 2) {
+				level -= 2;
+			}
+			shift >>= 1;
+		}
+		if (--bitsRemaining == 0) {
+			bitsRemaining = 8;
+			silence = !bufferFull;
+			if (bufferFull) {
+				shift = buffer;
+				bufferFull = false;
+				fetch();
+			}
+		}
+	}
+
+	/**
+	 * Fetches the next byte of the sample into the buffer, if the buffer
+	 * is empty and there are bytes left.
+	 */
+	private void fetch() {
+		if (!bufferFull && bytesRemaining > 0) {
+			buffer = apu.fetchDmcByte(address);
+			bufferFull = true;
+			address = (address + 1) | 0x8000;
+			if (--bytesRemaining == 0) {
+				if (loop) {
+					restart();
+				}
+				else if (irqEnabled) {
+					irq = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes left to fetch.
+	 *
+	 * @return The number of bytes.
+	 */
+	int getBytesRemaining() {
+		return bytesRemaining;
+	}
+
+	/**
+	 * Returns the number of CPU cycles until the last byte of the sample
+	 * is fetched, raising an IRQ.
+	 *
+	 * @return The number of cycles, or <code>-1</code> if no IRQ will be
+	 *         raised as things stand.
+	 */
+	int getCyclesUntilIrq() {
+		if (!irqEnabled || loop || bytesRemaining == 0 || !bufferFull) {
+			return -1;
+		}
+		return timer + (bitsRemaining - 1) * period + (bytesRemaining - 1) * 8 * period;
+	}
+
+	/**
+	 * Returns the current output level.
+	 *
+	 * @return The level, from <code>0</code> to <code>127</code>.
+	 */
+	int getLevel() {
+		return level;
+	}
+
+	void reset() {
+		irqEnabled = loop = irq = false;
+		period = timer = PERIODS[0];
+		level = 0;
+		sampleAddress = 0xc000;
+		sampleLength = 1;
+		address = bytesRemaining = 0;
+		buffer = shift = 0;
+		bufferFull = false;
+		bitsRemaining = 8;
+		silence = true;
+	}
+
+	private void restart() {
+		address = sampleAddress;
+		bytesRemaining = sampleLength;
+	}
+
+	/**
+	 * Runs the timer.  This must be done even when sound isn't being
+	 * output, since sample fetches and IRQs are visible to the CPU.
+	 *
+	 * @param cycles The number of CPU cycles to run for.
+	 * @return The output level, summed over each cycle run.
+	 */
+	int run(int cycles) {
+		int sum = 0;
+		while (cycles >= timer) {
+			sum += level * timer;
+			cycles -= timer;
+			timer = period;
+			clock();
+		}
+		sum += level * cycles;
+		timer -= cycles;
+		return sum;
+	}
+
+	/**
+	 * Starts or stops playback, via <code>$4015</code>.
+	 *
+	 * @param enabled Whether to play the sample.
+	 */
+	void setEnabled(boolean enabled) {
+		irq = false;
+		if (!enabled) {
+			bytesRemaining = 0;
+		}
+		else if (bytesRemaining == 0) {
+			restart();
+			fetch();
+		}
+	}
+
+	/**
+	 * Handles a write to one of the channel's 4 registers.
+	 *
+	 * @param register The register, from <code>0</code> to <code>3</code>.
+	 * @param value The value written.
+	 */
+	void write(int register, int value) {
+		switch (register) {
+			case 0:
+				irqEnabled = (value & 0x80) != 0;
+				if (!irqEnabled) {
+					irq = false;
+				}
+				loop = (value & 0x40) != 0;
+				period = PERIODS[value & 0x0f];
+				break;
+			case 1:
+				level = value & 0x7f;
+				break;
+			case 2:
+				sampleAddress = 0xc000 | (value << 6);
+				break;
+			default:
+				sampleLength = (value << 4) + 1;
+				break;
+		}
+	}
+
+}
\ No newline at end of file
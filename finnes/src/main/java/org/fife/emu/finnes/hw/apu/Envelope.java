@@ -0,0 +1,75 @@
+package org.fife.emu.finnes.hw.apu;
+
+import java.io.Serializable;
+
+
+/**
+ * The volume envelope shared by the pulse and noise channels.  It either
+ * outputs a constant volume, or decays from 15 to 0 (optionally looping)
+ * once per period of quarter frames.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class Envelope implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private boolean start;
+	private boolean loop;
+	private boolean constant;
+	private int param;
+	private int divider;
+	private int decay;
+
+	/**
+	 * Clocks the envelope, on each quarter frame.
+	 */
+	void clock() {
+		if (start) {
+			start = false;
+			decay = 15;
+			divider = param;
+		}
+		else if (divider == 0) {
+			divider = param;
+			if (decay > 0) {
+				decay--;
+			}
+			else if (loop) {
+				decay = 15;
+			}
+		}
+		else {
+			divider--;
+		}
+	}
+
+	/**
+	 * Returns the current volume.
+	 *
+	 * @return The volume, from <code>0</code> to <code>15</code>.
+	 */
+	int getVolume() {
+		return constant ? param : decay;
+	}
+
+	/**
+	 * Restarts the envelope, when the channel's length is loaded.
+	 */
+	void restart() {
+		start = true;
+	}
+
+	/**
+	 * Sets the envelope's parameters from the channel's first register.
+	 *
+	 * @param value The value written to the register.
+	 */
+	void write(int value) {
+		loop = (value & 0x20) != 0;
+		constant = (value & 0x10) != 0;
+		param = value & 0x0f;
+	}
+
+}
\ No newline at end of file
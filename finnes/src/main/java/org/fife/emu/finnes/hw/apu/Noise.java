@@ -0,0 +1,88 @@
+package org.fife.emu.finnes.hw.apu;
+
+
+/**
+ * The noise channel, at <code>$400C-$400F</code>.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class Noise extends Channel {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The NTSC timer periods, in CPU cycles.
+	 */
+	private static final int[] PERIODS = {
+		4, 8, 16, 32, 64, 96, 128, 160, 202, 254, 380, 508, 762, 1016, 2034, 4068,
+	};
+
+	private final Envelope envelope;
+	private boolean shortMode;
+	private int period;
+	private int timer;
+	private int shift;
+
+	Noise() {
+		envelope = new Envelope();
+		shift = 1;
+	}
+
+	@Override
+	void clockQuarterFrame() {
+		envelope.clock();
+	}
+
+	@Override
+	void reset() {
+		super.reset();
+		envelope.write(0);
+		shortMode = false;
+		period = PERIODS[0];
+		timer = 0;
+		shift = 1;
+	}
+
+	@Override
+	int run(int cycles) {
+
+		int volume = length > 0 ? envelope.getVolume() : 0;
+		int tap = shortMode ? 6 : 1;
+		int sum = 0;
+
+		while (cycles >= timer) {
+			sum += (~shift & 1) * volume * timer;
+			cycles -= timer;
+			timer = period;
+			int feedback = (shift ^ (shift >> tap)) & 1;
+			shift = (shift >> 1) | (feedback << 14);
+		}
+		sum += (~shift & 1) * volume * cycles;
+		timer -= cycles;
+
+		return sum;
+
+	}
+
+	@Override
+	void write(int register, int value) {
+		switch (register) {
+			case 0:
+				halt = (value & 0x20) != 0;
+				envelope.write(value);
+				break;
+			case 2:
+				shortMode = (value & 0x80) != 0;
+				period = PERIODS[value & 0x0f];
+				break;
+			case 3:
+				loadLength(value);
+				envelope.restart();
+				break;
+			default:
+				break;
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+package org.fife.emu.finnes.hw.apu;
+
+
+/**
+ * One of the two pulse (square wave) channels, at
+ * <code>$4000-$4003</code> and <code>$4004-$4007</code>.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class Pulse extends Channel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int[][] DUTY = {
+		{ 0, 1, 0, 0, 0, 0, 0, 0 },
+		{ 0, 1, 1, 0, 0, 0, 0, 0 },
+		{ 0, 1, 1, 1, 1, 0, 0, 0 },
+		{ 1, 0, 0, 1, 1, 1, 1, 1 },
+	};
+
+	/**
+	 * Whether this is the first pulse channel, whose sweep unit negates
+	 * with one's complement.
+	 */
+	private final boolean first;
+
+	private final Envelope envelope;
+	private int duty;
+	private int step;
+	private int period;
+	private int timer;
+
+	private boolean sweepEnabled;
+	private boolean sweepNegate;
+	private boolean sweepReload;
+	private int sweepPeriod;
+	private int sweepShift;
+	private int sweepDivider;
+
+	Pulse(boolean first) {
+		this.first = first;
+		envelope = new Envelope();
+	}
+
+	/**
+	 * Clocks the length counter and the sweep unit, on each half frame.
+	 */
+	@Override
+	void clockLength() {
+		super.clockLength();
+		if (sweepDivider == 0 && sweepEnabled && sweepShift > 0 && !isMuted()) {
+			period = getSweepTarget();
+		}
+		if (sweepDivider == 0 || sweepReload) {
+			sweepDivider = sweepPeriod;
+			sweepReload = false;
+		}
+		else {
+			sweepDivider--;
+		}
+	}
+
+	@Override
+	void clockQuarterFrame() {
+		envelope.clock();
+	}
+
+	private int getSweepTarget() {
+		int change = period >> sweepShift;
+		if (sweepNegate) {
+			return period - change - (first ? 1 : 0);
+		}
+		return period + change;
+	}
+
+	private boolean isMuted() {
+		return period < 8 || getSweepTarget() > 0x7ff;
+	}
+
+	@Override
+	void reset() {
+		super.reset();
+		envelope.write(0);
+		duty = step = period = timer = 0;
+		sweepEnabled = sweepNegate = sweepReload = false;
+		sweepPeriod = sweepShift = sweepDivider = 0;
+	}
+
+	@Override
+	int run(int cycles) {
+
+		int output = length > 0 && !isMuted() ? envelope.getVolume() : 0;
+		int[] duty = DUTY[this.duty];
+		int sum = 0;
+
+		// The sequencer is clocked every other CPU cycle
+		while (cycles >= timer) {
+			sum += duty[step] * output * timer;
+			cycles -= timer;
+			timer = (period + 1) << 1;
+			step = (step + 1) & 7;
+		}
+		sum += duty[step] * output * cycles;
+		timer -= cycles;
+
+		return sum;
+
+	}
+
+	@Override
+	void write(int register, int value) {
+		switch (register) {
+			case 0:
+				duty = value >> 6;
+				halt = (value & 0x20) != 0;
+				envelope.write(value);
+				break;
+			case 1:
+				sweepEnabled = (value & 0x80) != 0;
+				sweepPeriod = (value >> 4) & 7;
+				sweepNegate = (value & 0x08) != 0;
+				sweepShift = value & 7;
+				sweepReload = true;
+				break;
+			case 2:
+				period = (period & 0x700) | value;
+				break;
+			default:
+				period = (period & 0xff) | ((value & 7) << 8);
+				loadLength(value);
+				step = 0;
+				envelope.restart();
+				break;
+		}
+	}
+
+}
\ No newline at end of file
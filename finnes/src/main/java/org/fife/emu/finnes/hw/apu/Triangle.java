@@ -0,0 +1,94 @@
+package org.fife.emu.finnes.hw.apu;
+
+
+/**
+ * The triangle channel, at <code>$4008-$400B</code>.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class Triangle extends Channel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int[] SEQUENCE = {
+		15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0,
+		0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+	};
+
+	/**
+	 * Periods shorter than this are ultrasonic, and real hardware just
+	 * outputs a mess; the sequencer is held instead, which sounds the
+	 * same and saves time.
+	 */
+	private static final int MIN_PERIOD = 2;
+
+	private int linearReload;
+	private int linearCounter;
+	private boolean linearReloadFlag;
+	private int step;
+	private int period;
+	private int timer;
+
+	@Override
+	void clockQuarterFrame() {
+		if (linearReloadFlag) {
+			linearCounter = linearReload;
+		}
+		else if (linearCounter > 0) {
+			linearCounter--;
+		}
+		if (!halt) {
+			linearReloadFlag = false;
+		}
+	}
+
+	@Override
+	void reset() {
+		super.reset();
+		linearReload = linearCounter = step = period = timer = 0;
+		linearReloadFlag = false;
+	}
+
+	@Override
+	int run(int cycles) {
+
+		if (length == 0 || linearCounter == 0 || period < MIN_PERIOD) {
+			return SEQUENCE[step] * cycles;
+		}
+
+		int sum = 0;
+		while (cycles >= timer) {
+			sum += SEQUENCE[step] * timer;
+			cycles -= timer;
+			timer = period + 1;
+			step = (step + 1) & 31;
+		}
+		sum += SEQUENCE[step] * cycles;
+		timer -= cycles;
+
+		return sum;
+
+	}
+
+	@Override
+	void write(int register, int value) {
+		switch (register) {
+			case 0:
+				halt = (value & 0x80) != 0;
+				linearReload = value & 0x7f;
+				break;
+			case 2:
+				period = (period & 0x700) | value;
+				break;
+			case 3:
+				period = (period & 0xff) | ((value & 7) << 8);
+				loadLength(value);
+				linearReloadFlag = true;
+				break;
+			default:
+				break;
+		}
+	}
+
+}
\ No newline at end of file
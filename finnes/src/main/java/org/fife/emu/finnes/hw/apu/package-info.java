@@ -0,0 +1,4 @@
+/**
+ * The NES's audio processing unit and its sound channels.
+ */
+package org.fife.emu.finnes.hw.apu;
\ No newline at end of file
@@ -0,0 +1,34 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+
+
+/**
+ * Mapper 7: a switchable 32 KB PRG bank, and single-screen mirroring
+ * selecting either nametable.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class AxROM extends Mapper {
+
+	private static final long serialVersionUID = 1L;
+
+	AxROM(Cartridge cartridge) {
+		super(cartridge);
+	}
+
+	@Override
+	public void reset() {
+		write(0x8000, 0);
+		mapChr(0x0000, 0x2000, 0);
+	}
+
+	@Override
+	public void write(int address, int value) {
+		mapPrg(0x8000, 0x8000, value & 0x07);
+		setMirroring((value & 0x10) != 0 ? Mirroring.SINGLE_SCREEN_UPPER : Mirroring.SINGLE_SCREEN_LOWER);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+
+
+/**
+ * Mapper 3: fixed PRG ROM, and a switchable 8 KB CHR bank.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class CNROM extends Mapper {
+
+	private static final long serialVersionUID = 1L;
+
+	CNROM(Cartridge cartridge) {
+		super(cartridge);
+	}
+
+	@Override
+	public void reset() {
+		mapPrg(0x8000, 0x4000, 0);
+		mapPrg(0xc000, 0x4000, 1);
+		mapChr(0x0000, 0x2000, 0);
+	}
+
+	@Override
+	public void write(int address, int value) {
+		mapChr(0x0000, 0x2000, value);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+
+
+/**
+ * Mapper 1: Nintendo's MMC1.  Its registers are loaded serially, a bit
+ * per write.  It switches PRG ROM in 16 or 32 KB banks, CHR in 4 or 8 KB
+ * banks, and sets the mirroring.  The extra PRG ROM and RAM banking of
+ * SOROM and SXROM boards isn't supported.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class MMC1 extends Mapper {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Mirroring[] MIRRORING = {
+		Mirroring.SINGLE_SCREEN_LOWER, Mirroring.SINGLE_SCREEN_UPPER, Mirroring.VERTICAL, Mirroring.HORIZONTAL,
+	};
+
+	private int shift;
+	private int shiftCount;
+	private int control;
+	private int chrBank0;
+	private int chrBank1;
+	private int prgBank;
+
+	MMC1(Cartridge cartridge) {
+		super(cartridge);
+	}
+
+	@Override
+	public void reset() {
+		shift = shiftCount = 0;
+		control = 0x0c;
+		chrBank0 = chrBank1 = prgBank = 0;
+		updateBanks();
+	}
+
+	private void updateBanks() {
+
+		setMirroring(MIRRORING[control & 3]);
+
+		switch ((control >> 2) & 3) {
+			case 0:
+			case 1:
+				mapPrg(0x8000, 0x8000, (prgBank & 0x0e) >> 1);
+				break;
+			case 2:
+				mapPrg(0x8000, 0x4000, 0);
+				mapPrg(0xc000, 0x4000, prgBank & 0x0f);
+				break;
+			default:
+				mapPrg(0x8000, 0x4000, prgBank & 0x0f);
+				mapPrg(0xc000, 0x4000, -1);
+				break;
+		}
+
+		if ((control & 0x10) != 0) {
+			mapChr(0x0000, 0x1000, chrBank0);
+			mapChr(0x1000, 0x1000, chrBank1);
+		}
+		else {
+			mapChr(0x0000, 0x2000, chrBank0 >> 1);
+		}
+
+	}
+
+	@Override
+	public void write(int address, int value) {
+
+		if ((value & 0x80) != 0) {
+			shift = shiftCount = 0;
+			control |= 0x0c;
+			updateBanks();
+			return;
+		}
+
+		shift |= (value & 1) << shiftCount;
+		if (++shiftCount < 5) {
+			return;
+		}
+
+		switch ((address >> 13) & 3) {
+			case 0:
+				control = shift;
+				break;
+			case 1:
+				chrBank0 = shift;
+				break;
+			case 2:
+				chrBank1 = shift;
+				break;
+			default:
+				prgBank = shift;
+				break;
+		}
+		shift = shiftCount = 0;
+		updateBanks();
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+import org.fife.emu.finnes.hw.nes.NES;
+
+
+/**
+ * Mapper 4: Nintendo's MMC3.  It switches PRG ROM in 8 KB banks and CHR
+ * in 1 and 2 KB banks, and has a scanline counter, clocked by PPU
+ * address line A12, that raises IRQs.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class MMC3 extends Mapper {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int[] registers;
+	private int bankSelect;
+
+	private int irqLatch;
+	private int irqCounter;
+	private boolean irqReload;
+	private boolean irqEnabled;
+
+	MMC3(Cartridge cartridge) {
+		super(cartridge);
+		registers = new int[8];
+	}
+
+	@Override
+	public void a12Rising() {
+		if (irqCounter == 0 || irqReload) {
+			irqCounter = irqLatch;
+			irqReload = false;
+		}
+		else {
+			irqCounter--;
+		}
+		if (irqCounter == 0 && irqEnabled) {
+			nes.getCpu().setIRQ(NES.IRQ_MAPPER, true);
+		}
+	}
+
+	@Override
+	public int getA12RisesUntilIrq() {
+		if (!irqEnabled) {
+			return -1;
+		}
+		if (irqCounter == 0 || irqReload) {
+			return irqLatch == 0 ? 1 : irqLatch + 1;
+		}
+		return irqCounter;
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < registers.length; i++) {
+			registers[i] = 0;
+		}
+		registers[7] = 1;
+		bankSelect = 0;
+		irqLatch = irqCounter = 0;
+		irqReload = irqEnabled = false;
+		nes.getCpu().setIRQ(NES.IRQ_MAPPER, false);
+		updateBanks();
+	}
+
+	private void updateBanks() {
+
+		if ((bankSelect & 0x40) == 0) {
+			mapPrg(0x8000, 0x2000, registers[6]);
+			mapPrg(0xc000, 0x2000, -2);
+		}
+		else {
+			mapPrg(0x8000, 0x2000, -2);
+			mapPrg(0xc000, 0x2000, registers[6]);
+		}
+		mapPrg(0xa000, 0x2000, registers[7]);
+		mapPrg(0xe000, 0x2000, -1);
+
+		int chrFlip = (bankSelect & 0x80) != 0 ? 0x1000 : 0;
+		mapChr(chrFlip, 0x800, registers[0] >> 1);
+		mapChr(chrFlip + 0x800, 0x800, registers[1] >> 1);
+		for (int i = 0; i < 4; i++) {
+			mapChr((chrFlip ^ 0x1000) + (i << 10), 0x400, registers[2 + i]);
+		}
+
+	}
+
+	@Override
+	public void write(int address, int value) {
+
+		boolean even = (address & 1) == 0;
+
+		switch (address & 0xe000) {
+			case 0x8000:
+				if (even) {
+					bankSelect = value;
+				}
+				else {
+					registers[bankSelect & 7] = value;
+				}
+				updateBanks();
+				break;
+			case 0xa000:
+				if (even) {
+					setMirroring((value & 1) != 0 ? Mirroring.HORIZONTAL : Mirroring.VERTICAL);
+				}
+				break;
+			case 0xc000:
+				if (even) {
+					irqLatch = value;
+				}
+				else {
+					irqCounter = 0;
+					irqReload = true;
+				}
+				break;
+			default:
+				irqEnabled = !even;
+				if (!irqEnabled) {
+					nes.getCpu().setIRQ(NES.IRQ_MAPPER, false);
+				}
+				break;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import java.io.Serializable;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+import org.fife.emu.finnes.hw.nes.NES;
+
+
+/**
+ * The bank switching hardware on a cartridge.  Subclasses handle writes
+ * to <code>$8000-$FFFF</code>, mapping PRG and CHR banks in response.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public abstract class Mapper implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int CHR_RAM_SIZE = 0x2000;
+
+	/**
+	 * The cartridge.
+	 */
+	protected final Cartridge cartridge;
+
+	/**
+	 * The machine the cartridge is plugged into.
+	 */
+	protected NES nes;
+
+	private int chrSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cartridge The cartridge.
+	 */
+	protected Mapper(Cartridge cartridge) {
+		this.cartridge = cartridge;
+	}
+
+	/**
+	 * Called when PPU address line A12 rises, which it does once per
+	 * rendered scanline in most games.  The default implementation does
+	 * nothing.
+	 *
+	 * @see #getA12RisesUntilIrq()
+	 */
+	public void a12Rising() {
+	}
+
+	/**
+	 * Returns a mapper for a cartridge.
+	 *
+	 * @param cartridge The cartridge.
+	 * @return The mapper.
+	 * @throws IllegalArgumentException If the cartridge's mapper isn't
+	 *         supported.
+	 */
+	public static Mapper create(Cartridge cartridge) {
+		switch (cartridge.getMapperNumber()) {
+			case 0:
+				return new NROM(cartridge);
+			case 1:
+				return new MMC1(cartridge);
+			case 2:
+				return new UxROM(cartridge);
+			case 3:
+				return new CNROM(cartridge);
+			case 4:
+				return new MMC3(cartridge);
+			case 7:
+				return new AxROM(cartridge);
+			default:
+				throw new IllegalArgumentException("Unsupported mapper: " + cartridge.getMapperNumber());
+		}
+	}
+
+	/**
+	 * Returns how many more times A12 must rise before this mapper raises
+	 * an IRQ.  The PPU uses this to schedule an event for the IRQ, so it
+	 * must be kept accurate; the PPU asks again after each write to the
+	 * mapper.
+	 *
+	 * @return The number of times, or <code>-1</code> if this mapper won't
+	 *         raise an IRQ as things stand.  The default implementation
+	 *         returns <code>-1</code>.
+	 * @see #a12Rising()
+	 */
+	public int getA12RisesUntilIrq() {
+		return -1;
+	}
+
+	/**
+	 * Plugs the cartridge into a machine.  This sets up its CHR memory;
+	 * banks are mapped by {@link #reset()}.
+	 *
+	 * @param nes The machine.
+	 */
+	public void init(NES nes) {
+		this.nes = nes;
+		byte[] chr = cartridge.getChrRom();
+		if (chr != null) {
+			nes.getPpu().setChrMemory(chr, false);
+		}
+		else {
+			chr = new byte[CHR_RAM_SIZE];
+			nes.getPpu().setChrMemory(chr, true);
+		}
+		chrSize = chr.length;
+		nes.getPpu().setMirroring(cartridge.getMirroring());
+	}
+
+	/**
+	 * Maps a CHR bank into the PPU's pattern tables.
+	 *
+	 * @param address The address to map to, a multiple of
+	 *        <code>size</code>.
+	 * @param size The bank size, a multiple of 1 KB.
+	 * @param bank The bank number.  Banks past the end of CHR memory wrap
+	 *        around.
+	 */
+	protected void mapChr(int address, int size, int bank) {
+		nes.getPpu().mapChr(address, size, Math.floorMod(bank * size, chrSize));
+	}
+
+	/**
+	 * Maps a PRG ROM bank into the CPU's address space.
+	 *
+	 * @param address The address to map to, a multiple of
+	 *        <code>size</code>.
+	 * @param size The bank size, a multiple of 8 KB.
+	 * @param bank The bank number.  Negative numbers count back from the
+	 *        last bank, and banks past the end of PRG ROM wrap around.
+	 */
+	protected void mapPrg(int address, int size, int bank) {
+		nes.mapPrg(address, size, Math.floorMod(bank * size, cartridge.getPrgRomSize()));
+	}
+
+	/**
+	 * Maps the banks the cartridge starts up with, and resets any
+	 * registers.
+	 */
+	public abstract void reset();
+
+	/**
+	 * Sets the nametable mirroring.  This is ignored for cartridges with
+	 * four-screen mirroring, which is hard wired.
+	 *
+	 * @param mirroring The mirroring.
+	 */
+	protected void setMirroring(Mirroring mirroring) {
+		if (cartridge.getMirroring() != Mirroring.FOUR_SCREEN) {
+			nes.getPpu().setMirroring(mirroring);
+		}
+	}
+
+	/**
+	 * Handles a write to <code>$8000-$FFFF</code>.
+	 *
+	 * @param address The address written to.
+	 * @param value The value written.
+	 */
+	public abstract void write(int address, int value);
+
+}
\ No newline at end of file
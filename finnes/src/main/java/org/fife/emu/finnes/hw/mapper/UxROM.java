@@ -0,0 +1,33 @@
+package org.fife.emu.finnes.hw.mapper;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+
+
+/**
+ * Mapper 2: a switchable 16 KB PRG bank at <code>$8000</code>, and the
+ * last bank fixed at <code>$C000</code>.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class UxROM extends Mapper {
+
+	private static final long serialVersionUID = 1L;
+
+	UxROM(Cartridge cartridge) {
+		super(cartridge);
+	}
+
+	@Override
+	public void reset() {
+		mapPrg(0x8000, 0x4000, 0);
+		mapPrg(0xc000, 0x4000, -1);
+		mapChr(0x0000, 0x2000, 0);
+	}
+
+	@Override
+	public void write(int address, int value) {
+		mapPrg(0x8000, 0x4000, value);
+	}
+
+}
\ No newline at end of file
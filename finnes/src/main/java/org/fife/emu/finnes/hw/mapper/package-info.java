@@ -0,0 +1,4 @@
+/**
+ * Cartridge bank switching hardware, known as mappers.
+ */
+package org.fife.emu.finnes.hw.mapper;
\ No newline at end of file
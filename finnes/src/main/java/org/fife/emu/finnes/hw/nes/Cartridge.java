@@ -0,0 +1,230 @@
+package org.fife.emu.finnes.hw.nes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.MemoryStorage;
+
+
+/**
+ * A game cartridge, loaded from an iNES image.  The image's ROM is kept
+ * as read-only storage, so one cartridge can be plugged into any number
+ * of {@link NES}es at once without copying it; each console gets its
+ * own RAM.  NES 2.0 headers are understood as far as the mapper number
+ * and ROM sizes go.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public final class Cartridge implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int TRAINER_SIZE = 512;
+	private static final int PRG_UNIT = 0x4000;
+	private static final int CHR_UNIT = 0x2000;
+
+	private final MemoryStorage prgRom;
+	private final byte[] chrRom;
+	private final byte[] trainer;
+	private final int mapperNumber;
+	private final Mirroring mirroring;
+	private final boolean battery;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param image The contents of an iNES file.
+	 * @throws IllegalArgumentException If the image isn't a valid iNES
+	 *         image.
+	 */
+	public Cartridge(byte[] image) {
+
+		if (image.length < HEADER_SIZE || image[0] != 'N' || image[1] != 'E' || image[2] != 'S' || image[3] != 0x1a) {
+			throw new IllegalArgumentException("Not an iNES image");
+		}
+
+		int flags6 = image[6] & 0xff;
+		int flags7 = image[7] & 0xff;
+		boolean nes20 = (flags7 & 0x0c) == 0x08;
+		int prgUnits = image[4] & 0xff;
+		int chrUnits = image[5] & 0xff;
+		int mapper = flags6 >> 4;
+		if (nes20) {
+			prgUnits |= (image[9] & 0x0f) << 8;
+			chrUnits |= (image[9] & 0xf0) << 4;
+			mapper |= (flags7 & 0xf0) | ((image[8] & 0x0f) << 8);
+		}
+		else if (image[12] == 0 && image[13] == 0 && image[14] == 0 && image[15] == 0) {
+			// Otherwise bytes 7-15 are likely junk, e.g. "DiskDude!"
+			mapper |= flags7 & 0xf0;
+		}
+		mapperNumber = mapper;
+
+		battery = (flags6 & 0x02) != 0;
+		if ((flags6 & 0x08) != 0) {
+			mirroring = Mirroring.FOUR_SCREEN;
+		}
+		else {
+			mirroring = (flags6 & 0x01) != 0 ? Mirroring.VERTICAL : Mirroring.HORIZONTAL;
+		}
+
+		int offset = HEADER_SIZE;
+		if ((flags6 & 0x04) != 0) {
+			trainer = copy(image, offset, TRAINER_SIZE);
+			offset += TRAINER_SIZE;
+		}
+		else {
+			trainer = null;
+		}
+
+		if (prgUnits == 0) {
+			throw new IllegalArgumentException("Image has no PRG ROM");
+		}
+		prgRom = new ByteArrayMemoryStorage(copy(image, offset, prgUnits * PRG_UNIT));
+		offset += prgUnits * PRG_UNIT;
+		chrRom = chrUnits > 0 ? copy(image, offset, chrUnits * CHR_UNIT) : null;
+
+	}
+
+	private static byte[] copy(byte[] image, int offset, int length) {
+		if (offset + length > image.length) {
+			throw new IllegalArgumentException("Image is truncated: expected at least " +
+				(offset + length) + " bytes, found " + image.length);
+		}
+		return Arrays.copyOfRange(image, offset, offset + length);
+	}
+
+	/**
+	 * Returns the cartridge's CHR ROM.
+	 *
+	 * @return The CHR ROM, or <code>null</code> if the cartridge has
+	 *         CHR RAM instead.
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "ROM is shared, and never written to")
+	public byte[] getChrRom() {
+		return chrRom;
+	}
+
+	/**
+	 * Returns the number of the mapper, i.e. the bank switching hardware
+	 * on the cartridge.
+	 *
+	 * @return The mapper number.
+	 */
+	public int getMapperNumber() {
+		return mapperNumber;
+	}
+
+	/**
+	 * Returns the nametable mirroring wired on the cartridge.  Some
+	 * mappers can change this.
+	 *
+	 * @return The mirroring.
+	 */
+	public Mirroring getMirroring() {
+		return mirroring;
+	}
+
+	/**
+	 * Returns the cartridge's PRG ROM.
+	 *
+	 * @return The PRG ROM.
+	 */
+	public MemoryStorage getPrgRom() {
+		return prgRom;
+	}
+
+	/**
+	 * Returns the size of the PRG ROM.
+	 *
+	 * @return The size, in bytes.
+	 */
+	public int getPrgRomSize() {
+		return prgRom.size();
+	}
+
+	/**
+	 * Returns the trainer, code that some images have loaded at
+	 * <code>0x7000</code>.
+	 *
+	 * @return The trainer, or <code>null</code> if there isn't one.
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Trainer is shared, and never written to")
+	public byte[] getTrainer() {
+		return trainer;
+	}
+
+	/**
+	 * Returns whether the cartridge's RAM is battery-backed.
+	 *
+	 * @return Whether the cartridge has a battery.
+	 */
+	public boolean hasBattery() {
+		return battery;
+	}
+
+	/**
+	 * Loads a cartridge from a <code>.nes</code> file, or the first
+	 * <code>.nes</code> file in a <code>.zip</code> file.
+	 *
+	 * @param file The file.
+	 * @return The cartridge.
+	 * @throws IOException If an I/O error occurs, or the file isn't a
+	 *         valid image.
+	 */
+	public static Cartridge load(Path file) throws IOException {
+
+		byte[] image;
+		if (file.toString().toLowerCase(Locale.ENGLISH).endsWith(".zip")) {
+			image = readFirstImage(file);
+		}
+		else {
+			image = Files.readAllBytes(file);
+		}
+
+		try {
+			return new Cartridge(image);
+		} catch (IllegalArgumentException iae) {
+			throw new IOException(file + ": " + iae.getMessage(), iae);
+		}
+
+	}
+
+	private static byte[] readFirstImage(Path zipFile) throws IOException {
+
+		try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zipFile))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				if (entry.getName().toLowerCase(Locale.ENGLISH).endsWith(".nes")) {
+					return readFully(in);
+				}
+			}
+		}
+
+		throw new IOException("No .nes file found in " + zipFile);
+
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int count;
+		while ((count = in.read(buf)) > -1) {
+			out.write(buf, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package org.fife.emu.finnes.hw.nes;
+
+import java.io.Serializable;
+
+
+/**
+ * A standard controller, read serially through <code>$4016</code> or
+ * <code>$4017</code>.  Front ends set which buttons are pressed via
+ * {@link #setButtons(int)}; the game latches them by strobing
+ * <code>$4016</code>, then reads them back one bit at a time.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class Controller implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The A button.
+	 */
+	public static final int A = 0x01;
+
+	/**
+	 * The B button.
+	 */
+	public static final int B = 0x02;
+
+	/**
+	 * The Select button.
+	 */
+	public static final int SELECT = 0x04;
+
+	/**
+	 * The Start button.
+	 */
+	public static final int START = 0x08;
+
+	/**
+	 * Up on the D-pad.
+	 */
+	public static final int UP = 0x10;
+
+	/**
+	 * Down on the D-pad.
+	 */
+	public static final int DOWN = 0x20;
+
+	/**
+	 * Left on the D-pad.
+	 */
+	public static final int LEFT = 0x40;
+
+	/**
+	 * Right on the D-pad.
+	 */
+	public static final int RIGHT = 0x80;
+
+	private int buttons;
+	private int shift;
+	private boolean strobe;
+
+	/**
+	 * Returns the buttons currently pressed.
+	 *
+	 * @return The buttons, a combination of the constants in this class.
+	 * @see #setButtons(int)
+	 */
+	public int getButtons() {
+		return buttons;
+	}
+
+	/**
+	 * Returns the next bit read from this controller, without any side
+	 * effects.
+	 *
+	 * @return The bit.
+	 * @see #read()
+	 */
+	int peek() {
+		return strobe ? buttons & 1 : shift & 1;
+	}
+
+	/**
+	 * Reads the next button's state.  After all 8 buttons, <code>1</code>
+	 * is read.
+	 *
+	 * @return The bit read.
+	 */
+	int read() {
+		if (strobe) {
+			return buttons & 1;
+		}
+		int bit = shift & 1;
+		shift = (shift >> 1) | 0x80;
+		return bit;
+	}
+
+	/**
+	 * Sets the buttons currently pressed.
+	 *
+	 * @param buttons The buttons, a combination of the constants in this
+	 *        class.
+	 * @see #getButtons()
+	 */
+	public void setButtons(int buttons) {
+		this.buttons = buttons & 0xff;
+	}
+
+	/**
+	 * Sets the strobe line.  While it's high, the buttons are reloaded
+	 * continuously.
+	 *
+	 * @param strobe Whether the strobe line is high.
+	 */
+	void setStrobe(boolean strobe) {
+		if (this.strobe && !strobe) {
+			shift = buttons;
+		}
+		this.strobe = strobe;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package org.fife.emu.finnes.hw.nes;
+
+
+/**
+ * How the PPU's four logical nametables map onto the 2 KB of nametable
+ * RAM in the console (or 4 KB, with extra RAM on the cartridge).
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public enum Mirroring {
+
+	/**
+	 * Tables 0 and 1 share the first 1 KB, tables 2 and 3 the second,
+	 * for games that scroll vertically.
+	 */
+	HORIZONTAL(0, 0, 0x400, 0x400),
+
+	/**
+	 * Tables 0 and 2 share the first 1 KB, tables 1 and 3 the second,
+	 * for games that scroll horizontally.
+	 */
+	VERTICAL(0, 0x400, 0, 0x400),
+
+	/**
+	 * All tables show the first 1 KB.
+	 */
+	SINGLE_SCREEN_LOWER(0, 0, 0, 0),
+
+	/**
+	 * All tables show the second 1 KB.
+	 */
+	SINGLE_SCREEN_UPPER(0x400, 0x400, 0x400, 0x400),
+
+	/**
+	 * Each table has its own 1 KB, using RAM on the cartridge.
+	 */
+	FOUR_SCREEN(0, 0x400, 0x800, 0xc00);
+
+	private final int[] offsets;
+
+	Mirroring(int... offsets) {
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Returns the offset into nametable RAM of a logical nametable.
+	 *
+	 * @param table The nametable, from <code>0</code> to <code>3</code>.
+	 * @return The offset of the table's 1 KB.
+	 */
+	public int getOffset(int table) {
+		return offsets[table];
+	}
+
+}
\ No newline at end of file
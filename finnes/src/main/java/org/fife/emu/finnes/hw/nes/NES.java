@@ -0,0 +1,331 @@
+package org.fife.emu.finnes.hw.nes;
+
+import java.io.Serializable;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.EventScheduler;
+import org.fife.emu.MemoryReadHandler;
+import org.fife.emu.MemoryWriteHandler;
+import org.fife.emu.cpu.n6502.n6502Impl;
+import org.fife.emu.finnes.hw.apu.APU;
+import org.fife.emu.finnes.hw.mapper.Mapper;
+import org.fife.emu.finnes.hw.ppu.PPU;
+
+
+/**
+ * An NTSC NES.<p>
+ *
+ * The CPU runs in long time slices, a whole frame at a time if nothing
+ * interrupts it.  The {@link PPU} and {@link APU} don't run alongside
+ * it; each catches up to the CPU's cycle count when one of its
+ * registers is accessed, when the cartridge switches banks, and at the
+ * end of each frame.  Anything they do that the CPU can see without
+ * accessing them - NMIs, IRQs and status flag changes - is predicted,
+ * and scheduled as an event that ends the CPU's slice at that cycle.
+ * This keeps emulation cycle-accurate as far as the CPU can tell while
+ * spending almost no time on the other chips, so a machine without a
+ * display or audio output runs at several hundred frames per second.<p>
+ *
+ * PRG ROM is mapped as ROM, with bank switching registers as its write
+ * handler, so the CPU's decode cache and compiled blocks work on it.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class NES extends AbstractCpuContext {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The CPU's clock speed, in Hz.
+	 */
+	public static final float CLOCK_SPEED = 1789773f;
+
+	/**
+	 * The IRQ source bit for the APU's frame counter.
+	 */
+	public static final int IRQ_FRAME_COUNTER = 0x01;
+
+	/**
+	 * The IRQ source bit for the APU's DMC channel.
+	 */
+	public static final int IRQ_DMC = 0x02;
+
+	/**
+	 * The IRQ source bit for the cartridge.
+	 */
+	public static final int IRQ_MAPPER = 0x04;
+
+	private static final int PRG_SLOT_SIZE = 0x2000;
+	private static final int TRAINER_ADDRESS = 0x7000;
+
+	private final Cartridge cartridge;
+	private final n6502Impl cpu;
+	private final EventScheduler scheduler;
+	private final PPU ppu;
+	private final APU apu;
+	private final Mapper mapper;
+	private final Controller[] controllers;
+
+	/**
+	 * The offset into PRG ROM mapped into each 8 KB slot at
+	 * <code>$8000-$FFFF</code>, or <code>-1</code> if none is yet.
+	 */
+	private final int[] prgOffsets;
+	private final MemoryWriteHandler mapperRegisters;
+
+	private final byte[] dmaBuffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cartridge The cartridge plugged in.
+	 * @throws IllegalArgumentException If the cartridge's mapper isn't
+	 *         supported.
+	 */
+	public NES(Cartridge cartridge) {
+
+		this.cartridge = cartridge;
+		initMemory(0x10000);
+
+		cpu = new n6502Impl(this, CLOCK_SPEED);
+		scheduler = new EventScheduler();
+		cpu.setEventScheduler(scheduler);
+		ppu = new PPU(this);
+		apu = new APU(this);
+		controllers = new Controller[] { new Controller(), new Controller() };
+		mapper = Mapper.create(cartridge);
+		prgOffsets = new int[] { -1, -1, -1, -1 };
+		mapperRegisters = new MapperRegisters();
+		dmaBuffer = new byte[256];
+
+		mapMirror(0x0000, 0x2000, 0x07ff);
+		mapReadHandler(0x2000, 0x2100, ppu);
+		mapWriteHandler(0x2000, 0x2100, ppu);
+		mapMirror(0x2000, 0x2000, 0x2007);
+		IoRegisters io = new IoRegisters();
+		mapReadHandler(0x4000, 0x4100, io);
+		mapWriteHandler(0x4000, 0x4100, io);
+		OpenBus openBus = new OpenBus();
+		mapReadHandler(0x4100, 0x6000, openBus);
+		mapWriteHandler(0x4100, 0x6000, openBus);
+
+		mapper.init(this);
+		reset();
+
+	}
+
+	/**
+	 * Returns the APU.
+	 *
+	 * @return The APU.
+	 */
+	public APU getApu() {
+		return apu;
+	}
+
+	/**
+	 * Returns the cartridge plugged in.
+	 *
+	 * @return The cartridge.
+	 */
+	public Cartridge getCartridge() {
+		return cartridge;
+	}
+
+	/**
+	 * Returns one of the controllers.
+	 *
+	 * @param port The port the controller is plugged into, <code>0</code>
+	 *        or <code>1</code>.
+	 * @return The controller.
+	 */
+	public Controller getController(int port) {
+		return controllers[port];
+	}
+
+	@Override
+	public n6502Impl getCpu() {
+		return cpu;
+	}
+
+	/**
+	 * Returns the scheduler that the PPU, APU and cartridge schedule the
+	 * things they do that the CPU can see with.
+	 *
+	 * @return The scheduler.
+	 */
+	public EventScheduler getEventScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Returns the cartridge's mapper.
+	 *
+	 * @return The mapper.
+	 */
+	public Mapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * Returns the PPU.
+	 *
+	 * @return The PPU.
+	 */
+	public PPU getPpu() {
+		return ppu;
+	}
+
+	/**
+	 * Maps PRG ROM into <code>$8000-$FFFF</code>.  Mappers call this to
+	 * switch banks.
+	 *
+	 * @param address The address to map to, a multiple of 8 KB.
+	 * @param size The size of the range to map, a multiple of 8 KB.
+	 * @param offset The offset into PRG ROM to map there.
+	 */
+	public void mapPrg(int address, int size, int offset) {
+		for (int i = 0; i < size; i += PRG_SLOT_SIZE) {
+			int slot = (address + i - 0x8000) / PRG_SLOT_SIZE;
+			if (prgOffsets[slot] != offset + i) {
+				prgOffsets[slot] = offset + i;
+				int start = address + i;
+				mapROM(start, start + PRG_SLOT_SIZE, cartridge.getPrgRom(), offset + i, mapperRegisters);
+			}
+		}
+	}
+
+	/**
+	 * Resets the machine, as if its reset button were pressed.
+	 */
+	public void reset() {
+		mapper.reset();
+		byte[] trainer = cartridge.getTrainer();
+		if (trainer != null) {
+			writeBlock(TRAINER_ADDRESS, trainer, 0, trainer.length);
+		}
+		cpu.reset();
+		ppu.reset();
+		apu.reset();
+	}
+
+	/**
+	 * Runs the machine until the PPU completes a frame, i.e. until
+	 * vertical blank starts.  The PPU and APU are caught up, then all
+	 * cycle counts are rebased so they never overflow.
+	 */
+	public void runFrame() {
+
+		int target = ppu.getFrameEndCycle();
+		cpu.execute(target - cpu.getCycles());
+		if (cpu.getCycles() < target) { // The CPU jammed
+			cpu.burnCycles(target - cpu.getCycles());
+		}
+
+		int elapsed = cpu.getCycles();
+		ppu.catchUp(elapsed);
+		apu.catchUp(elapsed);
+		cpu.endTimeFrame();
+		ppu.rebase(elapsed);
+		apu.rebase(elapsed);
+
+	}
+
+	/**
+	 * Dispatches writes to PRG ROM to the mapper.  The PPU is caught up
+	 * first, since bank switches can change what it renders, and its
+	 * event is rescheduled after, since they can change when the mapper
+	 * fires an IRQ.
+	 */
+	private final class MapperRegisters implements MemoryWriteHandler, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void write(int address, int value) {
+			ppu.catchUp(cpu.getCycles());
+			mapper.write(address, value);
+			ppu.scheduleEvent();
+		}
+
+	}
+
+	/**
+	 * The APU, controller and OAM DMA registers at <code>$4000-$401F</code>.
+	 */
+	private final class IoRegisters implements MemoryReadHandler, MemoryWriteHandler, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int peek(int address) {
+			switch (address) {
+				case 0x4015:
+					return apu.peekStatus();
+				case 0x4016:
+				case 0x4017:
+					return controllers[address - 0x4016].peek() | 0x40;
+				default:
+					return address >> 8;
+			}
+		}
+
+		@Override
+		public int read(int address) {
+			switch (address) {
+				case 0x4015:
+					return apu.readStatus();
+				case 0x4016:
+				case 0x4017:
+					return controllers[address - 0x4016].read() | 0x40;
+				default:
+					return address >> 8;
+			}
+		}
+
+		@Override
+		public void write(int address, int value) {
+			if (address == 0x4014) {
+				readBlock(value << 8, dmaBuffer, 0, dmaBuffer.length);
+				ppu.catchUp(cpu.getCycles());
+				ppu.writeOam(dmaBuffer);
+				cpu.burnCycles(513 + (cpu.getCycles() & 1));
+			}
+			else if (address == 0x4016) {
+				controllers[0].setStrobe((value & 1) != 0);
+				controllers[1].setStrobe((value & 1) != 0);
+			}
+			else if (address < 0x4018) {
+				apu.write(address, value);
+			}
+		}
+
+	}
+
+	/**
+	 * Unconnected addresses at <code>$4100-$5FFF</code>.  Reads return the
+	 * last byte on the data bus, which is usually the high byte of the
+	 * address, and writes are ignored.
+	 */
+	private static final class OpenBus implements MemoryReadHandler, MemoryWriteHandler, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int peek(int address) {
+			return address >> 8;
+		}
+
+		@Override
+		public int read(int address) {
+			return address >> 8;
+		}
+
+		@Override
+		public void write(int address, int value) {
+		}
+
+	}
+
+}
\ No newline at end of file
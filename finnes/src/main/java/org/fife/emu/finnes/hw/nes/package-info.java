@@ -0,0 +1,4 @@
+/**
+ * The NES console itself: the machine, cartridges, controllers and nametable mirroring.
+ */
+package org.fife.emu.finnes.hw.nes;
\ No newline at end of file
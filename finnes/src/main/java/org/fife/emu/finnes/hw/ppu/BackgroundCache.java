@@ -0,0 +1,206 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * Each of the four 1 KB nametables in nametable RAM, pre-rendered into a
+ * 256x240 layer of background palette indexes.  The scanline renderer
+ * copies a line of background out of these layers at any scroll position,
+ * rather than drawing it tile by tile.<p>
+ *
+ * Tiles are only re-rendered when something they're drawn from changes.
+ * Writes to a nametable mark the tile written to as dirty, and writes to
+ * an attribute table the 16 tiles it colors.  Each tile also remembers
+ * which tile of CHR memory it was drawn from, and that tile's version in
+ * the {@link TileCache}, so writes to CHR RAM, bank switches and
+ * switching the background's pattern table only re-render the tiles they
+ * affect.  Since the layers hold palette indexes rather than colors,
+ * palette writes don't affect them at all.<p>
+ *
+ * Checking a row of tiles for changes is cheap, but isn't free, so rows
+ * are only checked when something has changed since they last were.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class BackgroundCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int TABLES = 4;
+	private static final int COLUMNS = 32;
+	private static final int ROWS = 30;
+	private static final int TILES = COLUMNS * ROWS;
+
+	private final PPU ppu;
+
+	/**
+	 * The layers, or <code>null</code> for nametables never drawn.  Each
+	 * pixel is <code>0</code> if transparent, otherwise its palette in bits
+	 * 2-3 and its pattern in bits 0-1.
+	 */
+	private final byte[][] layers;
+
+	/**
+	 * For each tile, whether its nametable or attribute entry has been
+	 * written to, the CHR memory offset it was drawn from, and that CHR
+	 * tile's version.
+	 */
+	private final boolean[][] dirty;
+	private final int[][] tileChrOffsets;
+	private final int[][] tileVersions;
+
+	/**
+	 * The value of <code>chrGeneration</code> each row of tiles was last
+	 * checked at, or <code>-1</code> if a tile in it has been written to
+	 * since.
+	 */
+	private final int[][] rowGenerations;
+
+	/**
+	 * Incremented whenever the pattern tables change in any way.  It's
+	 * never negative, so never matches a row needing to be checked.
+	 */
+	private int chrGeneration;
+
+	/**
+	 * Incremented whenever any tile is re-rendered.
+	 */
+	private int version;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ppu The PPU whose nametables are cached.
+	 */
+	BackgroundCache(PPU ppu) {
+		this.ppu = ppu;
+		layers = new byte[TABLES][];
+		dirty = new boolean[TABLES][TILES];
+		tileChrOffsets = new int[TABLES][TILES];
+		tileVersions = new int[TABLES][TILES];
+		rowGenerations = new int[TABLES][ROWS];
+		invalidateAll();
+	}
+
+	/**
+	 * Returns a layer, with a row of its tiles up to date.
+	 *
+	 * @param table The index of the nametable in nametable RAM, from
+	 *        <code>0</code> to <code>3</code>.
+	 * @param row The row of tiles, from <code>0</code> to <code>29</code>.
+	 * @return The layer, 256 pixels per line.  This array must not be
+	 *         modified.
+	 */
+	byte[] getLayer(int table, int row) {
+
+		byte[] layer = layers[table];
+		if (layer == null) {
+			layer = new byte[PPU.WIDTH * PPU.HEIGHT];
+			layers[table] = layer;
+		}
+		if (rowGenerations[table][row] == chrGeneration) {
+			return layer;
+		}
+
+		int nametable = table << 10;
+		int patternTable = (ppu.ctrl & PPU.CTRL_BG_TABLE) != 0 ? 0x1000 : 0;
+		TileCache tileCache = ppu.tileCache;
+		boolean[] tableDirty = dirty[table];
+		int[] chrOffsets = tileChrOffsets[table];
+		int[] versions = tileVersions[table];
+
+		for (int col = 0; col < COLUMNS; col++) {
+			int i = row * COLUMNS + col;
+			int tile = ppu.nametableRam[nametable + i] & 0xff;
+			int chrOffset = ppu.getChrOffset(patternTable + (tile << 4));
+			int tileVersion = tileCache.getVersion(chrOffset);
+			if (tableDirty[i] || chrOffsets[i] != chrOffset || versions[i] != tileVersion) {
+				renderTile(layer, nametable, row, col, tileCache.getTile(chrOffset));
+				tableDirty[i] = false;
+				chrOffsets[i] = chrOffset;
+				versions[i] = tileVersion;
+				version++;
+			}
+		}
+
+		rowGenerations[table][row] = chrGeneration;
+		return layer;
+
+	}
+
+	/**
+	 * Returns a number that changes whenever any tile is re-rendered.  If
+	 * it's unchanged, so is every layer.
+	 *
+	 * @return The version.
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Marks every tile as dirty, e.g. when the CHR memory is replaced.
+	 */
+	void invalidateAll() {
+		for (int table = 0; table < TABLES; table++) {
+			Arrays.fill(dirty[table], true);
+			Arrays.fill(rowGenerations[table], -1);
+		}
+	}
+
+	/**
+	 * Notes that the pattern tables have changed, i.e. CHR RAM was written
+	 * to, a CHR bank was switched, or the background's pattern table was.
+	 */
+	void invalidateChr() {
+		chrGeneration = (chrGeneration + 1) & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Marks the tiles a write to nametable RAM affects as dirty.
+	 *
+	 * @param offset The offset written to in nametable RAM.
+	 */
+	void invalidateNametable(int offset) {
+
+		int table = offset >> 10;
+		int i = offset & 0x3ff;
+
+		if (i < TILES) {
+			dirty[table][i] = true;
+			rowGenerations[table][i / COLUMNS] = -1;
+		}
+		else {
+			// An attribute byte colors a 4x4 block of tiles
+			int attr = i - TILES;
+			int left = (attr & 7) << 2;
+			int top = (attr >> 3) << 2;
+			for (int row = top; row < top + 4 && row < ROWS; row++) {
+				Arrays.fill(dirty[table], row * COLUMNS + left, row * COLUMNS + left + 4, true);
+				rowGenerations[table][row] = -1;
+			}
+		}
+
+	}
+
+	private void renderTile(byte[] layer, int nametable, int row, int col, byte[] pattern) {
+
+		int attrAddr = 0x3c0 | ((row >> 2) << 3) | (col >> 2);
+		int attr = ppu.nametableRam[nametable + attrAddr] & 0xff;
+		int palette = ((attr >> (((row & 2) << 1) | (col & 2))) & 3) << 2;
+
+		int offs = (row << 3) * PPU.WIDTH + (col << 3);
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 8; x++) {
+				int pixel = pattern[(y << 3) + x];
+				layer[offs + x] = (byte)(pixel != 0 ? palette | pixel : 0);
+			}
+			offs += PPU.WIDTH;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,245 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.io.Serializable;
+
+
+/**
+ * Renders the picture a dot at a time, emulating the PPU's background
+ * fetches and shift registers, so register writes take effect at the
+ * exact pixel they do on real hardware.  This shares all its state but
+ * the shift registers and sprites for the next line with the
+ * {@link ScanlineRenderer}, so the PPU can switch between them at the
+ * start of any scanline.<p>
+ *
+ * Sprites for the next line are evaluated and their patterns fetched all
+ * at once at dot 257, rather than across the rest of the line.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class DotRenderer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAX_SPRITES_PER_LINE = 8;
+
+	private final PPU ppu;
+
+	/**
+	 * The latched tile data for the next tile, fetched over 8 dots.
+	 */
+	private int nextTile;
+	private int nextPalette;
+	private int nextPattern;
+
+	/**
+	 * The background shift registers.  Each holds 16 pixels, 2 bits
+	 * apiece, the current tile's in the upper half; the first holds
+	 * pattern values, the second palettes.
+	 */
+	private int patternShift;
+	private int paletteShift;
+
+	/**
+	 * The sprites on the current line, in OAM order.
+	 */
+	private int spriteCount;
+	private boolean sprite0OnLine;
+	private final byte[][] spritePatterns;
+	private final int[] spriteRows;
+	private final int[] spriteXs;
+	private final int[] spriteAttrs;
+
+	DotRenderer(PPU ppu) {
+		this.ppu = ppu;
+		spritePatterns = new byte[MAX_SPRITES_PER_LINE][];
+		spriteRows = new int[MAX_SPRITES_PER_LINE];
+		spriteXs = new int[MAX_SPRITES_PER_LINE];
+		spriteAttrs = new int[MAX_SPRITES_PER_LINE];
+	}
+
+	/**
+	 * Evaluates which sprites are on the next scanline, and fetches their
+	 * patterns.
+	 *
+	 * @param line The current scanline, or <code>-1</code> for the
+	 *        pre-render line.
+	 */
+	private void evaluateSprites(int line) {
+
+		int height = (ppu.ctrl & PPU.CTRL_TALL_SPRITES) != 0 ? 16 : 8;
+		byte[] oam = ppu.oam;
+		spriteCount = 0;
+		sprite0OnLine = false;
+
+		for (int i = 0; i < 256; i += 4) {
+
+			int row = line - (oam[i] & 0xff);
+			if (row < 0 || row >= height) {
+				continue;
+			}
+			if (spriteCount == MAX_SPRITES_PER_LINE) {
+				ppu.setSpriteOverflow();
+				break;
+			}
+
+			int tile = oam[i + 1] & 0xff;
+			int attr = oam[i + 2] & 0xff;
+			if ((attr & 0x80) != 0) {
+				row = height - 1 - row;
+			}
+			int rowAddr = ppu.getSpriteRowAddress(tile, row);
+			spritePatterns[spriteCount] = ppu.tileCache.getTile(ppu.getChrOffset(rowAddr));
+			spriteRows[spriteCount] = (rowAddr & 7) << 3;
+			spriteXs[spriteCount] = oam[i + 3] & 0xff;
+			spriteAttrs[spriteCount] = attr;
+			sprite0OnLine |= i == 0;
+			spriteCount++;
+
+		}
+
+	}
+
+	/**
+	 * Performs the background fetch due at a dot.
+	 *
+	 * @param dot The dot.
+	 */
+	private void fetch(int dot) {
+
+		int v = ppu.v;
+
+		switch ((dot - 1) & 7) {
+			case 0:
+				patternShift |= nextPattern;
+				paletteShift |= nextPalette * 0x5555;
+				nextTile = ppu.nametableRam[ppu.nametables[(v >> 10) & 3] + (v & 0x3ff)] & 0xff;
+				break;
+			case 2:
+				int attrAddr = 0x3c0 | ((v >> 4) & 0x38) | ((v >> 2) & 0x07);
+				int attr = ppu.nametableRam[ppu.nametables[(v >> 10) & 3] + attrAddr] & 0xff;
+				nextPalette = (attr >> (((v >> 4) & 4) | (v & 2))) & 3;
+				break;
+			case 4:
+				int table = (ppu.ctrl & PPU.CTRL_BG_TABLE) != 0 ? 0x1000 : 0;
+				byte[] pattern = ppu.tileCache.getTile(ppu.getChrOffset(table + (nextTile << 4)));
+				int row = ((v >> 12) & 7) << 3;
+				int packed = 0;
+				for (int i = 0; i < 8; i++) {
+					packed = (packed << 2) | pattern[row + i];
+				}
+				nextPattern = packed;
+				break;
+			case 7:
+				ppu.incrementX();
+				break;
+			default:
+				break;
+		}
+
+	}
+
+	/**
+	 * Renders the pixel output at a dot.  When the frame isn't being
+	 * output, this is only done on scanlines sprite 0 is on, to check
+	 * whether it hits.
+	 *
+	 * @param line The scanline.
+	 * @param x The pixel's x-coordinate.
+	 * @param output Whether to draw the pixel into the frame buffer.
+	 */
+	private void renderPixel(int line, int x, boolean output) {
+
+		int mask = ppu.mask;
+		if ((mask & (PPU.MASK_BG | PPU.MASK_SPRITES)) == 0) {
+			if (output) {
+				ppu.frameBuffer[line * PPU.WIDTH + x] = ppu.toRgb(ppu.palette[0]);
+			}
+			return;
+		}
+
+		int bg = 0;
+		if ((mask & PPU.MASK_BG) != 0 && (x >= 8 || (mask & PPU.MASK_BG_LEFT) != 0)) {
+			int shift = 30 - (ppu.fineX << 1);
+			bg = (patternShift >>> shift) & 3;
+			if (bg != 0) {
+				bg |= ((paletteShift >>> shift) & 3) << 2;
+			}
+		}
+
+		int index = bg;
+		if ((mask & PPU.MASK_SPRITES) != 0 && (x >= 8 || (mask & PPU.MASK_SPRITES_LEFT) != 0)) {
+			for (int i = 0; i < spriteCount; i++) {
+				int col = x - spriteXs[i];
+				if (col < 0 || col > 7) {
+					continue;
+				}
+				int attr = spriteAttrs[i];
+				int pixel = spritePatterns[i][spriteRows[i] + ((attr & 0x40) != 0 ? 7 - col : col)];
+				if (pixel == 0) {
+					continue;
+				}
+				if (i == 0 && sprite0OnLine && bg != 0 && x != 255) {
+					ppu.setSprite0Hit();
+				}
+				if ((attr & 0x20) == 0 || bg == 0) {
+					index = 0x10 | ((attr & 3) << 2) | pixel;
+				}
+				break;
+			}
+		}
+
+		if (output) {
+			ppu.frameBuffer[line * PPU.WIDTH + x] = ppu.toRgb(ppu.palette[index]);
+		}
+
+	}
+
+	/**
+	 * Runs the rendering done over a span of dots on a scanline.
+	 *
+	 * @param line The scanline.
+	 * @param from The dot to start after.
+	 * @param to The last dot to run, inclusive.
+	 */
+	void run(int line, int from, int to) {
+
+		boolean visible = line < PPU.HEIGHT;
+		if (!visible && line != PPU.PRE_RENDER_LINE) {
+			return;
+		}
+		boolean output = ppu.isFrameOutput();
+
+		for (int dot = from + 1; dot <= to; dot++) {
+			if (ppu.isRenderingEnabled()) {
+				if ((dot >= 2 && dot <= 257) || (dot >= 321 && dot <= 337)) {
+					patternShift <<= 2;
+					paletteShift <<= 2;
+					fetch(dot);
+				}
+				if (dot == 257) {
+					evaluateSprites(visible ? line : -1);
+				}
+			}
+			if (visible && dot >= 1 && dot <= PPU.WIDTH && (output || sprite0OnLine)) {
+				renderPixel(line, dot - 1, output);
+			}
+		}
+
+	}
+
+	/**
+	 * Prepares to render a scanline when switching to dot rendering at its
+	 * start: the fetches at the end of the previous scanline are done, and
+	 * its sprites evaluated.
+	 *
+	 * @param line The scanline about to be rendered.
+	 */
+	void start(int line) {
+		if (ppu.isRenderingEnabled()) {
+			evaluateSprites(line - 1);
+			run(PPU.PRE_RENDER_LINE, 320, PPU.DOTS_PER_LINE - 1);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,1116 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.fife.emu.EventHandler;
+import org.fife.emu.EventScheduler;
+import org.fife.emu.MemoryReadHandler;
+import org.fife.emu.MemoryWriteHandler;
+import org.fife.emu.finnes.hw.mapper.Mapper;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+import org.fife.emu.finnes.hw.nes.NES;
+
+
+/**
+ * The NES's picture processing unit, an NTSC 2C02.<p>
+ *
+ * The PPU isn't stepped alongside the CPU.  Instead it "catches up" to
+ * the CPU's cycle count whenever it has to: when one of its registers is
+ * accessed, when the cartridge switches banks, and at the end of each
+ * frame.  Catching up runs whole stretches of a scanline at once.<p>
+ *
+ * By default each visible scanline is rendered in one go as it starts,
+ * so changes partway through a scanline take effect on the next one.
+ * Games that need them to take effect at the right pixel can be rendered
+ * dot by dot instead, either always or once they're seen making such
+ * changes (see {@link #setRenderMode(RenderMode)}).  Both renderers work
+ * from the same state, so the PPU can switch between them as it runs.<p>
+ *
+ * When nobody is watching, drawing can be skipped for all frames or all
+ * but every Nth (see {@link #setFrameOutputInterval(int)}).  Everything
+ * the CPU can see is still computed exactly, including sprite 0 hits,
+ * sprite overflow and the mapper's scanline counter.<p>
+ *
+ * Whatever the PPU does that the CPU can see without accessing it -
+ * the NMI at the start of vertical blank, and the mapper's scanline
+ * IRQ - is predicted, and an event is scheduled with the machine's
+ * {@link EventScheduler} for it.  So are the changes to the status
+ * register, which lets the CPU skip through loops that poll it (see
+ * {@link #isPollStable(int)}).
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class PPU implements MemoryReadHandler, MemoryWriteHandler, EventHandler, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The width of the picture, in pixels.
+	 */
+	public static final int WIDTH = 256;
+
+	/**
+	 * The height of the picture, in pixels.
+	 */
+	public static final int HEIGHT = 240;
+
+	static final int DOTS_PER_LINE = 341;
+	static final int VBLANK_LINE = 241;
+	static final int PRE_RENDER_LINE = 261;
+	static final int LINES_PER_FRAME = 262;
+
+	/**
+	 * The number of PPU dots per CPU cycle on NTSC machines.
+	 */
+	private static final int DOTS_PER_CYCLE = 3;
+
+	static final int CTRL_INCREMENT_32 = 0x04;
+	static final int CTRL_SPRITE_TABLE = 0x08;
+	static final int CTRL_BG_TABLE = 0x10;
+	static final int CTRL_TALL_SPRITES = 0x20;
+	static final int CTRL_NMI = 0x80;
+
+	static final int MASK_GRAYSCALE = 0x01;
+	static final int MASK_BG_LEFT = 0x02;
+	static final int MASK_SPRITES_LEFT = 0x04;
+	static final int MASK_BG = 0x08;
+	static final int MASK_SPRITES = 0x10;
+
+	static final int STATUS_OVERFLOW = 0x20;
+	static final int STATUS_SPRITE0 = 0x40;
+	static final int STATUS_VBLANK = 0x80;
+
+	/**
+	 * The number of scanlines in one frame that must be changed partway
+	 * through before {@link RenderMode#AUTO} switches to dot rendering.
+	 * Games that only split the screen once, e.g. after a sprite 0 hit,
+	 * don't need it.
+	 */
+	private static final int AUTO_DOT_LINES = 2;
+
+	/**
+	 * The RGB value of each of the 64 colors the PPU can output.
+	 */
+	static final int[] RGB = {
+		0x626262, 0x001fb2, 0x2404c8, 0x5200b2, 0x730076, 0x800024, 0x730b00, 0x522800,
+		0x244400, 0x005700, 0x005c00, 0x005324, 0x003c76, 0x000000, 0x000000, 0x000000,
+		0xababab, 0x0d57ff, 0x4b30ff, 0x8a13ff, 0xbc08d6, 0xd21269, 0xc72e00, 0x9d5400,
+		0x607b00, 0x209800, 0x00a300, 0x009942, 0x007db4, 0x000000, 0x000000, 0x000000,
+		0xffffff, 0x53aeff, 0x9085ff, 0xd365ff, 0xff57ff, 0xff5dcf, 0xff7757, 0xfa9e00,
+		0xbdc700, 0x7ae700, 0x43f611, 0x26ef7e, 0x2cd5f6, 0x4e4e4e, 0x000000, 0x000000,
+		0xffffff, 0xb6e1ff, 0xced1ff, 0xe9c3ff, 0xffbcff, 0xffbdf4, 0xffc6c3, 0xffd59a,
+		0xe9e681, 0xcef481, 0xb6fb9a, 0xa9fac3, 0xa9f0f4, 0xb8b8b8, 0x000000, 0x000000,
+	};
+
+	private final NES nes;
+	private final EventScheduler scheduler;
+	private final int event;
+	private final ScanlineRenderer renderer;
+	private final DotRenderer dotRenderer;
+	private RenderMode renderMode;
+	private boolean dotRendering;
+
+	/**
+	 * The scanlines changed partway through this frame, and whether
+	 * enough have been in any frame for {@link RenderMode#AUTO} to switch
+	 * to dot rendering.
+	 */
+	private int midLineWriteLines;
+	private int lastMidLineWriteLine;
+	private boolean midLineWritesDetected;
+
+	/**
+	 * How often frames are drawn, whether the next one is drawn
+	 * regardless, and whether the current one is being drawn.
+	 */
+	private int frameOutputInterval;
+	private boolean frameRequested;
+	private boolean outputFrame;
+
+	int ctrl;
+	int mask;
+	private int status;
+	private int oamAddr;
+	final byte[] oam;
+
+	/**
+	 * The current VRAM address, the temporary VRAM address, and the fine
+	 * X scroll, as laid out by the real PPU.
+	 */
+	int v;
+	private int t;
+	int fineX;
+	private boolean w;
+
+	private int readBuffer;
+	private int ioLatch;
+
+	/**
+	 * CHR ROM or RAM, the offset into it of each 1 KB of the pattern
+	 * tables, and its tiles decoded.
+	 */
+	private byte[] chr;
+	private boolean chrWritable;
+	private final int[] chrBanks;
+	TileCache tileCache;
+
+	/**
+	 * The nametables pre-rendered, for the scanline renderer.
+	 */
+	final BackgroundCache backgroundCache;
+
+	/**
+	 * Nametable RAM, and the offset into it of each logical nametable.
+	 */
+	final byte[] nametableRam;
+	final int[] nametables;
+
+	final byte[] palette;
+
+	/**
+	 * Incremented whenever the palette is written to.
+	 */
+	int paletteVersion;
+
+	private int scanline;
+	private int dot;
+	private boolean oddFrame;
+	private long frameCount;
+
+	/**
+	 * The CPU cycle this PPU has caught up to.
+	 */
+	private int lastCycle;
+
+	/**
+	 * The dot on the current scanline that sprite 0 hits on, or
+	 * <code>0</code> if it doesn't hit (or already has).
+	 */
+	private int sprite0HitDot;
+
+	/**
+	 * The first scanline on which more than 8 sprites are in range, or
+	 * <code>-1</code> if there isn't one.  This is recomputed when OAM or
+	 * the sprite size changes.
+	 */
+	private int overflowLine;
+	private boolean spritesDirty;
+
+	/**
+	 * Whether something the scheduled event was predicted from has changed.
+	 */
+	private boolean eventDirty;
+
+	final int[] frameBuffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param nes The machine this PPU is part of.
+	 */
+	public PPU(NES nes) {
+		this.nes = nes;
+		scheduler = nes.getEventScheduler();
+		event = scheduler.addEvent(this);
+		oam = new byte[256];
+		chrBanks = new int[8];
+		nametableRam = new byte[0x1000];
+		nametables = new int[4];
+		palette = new byte[32];
+		frameBuffer = new int[WIDTH * HEIGHT];
+		renderer = new ScanlineRenderer(this);
+		dotRenderer = new DotRenderer(this);
+		backgroundCache = new BackgroundCache(this);
+		renderMode = RenderMode.SCANLINE;
+		lastMidLineWriteLine = -1;
+		frameOutputInterval = 1;
+		outputFrame = true;
+		setChrMemory(new byte[0x2000], true);
+		setMirroring(Mirroring.HORIZONTAL);
+		spritesDirty = true;
+	}
+
+	/**
+	 * Runs this PPU up to a CPU cycle.
+	 *
+	 * @param cycle The CPU cycle.  If this PPU is already there, this
+	 *        method does nothing.
+	 */
+	public void catchUp(int cycle) {
+		int dots = (cycle - lastCycle) * DOTS_PER_CYCLE;
+		if (dots > 0) {
+			lastCycle = cycle;
+			run(dots);
+		}
+	}
+
+	/**
+	 * Copies the horizontal scroll from the temporary VRAM address into
+	 * the current one, as the PPU does at the end of each scanline.
+	 */
+	private void copyX() {
+		v = (v & ~0x041f) | (t & 0x041f);
+	}
+
+	/**
+	 * Copies the vertical scroll from the temporary VRAM address into the
+	 * current one, as the PPU does on the pre-render scanline.
+	 */
+	private void copyY() {
+		v = (v & ~0x7be0) | (t & 0x7be0);
+	}
+
+	/**
+	 * Returns the number of dots until a position in the frame is next
+	 * reached.  The odd frames' skipped dot isn't accounted for.
+	 *
+	 * @param line The scanline.
+	 * @param lineDot The dot on that scanline.
+	 * @return The number of dots, which is always positive.
+	 */
+	private int dotsUntil(int line, int lineDot) {
+		int dots = (line - scanline) * DOTS_PER_LINE + lineDot - dot;
+		return dots > 0 ? dots : dots + LINES_PER_FRAME * DOTS_PER_LINE;
+	}
+
+	/**
+	 * Performs the work due at the current dot.
+	 */
+	private void doDot() {
+
+		if (dot == 1) {
+			if (scanline < HEIGHT && !dotRendering) {
+				if (!isRenderingEnabled()) {
+					sprite0HitDot = 0;
+					if (outputFrame) {
+						renderer.renderBlankLine(scanline);
+					}
+				}
+				else {
+					sprite0HitDot = outputFrame ? renderer.renderLine(scanline) : renderer.evaluateLine(scanline);
+				}
+			}
+			else if (scanline == VBLANK_LINE) {
+				status |= STATUS_VBLANK;
+				frameCount++;
+				midLineWriteLines = 0;
+				lastMidLineWriteLine = -1;
+				if ((ctrl & CTRL_NMI) != 0) {
+					nes.getCpu().requestNMI();
+				}
+			}
+			else if (scanline == PRE_RENDER_LINE) {
+				status = 0;
+			}
+			return;
+		}
+
+		if (dot == sprite0HitDot) {
+			status |= STATUS_SPRITE0;
+			sprite0HitDot = 0;
+		}
+
+		if (isRenderingEnabled()) {
+			if (dot == 256) {
+				incrementY();
+			}
+			else if (dot == 257) {
+				copyX();
+			}
+			else if (dot == 280 && scanline == PRE_RENDER_LINE) {
+				copyY();
+			}
+			if (dot == getA12RiseDot()) {
+				nes.getMapper().a12Rising();
+			}
+		}
+
+	}
+
+	/**
+	 * Returns the dot on each rendered scanline at which PPU address line
+	 * A12 rises, clocking scanline counters such as the MMC3's.  This
+	 * happens when fetching switches from the pattern table at
+	 * <code>$0000</code> to the one at <code>$1000</code>: at the start of
+	 * the sprite fetches if sprites use the latter, or of the next line's
+	 * background fetches if the background does.  8x16 sprites are
+	 * assumed to use <code>$1000</code>, as unused sprite slots do.
+	 *
+	 * @return The dot, or <code>0</code> if A12 doesn't rise.
+	 */
+	int getA12RiseDot() {
+		boolean bgHigh = (ctrl & CTRL_BG_TABLE) != 0;
+		boolean spritesHigh = (ctrl & (CTRL_SPRITE_TABLE | CTRL_TALL_SPRITES)) != 0;
+		if (bgHigh == spritesHigh && (ctrl & CTRL_TALL_SPRITES) == 0) {
+			return 0;
+		}
+		return bgHigh ? 324 : 260;
+	}
+
+	/**
+	 * Returns where an address in the pattern tables is in CHR memory.
+	 *
+	 * @param address The address, from <code>0</code> to
+	 *        <code>0x1fff</code>.
+	 * @return The offset into CHR memory.
+	 */
+	int getChrOffset(int address) {
+		return chrBanks[address >> 10] + (address & 0x3ff);
+	}
+
+	/**
+	 * Returns the CPU cycle at which the next frame will be complete,
+	 * i.e. vertical blank will start.
+	 *
+	 * @return The cycle.
+	 */
+	public int getFrameEndCycle() {
+		return lastCycle + (dotsUntil(VBLANK_LINE, 1) + DOTS_PER_CYCLE - 1) / DOTS_PER_CYCLE;
+	}
+
+	/**
+	 * Returns the number of frames completed so far.
+	 *
+	 * @return The frame count.
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Returns how often frames are drawn into the frame buffer.
+	 *
+	 * @return The interval, in frames, or <code>0</code> if frames are
+	 *         only drawn on request.
+	 * @see #setFrameOutputInterval(int)
+	 */
+	public int getFrameOutputInterval() {
+		return frameOutputInterval;
+	}
+
+	/**
+	 * Returns the picture.  Each pixel is an RGB value, and the array is
+	 * updated in place as each scanline is rendered.  Frames that aren't
+	 * output (see {@link #isFrameOutput()}) leave it untouched.<p>
+	 *
+	 * Scanlines that would be drawn exactly as they were last time aren't
+	 * drawn again, so callers shouldn't modify this array; if they do,
+	 * {@link #requestFrame()} has the next frame drawn in full.
+	 *
+	 * @return The picture, {@link #WIDTH} by {@link #HEIGHT} pixels.
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Frame buffer returned for performance reasons")
+	public int[] getFrameBuffer() {
+		return frameBuffer;
+	}
+
+	private int getLineLength() {
+		boolean skip = scanline == PRE_RENDER_LINE && oddFrame && isRenderingEnabled();
+		return skip ? DOTS_PER_LINE - 1 : DOTS_PER_LINE;
+	}
+
+	/**
+	 * Returns the next dot on the current scanline that this PPU has work
+	 * to do at, or the end of the line.
+	 *
+	 * @return The dot.
+	 */
+	private int getNextStop() {
+
+		int stop = getLineLength();
+
+		if (scanline < HEIGHT || scanline == PRE_RENDER_LINE) {
+			if (dot < 1) {
+				return 1;
+			}
+			if (sprite0HitDot > dot) {
+				stop = sprite0HitDot;
+			}
+			if (isRenderingEnabled()) {
+				if (dot < 256) {
+					return Math.min(stop, 256);
+				}
+				if (dot < 257) {
+					return 257;
+				}
+				if (scanline == PRE_RENDER_LINE && dot < 280) {
+					stop = 280;
+				}
+				int a12 = getA12RiseDot();
+				if (a12 > dot && a12 < stop) {
+					stop = a12;
+				}
+			}
+		}
+		else if (scanline == VBLANK_LINE && dot < 1) {
+			return 1;
+		}
+
+		return stop;
+
+	}
+
+	/**
+	 * Returns the number of dots until the next thing the CPU can see
+	 * without accessing this PPU: an NMI, a mapper IRQ, or the status
+	 * register changing.
+	 *
+	 * @return The number of dots.
+	 */
+	private int getDotsUntilNextEvent() {
+
+		int dots = Math.min(dotsUntil(VBLANK_LINE, 1), dotsUntil(PRE_RENDER_LINE, 1));
+
+		if (isRenderingEnabled()) {
+
+			if (spritesDirty) {
+				overflowLine = renderer.getOverflowLine();
+				spritesDirty = false;
+			}
+
+			if (sprite0HitDot > dot) {
+				dots = Math.min(dots, sprite0HitDot - dot);
+			}
+			else if ((status & STATUS_SPRITE0) == 0) {
+				int height = (ctrl & CTRL_TALL_SPRITES) != 0 ? 16 : 8;
+				int top = (oam[0] & 0xff) + 1;
+				int line = Math.max(top, dot < 1 ? scanline : scanline + 1);
+				if (line < top + height && line < HEIGHT) {
+					dots = Math.min(dots, dotsUntil(line, 1));
+				}
+			}
+
+			if ((status & STATUS_OVERFLOW) == 0 && overflowLine > -1) {
+				// The dot renderer evaluates sprites on the previous line
+				int line = dotRendering ? overflowLine - 1 : overflowLine;
+				int lineDot = dotRendering ? 257 : 1;
+				if (line > scanline || (line == scanline && dot < lineDot)) {
+					dots = Math.min(dots, dotsUntil(line, lineDot));
+				}
+			}
+
+			Mapper mapper = nes.getMapper();
+			int rises = mapper != null ? mapper.getA12RisesUntilIrq() : -1;
+			if (rises > 0) {
+				int riseDots = getDotsUntilA12Rise(rises);
+				if (riseDots > 0) {
+					dots = Math.min(dots, riseDots);
+				}
+			}
+
+		}
+
+		return dots;
+
+	}
+
+	/**
+	 * Returns the number of dots until A12 has risen a given number of
+	 * times, if rendering stays as it is.
+	 *
+	 * @param count The number of times.
+	 * @return The number of dots, or <code>-1</code> if A12 doesn't rise.
+	 * @see #getA12RiseDot()
+	 */
+	private int getDotsUntilA12Rise(int count) {
+
+		int rise = getA12RiseDot();
+		if (rise == 0) {
+			return -1;
+		}
+
+		int line = scanline;
+		int dots = rise - dot;
+		if (dots <= 0) {
+			dots += DOTS_PER_LINE;
+			line = (line + 1) % LINES_PER_FRAME;
+		}
+
+		while (true) {
+			if ((line < HEIGHT || line == PRE_RENDER_LINE) && --count == 0) {
+				return dots;
+			}
+			dots += DOTS_PER_LINE;
+			line = (line + 1) % LINES_PER_FRAME;
+		}
+
+	}
+
+	/**
+	 * Returns how the picture is rendered.
+	 *
+	 * @return The render mode.
+	 * @see #setRenderMode(RenderMode)
+	 */
+	public RenderMode getRenderMode() {
+		return renderMode;
+	}
+
+	/**
+	 * Returns the address in the pattern tables of a row of a sprite.
+	 *
+	 * @param tile The sprite's tile number.
+	 * @param row The row, after any vertical flip, from <code>0</code> to
+	 *        <code>7</code>, or to <code>15</code> for 8x16 sprites.
+	 * @return The address of the row's low bit plane.
+	 */
+	int getSpriteRowAddress(int tile, int row) {
+		if ((ctrl & CTRL_TALL_SPRITES) != 0) {
+			return ((tile & 1) << 12) + ((tile & 0xfe) << 4) + ((row & 8) << 1) + (row & 7);
+		}
+		return ((ctrl & CTRL_SPRITE_TABLE) != 0 ? 0x1000 : 0) + (tile << 4) + row;
+	}
+
+	/**
+	 * Returns the current scanline.
+	 *
+	 * @return The scanline, from <code>0</code> to <code>261</code>.
+	 */
+	public int getScanline() {
+		return scanline;
+	}
+
+	@Override
+	public void handleEvent(int event, int time) {
+		catchUp(time);
+		scheduleEvent();
+	}
+
+	/**
+	 * Moves the current VRAM address down a pixel, as the PPU does at the
+	 * end of each rendered scanline.
+	 */
+	private void incrementY() {
+		if ((v & 0x7000) != 0x7000) {
+			v += 0x1000;
+		}
+		else {
+			v &= ~0x7000;
+			int coarseY = (v >> 5) & 0x1f;
+			if (coarseY == 29) {
+				coarseY = 0;
+				v ^= 0x0800;
+			}
+			else if (coarseY == 31) {
+				coarseY = 0;
+			}
+			else {
+				coarseY++;
+			}
+			v = (v & ~0x03e0) | (coarseY << 5);
+		}
+	}
+
+	/**
+	 * Moves the current VRAM address right a tile, as the PPU does after
+	 * fetching each tile.
+	 */
+	void incrementX() {
+		if ((v & 0x1f) == 31) {
+			v = (v & ~0x1f) ^ 0x400;
+		}
+		else {
+			v++;
+		}
+	}
+
+	/**
+	 * Returns whether the picture is currently being rendered dot by dot.
+	 * This can only be the case if the render mode isn't
+	 * {@link RenderMode#SCANLINE}.
+	 *
+	 * @return Whether the picture is rendered dot by dot.
+	 * @see #setRenderMode(RenderMode)
+	 */
+	public boolean isDotRendering() {
+		return dotRendering;
+	}
+
+	/**
+	 * Returns whether the current frame is being drawn into the frame
+	 * buffer.  During vertical blank, this is whether the frame just
+	 * completed was.
+	 *
+	 * @return Whether the frame is output.
+	 * @see #setFrameOutputInterval(int)
+	 * @see #requestFrame()
+	 */
+	public boolean isFrameOutput() {
+		return outputFrame;
+	}
+
+	/**
+	 * Returns whether the background or sprites are being rendered.
+	 *
+	 * @return Whether rendering is enabled.
+	 */
+	boolean isRenderingEnabled() {
+		return (mask & (MASK_BG | MASK_SPRITES)) != 0;
+	}
+
+	/**
+	 * Returns whether polling a register is stable.  The status register
+	 * is: every change to it that the CPU doesn't make itself happens
+	 * when an event is scheduled, ending the CPU's time slice.  The one
+	 * exception is a sprite 0 hit when rendering dot by dot, which isn't
+	 * predicted, so polling isn't stable on scanlines sprite 0 is on.
+	 *
+	 * @param address The address.
+	 * @return Whether the address is the status register, and polling it
+	 *         is stable.
+	 */
+	@Override
+	public boolean isPollStable(int address) {
+		if ((address & 7) == 2) {
+			if (eventDirty) {
+				scheduleEvent();
+			}
+			return !dotRendering || !isSprite0Pending();
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether sprite 0 could hit on the current scanline.
+	 *
+	 * @return Whether sprite 0 could hit.
+	 */
+	private boolean isSprite0Pending() {
+		if ((status & STATUS_SPRITE0) != 0 || scanline >= HEIGHT || !isRenderingEnabled()) {
+			return false;
+		}
+		int height = (ctrl & CTRL_TALL_SPRITES) != 0 ? 16 : 8;
+		int top = (oam[0] & 0xff) + 1;
+		return scanline >= top && scanline < top + height;
+	}
+
+	/**
+	 * Maps CHR memory into the pattern tables.
+	 *
+	 * @param address The address in the pattern tables, a multiple of
+	 *        1 KB.
+	 * @param size The size of the range to map, a multiple of 1 KB.
+	 * @param offset The offset into CHR memory to map there.
+	 * @see #setChrMemory(byte[], boolean)
+	 */
+	public void mapChr(int address, int size, int offset) {
+		for (int i = 0; i < size >> 10; i++) {
+			int bank = (address >> 10) + i;
+			if (chrBanks[bank] != offset + (i << 10)) {
+				chrBanks[bank] = offset + (i << 10);
+				backgroundCache.invalidateChr();
+				noteMidLineWrite();
+			}
+		}
+	}
+
+	/**
+	 * Notes that something that changes how the current scanline renders
+	 * was written.  If it's partway through the scanline, and happens on
+	 * enough scanlines in a frame, {@link RenderMode#AUTO} switches to
+	 * dot rendering from the next scanline on.
+	 */
+	private void noteMidLineWrite() {
+		if (renderMode == RenderMode.AUTO && !dotRendering && scanline < HEIGHT && dot >= 1 && dot < WIDTH &&
+				isRenderingEnabled() && scanline != lastMidLineWriteLine) {
+			lastMidLineWriteLine = scanline;
+			if (++midLineWriteLines >= AUTO_DOT_LINES) {
+				midLineWritesDetected = true;
+			}
+		}
+	}
+
+	@Override
+	public int peek(int address) {
+		switch (address & 7) {
+			case 2:
+				return (status & 0xe0) | (ioLatch & 0x1f);
+			case 4:
+				return readOam();
+			case 7:
+				int addr = v & 0x3fff;
+				return addr < 0x3f00 ? readBuffer : (palette[addr & 0x1f] & 0x3f) | (ioLatch & 0xc0);
+			default:
+				return ioLatch;
+		}
+	}
+
+	@Override
+	public int read(int address) {
+
+		catchUp(nes.getCpu().getCycles());
+
+		switch (address & 7) {
+			case 2:
+				ioLatch = (status & 0xe0) | (ioLatch & 0x1f);
+				status &= ~STATUS_VBLANK;
+				w = false;
+				break;
+			case 4:
+				ioLatch = readOam();
+				break;
+			case 7:
+				int addr = v & 0x3fff;
+				if (addr < 0x3f00) {
+					ioLatch = readBuffer;
+					readBuffer = readVram(addr);
+				}
+				else {
+					ioLatch = (palette[addr & 0x1f] & 0x3f) | (ioLatch & 0xc0);
+					readBuffer = readVram(addr & 0x2fff);
+				}
+				v = (v + ((ctrl & CTRL_INCREMENT_32) != 0 ? 32 : 1)) & 0x7fff;
+				break;
+			default:
+				break;
+		}
+
+		return ioLatch;
+
+	}
+
+	/**
+	 * Returns the byte at an address in CHR memory.
+	 *
+	 * @param address The address, from <code>0</code> to
+	 *        <code>0x1fff</code>.
+	 * @return The byte.
+	 */
+	int readChr(int address) {
+		return chr[getChrOffset(address)] & 0xff;
+	}
+
+	private int readOam() {
+		int value = oam[oamAddr] & 0xff;
+		return (oamAddr & 3) == 2 ? value & 0xe3 : value;
+	}
+
+	private int readVram(int address) {
+		if (address < 0x2000) {
+			return readChr(address);
+		}
+		if (address < 0x3f00) {
+			return nametableRam[nametables[(address >> 10) & 3] + (address & 0x3ff)] & 0xff;
+		}
+		return palette[address & 0x1f] & 0x3f;
+	}
+
+	/**
+	 * Shifts this PPU's notion of the CPU's cycle count back, when the
+	 * machine rebases it at the end of a frame.
+	 *
+	 * @param delta The number of cycles to shift back by.
+	 */
+	public void rebase(int delta) {
+		lastCycle -= delta;
+	}
+
+	/**
+	 * Requests that the next frame be drawn into the frame buffer, even if
+	 * the output interval would skip it.  This is for grabbing the picture
+	 * on demand.  Every scanline is drawn, even those unchanged since the
+	 * last frame that was.
+	 *
+	 * @see #setFrameOutputInterval(int)
+	 */
+	public void requestFrame() {
+		frameRequested = true;
+		renderer.forgetLines();
+	}
+
+	/**
+	 * Resets this PPU.  Rendering is turned off, and the frame starts
+	 * over.
+	 */
+	public void reset() {
+		dotRendering = renderMode == RenderMode.DOT;
+		ctrl = mask = 0;
+		w = false;
+		readBuffer = 0;
+		scanline = dot = 0;
+		oddFrame = false;
+		sprite0HitDot = 0;
+		spritesDirty = true;
+		lastCycle = nes.getCpu().getCycles();
+		scheduleEvent();
+	}
+
+	/**
+	 * Schedules the event for the next thing the CPU can see without
+	 * accessing this PPU.  This is called whenever something that may
+	 * change its time happens, e.g. the cartridge is written to.
+	 */
+	public void scheduleEvent() {
+		int dots = getDotsUntilNextEvent();
+		scheduler.schedule(event, lastCycle + (dots + DOTS_PER_CYCLE - 1) / DOTS_PER_CYCLE);
+		eventDirty = false;
+	}
+
+	/**
+	 * Runs this PPU for a number of dots.
+	 *
+	 * @param dots The number of dots.
+	 */
+	private void run(int dots) {
+		while (true) {
+			int stop = getNextStop();
+			int step = stop - dot;
+			if (step > dots) {
+				if (dotRendering) {
+					dotRenderer.run(scanline, dot, dot + dots);
+				}
+				dot += dots;
+				return;
+			}
+			dots -= step;
+			if (dotRendering) {
+				dotRenderer.run(scanline, dot, stop);
+			}
+			dot = stop;
+			if (dot == getLineLength()) {
+				dot = 0;
+				if (++scanline == LINES_PER_FRAME) {
+					scanline = 0;
+					oddFrame = !oddFrame;
+					outputFrame = frameRequested ||
+						(frameOutputInterval > 0 && frameCount % frameOutputInterval == 0);
+					frameRequested = false;
+				}
+				updateRenderer();
+			}
+			else {
+				doDot();
+			}
+		}
+	}
+
+	/**
+	 * Sets the memory backing the pattern tables.
+	 *
+	 * @param chr CHR ROM or RAM.
+	 * @param writable Whether it's RAM.
+	 * @see #mapChr(int, int, int)
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "CHR ROM is shared")
+	public void setChrMemory(byte[] chr, boolean writable) {
+		this.chr = chr;
+		chrWritable = writable;
+		tileCache = new TileCache(chr);
+		backgroundCache.invalidateAll();
+	}
+
+	/**
+	 * Sets how the logical nametables map onto nametable RAM.  If that
+	 * changes, every scanline is drawn again, since the scanline renderer
+	 * only remembers the scroll position each was drawn from, not which
+	 * nametable RAM it showed.
+	 *
+	 * @param mirroring The mirroring.
+	 */
+	public void setMirroring(Mirroring mirroring) {
+		for (int i = 0; i < nametables.length; i++) {
+			if (nametables[i] != mirroring.getOffset(i)) {
+				nametables[i] = mirroring.getOffset(i);
+				renderer.forgetLines();
+				noteMidLineWrite();
+			}
+		}
+	}
+
+	/**
+	 * Sets how often frames are drawn into the frame buffer.  Frames that
+	 * aren't drawn cost much less, which is useful when nobody is
+	 * watching, e.g. when running headless.  Sprite 0 hits, sprite
+	 * overflow and everything else the CPU can see are unaffected.
+	 *
+	 * @param interval Draw every <code>interval</code>th frame.
+	 *        <code>1</code>, the default, draws every frame, and
+	 *        <code>0</code> only those asked for with
+	 *        {@link #requestFrame()}.  This takes effect with the next
+	 *        frame.
+	 * @see #getFrameOutputInterval()
+	 * @see #isFrameOutput()
+	 */
+	public void setFrameOutputInterval(int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("interval must be >= 0: " + interval);
+		}
+		frameOutputInterval = interval;
+	}
+
+	/**
+	 * Sets how the picture is rendered.  Front ends can pick a mode per
+	 * game.  Switching to dot rendering takes effect at the start of the
+	 * next scanline, and switching back at the end of the visible
+	 * scanlines.
+	 *
+	 * @param mode The render mode.
+	 * @see #getRenderMode()
+	 * @see #isDotRendering()
+	 */
+	public void setRenderMode(RenderMode mode) {
+		renderMode = mode;
+		midLineWritesDetected = false;
+	}
+
+	/**
+	 * Marks sprite 0 as having hit, when the dot renderer finds it does.
+	 */
+	void setSprite0Hit() {
+		status |= STATUS_SPRITE0;
+	}
+
+	/**
+	 * Marks the sprite overflow flag as set, when more than 8 sprites are
+	 * found on a scanline.
+	 */
+	void setSpriteOverflow() {
+		status |= STATUS_OVERFLOW;
+	}
+
+	/**
+	 * Returns the RGB value of a color, as output with the current mask.
+	 *
+	 * @param color The color, from <code>0</code> to <code>0x3f</code>.
+	 * @return The RGB value, with the alpha channel set.
+	 */
+	int toRgb(int color) {
+		int colorMask = (mask & MASK_GRAYSCALE) != 0 ? 0x30 : 0x3f;
+		return 0xff000000 | RGB[color & colorMask];
+	}
+
+	/**
+	 * Switches between the scanline and dot renderers at the start of a
+	 * scanline, if the render mode calls for it.
+	 */
+	private void updateRenderer() {
+		boolean dotsWanted = renderMode == RenderMode.DOT || (renderMode == RenderMode.AUTO && midLineWritesDetected);
+		if (dotsWanted && !dotRendering) {
+			dotRendering = true;
+			renderer.forgetLines();
+			if (scanline < HEIGHT) {
+				dotRenderer.start(scanline);
+			}
+		}
+		else if (!dotsWanted && dotRendering && scanline >= HEIGHT) {
+			// The dot renderer has already fetched ahead on the last visible line
+			dotRendering = false;
+		}
+	}
+
+	@Override
+	public void write(int address, int value) {
+
+		catchUp(nes.getCpu().getCycles());
+		ioLatch = value;
+
+		switch (address & 7) {
+			case 0:
+				if (((ctrl ^ value) & (CTRL_SPRITE_TABLE | CTRL_BG_TABLE | CTRL_TALL_SPRITES)) != 0) {
+					noteMidLineWrite();
+				}
+				if (((ctrl ^ value) & CTRL_BG_TABLE) != 0) {
+					backgroundCache.invalidateChr();
+				}
+				boolean nmiWasEnabled = (ctrl & CTRL_NMI) != 0;
+				ctrl = value;
+				t = (t & ~0x0c00) | ((value & 0x03) << 10);
+				if (!nmiWasEnabled && (value & CTRL_NMI) != 0 && (status & STATUS_VBLANK) != 0) {
+					nes.getCpu().requestNMI();
+				}
+				spritesDirty = true;
+				scheduleEvent();
+				break;
+			case 1:
+				if (mask != value) {
+					noteMidLineWrite();
+				}
+				mask = value;
+				scheduleEvent();
+				break;
+			case 3:
+				oamAddr = value;
+				break;
+			case 4:
+				oam[oamAddr] = (byte)value;
+				oamAddr = (oamAddr + 1) & 0xff;
+				spritesDirty = eventDirty = true;
+				break;
+			case 5:
+				if (!w) {
+					t = (t & ~0x001f) | (value >> 3);
+					if (fineX != (value & 7)) {
+						noteMidLineWrite();
+					}
+					fineX = value & 7;
+				}
+				else {
+					t = (t & ~0x73e0) | ((value & 0x07) << 12) | ((value & 0xf8) << 2);
+				}
+				w = !w;
+				break;
+			case 6:
+				if (!w) {
+					t = (t & 0x00ff) | ((value & 0x3f) << 8);
+				}
+				else {
+					t = (t & 0x7f00) | value;
+					if (v != t) {
+						noteMidLineWrite();
+					}
+					v = t;
+				}
+				w = !w;
+				break;
+			case 7:
+				noteMidLineWrite();
+				writeVram(v & 0x3fff, value);
+				v = (v + ((ctrl & CTRL_INCREMENT_32) != 0 ? 32 : 1)) & 0x7fff;
+				break;
+			default:
+				break;
+		}
+
+	}
+
+	/**
+	 * Copies a page of memory into OAM, starting at the current OAM
+	 * address, as a write to <code>$4014</code> does.
+	 *
+	 * @param data The 256 bytes to copy.
+	 */
+	public void writeOam(byte[] data) {
+		for (int i = 0; i < data.length; i++) {
+			oam[(oamAddr + i) & 0xff] = data[i];
+		}
+		spritesDirty = true;
+		scheduleEvent();
+	}
+
+	private void writeVram(int address, int value) {
+		if (address < 0x2000) {
+			if (chrWritable) {
+				int offset = getChrOffset(address);
+				chr[offset] = (byte)value;
+				tileCache.invalidate(offset);
+				backgroundCache.invalidateChr();
+			}
+		}
+		else if (address < 0x3f00) {
+			int offset = nametables[(address >> 10) & 3] + (address & 0x3ff);
+			nametableRam[offset] = (byte)value;
+			backgroundCache.invalidateNametable(offset);
+		}
+		else {
+			int index = address & 0x1f;
+			paletteVersion++;
+			palette[index] = (byte)(value & 0x3f);
+			if ((index & 3) == 0) {
+				palette[index ^ 0x10] = (byte)(value & 0x3f);
+			}
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package org.fife.emu.finnes.hw.ppu;
+
+
+/**
+ * How the {@link PPU} renders the picture.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see PPU#setRenderMode(RenderMode)
+ */
+public enum RenderMode {
+
+	/**
+	 * Each scanline is rendered in one go as it starts.  This is the
+	 * fastest mode, and right for games that only change the PPU's state
+	 * during horizontal or vertical blank.
+	 */
+	SCANLINE,
+
+	/**
+	 * The PPU's fetches and pixel output are emulated dot by dot, so
+	 * register writes in the middle of a scanline take effect at the
+	 * exact pixel they would on real hardware.
+	 */
+	DOT,
+
+	/**
+	 * Scanline rendering, switching to dot rendering for good once the
+	 * game is seen changing how scanlines render partway through them.
+	 */
+	AUTO
+
+}
\ No newline at end of file
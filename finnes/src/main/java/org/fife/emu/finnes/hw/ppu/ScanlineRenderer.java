@@ -0,0 +1,417 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * Renders whole scanlines at once, from the state of the {@link PPU} at
+ * the start of each one.  The background and the sprites are drawn into
+ * separate line buffers, then composed into the frame buffer.  The
+ * background is copied out of the nametables pre-rendered by the PPU's
+ * {@link BackgroundCache}, at whatever the scroll position is; only when
+ * the line shows the attribute tables as tiles is it drawn tile by tile,
+ * from pattern data pre-decoded by the {@link TileCache}.<p>
+ *
+ * What each scanline was last drawn from is remembered, and a scanline
+ * without sprites on it isn't drawn again if none of that has changed.
+ * On a static screen, that's most of them.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class ScanlineRenderer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAX_SPRITES_PER_LINE = 8;
+
+	/**
+	 * The number of tiles a scanline's background overlaps, with fine
+	 * scrolling.
+	 */
+	private static final int BG_TILES = 33;
+
+	private final PPU ppu;
+
+	/**
+	 * The background's palette index at each pixel of the line, or
+	 * <code>0</code> where it's transparent.
+	 */
+	private final byte[] bgLine;
+
+	/**
+	 * When drawing tile by tile, the background's pattern at each pixel of
+	 * the 33 tiles the line overlaps, and each tile's palette (in bits
+	 * 2-3).
+	 */
+	private final byte[] bgPixels;
+	private final int[] bgPalettes;
+
+	/**
+	 * The palette index of the frontmost sprite pixel at each pixel of the
+	 * line, or <code>0</code> for none.  Bit 8 is set for sprites behind
+	 * the background, and bit 9 for sprite 0.
+	 */
+	private final int[] spriteLine;
+
+	private static final int BEHIND_BG = 0x100;
+	private static final int SPRITE0 = 0x200;
+
+	/**
+	 * Whether any sprite was in range of the line last rendered.
+	 */
+	private boolean spritesOnLine;
+
+	/**
+	 * For each scanline in the frame buffer, the scroll position and
+	 * {@link PPU#mask} it was drawn with, or <code>-1</code> if it must be
+	 * drawn again regardless; and the versions of the background layers
+	 * and the palette it was drawn from.
+	 */
+	private final int[] lineScrolls;
+	private final long[] lineVersions;
+
+	ScanlineRenderer(PPU ppu) {
+		this.ppu = ppu;
+		bgLine = new byte[PPU.WIDTH];
+		bgPixels = new byte[BG_TILES * 8];
+		bgPalettes = new int[BG_TILES];
+		spriteLine = new int[PPU.WIDTH];
+		lineScrolls = new int[PPU.HEIGHT];
+		lineVersions = new long[PPU.HEIGHT];
+		forgetLines();
+	}
+
+	/**
+	 * Returns the first scanline on which more than 8 sprites are in
+	 * range.
+	 *
+	 * @return The scanline, or <code>-1</code> if there isn't one.
+	 */
+	int getOverflowLine() {
+		int height = getSpriteHeight();
+		int[] counts = new int[PPU.HEIGHT];
+		int first = -1;
+		for (int i = 0; i < 256; i += 4) {
+			int top = (ppu.oam[i] & 0xff) + 1;
+			for (int line = top; line < top + height && line < PPU.HEIGHT; line++) {
+				if (++counts[line] > MAX_SPRITES_PER_LINE && (first == -1 || line < first)) {
+					first = line;
+				}
+			}
+		}
+		return first;
+	}
+
+	private int getSpriteHeight() {
+		return (ppu.ctrl & PPU.CTRL_TALL_SPRITES) != 0 ? 16 : 8;
+	}
+
+	/**
+	 * Does what rendering a scanline does besides drawing it: checks for
+	 * sprite overflow and sprite 0 hits.  The background is only drawn if
+	 * sprite 0 is on the line, and sprites aren't drawn at all.
+	 *
+	 * @param line The scanline.
+	 * @return The dot at which sprite 0 hits on this scanline, or
+	 *         <code>0</code> if it doesn't.
+	 * @see #renderLine(int)
+	 */
+	int evaluateLine(int line) {
+
+		int height = getSpriteHeight();
+		byte[] oam = ppu.oam;
+		int found = 0;
+		for (int i = 0; i < 256 && found <= MAX_SPRITES_PER_LINE; i += 4) {
+			int row = line - (oam[i] & 0xff) - 1;
+			if (row >= 0 && row < height) {
+				found++;
+			}
+		}
+		if (found > MAX_SPRITES_PER_LINE) {
+			ppu.setSpriteOverflow();
+		}
+
+		int row = line - (oam[0] & 0xff) - 1;
+		if (row < 0 || row >= height || (ppu.mask & (PPU.MASK_BG | PPU.MASK_SPRITES)) != (PPU.MASK_BG | PPU.MASK_SPRITES)) {
+			return 0;
+		}
+
+		int attr = oam[2] & 0xff;
+		if ((attr & 0x80) != 0) {
+			row = height - 1 - row;
+		}
+		int rowAddr = ppu.getSpriteRowAddress(oam[1] & 0xff, row);
+		byte[] pattern = ppu.tileCache.getTile(ppu.getChrOffset(rowAddr));
+		int rowStart = (rowAddr & 7) << 3;
+		int left = oam[3] & 0xff;
+		int minX = (ppu.mask & PPU.MASK_SPRITES_LEFT) == 0 ? 8 : 0;
+
+		renderBackground();
+		for (int col = 0; col < 8; col++) {
+			int x = left + col;
+			if (x >= PPU.WIDTH - 1) {
+				break;
+			}
+			int pixel = pattern[rowStart + ((attr & 0x40) != 0 ? 7 - col : col)];
+			if (pixel != 0 && x >= minX && bgLine[x] != 0) {
+				return x + 1;
+			}
+		}
+		return 0;
+
+	}
+
+	/**
+	 * Forgets what every scanline in the frame buffer was drawn from, so
+	 * they're all drawn again.  This is called when something other than
+	 * this renderer draws into the frame buffer.
+	 */
+	void forgetLines() {
+		Arrays.fill(lineScrolls, -1);
+	}
+
+	/**
+	 * Returns the background layer a scanline starts in, with the row of
+	 * tiles it's in up to date.
+	 *
+	 * @param table The logical nametable, from <code>0</code> to
+	 *        <code>3</code>.
+	 * @return The layer.
+	 */
+	private byte[] getLayer(int table) {
+		return ppu.backgroundCache.getLayer(ppu.nametables[table] >> 10, (ppu.v >> 5) & 0x1f);
+	}
+
+	/**
+	 * Returns whether the background is drawn from the pre-rendered
+	 * layers on this scanline.  It isn't when the scroll position is in
+	 * the attribute table.
+	 *
+	 * @return Whether the layers are used.
+	 */
+	private boolean isLayered() {
+		return ((ppu.v >> 5) & 0x1f) < PPU.HEIGHT / 8;
+	}
+
+	/**
+	 * Returns whether a scanline without sprites would be drawn exactly as
+	 * it already is in the frame buffer, and remembers what it's drawn
+	 * from now.
+	 *
+	 * @param line The scanline.
+	 * @return Whether the scanline is unchanged.
+	 */
+	private boolean isLineUnchanged(int line) {
+
+		int scroll = -1;
+		if ((ppu.mask & PPU.MASK_BG) == 0) {
+			scroll = ppu.mask;
+		}
+		else if (isLayered()) {
+			int table = (ppu.v >> 10) & 3;
+			getLayer(table);
+			getLayer(table ^ 1);
+			scroll = ppu.v | (ppu.fineX << 15) | (ppu.mask << 18);
+		}
+		long versions = ((long)ppu.backgroundCache.getVersion() << 32) | (ppu.paletteVersion & 0xffffffffL);
+
+		boolean unchanged = scroll != -1 && lineScrolls[line] == scroll && lineVersions[line] == versions;
+		lineScrolls[line] = scroll;
+		lineVersions[line] = versions;
+		return unchanged;
+
+	}
+
+	private void renderBackground() {
+
+		if ((ppu.mask & PPU.MASK_BG) == 0) {
+			Arrays.fill(bgLine, (byte)0);
+			return;
+		}
+
+		if (isLayered()) {
+			int v = ppu.v;
+			int table = (v >> 10) & 3;
+			int y = ((v >> 2) & 0xf8) | ((v >> 12) & 7);
+			int x = ((v & 0x1f) << 3) + ppu.fineX;
+			int offs = y * PPU.WIDTH;
+			System.arraycopy(getLayer(table), offs + x, bgLine, 0, PPU.WIDTH - x);
+			if (x > 0) {
+				// The rest of the line is in the next nametable over
+				System.arraycopy(getLayer(table ^ 1), offs, bgLine, PPU.WIDTH - x, x);
+			}
+		}
+		else {
+			renderBackgroundTiles();
+		}
+
+		if ((ppu.mask & PPU.MASK_BG_LEFT) == 0) {
+			Arrays.fill(bgLine, 0, 8, (byte)0);
+		}
+
+	}
+
+	/**
+	 * Draws the background tile by tile, for when the layers can't be used.
+	 */
+	private void renderBackgroundTiles() {
+
+		int v = ppu.v;
+		int row = ((v >> 12) & 7) << 3;
+		int table = (ppu.ctrl & PPU.CTRL_BG_TABLE) != 0 ? 0x1000 : 0;
+		TileCache tileCache = ppu.tileCache;
+
+		for (int i = 0; i < BG_TILES; i++) {
+
+			int nametable = ppu.nametables[(v >> 10) & 3];
+			int tile = ppu.nametableRam[nametable + (v & 0x3ff)] & 0xff;
+			int attrAddr = 0x3c0 | ((v >> 4) & 0x38) | ((v >> 2) & 0x07);
+			int attr = ppu.nametableRam[nametable + attrAddr] & 0xff;
+			bgPalettes[i] = ((attr >> (((v >> 4) & 4) | (v & 2))) & 3) << 2;
+
+			byte[] pattern = tileCache.getTile(ppu.getChrOffset(table + (tile << 4)));
+			System.arraycopy(pattern, row, bgPixels, i << 3, 8);
+
+			// Increment coarse X, wrapping into the next nametable
+			if ((v & 0x1f) == 31) {
+				v = (v & ~0x1f) ^ 0x400;
+			}
+			else {
+				v++;
+			}
+
+		}
+
+		int fineX = ppu.fineX;
+		for (int x = 0; x < PPU.WIDTH; x++) {
+			int px = x + fineX;
+			int pixel = bgPixels[px];
+			bgLine[x] = (byte)(pixel != 0 ? bgPalettes[px >> 3] | pixel : 0);
+		}
+
+	}
+
+	/**
+	 * Fills a scanline with the backdrop color, as when rendering is
+	 * disabled.
+	 *
+	 * @param line The scanline.
+	 */
+	void renderBlankLine(int line) {
+		int color = ppu.toRgb(ppu.palette[0]);
+		int offs = line * PPU.WIDTH;
+		Arrays.fill(ppu.frameBuffer, offs, offs + PPU.WIDTH, color);
+		lineScrolls[line] = -1;
+	}
+
+	/**
+	 * Renders a scanline into the frame buffer.
+	 *
+	 * @param line The scanline.
+	 * @return The dot at which sprite 0 hits on this scanline, or
+	 *         <code>0</code> if it doesn't.
+	 */
+	int renderLine(int line) {
+
+		boolean overflow = renderSprites(line);
+		if (overflow) {
+			ppu.setSpriteOverflow();
+		}
+		if (spritesOnLine) {
+			lineScrolls[line] = -1;
+		}
+		else if (isLineUnchanged(line)) {
+			return 0;
+		}
+		renderBackground();
+
+		boolean bothLayers = (ppu.mask & (PPU.MASK_BG | PPU.MASK_SPRITES)) == (PPU.MASK_BG | PPU.MASK_SPRITES);
+		int hitDot = 0;
+		int offs = line * PPU.WIDTH;
+		byte[] palette = ppu.palette;
+
+		for (int x = 0; x < PPU.WIDTH; x++) {
+			int bg = bgLine[x];
+			int sprite = spriteLine[x];
+			int index;
+			if (sprite != 0 && ((sprite & BEHIND_BG) == 0 || bg == 0)) {
+				index = 0x10 | (sprite & 0x0f);
+			}
+			else {
+				index = bg;
+			}
+			if (hitDot == 0 && (sprite & SPRITE0) != 0 && bg != 0 && bothLayers && x != 255) {
+				hitDot = x + 1;
+			}
+			ppu.frameBuffer[offs + x] = ppu.toRgb(palette[index]);
+		}
+
+		return hitDot;
+
+	}
+
+	/**
+	 * Evaluates and draws the sprites on a scanline into the sprite line
+	 * buffer.
+	 *
+	 * @param line The scanline.
+	 * @return Whether more than 8 sprites were in range.
+	 */
+	private boolean renderSprites(int line) {
+
+		Arrays.fill(spriteLine, 0);
+		spritesOnLine = false;
+
+		int height = getSpriteHeight();
+		int found = 0;
+		boolean enabled = (ppu.mask & PPU.MASK_SPRITES) != 0;
+		int minX = (ppu.mask & PPU.MASK_SPRITES_LEFT) == 0 ? 8 : 0;
+		byte[] oam = ppu.oam;
+
+		for (int i = 0; i < 256; i += 4) {
+
+			int row = line - (oam[i] & 0xff) - 1;
+			if (row < 0 || row >= height) {
+				continue;
+			}
+			if (++found > MAX_SPRITES_PER_LINE) {
+				return true;
+			}
+			if (!enabled) {
+				continue;
+			}
+			spritesOnLine = true;
+
+			int tile = oam[i + 1] & 0xff;
+			int attr = oam[i + 2] & 0xff;
+			int left = oam[i + 3] & 0xff;
+			if ((attr & 0x80) != 0) {
+				row = height - 1 - row;
+			}
+
+			int rowAddr = ppu.getSpriteRowAddress(tile, row);
+			byte[] pattern = ppu.tileCache.getTile(ppu.getChrOffset(rowAddr));
+			int rowStart = (rowAddr & 7) << 3;
+
+			int flags = ((attr & 3) << 2) | ((attr & 0x20) != 0 ? BEHIND_BG : 0) | (i == 0 ? SPRITE0 : 0);
+			boolean flipX = (attr & 0x40) != 0;
+			for (int col = 0; col < 8; col++) {
+				int x = left + col;
+				if (x >= PPU.WIDTH) {
+					break;
+				}
+				int pixel = pattern[rowStart + (flipX ? 7 - col : col)];
+				if (pixel != 0 && x >= minX && spriteLine[x] == 0) {
+					spriteLine[x] = flags | pixel;
+				}
+			}
+
+		}
+
+		return false;
+
+	}
+
+}
\ No newline at end of file
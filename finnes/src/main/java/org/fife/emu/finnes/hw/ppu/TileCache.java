@@ -0,0 +1,109 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.io.Serializable;
+
+
+/**
+ * CHR memory decoded into tiles.  Each 16-byte tile is decoded the first
+ * time it's drawn into 64 bytes, one 2-bit palette index per pixel in
+ * row-major order, so drawing a row of it is a copy rather than shifting
+ * two bit planes apart per pixel.<p>
+ *
+ * Tiles are cached by their offset in CHR memory rather than their
+ * address in the pattern tables, so switching banks needs no
+ * invalidation; only writes to CHR RAM invalidate the tile written to.
+ * Each tile has a version, incremented whenever it's invalidated, so
+ * anything drawn from a tile can tell whether it's stale.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+class TileCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The size of a tile in CHR memory, in bytes.
+	 */
+	static final int TILE_SIZE = 16;
+
+	private final byte[] chr;
+
+	/**
+	 * The decoded tiles, or <code>null</code> for tiles never decoded.
+	 * Arrays are reused when a tile is decoded again.
+	 */
+	private final byte[][] tiles;
+	private final boolean[] valid;
+	private final int[] versions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param chr The CHR memory to decode tiles from.
+	 */
+	TileCache(byte[] chr) {
+		this.chr = chr;
+		tiles = new byte[chr.length / TILE_SIZE][];
+		valid = new boolean[tiles.length];
+		versions = new int[tiles.length];
+	}
+
+	private void decode(int index) {
+		byte[] tile = tiles[index];
+		if (tile == null) {
+			tile = new byte[64];
+			tiles[index] = tile;
+		}
+		int offs = index * TILE_SIZE;
+		for (int row = 0; row < 8; row++) {
+			int lo = chr[offs + row];
+			int hi = chr[offs + row + 8];
+			for (int col = 0; col < 8; col++) {
+				int bit = 7 - col;
+				tile[(row << 3) + col] = (byte)(((lo >> bit) & 1) | (((hi >> bit) & 1) << 1));
+			}
+		}
+		valid[index] = true;
+	}
+
+	/**
+	 * Returns a decoded tile.
+	 *
+	 * @param offset The offset of the tile in CHR memory.  The low 4 bits
+	 *        are ignored.
+	 * @return The tile's 64 palette indexes.  This array must not be
+	 *         modified.
+	 */
+	byte[] getTile(int offset) {
+		int index = offset >> 4;
+		if (!valid[index]) {
+			decode(index);
+		}
+		return tiles[index];
+	}
+
+	/**
+	 * Returns a tile's version, which changes whenever the tile is
+	 * written to.
+	 *
+	 * @param offset The offset of the tile in CHR memory.  The low 4 bits
+	 *        are ignored.
+	 * @return The version.
+	 */
+	int getVersion(int offset) {
+		return versions[offset >> 4];
+	}
+
+	/**
+	 * Discards the decoded tile containing a byte of CHR memory, when
+	 * it's written to.
+	 *
+	 * @param offset The offset of the byte in CHR memory.
+	 */
+	void invalidate(int offset) {
+		valid[offset >> 4] = false;
+		versions[offset >> 4]++;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * The NES's picture processing unit.
+ */
+package org.fife.emu.finnes.hw.ppu;
\ No newline at end of file
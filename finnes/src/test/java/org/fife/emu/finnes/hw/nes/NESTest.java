@@ -0,0 +1,184 @@
+package org.fife.emu.finnes.hw.nes;
+
+import org.fife.emu.finnes.hw.ppu.PPU;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NESTest {
+
+    private static final int PRG_SIZE = 0x4000;
+    private static final int NMI_HANDLER = 0x100;
+    private static final int IRQ_HANDLER = 0x200;
+
+    /**
+     * Creates an NROM cartridge with 16 KB of PRG ROM and CHR RAM.  Code
+     * starts at <code>$C000</code>; the NMI handler increments
+     * <code>$00</code>, and the IRQ handler increments <code>$03</code>
+     * and acknowledges the frame IRQ.
+     */
+    private static Cartridge createCartridge(int... code) {
+
+        byte[] image = new byte[16 + PRG_SIZE];
+        image[0] = 'N';
+        image[1] = 'E';
+        image[2] = 'S';
+        image[3] = 0x1a;
+        image[4] = 1;
+
+        int prg = 16;
+        for (int i = 0; i < code.length; i++) {
+            image[prg + i] = (byte)code[i];
+        }
+        int[] nmi = { 0xe6, 0x00, 0x40 }; // INC $00, RTI
+        int[] irq = { 0xe6, 0x03, 0xad, 0x15, 0x40, 0x40 }; // INC $03, LDA $4015, RTI
+        for (int i = 0; i < nmi.length; i++) {
+            image[prg + NMI_HANDLER + i] = (byte)nmi[i];
+        }
+        for (int i = 0; i < irq.length; i++) {
+            image[prg + IRQ_HANDLER + i] = (byte)irq[i];
+        }
+
+        int vectors = prg + PRG_SIZE - 6;
+        image[vectors] = (byte)NMI_HANDLER;
+        image[vectors + 1] = (byte)(0xc0 | (NMI_HANDLER >> 8));
+        image[vectors + 2] = 0x00;
+        image[vectors + 3] = (byte)0xc0;
+        image[vectors + 4] = (byte)IRQ_HANDLER;
+        image[vectors + 5] = (byte)(0xc0 | (IRQ_HANDLER >> 8));
+
+        return new Cartridge(image);
+
+    }
+
+    private static NES run(int frames, int... code) {
+        NES nes = new NES(createCartridge(code));
+        nes.getApu().setSampleRate(0);
+        for (int i = 0; i < frames; i++) {
+            nes.runFrame();
+        }
+        return nes;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCartridge_invalidHeader() {
+        new Cartridge(new byte[] { 'N', 'E', 'S', 0 });
+    }
+
+    @Test
+    public void testApuLengthCounterStatus() {
+        NES nes = run(1,
+            0xa9, 0x01, 0x8d, 0x15, 0x40, // Enable pulse 1
+            0xa9, 0x08, 0x8d, 0x03, 0x40, // Load its length counter
+            0xad, 0x15, 0x40, 0x85, 0x02, // Store $4015 in $02
+            0x4c, 0x0f, 0xc0);
+        Assert.assertEquals(0x01, nes.readByte(0x02) & 0x1f);
+    }
+
+    @Test
+    public void testControllerReads() {
+
+        NES nes = new NES(createCartridge(
+            0xa9, 0x01, 0x8d, 0x16, 0x40, // Strobe
+            0xa9, 0x00, 0x8d, 0x16, 0x40,
+            0xa2, 0x00,                   // Read 8 buttons into $10-$17
+            0xad, 0x16, 0x40, 0x29, 0x01, 0x95, 0x10, 0xe8, 0xe0, 0x08, 0xd0, 0xf4,
+            0x4c, 0x18, 0xc0));
+        nes.getController(0).setButtons(Controller.A | Controller.START | Controller.RIGHT);
+        nes.runFrame();
+
+        int[] expected = { 1, 0, 0, 1, 0, 0, 0, 1 };
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], nes.readByte(0x10 + i));
+        }
+
+    }
+
+    @Test
+    public void testFrameIrq() {
+        NES nes = run(4,
+            0x58,                         // CLI
+            0x4c, 0x01, 0xc0);
+        // The frame counter's sequence is slightly longer than a frame
+        Assert.assertTrue(nes.readByte(0x03) >= 3);
+    }
+
+    @Test
+    public void testNmiOncePerFrame() {
+        NES nes = run(6,
+            0xa9, 0x80, 0x8d, 0x00, 0x20, // Enable NMI
+            0x4c, 0x05, 0xc0);
+        Assert.assertEquals(6, nes.getPpu().getFrameCount());
+        // The last frame's NMI is taken at the start of the next one
+        Assert.assertEquals(5, nes.readByte(0x00));
+    }
+
+    @Test
+    public void testStatusReadClearsVBlank() {
+        NES nes = run(2,
+            0x2c, 0x02, 0x20, 0x10, 0xfb, // Wait for vblank
+            0xad, 0x02, 0x20, 0x85, 0x01, // Store $2002 in $01
+            0xa9, 0x01, 0x85, 0x02,
+            0x4c, 0x0e, 0xc0);
+        Assert.assertEquals(1, nes.readByte(0x02));
+        Assert.assertEquals(0, nes.readByte(0x01) & 0x80);
+    }
+
+    @Test
+    public void testVramReadsAreBuffered() {
+
+        NES nes = run(1,
+            0xa9, 0x21, 0x8d, 0x06, 0x20, // Write $ab to $2100
+            0xa9, 0x00, 0x8d, 0x06, 0x20,
+            0xa9, 0xab, 0x8d, 0x07, 0x20,
+            0xa9, 0x21, 0x8d, 0x06, 0x20, // Read it back
+            0xa9, 0x00, 0x8d, 0x06, 0x20,
+            0xad, 0x07, 0x20, 0x85, 0x04,
+            0xad, 0x07, 0x20, 0x85, 0x05,
+            0x4c, 0x23, 0xc0);
+
+        Assert.assertTrue(nes.readByte(0x04) != 0xab);
+        Assert.assertEquals(0xab, nes.readByte(0x05));
+
+    }
+
+    @Test
+    public void testFrameBufferShowsBackdrop() {
+
+        NES nes = run(2,
+            0xa9, 0x3f, 0x8d, 0x06, 0x20, // Set the backdrop color to $21
+            0xa9, 0x00, 0x8d, 0x06, 0x20,
+            0xa9, 0x21, 0x8d, 0x07, 0x20,
+            0x4c, 0x0f, 0xc0);
+
+        int[] frame = nes.getPpu().getFrameBuffer();
+        Assert.assertEquals(PPU.WIDTH * PPU.HEIGHT, frame.length);
+        Assert.assertEquals(frame[0], frame[frame.length - 1]);
+        Assert.assertTrue(frame[0] != 0xff000000);
+
+    }
+
+    @Test
+    public void testBackgroundTile() {
+
+        NES nes = run(2,
+            0xa9, 0x00, 0x8d, 0x06, 0x20, // Fill row 0 of tile 1 in CHR RAM
+            0xa9, 0x10, 0x8d, 0x06, 0x20,
+            0xa9, 0xff, 0x8d, 0x07, 0x20,
+            0xa9, 0x20, 0x8d, 0x06, 0x20, // Put tile 1 at the top left
+            0xa9, 0x00, 0x8d, 0x06, 0x20,
+            0xa9, 0x01, 0x8d, 0x07, 0x20,
+            0xa9, 0x3f, 0x8d, 0x06, 0x20, // Give it a color
+            0xa9, 0x01, 0x8d, 0x06, 0x20,
+            0xa9, 0x16, 0x8d, 0x07, 0x20,
+            0xa9, 0x00, 0x8d, 0x06, 0x20, 0x8d, 0x06, 0x20,
+            0xa9, 0x0a, 0x8d, 0x01, 0x20, // Show the background
+            0x4c, 0x3a, 0xc0);
+
+        int[] frame = nes.getPpu().getFrameBuffer();
+        Assert.assertEquals(frame[0], frame[7]);
+        Assert.assertTrue(frame[0] != frame[8]);
+        Assert.assertEquals(frame[8], frame[PPU.WIDTH]);
+
+    }
+
+}
\ No newline at end of file
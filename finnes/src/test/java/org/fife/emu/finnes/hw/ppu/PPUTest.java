@@ -0,0 +1,322 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.fife.emu.finnes.hw.nes.Cartridge;
+import org.fife.emu.finnes.hw.nes.Mirroring;
+import org.fife.emu.finnes.hw.nes.NES;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PPUTest {
+
+    /**
+     * Creates a machine whose CPU just loops, with CHR RAM.
+     */
+    private static NES createNES() {
+        byte[] image = new byte[16 + 0x4000];
+        image[0] = 'N';
+        image[1] = 'E';
+        image[2] = 'S';
+        image[3] = 0x1a;
+        image[4] = 1;
+        image[16] = 0x4c; // JMP $C000
+        image[17] = 0x00;
+        image[18] = (byte)0xc0;
+        image[16 + 0x3ffd] = (byte)0xc0;
+        NES nes = new NES(new Cartridge(image));
+        nes.getApu().setSampleRate(0);
+        return nes;
+    }
+
+    /**
+     * Fills VRAM and OAM with random tiles, attributes, colors and
+     * sprites, and scrolls to a random position.
+     */
+    private static void fillRandomly(PPU ppu, long seed) {
+
+        Random random = new Random(seed);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2006, 0x00);
+        for (int i = 0; i < 0x2000 + 0x1000; i++) {
+            ppu.write(0x2007, random.nextInt(256));
+        }
+        ppu.write(0x2006, 0x3f);
+        ppu.write(0x2006, 0x00);
+        for (int i = 0; i < 32; i++) {
+            ppu.write(0x2007, random.nextInt(64));
+        }
+        ppu.write(0x2003, 0);
+        for (int i = 0; i < 256; i++) {
+            ppu.write(0x2004, random.nextInt(256));
+        }
+
+        ppu.write(0x2000, 0x18 | random.nextInt(4)); // Background and sprites use different tables
+        ppu.write(0x2005, random.nextInt(256));
+        ppu.write(0x2005, random.nextInt(240));
+        ppu.write(0x2001, 0x1e);
+
+    }
+
+    private static int[] renderFrame(RenderMode mode, long seed) {
+        NES nes = createNES();
+        PPU ppu = nes.getPpu();
+        ppu.setRenderMode(mode);
+        ppu.reset();
+        fillRandomly(ppu, seed);
+        nes.runFrame();
+        nes.runFrame();
+        return ppu.getFrameBuffer().clone();
+    }
+
+    @Test
+    public void testDotRenderingMatchesScanlineRendering() {
+        for (long seed = 0; seed < 8; seed++) {
+            Assert.assertArrayEquals(renderFrame(RenderMode.SCANLINE, seed), renderFrame(RenderMode.DOT, seed));
+        }
+    }
+
+    /**
+     * Makes one of several kinds of change to VRAM, in vertical blank.
+     */
+    private static void changeVram(PPU ppu, int step) {
+        switch (step) {
+            case 1: // A tile
+                ppu.write(0x2006, 0x20);
+                ppu.write(0x2006, 0x45);
+                ppu.write(0x2007, 0x17);
+                break;
+            case 2: // An attribute
+                ppu.write(0x2006, 0x23);
+                ppu.write(0x2006, 0xc9);
+                ppu.write(0x2007, 0xe4);
+                break;
+            case 3: // A row of a background tile's pattern
+                ppu.write(0x2006, 0x11);
+                ppu.write(0x2006, 0x73);
+                ppu.write(0x2007, 0x5a);
+                break;
+            case 4: // A background color
+                ppu.write(0x2006, 0x3f);
+                ppu.write(0x2006, 0x06);
+                ppu.write(0x2007, 0x21);
+                break;
+            case 5: // The background's pattern table
+                ppu.write(0x2000, 0x08);
+                break;
+            case 6: // A CHR bank
+                ppu.mapChr(0x0000, 0x400, 0x1800);
+                break;
+            default: // Nothing, i.e. a static screen
+                return;
+        }
+        ppu.write(0x2006, 0x20);
+        ppu.write(0x2006, 0x00);
+    }
+
+    @Test
+    public void testBackgroundCacheFollowsVramWrites() {
+
+        NES[] machines = new NES[2];
+        RenderMode[] modes = { RenderMode.SCANLINE, RenderMode.DOT };
+        for (int i = 0; i < modes.length; i++) {
+            machines[i] = createNES();
+            PPU ppu = machines[i].getPpu();
+            ppu.setRenderMode(modes[i]);
+            ppu.reset();
+            fillRandomly(ppu, 5);
+            machines[i].runFrame();
+        }
+
+        // The dot renderer doesn't use the cache, so tells what's right
+        for (int step = 0; step <= 7; step++) {
+            for (NES nes : machines) {
+                changeVram(nes.getPpu(), step);
+                nes.runFrame();
+            }
+            Assert.assertArrayEquals(machines[1].getPpu().getFrameBuffer(), machines[0].getPpu().getFrameBuffer());
+        }
+
+    }
+
+    @Test
+    public void testMirroringChangeRedrawsLines() {
+
+        NES nes = createNES();
+        PPU ppu = nes.getPpu();
+        ppu.setRenderMode(RenderMode.SCANLINE);
+        ppu.reset();
+
+        // Tile 1 is solid, and only the second 1 KB of nametable RAM uses it
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2006, 0x10);
+        for (int i = 0; i < 8; i++) {
+            ppu.write(0x2007, 0xff);
+        }
+        ppu.write(0x2006, 0x28); // Logical table 2 is the second 1 KB with horizontal mirroring
+        ppu.write(0x2006, 0x00);
+        for (int i = 0; i < 0x3c0; i++) {
+            ppu.write(0x2007, 0x01);
+        }
+        ppu.write(0x2006, 0x3f);
+        ppu.write(0x2006, 0x00);
+        ppu.write(0x2007, 0x0f);
+        ppu.write(0x2007, 0x30);
+        ppu.write(0x2000, 0x00);
+        ppu.write(0x2005, 0x00);
+        ppu.write(0x2005, 0x00);
+        ppu.write(0x2001, 0x0a); // Background only, so no line is redrawn for its sprites
+
+        // Both nametables are drawn before switching back and forth
+        Mirroring[] mirrorings = {
+            Mirroring.SINGLE_SCREEN_UPPER, Mirroring.SINGLE_SCREEN_LOWER,
+            Mirroring.SINGLE_SCREEN_UPPER, Mirroring.SINGLE_SCREEN_LOWER,
+        };
+        int[] pixels = new int[mirrorings.length];
+        for (int i = 0; i < mirrorings.length; i++) {
+            ppu.setMirroring(mirrorings[i]);
+            nes.runFrame();
+            nes.runFrame();
+            pixels[i] = ppu.getFrameBuffer()[100 * PPU.WIDTH + 100];
+        }
+
+        Assert.assertNotEquals(pixels[0], pixels[1]);
+        Assert.assertEquals(pixels[0], pixels[2]);
+        Assert.assertEquals(pixels[1], pixels[3]);
+
+    }
+
+    /**
+     * Runs a PPU to partway through a scanline.
+     */
+    private static int runToMidLine(PPU ppu, int cycle, int line) {
+        while (ppu.getScanline() != line) {
+            ppu.catchUp(++cycle);
+        }
+        cycle += 40;
+        ppu.catchUp(cycle);
+        return cycle;
+    }
+
+    @Test
+    public void testAutoSwitchesToDotRenderingOnMidLineWrites() {
+
+        NES nes = createNES();
+        PPU ppu = nes.getPpu();
+        ppu.setRenderMode(RenderMode.AUTO);
+        fillRandomly(ppu, 1);
+        nes.runFrame();
+        int cycle = nes.getCpu().getCycles();
+
+        // A single split, like after a sprite 0 hit, isn't enough
+        cycle = runToMidLine(ppu, cycle, 30);
+        ppu.write(0x2005, 0x03);
+        ppu.write(0x2005, 0x00);
+        cycle = runToMidLine(ppu, cycle, 31);
+        Assert.assertFalse(ppu.isDotRendering());
+
+        cycle = runToMidLine(ppu, cycle, 100);
+        ppu.write(0x2005, 0x05);
+        ppu.write(0x2005, 0x00);
+        Assert.assertFalse(ppu.isDotRendering());
+        runToMidLine(ppu, cycle, 101);
+        Assert.assertTrue(ppu.isDotRendering());
+
+    }
+
+    @Test
+    public void testDotRenderingAppliesMidLineWrites() {
+
+        int[][] frames = new int[2][];
+        RenderMode[] modes = { RenderMode.SCANLINE, RenderMode.DOT };
+
+        for (int i = 0; i < modes.length; i++) {
+            NES nes = createNES();
+            PPU ppu = nes.getPpu();
+            ppu.setRenderMode(modes[i]);
+            ppu.reset();
+            fillRandomly(ppu, 2);
+            nes.runFrame();
+            int cycle = runToMidLine(ppu, nes.getCpu().getCycles(), 50);
+            ppu.write(0x2001, 0x00); // Blank the rest of the line
+            ppu.catchUp(cycle + 60);
+            frames[i] = ppu.getFrameBuffer();
+        }
+
+        int line = 50 * PPU.WIDTH;
+        int backdrop = frames[1][line + PPU.WIDTH - 1];
+        Assert.assertTrue(frames[0][line + PPU.WIDTH - 1] != backdrop);
+        Assert.assertTrue(frames[1][line] != backdrop);
+        // Rendering was still disabled on the next line for both
+        Assert.assertEquals(backdrop, frames[0][line + PPU.WIDTH]);
+        Assert.assertEquals(backdrop, frames[1][line + PPU.WIDTH]);
+
+    }
+
+    /**
+     * Runs a frame a cycle at a time, recording each change to the status
+     * register.
+     */
+    private static List<String> traceStatus(RenderMode mode, int frameOutputInterval, long seed) {
+
+        NES nes = createNES();
+        PPU ppu = nes.getPpu();
+        ppu.setRenderMode(mode);
+        ppu.setFrameOutputInterval(frameOutputInterval);
+        ppu.reset();
+        fillRandomly(ppu, seed);
+        nes.runFrame();
+
+        List<String> changes = new ArrayList<>();
+        int status = -1;
+        for (int cycle = nes.getCpu().getCycles(); cycle < 30000; cycle++) {
+            ppu.catchUp(cycle);
+            int newStatus = ppu.peek(0x2002) & 0xe0;
+            if (newStatus != status) {
+                changes.add(cycle + ": " + Integer.toHexString(newStatus));
+                status = newStatus;
+            }
+        }
+        return changes;
+
+    }
+
+    @Test
+    public void testFrameOutputInterval() {
+
+        NES nes = createNES();
+        PPU ppu = nes.getPpu();
+        ppu.setFrameOutputInterval(0);
+        fillRandomly(ppu, 4);
+        nes.runFrame(); // The frame already started is still drawn
+        Arrays.fill(ppu.getFrameBuffer(), 0);
+        nes.runFrame();
+        Assert.assertFalse(ppu.isFrameOutput());
+        for (int pixel : ppu.getFrameBuffer()) {
+            Assert.assertEquals(0, pixel);
+        }
+
+        ppu.requestFrame();
+        nes.runFrame();
+        Assert.assertTrue(ppu.isFrameOutput());
+        Assert.assertArrayEquals(renderFrame(RenderMode.SCANLINE, 4), ppu.getFrameBuffer());
+        nes.runFrame();
+        Assert.assertFalse(ppu.isFrameOutput());
+
+    }
+
+    @Test
+    public void testFrameOutputIntervalKeepsStatusTiming() {
+        for (RenderMode mode : new RenderMode[] { RenderMode.SCANLINE, RenderMode.DOT }) {
+            for (long seed = 0; seed < 4; seed++) {
+                List<String> expected = traceStatus(mode, 1, seed);
+                Assert.assertTrue(expected.size() >= 4);
+                Assert.assertEquals(expected, traceStatus(mode, 0, seed));
+            }
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package org.fife.emu.finnes.hw.ppu;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TileCacheTest {
+
+    @Test
+    public void testGetTile() {
+
+        byte[] chr = new byte[0x2000];
+        chr[0x10] = (byte)0x81; // Tile 1, row 0, low plane
+        chr[0x18] = (byte)0x80; // Tile 1, row 0, high plane
+        chr[0x1f] = 0x01;       // Tile 1, row 7, high plane
+
+        TileCache cache = new TileCache(chr);
+        byte[] tile = cache.getTile(0x10);
+        Assert.assertEquals(64, tile.length);
+        Assert.assertEquals(3, tile[0]);
+        Assert.assertEquals(0, tile[1]);
+        Assert.assertEquals(1, tile[7]);
+        Assert.assertEquals(2, tile[63]);
+        Assert.assertSame(tile, cache.getTile(0x1f));
+
+    }
+
+    @Test
+    public void testInvalidate() {
+
+        byte[] chr = new byte[0x2000];
+        TileCache cache = new TileCache(chr);
+        Assert.assertEquals(0, cache.getTile(0x20)[0]);
+
+        chr[0x20] = (byte)0x80;
+        Assert.assertEquals(0, cache.getTile(0x20)[0]);
+        cache.invalidate(0x20);
+        Assert.assertEquals(1, cache.getTile(0x20)[0]);
+
+    }
+
+}
\ No newline at end of file
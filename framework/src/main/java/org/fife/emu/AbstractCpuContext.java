@@ -3,93 +3,701 @@ package org.fife.emu;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 /**
- * Base implementation of a CPU context.
+ * Base implementation of a CPU context.<p>
+ *
+ * The address space is split into pages of {@link #PAGE_SIZE} bytes.
+ * Each page is either a plain memory page, read and written directly
+ * from/to this context's memory storage, or an I/O page whose accesses are
+ * dispatched to a {@link MemoryReadHandler} and/or
+ * {@link MemoryWriteHandler}.  By default, all pages are plain memory;
+ * subclasses map I/O pages via {@link #mapReadHandler(int, int, MemoryReadHandler)}
+ * and {@link #mapWriteHandler(int, int, MemoryWriteHandler)}.  Pages can
+ * also be backed by read-only ROM storage shared between any number of
+ * contexts, via {@link #mapROM(int, int, MemoryStorage, int)}, and
+ * ranges can mirror other ranges via {@link #mapMirror(int, int, int)}.
+ * Writes to ROM are ignored, or dispatched to registers decoded from the
+ * ROM's address range, such as a cartridge's bank switching logic.<p>
+ *
+ * Pages can be watched for writes via {@link #watchForWrites(int)}.  A
+ * watched page gets a write handler that notifies listeners and then
+ * removes itself, so watching costs nothing once a page has been written
+ * to, and unwatched pages pay nothing at all.
  *
  * @author Robert Futrell
  * @version 1.0
  */
 public abstract class AbstractCpuContext implements CpuContext, Serializable {
 
+	/**
+	 * The number of bits an address is shifted right by to get its
+	 * page number.
+	 */
+	public static final int PAGE_SHIFT = 8;
+
+	/**
+	 * The size of a page in the memory map, in bytes.
+	 */
+	public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
 	/**
 	 * Memory.
 	 */
-	protected int[] memory;
+	protected MemoryStorage memory;
+
+	/**
+	 * The type of storage allocated for memory.
+	 */
+	private final MemoryStorageType storageType;
+
+	/**
+	 * A bitmap of the pages written to since it was last cleared, or
+	 * <code>null</code> if dirty page tracking is disabled.
+	 */
+	private long[] dirtyPages;
+
+	/**
+	 * The storage backing each page that isn't dispatched to a handler.
+	 * This is usually {@link #memory}, but may be shared ROM storage.
+	 */
+	protected MemoryStorage[] pageStorage;
+
+	/**
+	 * For each page, the value added to an address to get its index in
+	 * that page's storage.
+	 */
+	protected int[] pageOffsets;
 
 	/**
-	 * Handlers for memory read accesses.
+	 * For each page, the mask applied to an address before it is
+	 * looked up in storage or passed to a handler.  This implements
+	 * mirroring; it is <code>-1</code> for pages that aren't mirrors.
+	 */
+	protected int[] pageMasks;
+
+	/**
+	 * Handlers for memory read accesses, one per page.  A
+	 * <code>null</code> entry means the page is read directly from
+	 * its storage.
 	 */
 	protected MemoryReadHandler[] memoryReadHandlers;
 
 	/**
-	 * Handlers for memory writes.
+	 * Handlers for memory writes, one per page.  A <code>null</code>
+	 * entry means the page is written directly to its storage.
 	 */
 	protected MemoryWriteHandler[] memoryWriteHandlers;
 
 	/**
-	 * Configures the memory read handlers used.  By default a
-	 * standard memory read handler that just reads from this
-	 * context's memory array is installed for all addresses.
-	 * Subclasses can override this method and install custom
-	 * read handlers to handle things like memory-mapped ports.
+	 * Whether each page was mapped as ROM, i.e. its storage is never
+	 * written through this context, whatever its write handler.
+	 */
+	private boolean[] romPages;
+
+	/**
+	 * Listeners notified when the memory map changes or a watched page
+	 * is written to.
+	 */
+	private final List<MemoryMapListener> memoryMapListeners = new ArrayList<>();
+
+	/**
+	 * Constructor.  Memory will be stored in a <code>byte</code> array on
+	 * the Java heap.
+	 */
+	protected AbstractCpuContext() {
+		this(MemoryStorageType.HEAP);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param storageType The type of storage to allocate for memory.
+	 */
+	protected AbstractCpuContext(MemoryStorageType storageType) {
+		this.storageType = storageType;
+	}
+
+	/**
+	 * Adds a listener to be notified when the memory map changes or a
+	 * watched page is written to.
+	 *
+	 * @param listener The listener to add.
+	 * @see #removeMemoryMapListener(MemoryMapListener)
+	 * @see #watchForWrites(int)
+	 */
+	public void addMemoryMapListener(MemoryMapListener listener) {
+		memoryMapListeners.add(listener);
+	}
+
+	/**
+	 * Returns whether two pages may hold some of the same bytes, i.e.
+	 * whether a write through one of them may change what's read through
+	 * the other.
+	 *
+	 * @param page1 The first page.
+	 * @param page2 The second page.
+	 * @return Whether the pages alias one another.
+	 */
+	private boolean aliases(int page1, int page2) {
+		return pageStorage[page1] == pageStorage[page2] &&
+			Math.abs(getStorageIndex(page1) - getStorageIndex(page2)) < PAGE_SIZE;
+	}
+
+	/**
+	 * Stops watching all pages for writes, and notifies listeners of the
+	 * change to the memory map.  This is called whenever pages are
+	 * remapped, since that may change which pages alias a watched one.
+	 *
+	 * @param start The starting address of the remapped range, inclusive.
+	 * @param end The ending address of the remapped range, exclusive.
+	 */
+	private void fireMemoryMapChanged(int start, int end) {
+		for (int page = 0; page < memoryWriteHandlers.length; page++) {
+			if (memoryWriteHandlers[page] instanceof PageWatcher) {
+				memoryWriteHandlers[page] = null;
+				if (page < start >> PAGE_SHIFT || page >= end >> PAGE_SHIFT) {
+					for (MemoryMapListener listener : memoryMapListeners) {
+						listener.memoryMapChanged(page << PAGE_SHIFT, (page + 1) << PAGE_SHIFT);
+					}
+				}
+			}
+		}
+		for (MemoryMapListener listener : memoryMapListeners) {
+			listener.memoryMapChanged(start, end);
+		}
+	}
+
+	/**
+	 * Checks that a range of addresses is page-aligned and lies in this
+	 * context's address space.
+	 *
+	 * @param start The starting address, inclusive.
+	 * @param end The ending address, exclusive.
+	 * @throws IllegalArgumentException If the range is invalid.
+	 */
+	private void checkPageRange(int start, int end) {
+		if (((start | end) & (PAGE_SIZE - 1)) != 0) {
+			throw new IllegalArgumentException("Range is not page-aligned: " +
+				Util.getHexStringUWord(start) + "-" + Util.getHexStringUWord(end));
+		}
+		if (start < 0 || end > memory.size() || start >= end) {
+			throw new IllegalArgumentException("Invalid range: " +
+				Util.getHexStringUWord(start) + "-" + Util.getHexStringUWord(end));
+		}
+	}
+
+	/**
+	 * Copies a block of memory, as if by reading each byte via
+	 * {@link #readByte(int)} and writing it via
+	 * {@link #writeByte(int, int)}.  The blocks may overlap.<p>
+	 *
+	 * The copy is done a page at a time, front to back or back to front
+	 * depending on which way the blocks overlap.  Where both the source
+	 * and destination pages are plain memory or ROM, bytes are copied
+	 * from storage to storage directly; only I/O pages are copied through
+	 * a temporary buffer, via their handlers.
+	 *
+	 * @param srcAddress The address to copy from.
+	 * @param destAddress The address to copy to.
+	 * @param length The number of bytes to copy.
+	 * @see #readBlock(int, byte[], int, int)
+	 * @see #writeBlock(int, byte[], int, int)
+	 */
+	public void copyBlock(int srcAddress, int destAddress, int length) {
+
+		if (length <= 0) {
+			return;
+		}
+
+		// Copy back to front if the destination starts inside the source,
+		// as seen in storage if they share it, e.g. through a mirror
+		int srcPage = srcAddress >> PAGE_SHIFT;
+		int destPage = destAddress >> PAGE_SHIFT;
+		int src = srcAddress;
+		int dest = destAddress;
+		if (pageStorage[srcPage] == pageStorage[destPage]) {
+			src = (srcAddress & pageMasks[srcPage]) + pageOffsets[srcPage];
+			dest = (destAddress & pageMasks[destPage]) + pageOffsets[destPage];
+		}
+		boolean backward = dest > src && dest < src + length;
+
+		byte[] temp = null;
+		while (length > 0) {
+
+			int count;
+			if (backward) {
+				int srcEnd = srcAddress + length - 1;
+				int destEnd = destAddress + length - 1;
+				count = Math.min(length, Math.min(srcEnd & (PAGE_SIZE - 1), destEnd & (PAGE_SIZE - 1)) + 1);
+				src = srcAddress + length - count;
+				dest = destAddress + length - count;
+			}
+			else {
+				count = Math.min(length, PAGE_SIZE - Math.max(srcAddress & (PAGE_SIZE - 1), destAddress & (PAGE_SIZE - 1)));
+				src = srcAddress;
+				dest = destAddress;
+				srcAddress += count;
+				destAddress += count;
+			}
+
+			srcPage = src >> PAGE_SHIFT;
+			destPage = dest >> PAGE_SHIFT;
+			if (isBulkAccessible(srcPage, memoryReadHandlers[srcPage]) &&
+					isBulkAccessible(destPage, memoryWriteHandlers[destPage])) {
+				int srcIndex = (src & pageMasks[srcPage]) + pageOffsets[srcPage];
+				int destIndex = (dest & pageMasks[destPage]) + pageOffsets[destPage];
+				pageStorage[srcPage].copy(srcIndex, pageStorage[destPage], destIndex, count);
+				markDirty(dest & pageMasks[destPage]);
+			}
+			else {
+				if (temp == null) {
+					temp = new byte[PAGE_SIZE];
+				}
+				readBlock(src, temp, 0, count);
+				writeBlock(dest, temp, 0, count);
+			}
+			length -= count;
+
+		}
+
+	}
+
+	/**
+	 * Configures the memory read handlers used.  By default all pages
+	 * are read directly from this context's memory storage.  Subclasses
+	 * can override this method and map custom read handlers via
+	 * {@link #mapReadHandler(int, int, MemoryReadHandler)} to handle
+	 * things like memory-mapped ports.
 	 *
 	 * @see #configureMemoryWriteHandlers()
 	 */
 	protected void configureMemoryReadHandlers() {
-		int count = memory.length;
-		memoryReadHandlers = new MemoryReadHandler[count];
-		MemoryReadHandler readHandler = new DefaultMemoryReadHandler(this);
-		for (int i = 0; i < count; i++) {
-			memoryReadHandlers[i] = readHandler;
-		}
+		memoryReadHandlers = new MemoryReadHandler[getPageCount()];
 	}
 
 	/**
-	 * Configures the memory write handlers used.  By default a
-	 * standard memory write handler that just writes to this
-	 * context's memory array is installed for all addresses.
-	 * Subclasses can override this method and install custom
-	 * write handlers to handle things like memory-mapped ports.
+	 * Configures the memory write handlers used.  By default all pages
+	 * are written directly to this context's memory storage.  Subclasses
+	 * can override this method and map custom write handlers via
+	 * {@link #mapWriteHandler(int, int, MemoryWriteHandler)} to handle
+	 * things like memory-mapped ports.
 	 *
 	 * @see #configureMemoryReadHandlers()
 	 */
 	protected void configureMemoryWriteHandlers() {
-		int count = memory.length;
-		memoryWriteHandlers = new MemoryWriteHandler[count];
-		MemoryWriteHandler writeHandler = new DefaultMemoryWriteHandler(this);
-		for (int i = 0; i < count; i++) {
-			memoryWriteHandlers[i] = writeHandler;
+		memoryWriteHandlers = new MemoryWriteHandler[getPageCount()];
+	}
+
+	/**
+	 * Copies the bitmap of pages written to since the last call to this
+	 * method into an array, then clears it.  Bit <code>n &amp; 63</code>
+	 * of element <code>n &gt;&gt; 6</code> is set if page <code>n</code>
+	 * was written to.  Writes to mirrors mark the page they resolve to.
+	 * Only writes that reach memory storage count; writes ignored by ROM,
+	 * or dispatched to I/O registers or any other write handler, don't.<p>
+	 *
+	 * This should be called from the thread running the CPU, e.g. at the
+	 * end of each frame, so that no writes happen between the read and
+	 * the clear.
+	 *
+	 * @param dest The array to copy the bitmap into.  Its length must be
+	 *        at least {@link #getDirtyPageBitmapLength()}.
+	 * @throws IllegalStateException If dirty page tracking is disabled.
+	 * @see #setDirtyPageTracking(boolean)
+	 */
+	public void getAndClearDirtyPages(long[] dest) {
+		if (dirtyPages == null) {
+			throw new IllegalStateException("Dirty page tracking is not enabled");
 		}
+		System.arraycopy(dirtyPages, 0, dest, 0, dirtyPages.length);
+		Arrays.fill(dirtyPages, 0);
+	}
+
+	/**
+	 * Returns the number of <code>long</code>s needed to hold the dirty
+	 * page bitmap.
+	 *
+	 * @return The length of the dirty page bitmap.
+	 * @see #getAndClearDirtyPages(long[])
+	 */
+	public int getDirtyPageBitmapLength() {
+		return (getPageCount() + 63) >> 6;
 	}
 
 	/**
 	 * Returns the main memory for this CPU context.
 	 *
-	 * @return Main memory.  This is an array of bytes.
+	 * @return Main memory.
 	 */
-	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Memory array returned for performance reasons")
-	public int[] getMemory() {
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Memory returned for performance reasons")
+	public MemoryStorage getMemory() {
 		return memory;
 	}
 
 	/**
-	 * Loads the specified ROM into memory.  Note that this CPU
-	 * will not use a copy of this ROM; it will use the passed-in
-	 * array itself as main memory.
+	 * Returns the index in its storage of the first byte of a page, as
+	 * seen through the page's mask.
+	 *
+	 * @param page The page.
+	 * @return The index of the page in its storage.
+	 */
+	private int getStorageIndex(int page) {
+		return ((page << PAGE_SHIFT) & pageMasks[page]) + pageOffsets[page];
+	}
+
+	/**
+	 * Returns the number of pages in this context's memory map.
+	 *
+	 * @return The number of pages.
+	 * @see #PAGE_SIZE
+	 */
+	public int getPageCount() {
+		return (memory.size() + PAGE_SIZE - 1) >> PAGE_SHIFT;
+	}
+
+	/**
+	 * Returns whether pages written to are being tracked.
+	 *
+	 * @return Whether dirty page tracking is enabled.
+	 * @see #setDirtyPageTracking(boolean)
+	 */
+	public boolean isDirtyPageTracking() {
+		return dirtyPages != null;
+	}
+
+	/**
+	 * Returns whether reading an address again, right after reading it,
+	 * returns the same value and has no further side effects.  This is
+	 * true for plain memory and ROM; I/O pages ask their read handler.
+	 *
+	 * @param address The address.
+	 * @return Whether polling the address is stable.
+	 * @see MemoryReadHandler#isPollStable(int)
+	 */
+	public boolean isPollStable(int address) {
+		int page = address >> PAGE_SHIFT;
+		MemoryReadHandler handler = memoryReadHandlers[page];
+		return handler == null || handler.isPollStable(address & pageMasks[page]);
+	}
+
+	/**
+	 * Returns whether the page containing an address is ROM.  A page is
+	 * ROM if it has no read handler, it was mapped read-only (e.g. via
+	 * {@link #mapROM(int, int, MemoryStorage, int)}), and no page sharing
+	 * its bytes can be written to.
+	 *
+	 * @param address An address in the page to check.
+	 * @return Whether the page is ROM.
+	 */
+	public boolean isROM(int address) {
+
+		int page = address >> PAGE_SHIFT;
+		if (memoryReadHandlers[page] != null || !romPages[page]) {
+			return false;
+		}
+
+		for (int other = 0; other < memoryWriteHandlers.length; other++) {
+			if (!romPages[other] && aliases(page, other)) {
+				return false;
+			}
+		}
+		return true;
+
+	}
+
+	/**
+	 * Returns the type of storage allocated for this context's memory.
+	 *
+	 * @return The storage type.
+	 */
+	public MemoryStorageType getStorageType() {
+		return storageType;
+	}
+
+	/**
+	 * Marks the page containing an address as dirty, if dirty page
+	 * tracking is enabled.
+	 *
+	 * @param address The address, with any mirroring already applied.
+	 */
+	private void markDirty(int address) {
+		long[] dirty = dirtyPages;
+		if (dirty != null) {
+			int page = address >> PAGE_SHIFT;
+			dirty[page >> 6] |= 1L << page;
+		}
+	}
+
+	/**
+	 * Allocates memory for this context and resets the memory map so
+	 * that all pages are plain memory.
+	 *
+	 * @param size The size of the address space, in bytes.
+	 */
+	protected void initMemory(int size) {
+		memory = storageType.create(size);
+		int pageCount = getPageCount();
+		pageStorage = new MemoryStorage[pageCount];
+		Arrays.fill(pageStorage, memory);
+		pageOffsets = new int[pageCount];
+		pageMasks = new int[pageCount];
+		Arrays.fill(pageMasks, -1);
+		romPages = new boolean[pageCount];
+		if (dirtyPages != null) {
+			dirtyPages = new long[getDirtyPageBitmapLength()];
+		}
+		configureMemoryReadHandlers();
+		configureMemoryWriteHandlers();
+		fireMemoryMapChanged(0, memory.size());
+	}
+
+	/**
+	 * Loads the specified ROM into memory.  The ROM is copied into
+	 * this context's memory storage, which is sized to match it.
 	 *
 	 * @param rom The ROM.
 	 */
 	public void loadROM(int[] rom) {
 
 		int size = rom.length;
-		memory = new int[size];
-		System.arraycopy(rom,0, memory,0, size);
+		initMemory(size);
+		for (int i = 0; i < size; i++) {
+			memory.write(i, rom[i]);
+		}
 
-		configureMemoryReadHandlers();
-		configureMemoryWriteHandlers();
+	}
+
+	/**
+	 * Maps a read handler to a range of pages.  All reads in the range
+	 * will be dispatched to the handler.  Any ROM or mirroring installed
+	 * for the range is removed, so writes not handled by a write handler
+	 * go to this context's own memory.
+	 *
+	 * @param start The starting address, inclusive.  This must be
+	 *        page-aligned.
+	 * @param end The ending address, exclusive.  This must be
+	 *        page-aligned.
+	 * @param handler The handler.  Passing <code>null</code> maps the
+	 *        range back to plain memory.
+	 * @see #mapWriteHandler(int, int, MemoryWriteHandler)
+	 * @see #unmap(int, int)
+	 */
+	public void mapReadHandler(int start, int end, MemoryReadHandler handler) {
+		checkPageRange(start, end);
+		for (int page = start >> PAGE_SHIFT; page < end >> PAGE_SHIFT; page++) {
+			memoryReadHandlers[page] = handler;
+			romPages[page] = false;
+			pageStorage[page] = memory;
+			pageOffsets[page] = 0;
+			pageMasks[page] = -1;
+		}
+		fireMemoryMapChanged(start, end);
+	}
+
+	/**
+	 * Makes a range of addresses mirror another part of the address
+	 * space.  An access to an address in the range behaves exactly like
+	 * an access to <code>address &amp; mask</code>; the mask is applied
+	 * in a single step when the address is resolved, so mirrors cost no
+	 * extra handler calls.<p>
+	 *
+	 * For example, the NES mirrors its 2 KB of RAM through
+	 * <code>0x0000-0x1fff</code> and its 8 PPU registers through
+	 * <code>0x2000-0x3fff</code>:
+	 * <pre>
+	 * mapMirror(0x0000, 0x2000, 0x07ff);
+	 * mapMirror(0x2000, 0x2000, 0x2007);
+	 * </pre>
+	 * The mirrored region must be mapped before this method is called;
+	 * remapping it later does not update its mirrors.
+	 *
+	 * @param base The start of the range, inclusive.  This must be
+	 *        page-aligned.
+	 * @param size The size of the range.  This must be a multiple of
+	 *        the page size.
+	 * @param mask The mask to apply to addresses in the range.
+	 */
+	public void mapMirror(int base, int size, int mask) {
+		checkPageRange(base, base + size);
+		for (int page = base >> PAGE_SHIFT; page < (base + size) >> PAGE_SHIFT; page++) {
+			int target = ((page << PAGE_SHIFT) & mask) >> PAGE_SHIFT;
+			pageStorage[page] = pageStorage[target];
+			pageOffsets[page] = pageOffsets[target];
+			memoryReadHandlers[page] = memoryReadHandlers[target];
+			memoryWriteHandlers[page] = memoryWriteHandlers[target];
+			romPages[page] = romPages[target];
+			pageMasks[page] = mask;
+		}
+		fireMemoryMapChanged(base, base + size);
+	}
+
+	/**
+	 * Maps a range of pages to read-only ROM storage.  The storage is
+	 * not copied, so a single ROM image can be shared by any number of
+	 * contexts.  Writes to the range are ignored.<p>
+	 *
+	 * Use {@link DirectMemoryStorage#map(java.nio.file.Path)} to back a
+	 * ROM with a memory-mapped file.
+	 *
+	 * @param start The starting address, inclusive.  This must be
+	 *        page-aligned.
+	 * @param end The ending address, exclusive.  This must be
+	 *        page-aligned.
+	 * @param rom The ROM storage.
+	 * @param romOffset The offset into <code>rom</code> that
+	 *        <code>start</code> maps to.
+	 * @see #mapROM(int, int, MemoryStorage, int, MemoryWriteHandler)
+	 * @see #unmap(int, int)
+	 */
+	public void mapROM(int start, int end, MemoryStorage rom, int romOffset) {
+		mapROM(start, end, rom, romOffset, ReadOnlyMemoryWriteHandler.INSTANCE);
+	}
+
+	/**
+	 * Maps a range of pages to read-only ROM storage, dispatching writes
+	 * to the range to a handler instead of ignoring them.  This is for
+	 * hardware that decodes writes to a ROM's address range as register
+	 * writes, such as a cartridge's bank switching logic.  The handler
+	 * must not modify the ROM, and the range is still ROM as far as
+	 * {@link #isROM(int)} is concerned; if it switches banks, it should do
+	 * so by mapping the range again.
+	 *
+	 * @param start The starting address, inclusive.  This must be
+	 *        page-aligned.
+	 * @param end The ending address, exclusive.  This must be
+	 *        page-aligned.
+	 * @param rom The ROM storage.
+	 * @param romOffset The offset into <code>rom</code> that
+	 *        <code>start</code> maps to.
+	 * @param registers The handler for writes to the range.
+	 * @see #mapROM(int, int, MemoryStorage, int)
+	 * @see #unmap(int, int)
+	 */
+	public void mapROM(int start, int end, MemoryStorage rom, int romOffset, MemoryWriteHandler registers) {
+		checkPageRange(start, end);
+		if (romOffset < 0 || romOffset + end - start > rom.size()) {
+			throw new IllegalArgumentException("Range extends past the end of the ROM: " +
+				Util.getHexStringUWord(start) + "-" + Util.getHexStringUWord(end));
+		}
+		for (int page = start >> PAGE_SHIFT; page < end >> PAGE_SHIFT; page++) {
+			pageStorage[page] = rom;
+			pageOffsets[page] = romOffset - start;
+			pageMasks[page] = -1;
+			memoryReadHandlers[page] = null;
+			memoryWriteHandlers[page] = registers;
+			romPages[page] = true;
+		}
+		fireMemoryMapChanged(start, end);
+	}
+
+	/**
+	 * Maps a write handler to a range of pages.  All writes in the range
+	 * will be dispatched to the handler.  Any ROM or mirroring installed
+	 * for the range is removed, so reads not handled by a read handler
+	 * come from this context's own memory; use
+	 * {@link #mapROM(int, int, MemoryStorage, int, MemoryWriteHandler)}
+	 * for registers over ROM.
+	 *
+	 * @param start The starting address, inclusive.  This must be
+	 *        page-aligned.
+	 * @param end The ending address, exclusive.  This must be
+	 *        page-aligned.
+	 * @param handler The handler.  Passing <code>null</code> maps the
+	 *        range back to plain memory.
+	 * @see #mapReadHandler(int, int, MemoryReadHandler)
+	 * @see #unmap(int, int)
+	 */
+	public void mapWriteHandler(int start, int end, MemoryWriteHandler handler) {
+		checkPageRange(start, end);
+		for (int page = start >> PAGE_SHIFT; page < end >> PAGE_SHIFT; page++) {
+			memoryWriteHandlers[page] = handler;
+			romPages[page] = false;
+			pageStorage[page] = memory;
+			pageOffsets[page] = 0;
+			pageMasks[page] = -1;
+		}
+		fireMemoryMapChanged(start, end);
+	}
+
+	/**
+	 * Returns whether a page is plain memory or ROM whose bytes are
+	 * laid out contiguously in its storage, and so can be accessed in
+	 * bulk.
+	 *
+	 * @param page The page.
+	 * @param handler The page's read or write handler.
+	 * @return Whether the page can be accessed in bulk.
+	 */
+	private boolean isBulkAccessible(int page, Object handler) {
+		return handler == null && (pageMasks[page] & (PAGE_SIZE - 1)) == PAGE_SIZE - 1;
+	}
+
+	/**
+	 * Reads a block of memory.  Plain memory and ROM pages are copied
+	 * in bulk; only I/O pages are read byte by byte through their
+	 * handlers.
+	 *
+	 * @param address The address to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @see #readBlockSafely(int, byte[], int, int)
+	 * @see #writeBlock(int, byte[], int, int)
+	 */
+	public void readBlock(int address, byte[] dest, int offset, int length) {
+		readBlockImpl(address, dest, offset, length, false);
+	}
+
+	/**
+	 * Reads a block of memory, either normally or without side effects.
+	 *
+	 * @param address The address to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @param safely Whether to peek at I/O pages instead of reading them.
+	 */
+	private void readBlockImpl(int address, byte[] dest, int offset, int length, boolean safely) {
+		while (length > 0) {
+			int page = address >> PAGE_SHIFT;
+			int count = Math.min(length, PAGE_SIZE - (address & (PAGE_SIZE - 1)));
+			if (isBulkAccessible(page, memoryReadHandlers[page])) {
+				int index = (address & pageMasks[page]) + pageOffsets[page];
+				pageStorage[page].read(index, dest, offset, count);
+			}
+			else if (safely) {
+				for (int i = 0; i < count; i++) {
+					dest[offset + i] = (byte)readByteSafely(address + i);
+				}
+			}
+			else {
+				for (int i = 0; i < count; i++) {
+					dest[offset + i] = (byte)readByte(address + i);
+				}
+			}
+			address += count;
+			offset += count;
+			length -= count;
+		}
+	}
 
+	/**
+	 * Reads a block of memory without any side effects.  This is meant
+	 * for things such as save states and memory viewers.
+	 *
+	 * @param address The address to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @see #readBlock(int, byte[], int, int)
+	 */
+	public void readBlockSafely(int address, byte[] dest, int offset, int length) {
+		readBlockImpl(address, dest, offset, length, true);
 	}
 
 	/**
@@ -100,7 +708,32 @@ public abstract class AbstractCpuContext implements CpuContext, Serializable {
 	 * @see #writeByte(int, int)
 	 */
 	public int readByte(int address) {
-		return memoryReadHandlers[address].read(address);
+		int page = address >> PAGE_SHIFT;
+		address &= pageMasks[page];
+		MemoryReadHandler handler = memoryReadHandlers[page];
+		if (handler == null) {
+			return pageStorage[page].read(address + pageOffsets[page]);
+		}
+		return handler.read(address);
+	}
+
+	/**
+	 * Returns a byte from memory without any side effects.  Plain
+	 * memory and ROM pages are read directly; I/O pages are
+	 * {@link MemoryReadHandler#peek(int) peeked}.
+	 *
+	 * @param address The address from which to read.
+	 * @return The byte at the specified address in memory.
+	 * @see #readByte(int)
+	 */
+	public int readByteSafely(int address) {
+		int page = address >> PAGE_SHIFT;
+		address &= pageMasks[page];
+		MemoryReadHandler handler = memoryReadHandlers[page];
+		if (handler == null) {
+			return pageStorage[page].read(address + pageOffsets[page]);
+		}
+		return handler.peek(address);
 	}
 
 	/**
@@ -111,9 +744,128 @@ public abstract class AbstractCpuContext implements CpuContext, Serializable {
 	 * @see #writeWord(int, int)
 	 */
 	public int readWord(int address) {
-		int val = memoryReadHandlers[address].read(address);
-		address++;
-		return val | (memoryReadHandlers[address].read(address) << 8);
+		return readByte(address) | (readByte(address + 1) << 8);
+	}
+
+	/**
+	 * Removes a memory map listener.
+	 *
+	 * @param listener The listener to remove.
+	 * @see #addMemoryMapListener(MemoryMapListener)
+	 */
+	public void removeMemoryMapListener(MemoryMapListener listener) {
+		memoryMapListeners.remove(listener);
+	}
+
+	/**
+	 * Toggles whether pages written to are tracked.  This is useful for
+	 * rewind buffers, incremental save states and the like, which only
+	 * need to look at pages that have changed.  When disabled, tracking
+	 * costs nothing but a <code>null</code> check per write.
+	 *
+	 * @param enabled Whether to track dirty pages.  Enabling tracking
+	 *        starts out with all pages clean.
+	 * @see #getAndClearDirtyPages(long[])
+	 */
+	public void setDirtyPageTracking(boolean enabled) {
+		if (enabled != isDirtyPageTracking()) {
+			dirtyPages = enabled ? new long[getDirtyPageBitmapLength()] : null;
+		}
+	}
+
+	/**
+	 * Maps a range of pages back to plain memory, removing any read or
+	 * write handlers, ROM or mirroring installed for them.
+	 *
+	 * @param start The starting address, inclusive.  This must be
+	 *        page-aligned.
+	 * @param end The ending address, exclusive.  This must be
+	 *        page-aligned.
+	 * @see #mapReadHandler(int, int, MemoryReadHandler)
+	 * @see #mapWriteHandler(int, int, MemoryWriteHandler)
+	 * @see #mapROM(int, int, MemoryStorage, int)
+	 * @see #mapMirror(int, int, int)
+	 */
+	public void unmap(int start, int end) {
+		checkPageRange(start, end);
+		for (int page = start >> PAGE_SHIFT; page < end >> PAGE_SHIFT; page++) {
+			memoryReadHandlers[page] = null;
+			memoryWriteHandlers[page] = null;
+			romPages[page] = false;
+			pageStorage[page] = memory;
+			pageOffsets[page] = 0;
+			pageMasks[page] = -1;
+		}
+		fireMemoryMapChanged(start, end);
+	}
+
+	/**
+	 * Watches a page for writes.  Listeners are notified the next time
+	 * the page is written to, via it or any other page sharing its bytes
+	 * (e.g. a mirror).  ROM pages can always be watched, as writes to
+	 * them are ignored; pages with a read handler, or sharing their bytes
+	 * with a page whose write handler may modify them, can't be.<p>
+	 *
+	 * Note that writes made directly to this context's storage, rather
+	 * than through {@link #writeByte(int, int)} or
+	 * {@link #writeBlock(int, byte[], int, int)}, are not detected.
+	 *
+	 * @param address An address in the page to watch.
+	 * @return Whether the page is now being watched.
+	 * @see #addMemoryMapListener(MemoryMapListener)
+	 */
+	public boolean watchForWrites(int address) {
+
+		int page = address >> PAGE_SHIFT;
+		if (memoryReadHandlers[page] != null) {
+			return false;
+		}
+
+		for (int other = 0; other < memoryWriteHandlers.length; other++) {
+			MemoryWriteHandler handler = memoryWriteHandlers[other];
+			if (handler != null && !romPages[other] &&
+					!(handler instanceof PageWatcher) && aliases(page, other)) {
+				return false;
+			}
+		}
+
+		for (int other = 0; other < memoryWriteHandlers.length; other++) {
+			if (memoryWriteHandlers[other] == null && aliases(page, other)) {
+				memoryWriteHandlers[other] = new PageWatcher(other);
+			}
+		}
+		return true;
+
+	}
+
+	/**
+	 * Writes a block of memory.  Plain memory pages are copied in bulk;
+	 * ROM and I/O pages are written byte by byte through their handlers.
+	 *
+	 * @param address The address to start writing to.
+	 * @param src The bytes to write.
+	 * @param offset The offset into <code>src</code> to start at.
+	 * @param length The number of bytes to write.
+	 * @see #readBlock(int, byte[], int, int)
+	 */
+	public void writeBlock(int address, byte[] src, int offset, int length) {
+		while (length > 0) {
+			int page = address >> PAGE_SHIFT;
+			int count = Math.min(length, PAGE_SIZE - (address & (PAGE_SIZE - 1)));
+			if (isBulkAccessible(page, memoryWriteHandlers[page])) {
+				int index = (address & pageMasks[page]) + pageOffsets[page];
+				pageStorage[page].write(index, src, offset, count);
+				markDirty(address & pageMasks[page]);
+			}
+			else {
+				for (int i = 0; i < count; i++) {
+					writeByte(address + i, src[offset + i]);
+				}
+			}
+			address += count;
+			offset += count;
+			length -= count;
+		}
 	}
 
 	/**
@@ -126,7 +878,16 @@ public abstract class AbstractCpuContext implements CpuContext, Serializable {
 	 */
 	public void writeByte(int address, int value) {
 		value &= 0xff;
-		memoryWriteHandlers[address].write(address, value);
+		int page = address >> PAGE_SHIFT;
+		address &= pageMasks[page];
+		MemoryWriteHandler handler = memoryWriteHandlers[page];
+		if (handler == null) {
+			pageStorage[page].write(address + pageOffsets[page], value);
+			markDirty(address);
+		}
+		else {
+			handler.write(address, value);
+		}
 	}
 
 	/**
@@ -140,9 +901,38 @@ public abstract class AbstractCpuContext implements CpuContext, Serializable {
 	 * @see #writeByte(int, int)
 	 */
 	public void writeWord(int address, int value) {
-		memoryWriteHandlers[address].write(address, value & 0xff);
-		address++;
-		memoryWriteHandlers[address].write(address, (value >> 8) & 0xff);
+		writeByte(address, value);
+		writeByte(address + 1, value >> 8);
+	}
+
+	/**
+	 * The write handler installed on a watched page.  It performs the
+	 * write, then stops watching the page and every page sharing its
+	 * bytes, and notifies listeners.
+	 */
+	private final class PageWatcher implements MemoryWriteHandler, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int page;
+
+		private PageWatcher(int page) {
+			this.page = page;
+		}
+
+		public void write(int address, int b) {
+			pageStorage[page].write(address + pageOffsets[page], b);
+			markDirty(address);
+			for (int other = 0; other < memoryWriteHandlers.length; other++) {
+				if (memoryWriteHandlers[other] instanceof PageWatcher && aliases(page, other)) {
+					memoryWriteHandlers[other] = null;
+					for (MemoryMapListener listener : memoryMapListeners) {
+						listener.watchedPageWritten(other << PAGE_SHIFT, (other + 1) << PAGE_SHIFT);
+					}
+				}
+			}
+		}
+
 	}
 
 }
\ No newline at end of file
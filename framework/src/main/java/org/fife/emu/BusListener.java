@@ -0,0 +1,24 @@
+package org.fife.emu;
+
+
+/**
+ * Notified before each bus access a CPU makes, when it is built to tick
+ * its clock per access rather than per instruction.  This lets devices
+ * catch up to the exact cycle a register is read or written on, rather
+ * than to the start of the instruction doing it.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public interface BusListener {
+
+	/**
+	 * Called just before the CPU reads or writes an address.
+	 *
+	 * @param address The address being accessed.
+	 * @param cycle The cycle the access happens on, on the same clock as
+	 *        the CPU's cycle count.
+	 */
+	void beforeAccess(int address, int cycle);
+
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package org.fife.emu;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+
+/**
+ * Memory storage backed by a <code>byte</code> array on the Java heap.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see DirectMemoryStorage
+ */
+public final class ByteArrayMemoryStorage implements MemoryStorage {
+
+	private static final long serialVersionUID = 1L;
+
+	private final byte[] data;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size The size of this storage, in bytes.
+	 */
+	public ByteArrayMemoryStorage(int size) {
+		data = new byte[size];
+	}
+
+	/**
+	 * Constructor.  The array is used as-is, not copied, so that storage
+	 * such as a ROM image can be shared.
+	 *
+	 * @param data The array backing this storage.
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP2", justification = "Array is shared intentionally")
+	public ByteArrayMemoryStorage(byte[] data) {
+		this.data = data;
+	}
+
+	@Override
+	public void copy(int index, MemoryStorage dest, int destIndex, int length) {
+		// System.arraycopy() handles overlap when dest is this storage
+		dest.write(destIndex, data, index, length);
+	}
+
+	/**
+	 * Returns the array backing this storage.
+	 *
+	 * @return The backing array.
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Memory array returned for performance reasons")
+	public byte[] getArray() {
+		return data;
+	}
+
+	@Override
+	public int read(int index) {
+		return data[index] & 0xff;
+	}
+
+	@Override
+	public void read(int index, byte[] dest, int offset, int length) {
+		System.arraycopy(data, index, dest, offset, length);
+	}
+
+	@Override
+	public int size() {
+		return data.length;
+	}
+
+	@Override
+	public void write(int index, int b) {
+		data[index] = (byte)b;
+	}
+
+	@Override
+	public void write(int index, byte[] src, int offset, int length) {
+		System.arraycopy(src, offset, data, index, length);
+	}
+
+}
\ No newline at end of file
@@ -12,6 +12,16 @@ import org.fife.emu.cpu.*;
  */
 public interface CpuContext {
 
+	/**
+	 * Adds a listener to be notified when the memory map changes or a
+	 * watched page is written to.
+	 *
+	 * @param listener The listener to add.
+	 * @see #removeMemoryMapListener(MemoryMapListener)
+	 * @see #watchForWrites(int)
+	 */
+	void addMemoryMapListener(MemoryMapListener listener);
+
 	/**
 	 * Returns the CPU.
 	 *
@@ -22,19 +32,81 @@ public interface CpuContext {
 	/**
 	 * Returns the main memory for this CPU context.
 	 *
-	 * @return Main memory.  This is an array of bytes.
+	 * @return Main memory.
+	 */
+	MemoryStorage getMemory();
+
+	/**
+	 * Returns whether reading an address again, right after reading it,
+	 * returns the same value and has no further side effects, until the
+	 * CPU next returns from running a slice of cycles.  This is true for
+	 * plain memory and ROM, since only the CPU itself can change them.
+	 *
+	 * @param address The address.
+	 * @return Whether polling the address is stable.
+	 * @see MemoryReadHandler#isPollStable(int)
+	 */
+	boolean isPollStable(int address);
+
+	/**
+	 * Returns whether the page containing an address is ROM, i.e. reads
+	 * from it have no side effects, and nothing can write to it via any
+	 * of its mirrors.  What's read from such a page can only change when
+	 * the memory map changes.
+	 *
+	 * @param address An address in the page to check.
+	 * @return Whether the page is ROM.
+	 * @see #addMemoryMapListener(MemoryMapListener)
 	 */
-	int[] getMemory();
+	boolean isROM(int address);
 
 	/**
-	 * Loads the specified ROM into memory.  Note that this CPU
-	 * will not use a copy of this ROM; it will use the passed-in
-	 * array itself as main memory.
+	 * Loads the specified ROM into memory.  The ROM is copied into
+	 * this context's memory.
 	 *
 	 * @param rom The ROM.
 	 */
 	void loadROM(int[] rom);
 
+	/**
+	 * Copies a block of memory, as if by reading each byte via
+	 * {@link #readByte(int)} and writing it via
+	 * {@link #writeByte(int, int)}.
+	 *
+	 * @param srcAddress The address to copy from.
+	 * @param destAddress The address to copy to.
+	 * @param length The number of bytes to copy.
+	 * @see #readBlock(int, byte[], int, int)
+	 * @see #writeBlock(int, byte[], int, int)
+	 */
+	void copyBlock(int srcAddress, int destAddress, int length);
+
+	/**
+	 * Reads a block of memory.  This is equivalent to calling
+	 * {@link #readByte(int)} for each address, but may be much faster.
+	 *
+	 * @param address The address to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @see #readBlockSafely(int, byte[], int, int)
+	 * @see #writeBlock(int, byte[], int, int)
+	 */
+	void readBlock(int address, byte[] dest, int offset, int length);
+
+	/**
+	 * Reads a block of memory without any side effects.  This is
+	 * equivalent to calling {@link #readByteSafely(int)} for each
+	 * address, but may be much faster.
+	 *
+	 * @param address The address to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @see #readBlock(int, byte[], int, int)
+	 */
+	void readBlockSafely(int address, byte[] dest, int offset, int length);
+
 	/**
 	 * Returns a byte from memory.
 	 *
@@ -44,6 +116,16 @@ public interface CpuContext {
 	 */
 	int readByte(int address);
 
+	/**
+	 * Returns a byte from memory without any side effects, as
+	 * opposed to {@link #readByte(int)}, which may e.g. clear a latch
+	 * when reading a memory-mapped port.  This is meant for debuggers,
+	 * tracers and disassemblers.
+	 *
+	 * @param address The address from which to read.
+	 * @return The byte at the specified address in memory.
+	 * @see #readByte(int)
+	 */
 	int readByteSafely(int address);
 
 	/**
@@ -55,6 +137,32 @@ public interface CpuContext {
 	 */
 	int readWord(int address);
 
+	/**
+	 * Removes a memory map listener.
+	 *
+	 * @param listener The listener to remove.
+	 * @see #addMemoryMapListener(MemoryMapListener)
+	 */
+	void removeMemoryMapListener(MemoryMapListener listener);
+
+	/**
+	 * Asks that memory map listeners be notified the next time the page
+	 * containing an address is written to, via any of its mirrors.  This
+	 * lets a CPU cache decoded instructions for a page, and drop them
+	 * if the code is modified.  The watch only fires once; call this
+	 * method again to keep watching the page.<p>
+	 *
+	 * Pages whose reads may have side effects or whose contents can't be
+	 * tracked, such as I/O pages, can't be watched.  Nothing read from
+	 * such pages should be cached.
+	 *
+	 * @param address An address in the page to watch.
+	 * @return Whether the page is now being watched.  This is always
+	 *         <code>true</code> for ROM.
+	 * @see #addMemoryMapListener(MemoryMapListener)
+	 */
+	boolean watchForWrites(int address);
+
 	/**
 	 * Writes the specified byte at the specified address.
 	 *
@@ -65,6 +173,19 @@ public interface CpuContext {
 	 */
 	void writeByte(int address, int value);
 
+	/**
+	 * Writes a block of memory.  This is equivalent to calling
+	 * {@link #writeByte(int, int)} for each address, but may be much
+	 * faster.
+	 *
+	 * @param address The address to start writing to.
+	 * @param src The bytes to write.
+	 * @param offset The offset into <code>src</code> to start at.
+	 * @param length The number of bytes to write.
+	 * @see #readBlock(int, byte[], int, int)
+	 */
+	void writeBlock(int address, byte[] src, int offset, int length);
+
 	/**
 	 * Writes a word to memory.
 	 *
@@ -31,7 +31,18 @@ public class DefaultMemoryReadHandler implements MemoryReadHandler {
 	 * @return The byte read.
 	 */
 	public int read(int address) {
-		return context.memory[address];
+		return context.memory.read(address);
+	}
+
+	/**
+	 * Returns the byte at the specified address.  This is the same as
+	 * {@link #read(int)} as plain memory has no side effects.
+	 *
+	 * @param address The address to read from.
+	 * @return The byte at that address.
+	 */
+	public int peek(int address) {
+		return context.memory.read(address);
 	}
 
 }
\ No newline at end of file
@@ -32,7 +32,7 @@ public class DefaultMemoryWriteHandler implements MemoryWriteHandler {
 	 * @param b The byte to write.
 	 */
 	public void write(int address, int b) {
-		context.memory[address] = b;
+		context.memory.write(address, b);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.fife.emu;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Memory storage backed by a direct (off-heap) <code>ByteBuffer</code>.
+ * This keeps emulated memory out of the Java heap, which helps when many
+ * contexts are alive at once.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see ByteArrayMemoryStorage
+ */
+public final class DirectMemoryStorage implements MemoryStorage {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient ByteBuffer buffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size The size of this storage, in bytes.
+	 */
+	public DirectMemoryStorage(int size) {
+		buffer = ByteBuffer.allocateDirect(size);
+	}
+
+	/**
+	 * Constructor.  The buffer's content is used as-is, not copied, so
+	 * that storage such as a ROM image can be shared.
+	 *
+	 * @param buffer The buffer.  Its remaining bytes back this storage.
+	 */
+	public DirectMemoryStorage(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
+
+	@Override
+	public void copy(int index, MemoryStorage dest, int destIndex, int length) {
+		if (dest instanceof ByteArrayMemoryStorage) {
+			read(index, ((ByteArrayMemoryStorage)dest).getArray(), destIndex, length);
+		}
+		else if (dest instanceof DirectMemoryStorage &&
+				(dest != this || destIndex >= index + length || index >= destIndex + length)) {
+			ByteBuffer src = buffer.duplicate();
+			src.limit(index + length);
+			src.position(index);
+			ByteBuffer target = ((DirectMemoryStorage)dest).buffer.duplicate();
+			target.position(destIndex);
+			target.put(src);
+		}
+		else {
+			MemoryStorage.super.copy(index, dest, destIndex, length);
+		}
+	}
+
+	/**
+	 * Returns read-only storage backed by a memory-mapped file.  This is
+	 * useful for ROM images shared by many contexts.
+	 *
+	 * @param file The file to map.
+	 * @return The storage.
+	 * @throws IOException If an I/O error occurs.
+	 * @see AbstractCpuContext#mapROM(int, int, MemoryStorage, int)
+	 */
+	public static DirectMemoryStorage map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new DirectMemoryStorage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	@Override
+	public int read(int index) {
+		return buffer.get(index) & 0xff;
+	}
+
+	@Override
+	public void read(int index, byte[] dest, int offset, int length) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(index);
+		dup.get(dest, offset, length);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		byte[] data = (byte[])in.readObject();
+		buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data);
+	}
+
+	@Override
+	public int size() {
+		return buffer.capacity();
+	}
+
+	@Override
+	public void write(int index, int b) {
+		buffer.put(index, (byte)b);
+	}
+
+	@Override
+	public void write(int index, byte[] src, int offset, int length) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(index);
+		dup.put(src, offset, length);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		byte[] data = new byte[buffer.capacity()];
+		ByteBuffer dup = buffer.duplicate();
+		dup.clear();
+		dup.get(data);
+		out.writeObject(data);
+	}
+
+}
\ No newline at end of file
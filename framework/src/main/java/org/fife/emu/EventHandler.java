@@ -0,0 +1,25 @@
+package org.fife.emu;
+
+
+/**
+ * Handles an event fired by an {@link EventScheduler}, e.g. a timer
+ * expiring or a device asserting an interrupt.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public interface EventHandler {
+
+	/**
+	 * Called when an event's time is reached.  The event is no longer
+	 * scheduled, so this may reschedule it.
+	 *
+	 * @param event The event, as returned by
+	 *        {@link EventScheduler#addEvent(EventHandler)}.
+	 * @param time The time the event was scheduled for.  This may be a
+	 *        little before the current time, since the CPU finishes the
+	 *        instruction it is running before events fire.
+	 */
+	void handleEvent(int event, int time);
+
+}
\ No newline at end of file
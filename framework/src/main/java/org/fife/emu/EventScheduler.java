@@ -0,0 +1,250 @@
+package org.fife.emu;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Keeps the times that devices in a machine next need attention, such as
+ * a timer expiring or an interrupt being asserted, so the CPU can run
+ * uninterrupted until the earliest of them instead of in many small
+ * slices.<p>
+ *
+ * Each event is added once, up front, and can then be scheduled,
+ * rescheduled and cancelled any number of times.  An event is scheduled
+ * for at most one time at once.  Times are in CPU cycles, on the same
+ * clock as the CPU's cycle count, and are shifted by {@link #rebase(int)}
+ * whenever that count is.  The events are kept in a binary min-heap of
+ * primitive arrays, so scheduling never allocates.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see EventHandler
+ */
+public final class EventScheduler {
+
+	/**
+	 * The time returned when no event is scheduled.
+	 */
+	public static final int NO_EVENT = Integer.MAX_VALUE;
+
+	private EventHandler[] handlers;
+	private int eventCount;
+
+	/**
+	 * The time each event is scheduled for, by event.
+	 */
+	private int[] times;
+
+	/**
+	 * The index of each event in {@link #heap}, or <code>-1</code> if it
+	 * isn't scheduled.
+	 */
+	private int[] positions;
+
+	/**
+	 * The scheduled events, ordered by time (then by event, so events
+	 * scheduled for the same time fire in a fixed order).
+	 */
+	private int[] heap;
+	private int size;
+
+	private IntConsumer nextEventListener;
+
+	/**
+	 * Constructor.
+	 */
+	public EventScheduler() {
+		handlers = new EventHandler[8];
+		times = new int[8];
+		positions = new int[8];
+		heap = new int[8];
+	}
+
+	/**
+	 * Adds an event.  It isn't scheduled until
+	 * {@link #schedule(int, int)} is called.
+	 *
+	 * @param handler Handles the event when it fires.
+	 * @return The event, to pass to the other methods of this class.
+	 */
+	public int addEvent(EventHandler handler) {
+		if (eventCount == handlers.length) {
+			int length = eventCount * 2;
+			handlers = Arrays.copyOf(handlers, length);
+			times = Arrays.copyOf(times, length);
+			positions = Arrays.copyOf(positions, length);
+			heap = Arrays.copyOf(heap, length);
+		}
+		handlers[eventCount] = handler;
+		positions[eventCount] = -1;
+		return eventCount++;
+	}
+
+	/**
+	 * Cancels an event.  This does nothing if it isn't scheduled.
+	 *
+	 * @param event The event.
+	 * @see #schedule(int, int)
+	 */
+	public void cancel(int event) {
+		int index = positions[event];
+		if (index > -1) {
+			positions[event] = -1;
+			int last = heap[--size];
+			if (index < size) {
+				heap[index] = last;
+				positions[last] = index;
+				siftDown(index);
+				siftUp(positions[last]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the time of the earliest scheduled event.
+	 *
+	 * @return The time, or {@link #NO_EVENT} if no event is scheduled.
+	 */
+	public int getNextEventTime() {
+		return size > 0 ? times[heap[0]] : NO_EVENT;
+	}
+
+	/**
+	 * Returns the time an event is scheduled for.
+	 *
+	 * @param event The event.
+	 * @return The time, or {@link #NO_EVENT} if it isn't scheduled.
+	 * @see #isScheduled(int)
+	 */
+	public int getTime(int event) {
+		return positions[event] > -1 ? times[event] : NO_EVENT;
+	}
+
+	/**
+	 * Returns whether an event is scheduled.
+	 *
+	 * @param event The event.
+	 * @return Whether the event is scheduled.
+	 * @see #getTime(int)
+	 */
+	public boolean isScheduled(int event) {
+		return positions[event] > -1;
+	}
+
+	/**
+	 * Returns whether the event at one heap index should fire before the
+	 * event at another.
+	 */
+	private boolean isBefore(int index1, int index2) {
+		int event1 = heap[index1];
+		int event2 = heap[index2];
+		int time1 = times[event1];
+		int time2 = times[event2];
+		return time1 < time2 || (time1 == time2 && event1 < event2);
+	}
+
+	/**
+	 * Shifts all scheduled events back in time, when the CPU's cycle count
+	 * is reduced to keep it from overflowing.  Their order is unchanged.
+	 *
+	 * @param delta The number of cycles to shift events back by.
+	 */
+	public void rebase(int delta) {
+		for (int i = 0; i < size; i++) {
+			times[heap[i]] -= delta;
+		}
+	}
+
+	/**
+	 * Fires all events scheduled for a time up to and including
+	 * <code>now</code>, earliest first.  Events that handlers schedule
+	 * for a time up to <code>now</code> fire too.
+	 *
+	 * @param now The current time.
+	 * @return The number of events fired.
+	 */
+	public int runEvents(int now) {
+		int count = 0;
+		while (size > 0 && times[heap[0]] <= now) {
+			int event = heap[0];
+			cancel(event);
+			handlers[event].handleEvent(event, times[event]);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Schedules an event, replacing any time it was already scheduled
+	 * for.
+	 *
+	 * @param event The event.
+	 * @param time The time to fire the event at.
+	 * @see #cancel(int)
+	 */
+	public void schedule(int event, int time) {
+		int index = positions[event];
+		times[event] = time;
+		if (index < 0) {
+			index = size++;
+			heap[index] = event;
+			positions[event] = index;
+		}
+		siftUp(index);
+		siftDown(positions[event]);
+		if (heap[0] == event && nextEventListener != null) {
+			nextEventListener.accept(time);
+		}
+	}
+
+	/**
+	 * Sets the listener notified when an event is scheduled before all
+	 * other events.  A CPU uses this to end the slice it is running early
+	 * when a device schedules something to happen during it.
+	 *
+	 * @param listener The listener, which is passed the event's time, or
+	 *        <code>null</code> for none.
+	 */
+	public void setNextEventListener(IntConsumer listener) {
+		nextEventListener = listener;
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(child + 1, child)) {
+				child++;
+			}
+			if (!isBefore(child, index)) {
+				break;
+			}
+			swap(index, child);
+			index = child;
+		}
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!isBefore(index, parent)) {
+				break;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void swap(int index1, int index2) {
+		int event1 = heap[index1];
+		int event2 = heap[index2];
+		heap[index1] = event2;
+		heap[index2] = event1;
+		positions[event2] = index1;
+		positions[event1] = index2;
+	}
+
+}
\ No newline at end of file
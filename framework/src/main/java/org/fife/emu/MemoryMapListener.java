@@ -0,0 +1,38 @@
+package org.fife.emu;
+
+import java.util.EventListener;
+
+
+/**
+ * Listens for changes to what a <code>CpuContext</code>'s address space
+ * contains.  This lets CPUs cache things derived from memory, such as
+ * decoded instructions, and know when to throw them away.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see CpuContext#addMemoryMapListener(MemoryMapListener)
+ * @see CpuContext#watchForWrites(int)
+ */
+public interface MemoryMapListener extends EventListener {
+
+	/**
+	 * Called when a range of addresses is remapped, e.g. to a different
+	 * ROM bank or to an I/O handler.  Anything cached for the range
+	 * should be discarded.
+	 *
+	 * @param start The starting address, inclusive.
+	 * @param end The ending address, exclusive.
+	 */
+	void memoryMapChanged(int start, int end);
+
+	/**
+	 * Called when a page being watched for writes is written to.  The
+	 * page is no longer watched after this call.
+	 *
+	 * @param start The starting address of the page, inclusive.
+	 * @param end The ending address of the page, exclusive.
+	 * @see CpuContext#watchForWrites(int)
+	 */
+	void watchedPageWritten(int start, int end);
+
+}
\ No newline at end of file
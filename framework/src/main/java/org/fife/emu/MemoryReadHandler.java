@@ -2,7 +2,10 @@ package org.fife.emu;
 
 
 /**
- * Handles a read from a <code>CpuContext</code>'s memory.
+ * Handles a read from a <code>CpuContext</code>'s memory.  Reads come in
+ * two flavors: {@link #read(int)}, done on behalf of the emulated CPU,
+ * and {@link #peek(int)}, done by debuggers, tracers and the like, which
+ * must not have any side effects.
  *
  * @author Robert Futrell
  * @version 1.0
@@ -18,4 +21,31 @@ public interface MemoryReadHandler {
 	 */
 	int read(int address);
 
+	/**
+	 * Returns the byte at the specified address without any side
+	 * effects.  For example, an I/O port that clears a latch when read
+	 * should not do so here.
+	 *
+	 * @param address The address to read from.
+	 * @return The byte at that address.
+	 * @see #read(int)
+	 */
+	int peek(int address);
+
+	/**
+	 * Returns whether reading an address again, right after reading it,
+	 * returns the same value and has no further side effects, until the
+	 * CPU next returns from running a slice of cycles.  CPUs use this to
+	 * skip ahead through loops that just poll the address.  Registers
+	 * whose values change over time should only return <code>true</code>
+	 * if the machine ends the CPU's time slice whenever they may change.
+	 * The default implementation returns <code>false</code>.
+	 *
+	 * @param address The address.
+	 * @return Whether polling the address is stable.
+	 */
+	default boolean isPollStable(int address) {
+		return false;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package org.fife.emu;
+
+import java.io.Serializable;
+
+
+/**
+ * The storage backing a <code>CpuContext</code>'s memory.  Each
+ * location holds an unsigned byte.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see MemoryStorageType
+ */
+public interface MemoryStorage extends Serializable {
+
+	/**
+	 * Copies a block of bytes into another storage, or elsewhere in this
+	 * one.  The blocks may overlap; bytes are copied as if through a
+	 * temporary buffer.  The default implementation copies through a
+	 * temporary buffer.
+	 *
+	 * @param index The index to start copying from.
+	 * @param dest The storage to copy into.  This may be this storage.
+	 * @param destIndex The index into <code>dest</code> to start at.
+	 * @param length The number of bytes to copy.
+	 */
+	default void copy(int index, MemoryStorage dest, int destIndex, int length) {
+		byte[] temp = new byte[length];
+		read(index, temp, 0, length);
+		dest.write(destIndex, temp, 0, length);
+	}
+
+	/**
+	 * Reads a byte.
+	 *
+	 * @param index The index to read from.
+	 * @return The byte read, in the range <code>0 - 255</code>.
+	 * @see #write(int, int)
+	 */
+	int read(int index);
+
+	/**
+	 * Reads a block of bytes.
+	 *
+	 * @param index The index to start reading from.
+	 * @param dest The array to read into.
+	 * @param offset The offset into <code>dest</code> to start at.
+	 * @param length The number of bytes to read.
+	 * @see #write(int, byte[], int, int)
+	 */
+	void read(int index, byte[] dest, int offset, int length);
+
+	/**
+	 * Returns the number of bytes in this storage.
+	 *
+	 * @return The size of this storage.
+	 */
+	int size();
+
+	/**
+	 * Writes a byte.
+	 *
+	 * @param index The index to write to.
+	 * @param b The byte to write.  Only the low 8 bits are stored.
+	 * @see #read(int)
+	 */
+	void write(int index, int b);
+
+	/**
+	 * Writes a block of bytes.
+	 *
+	 * @param index The index to start writing to.
+	 * @param src The bytes to write.
+	 * @param offset The offset into <code>src</code> to start at.
+	 * @param length The number of bytes to write.
+	 * @see #read(int, byte[], int, int)
+	 */
+	void write(int index, byte[] src, int offset, int length);
+
+}
\ No newline at end of file
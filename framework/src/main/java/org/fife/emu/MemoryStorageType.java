@@ -0,0 +1,41 @@
+package org.fife.emu;
+
+
+/**
+ * The kinds of storage available for a <code>CpuContext</code>'s memory.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see AbstractCpuContext#AbstractCpuContext(MemoryStorageType)
+ */
+public enum MemoryStorageType {
+
+	/**
+	 * A <code>byte</code> array on the Java heap.
+	 */
+	HEAP {
+		@Override
+		public MemoryStorage create(int size) {
+			return new ByteArrayMemoryStorage(size);
+		}
+	},
+
+	/**
+	 * A direct, off-heap <code>ByteBuffer</code>.
+	 */
+	DIRECT {
+		@Override
+		public MemoryStorage create(int size) {
+			return new DirectMemoryStorage(size);
+		}
+	};
+
+	/**
+	 * Creates storage of this type.
+	 *
+	 * @param size The size of the storage, in bytes.
+	 * @return The storage.
+	 */
+	public abstract MemoryStorage create(int size);
+
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package org.fife.emu;
+
+import java.io.Serializable;
+
+
+/**
+ * A memory write handler for ROM.  Writes are silently ignored, just as
+ * they are by real ROM chips.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see AbstractCpuContext#mapROM(int, int, MemoryStorage, int)
+ */
+public final class ReadOnlyMemoryWriteHandler implements MemoryWriteHandler, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The singleton instance of this class.
+	 */
+	public static final ReadOnlyMemoryWriteHandler INSTANCE = new ReadOnlyMemoryWriteHandler();
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private ReadOnlyMemoryWriteHandler() {
+	}
+
+	private Object readResolve() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Ignores a write to ROM.
+	 *
+	 * @param address The address written to.
+	 * @param b The byte written.
+	 */
+	public void write(int address, int b) {
+		// Do nothing
+	}
+
+}
\ No newline at end of file
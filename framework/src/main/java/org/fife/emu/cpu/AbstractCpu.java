@@ -25,6 +25,15 @@ public abstract class AbstractCpu implements Cpu, Serializable {
 	 */
 	protected int cycles;
 
+	/**
+	 * The number of cycles run before {@link #cycles} was last rebased.
+	 * The CPU's position on the machine's timeline is this plus
+	 * <code>cycles</code>.
+	 *
+	 * @see #rebaseCycles()
+	 */
+	protected long cycleBase;
+
 	/**
 	 * The program counter.
 	 */
@@ -69,13 +78,15 @@ public abstract class AbstractCpu implements Cpu, Serializable {
 	 * Burns the given number of cycles.  This can be called by
 	 * other parts of the emulated system (such as the CPU context)
 	 * when an operation is performed that burns extra CPU cycles.
+	 * Burning cycles moves this CPU's clock forward, i.e. adds them to
+	 * {@link #getCycles()} and {@link #getTotalCycles()}.
 	 *
 	 * @param cycles The number of cycles to burn.
-	 * @return The number of cycles this CPU has left to execute.
+	 * @return The cycle count after burning them.
 	 * @see #getCycles()
 	 */
 	public int burnCycles(int cycles) {
-		this.cycles -= cycles;
+		this.cycles += cycles;
 		return this.cycles;
 	}
 
@@ -114,16 +125,27 @@ public abstract class AbstractCpu implements Cpu, Serializable {
 	}
 
 	/**
-	 * Returns the number of cycles left for this CPU to
-	 * run in this execution cycle.
+	 * Returns this CPU's cycle count.  This is the clock devices in the
+	 * machine synchronize to; it may be rebased between time slices.
 	 *
-	 * @return The number of cycles left to run.
+	 * @return The cycle count.
 	 * @see #burnCycles(int)
 	 */
 	public int getCycles() {
 		return cycles;
 	}
 
+	/**
+	 * Returns the total number of cycles this CPU has run.  Unlike
+	 * {@link #getCycles()}, this doesn't overflow in any realistic
+	 * session.
+	 *
+	 * @return The total number of cycles run.
+	 */
+	public long getTotalCycles() {
+		return cycleBase + cycles;
+	}
+
 	/**
 	 * Returns the program counter.
 	 *
@@ -142,6 +164,23 @@ public abstract class AbstractCpu implements Cpu, Serializable {
 		return sp;
 	}
 
+	/**
+	 * Moves the cycles run so far into {@link #cycleBase}, so that
+	 * {@link #cycles} restarts at <code>0</code> and never overflows.
+	 * Subclasses should call this between slices, e.g. once per frame,
+	 * and shift anything else measured against <code>cycles</code> by
+	 * the amount returned.
+	 *
+	 * @return The number of cycles <code>cycles</code> was reduced by.
+	 * @see #getTotalCycles()
+	 */
+	protected int rebaseCycles() {
+		int elapsed = cycles;
+		cycleBase += elapsed;
+		cycles = 0;
+		return elapsed;
+	}
+
 	/**
 	 * Removes the specified property change listener from this CPU.
 	 *
@@ -22,9 +22,11 @@ public interface Cpu extends Serializable {
 	 * Burns the given number of cycles.  This can be called by
 	 * other parts of the emulated system (such as the CPU context)
 	 * when an operation is performed that burns extra CPU cycles.
+	 * Burning cycles moves this CPU's clock forward, i.e. adds them to
+	 * {@link #getCycles()} and {@link #getTotalCycles()}.
 	 *
 	 * @param cycles The number of cycles to burn.
-	 * @return The number of cycles this CPU has left to execute.
+	 * @return The cycle count after burning them.
 	 * @see #getCycles()
 	 */
 	int burnCycles(int cycles);
@@ -66,14 +68,23 @@ public interface Cpu extends Serializable {
 	CpuContext getCpuContext();
 
 	/**
-	 * Returns the number of cycles left for this CPU to
-	 * run in this execution cycle.
+	 * Returns this CPU's cycle count.  This is the clock devices in the
+	 * machine synchronize to; it may be rebased between time slices.
 	 *
-	 * @return The number of cycles left to run.
+	 * @return The cycle count.
 	 * @see #burnCycles(int)
 	 */
 	int getCycles();
 
+	/**
+	 * Returns the total number of cycles this CPU has run.  This is
+	 * the machine's master clock; unlike {@link #getCycles()}, it doesn't
+	 * overflow in any realistic session.
+	 *
+	 * @return The total number of cycles run.
+	 */
+	long getTotalCycles();
+
 	/**
 	 * Returns the program counter.
 	 *
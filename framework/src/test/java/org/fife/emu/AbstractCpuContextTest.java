@@ -0,0 +1,484 @@
+package org.fife.emu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractCpuContextTest {
+
+    private TestCpuContext context;
+
+    @Before
+    public void setUp() {
+        context = new TestCpuContext();
+        context.loadROM(new int[0x10000]);
+    }
+
+    @Test
+    public void testReadWriteByte_plainMemory() {
+        context.writeByte(0x1234, 0x1ff);
+        Assert.assertEquals(0xff, context.readByte(0x1234));
+    }
+
+    @Test
+    public void testReadWriteWord_plainMemory() {
+        context.writeWord(0x12ff, 0xbeef);
+        Assert.assertEquals(0xef, context.readByte(0x12ff));
+        Assert.assertEquals(0xbe, context.readByte(0x1300));
+        Assert.assertEquals(0xbeef, context.readWord(0x12ff));
+    }
+
+    @Test
+    public void testMapReadHandler() {
+        context.mapReadHandler(0x2000, 0x2200, new TestReadHandler());
+        Assert.assertEquals(0x34, context.readByte(0x2134));
+        Assert.assertEquals(0, context.readByte(0x2234));
+    }
+
+    @Test
+    public void testReadByteSafely() {
+        TestReadHandler handler = new TestReadHandler();
+        context.writeByte(0x1000, 0x56);
+        context.mapReadHandler(0x2000, 0x2100, handler);
+        Assert.assertEquals(0x56, context.readByteSafely(0x1000));
+        Assert.assertEquals(0x12, context.readByteSafely(0x2012));
+        Assert.assertEquals(0, handler.readCount);
+        context.readByte(0x2012);
+        Assert.assertEquals(1, handler.readCount);
+    }
+
+    @Test
+    public void testMapWriteHandler() {
+        int[] lastWrite = new int[2];
+        context.mapWriteHandler(0x4000, 0x4100, (address, b) -> {
+            lastWrite[0] = address;
+            lastWrite[1] = b;
+        });
+        context.writeByte(0x4016, 0x101);
+        Assert.assertEquals(0x4016, lastWrite[0]);
+        Assert.assertEquals(0x01, lastWrite[1]);
+        Assert.assertEquals(0, context.readByte(0x4016));
+    }
+
+    @Test
+    public void testUnmap() {
+        context.writeByte(0x2000, 0x42);
+        context.mapReadHandler(0x2000, 0x2100, new TestReadHandler());
+        context.mapWriteHandler(0x2000, 0x2100, (address, b) -> { });
+        context.unmap(0x2000, 0x2100);
+        Assert.assertEquals(0x42, context.readByte(0x2000));
+        context.writeByte(0x2000, 0x43);
+        Assert.assertEquals(0x43, context.readByte(0x2000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapReadHandler_unalignedRange() {
+        context.mapReadHandler(0x2001, 0x2100, new TestReadHandler());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapReadHandler_rangeOutsideAddressSpace() {
+        context.mapReadHandler(0xff00, 0x10100, new TestReadHandler());
+    }
+
+    @Test
+    public void testReadBlock() {
+        TestReadHandler handler = new TestReadHandler();
+        context.writeByte(0x1ffe, 0x11);
+        context.writeByte(0x1fff, 0x22);
+        context.mapReadHandler(0x2000, 0x2100, handler);
+        byte[] block = new byte[6];
+        context.readBlock(0x1ffe, block, 1, 4);
+        Assert.assertArrayEquals(new byte[] { 0, 0x11, 0x22, 0, 1, 0 }, block);
+        Assert.assertEquals(2, handler.readCount);
+    }
+
+    @Test
+    public void testReadBlockSafely() {
+        TestReadHandler handler = new TestReadHandler();
+        context.mapReadHandler(0x2000, 0x2100, handler);
+        byte[] block = new byte[3];
+        context.readBlockSafely(0x20fe, block, 0, 3);
+        Assert.assertArrayEquals(new byte[] { (byte)0xfe, (byte)0xff, 0 }, block);
+        Assert.assertEquals(0, handler.readCount);
+    }
+
+    @Test
+    public void testWriteBlock() {
+        int[] written = new int[1];
+        context.mapWriteHandler(0x2100, 0x2200, (address, b) -> written[0] += b);
+        context.writeBlock(0x20ff, new byte[] { 1, 2, 3 }, 0, 3);
+        Assert.assertEquals(1, context.readByte(0x20ff));
+        Assert.assertEquals(5, written[0]);
+    }
+
+    @Test
+    public void testCopyBlock() {
+        for (int i = 0; i < 0x300; i++) {
+            context.writeByte(0x1000 + i, i);
+        }
+        context.copyBlock(0x1000, 0x3080, 0x300);
+        for (int i = 0; i < 0x300; i++) {
+            Assert.assertEquals(i & 0xff, context.readByte(0x3080 + i));
+        }
+    }
+
+    @Test
+    public void testCopyBlock_overlapping() {
+        for (MemoryStorageType type : MemoryStorageType.values()) {
+            TestCpuContext context = new TestCpuContext(type);
+            context.loadROM(new int[0x10000]);
+            for (int i = 0; i < 0x300; i++) {
+                context.writeByte(0x1000 + i, i * 7);
+            }
+            context.copyBlock(0x1000, 0x1081, 0x300); // Forward overlap
+            for (int i = 0; i < 0x300; i++) {
+                Assert.assertEquals(i * 7 & 0xff, context.readByte(0x1081 + i));
+            }
+            context.copyBlock(0x1081, 0x0ff3, 0x300); // Backward overlap
+            for (int i = 0; i < 0x300; i++) {
+                Assert.assertEquals(i * 7 & 0xff, context.readByte(0x0ff3 + i));
+            }
+        }
+    }
+
+    @Test
+    public void testCopyBlock_overlappingThroughMirror() {
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        for (int i = 0; i < 0x200; i++) {
+            context.writeByte(i, i);
+        }
+        // 0x0810 is 0x0010, so the blocks overlap in storage only
+        context.copyBlock(0x0000, 0x0810, 0x200);
+        for (int i = 0; i < 0x200; i++) {
+            Assert.assertEquals(i & 0xff, context.readByte(0x0010 + i));
+        }
+    }
+
+    @Test
+    public void testCopyBlock_romAndIO() {
+        byte[] data = new byte[0x200];
+        data[0x1ff] = 0x12;
+        context.mapROM(0x8000, 0x8200, new ByteArrayMemoryStorage(data), 0);
+        TestReadHandler handler = new TestReadHandler();
+        context.mapReadHandler(0x2000, 0x2100, handler);
+        List<Integer> writes = new ArrayList<>();
+        context.mapWriteHandler(0x4000, 0x4100, (address, b) -> writes.add(b));
+        context.setDirtyPageTracking(true);
+
+        context.copyBlock(0x81ff, 0x30ff, 2);
+        Assert.assertEquals(0x12, context.readByte(0x30ff));
+        context.copyBlock(0x20fe, 0x40ff, 3);
+        Assert.assertEquals(2, handler.readCount);
+        Assert.assertEquals(Collections.singletonList(0xfe), writes);
+        Assert.assertEquals(0xff, context.readByte(0x4100));
+        Assert.assertEquals(0x00, context.readByte(0x4101));
+
+        long[] dirty = new long[context.getDirtyPageBitmapLength()];
+        context.getAndClearDirtyPages(dirty);
+        Assert.assertArrayEquals(new long[] { 3L << 48, 2L, 0, 0 }, dirty);
+    }
+
+    @Test
+    public void testMapMirror_ram() {
+        context.mapMirror(0x0000, 0x2000, 0x07ff);
+        context.writeByte(0x0801, 0x12);
+        Assert.assertEquals(0x12, context.readByte(0x0001));
+        Assert.assertEquals(0x12, context.readByte(0x1801));
+        context.writeByte(0x1fff, 0x34);
+        Assert.assertEquals(0x34, context.readByte(0x07ff));
+        byte[] block = new byte[2];
+        context.readBlock(0x0fff, block, 0, 2);
+        Assert.assertArrayEquals(new byte[] { 0x34, 0 }, block);
+    }
+
+    @Test
+    public void testMapMirror_subPageIO() {
+        int[] lastWrite = new int[1];
+        context.mapReadHandler(0x2000, 0x2100, new TestReadHandler());
+        context.mapWriteHandler(0x2000, 0x2100, (address, b) -> lastWrite[0] = address);
+        context.mapMirror(0x2000, 0x2000, 0x2007);
+        Assert.assertEquals(0x02, context.readByte(0x3ffa));
+        Assert.assertEquals(0x07, context.readByteSafely(0x200f));
+        context.writeByte(0x2345, 0);
+        Assert.assertEquals(0x2005, lastWrite[0]);
+    }
+
+    @Test
+    public void testMapMirror_unmap() {
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        context.unmap(0x0800, 0x1000);
+        context.writeByte(0x0801, 0x12);
+        Assert.assertEquals(0, context.readByte(0x0001));
+    }
+
+    @Test
+    public void testDirtyPageTracking() {
+        long[] dirty = new long[context.getDirtyPageBitmapLength()];
+        Assert.assertEquals(4, dirty.length);
+        context.setDirtyPageTracking(true);
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        context.writeByte(0x0901, 1);
+        context.writeWord(0x41ff, 2);
+        context.writeBlock(0xfffe, new byte[2], 0, 2);
+        context.getAndClearDirtyPages(dirty);
+        Assert.assertArrayEquals(new long[] { 0x2L, 0x6L, 0, 1L << 63 }, dirty);
+        context.getAndClearDirtyPages(dirty);
+        Assert.assertArrayEquals(new long[4], dirty);
+    }
+
+    @Test
+    public void testDirtyPageTracking_onlyStorageWrites() {
+        long[] dirty = new long[context.getDirtyPageBitmapLength()];
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(0x100), 0);
+        context.mapWriteHandler(0x4000, 0x4100, (address, b) -> { });
+        Assert.assertTrue(context.watchForWrites(0x0300));
+        context.setDirtyPageTracking(true);
+        context.writeByte(0x8000, 1);
+        context.writeByte(0x4000, 1);
+        context.writeBlock(0x40ff, new byte[2], 0, 2);
+        context.writeByte(0x0300, 1);
+        context.getAndClearDirtyPages(dirty);
+        Assert.assertArrayEquals(new long[] { 1L << 3, 1L << 1, 0, 0 }, dirty);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetAndClearDirtyPages_trackingDisabled() {
+        context.getAndClearDirtyPages(new long[4]);
+    }
+
+    @Test
+    public void testDirectStorage() {
+        TestCpuContext direct = new TestCpuContext(MemoryStorageType.DIRECT);
+        direct.loadROM(new int[] { 1, 2, 0xff, 4 });
+        Assert.assertEquals(4, direct.getMemory().size());
+        Assert.assertEquals(0xff, direct.readByte(2));
+        direct.writeByte(3, 0x80);
+        Assert.assertEquals(0x80, direct.readByte(3));
+        direct.writeBlock(0, new byte[] { 5, 6 }, 0, 2);
+        byte[] block = new byte[4];
+        direct.readBlock(0, block, 0, 4);
+        Assert.assertArrayEquals(new byte[] { 5, 6, (byte)0xff, (byte)0x80 }, block);
+    }
+
+    @Test
+    public void testMapROM_sharedBetweenContexts() {
+        ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(0x8000);
+        rom.write(0x4000, 0x12);
+        TestCpuContext context2 = new TestCpuContext();
+        context2.loadROM(new int[0x10000]);
+        context.mapROM(0x8000, 0x10000, rom, 0);
+        context2.mapROM(0xc000, 0x10000, rom, 0x4000);
+        Assert.assertEquals(0x12, context.readByte(0xc000));
+        Assert.assertEquals(0x12, context2.readByte(0xc000));
+    }
+
+    @Test
+    public void testMapROM_writesIgnored() {
+        byte[] data = new byte[0x100];
+        data[0] = 0x12;
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(data), 0);
+        context.writeByte(0x8000, 0x34);
+        Assert.assertEquals(0x12, context.readByte(0x8000));
+        Assert.assertEquals(0x12, data[0]);
+        Assert.assertEquals(0, context.getMemory().read(0x8000));
+    }
+
+    @Test
+    public void testMapROM_unmap() {
+        context.writeByte(0x8000, 0x34);
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(0x100), 0);
+        context.unmap(0x8000, 0x8100);
+        Assert.assertEquals(0x34, context.readByte(0x8000));
+    }
+
+    @Test
+    public void testMapROM_registers() {
+        byte[] data = new byte[0x200];
+        data[0x100] = 0x12;
+        ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(data);
+        List<Integer> writes = new ArrayList<>();
+        MemoryWriteHandler registers = (address, b) -> {
+            writes.add(address);
+            context.mapROM(0x8000, 0x8100, rom, b << 8, (a, v) -> { });
+        };
+        context.mapROM(0x8000, 0x8100, rom, 0, registers);
+        Assert.assertTrue(context.isROM(0x8000));
+        context.writeByte(0x8080, 1);
+        Assert.assertEquals(Collections.singletonList(0x8080), writes);
+        Assert.assertEquals(0x12, context.readByte(0x8000));
+        Assert.assertTrue(context.isROM(0x8000));
+        Assert.assertTrue(context.watchForWrites(0x8000));
+        Assert.assertEquals(0, data[0]);
+    }
+
+    @Test
+    public void testMapROM_mapWriteHandlerNull() {
+        byte[] data = new byte[0x200];
+        data[0x101] = 0x12;
+        ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(data);
+        context.mapROM(0x8000, 0x8100, rom, 0x100);
+        context.mapROM(0x9000, 0x9100, rom, 0x100);
+        context.mapWriteHandler(0x8000, 0x8100, null);
+        Assert.assertFalse(context.isROM(0x8000));
+        context.writeByte(0x8001, 0x34);
+        Assert.assertEquals(0x34, context.readByte(0x8001));
+        // The shared ROM image, and other pages mapping it, are untouched
+        Assert.assertEquals(0x12, data[0x101]);
+        Assert.assertEquals(0x12, context.readByte(0x9001));
+    }
+
+    @Test
+    public void testMapROM_mapReadHandler() {
+        byte[] data = new byte[0x100];
+        ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(data);
+        context.mapROM(0x8000, 0x8100, rom, 0, (address, b) -> { });
+        context.mapReadHandler(0x8000, 0x8100, new TestReadHandler());
+        Assert.assertFalse(context.isROM(0x8000));
+        Assert.assertEquals(0x01, context.readByte(0x8001));
+        context.mapReadHandler(0x8000, 0x8100, null);
+        Assert.assertEquals(0, context.readByte(0x8001));
+        context.mapWriteHandler(0x8000, 0x8100, null);
+        context.writeByte(0x8001, 0x34);
+        Assert.assertEquals(0x34, context.readByte(0x8001));
+        Assert.assertEquals(0, data[1]);
+    }
+
+    @Test
+    public void testMapMirror_mapWriteHandlerNull() {
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        context.mapWriteHandler(0x0800, 0x0900, null);
+        context.writeByte(0x0801, 0x12);
+        Assert.assertEquals(0x12, context.readByte(0x0801));
+        Assert.assertEquals(0, context.readByte(0x0001));
+        // The rest of the mirror still mirrors
+        context.writeByte(0x0902, 0x34);
+        Assert.assertEquals(0x34, context.readByte(0x0102));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMapROM_romTooSmall() {
+        context.mapROM(0x8000, 0x8200, new ByteArrayMemoryStorage(0x100), 0);
+    }
+
+    @Test
+    public void testWatchForWrites_mirror() {
+        TestMemoryMapListener listener = new TestMemoryMapListener();
+        context.addMemoryMapListener(listener);
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        Assert.assertTrue(context.watchForWrites(0x0100));
+        context.writeByte(0x0234, 1);
+        Assert.assertEquals(0, listener.writtenCount);
+        context.writeByte(0x0901, 0x12);
+        Assert.assertEquals(0x12, context.readByte(0x0101));
+        Assert.assertEquals(2, listener.writtenCount);
+        context.writeByte(0x0102, 1);
+        Assert.assertEquals(2, listener.writtenCount);
+    }
+
+    @Test
+    public void testWatchForWrites_ioAndROM() {
+        context.mapReadHandler(0x2000, 0x2100, new TestReadHandler());
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(0x100), 0);
+        Assert.assertFalse(context.watchForWrites(0x2000));
+        Assert.assertTrue(context.watchForWrites(0x8000));
+    }
+
+    @Test
+    public void testWatchForWrites_remapCancelsWatch() {
+        TestMemoryMapListener listener = new TestMemoryMapListener();
+        context.addMemoryMapListener(listener);
+        Assert.assertTrue(context.watchForWrites(0x0300));
+        context.mapMirror(0x0800, 0x0800, 0x07ff);
+        Assert.assertEquals(2, listener.mapChangedCount);
+        context.writeByte(0x0300, 1);
+        Assert.assertEquals(0, listener.writtenCount);
+        context.removeMemoryMapListener(listener);
+        context.unmap(0x0800, 0x1000);
+        Assert.assertEquals(2, listener.mapChangedCount);
+    }
+
+    @Test
+    public void testIsROM() {
+        context.mapReadHandler(0x2000, 0x2100, new TestReadHandler());
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(0x100), 0);
+        context.mapROM(0x9000, 0x9100, context.getMemory(), 0x0000);
+        Assert.assertFalse(context.isROM(0x0000));
+        Assert.assertFalse(context.isROM(0x2000));
+        Assert.assertTrue(context.isROM(0x80ff));
+        Assert.assertFalse(context.isROM(0x9000)); // Shares its bytes with RAM at 0x0000
+        context.unmap(0x8000, 0x8100);
+        Assert.assertFalse(context.isROM(0x8000));
+    }
+
+    @Test
+    public void testIsPollStable() {
+        context.mapReadHandler(0x2000, 0x2100, new TestReadHandler());
+        context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(0x100), 0);
+        Assert.assertTrue(context.isPollStable(0x0000));
+        Assert.assertTrue(context.isPollStable(0x8000));
+        Assert.assertFalse(context.isPollStable(0x2000));
+    }
+
+    /**
+     * A minimal concrete CPU context.
+     */
+    private static class TestCpuContext extends AbstractCpuContext {
+
+        TestCpuContext() {
+        }
+
+        TestCpuContext(MemoryStorageType storageType) {
+            super(storageType);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+    }
+
+    /**
+     * A read handler that returns the low byte of the address, and counts
+     * the (non-peek) reads done.
+     */
+    private static class TestReadHandler implements MemoryReadHandler {
+
+        private int readCount;
+
+        @Override
+        public int read(int address) {
+            readCount++;
+            return address & 0xff;
+        }
+
+        @Override
+        public int peek(int address) {
+            return address & 0xff;
+        }
+    }
+
+    /**
+     * Counts the notifications it receives.
+     */
+    private static class TestMemoryMapListener implements MemoryMapListener {
+
+        private int mapChangedCount;
+        private int writtenCount;
+
+        @Override
+        public void memoryMapChanged(int start, int end) {
+            mapChangedCount++;
+        }
+
+        @Override
+        public void watchedPageWritten(int start, int end) {
+            writtenCount++;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package org.fife.emu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventSchedulerTest {
+
+    private EventScheduler scheduler;
+    private List<Integer> fired;
+
+    @Before
+    public void setUp() {
+        scheduler = new EventScheduler();
+        fired = new ArrayList<>();
+    }
+
+    private int addEvent() {
+        return scheduler.addEvent((event, time) -> fired.add(event));
+    }
+
+    @Test
+    public void testNoEvents() {
+        Assert.assertEquals(EventScheduler.NO_EVENT, scheduler.getNextEventTime());
+        Assert.assertEquals(0, scheduler.runEvents(1000));
+        int event = addEvent();
+        Assert.assertFalse(scheduler.isScheduled(event));
+        Assert.assertEquals(EventScheduler.NO_EVENT, scheduler.getTime(event));
+    }
+
+    @Test
+    public void testRunEventsInOrder() {
+        int e1 = addEvent();
+        int e2 = addEvent();
+        int e3 = addEvent();
+        scheduler.schedule(e1, 300);
+        scheduler.schedule(e2, 100);
+        scheduler.schedule(e3, 200);
+        Assert.assertEquals(100, scheduler.getNextEventTime());
+        Assert.assertEquals(2, scheduler.runEvents(250));
+        Assert.assertEquals(Arrays.asList(e2, e3), fired);
+        Assert.assertFalse(scheduler.isScheduled(e2));
+        Assert.assertEquals(300, scheduler.getNextEventTime());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() {
+        int e1 = addEvent();
+        int e2 = addEvent();
+        scheduler.schedule(e1, 100);
+        scheduler.schedule(e2, 200);
+        scheduler.schedule(e1, 300);
+        Assert.assertEquals(200, scheduler.getNextEventTime());
+        Assert.assertEquals(300, scheduler.getTime(e1));
+        scheduler.cancel(e2);
+        scheduler.cancel(e2);
+        Assert.assertEquals(300, scheduler.getNextEventTime());
+        scheduler.runEvents(1000);
+        Assert.assertEquals(Arrays.asList(e1), fired);
+    }
+
+    @Test
+    public void testHandlerReschedules() {
+        int[] count = new int[1];
+        int event = scheduler.addEvent((e, time) -> {
+            if (++count[0] < 5) {
+                scheduler.schedule(e, time + 10);
+            }
+        });
+        scheduler.schedule(event, 0);
+        Assert.assertEquals(3, scheduler.runEvents(25));
+        Assert.assertEquals(30, scheduler.getNextEventTime());
+        Assert.assertEquals(2, scheduler.runEvents(1000));
+        Assert.assertFalse(scheduler.isScheduled(event));
+    }
+
+    @Test
+    public void testRebase() {
+        int e1 = addEvent();
+        int e2 = addEvent();
+        scheduler.schedule(e1, 29780 + 100);
+        scheduler.schedule(e2, 29780 + 50);
+        scheduler.rebase(29780);
+        Assert.assertEquals(50, scheduler.getNextEventTime());
+        Assert.assertEquals(100, scheduler.getTime(e1));
+        Assert.assertEquals(1, scheduler.runEvents(99));
+        Assert.assertEquals(Arrays.asList(e2), fired);
+    }
+
+    @Test
+    public void testNextEventListener() {
+        List<Integer> times = new ArrayList<>();
+        scheduler.setNextEventListener(times::add);
+        int e1 = addEvent();
+        int e2 = addEvent();
+        scheduler.schedule(e1, 100);
+        scheduler.schedule(e2, 200); // Not the earliest
+        scheduler.schedule(e2, 50);
+        Assert.assertEquals(Arrays.asList(100, 50), times);
+    }
+
+    @Test
+    public void testManyEvents() {
+        Random random = new Random(0);
+        int[] times = new int[100];
+        for (int i = 0; i < times.length; i++) {
+            addEvent();
+            times[i] = -1;
+        }
+        for (int i = 0; i < 1000; i++) {
+            int event = random.nextInt(times.length);
+            if (random.nextInt(4) == 0) {
+                scheduler.cancel(event);
+                times[event] = -1;
+            }
+            else {
+                times[event] = random.nextInt(10000);
+                scheduler.schedule(event, times[event]);
+            }
+        }
+        int last = -1;
+        for (int event = 0; event < times.length; event++) {
+            Assert.assertEquals(times[event] < 0 ? EventScheduler.NO_EVENT : times[event], scheduler.getTime(event));
+        }
+        scheduler.runEvents(Integer.MAX_VALUE - 1);
+        for (int event : fired) {
+            Assert.assertTrue(times[event] >= last);
+            last = times[event];
+        }
+        Assert.assertEquals(EventScheduler.NO_EVENT, scheduler.getNextEventTime());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package org.fife.emu.cpu;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AbstractCpuTest {
+
+    @Test
+    public void testBurnCycles_movesClockForward() {
+        TestCpu cpu = new TestCpu();
+        cpu.cycles = 100;
+        Assert.assertEquals(107, cpu.burnCycles(7));
+        Assert.assertEquals(107, cpu.getCycles());
+        Assert.assertEquals(107, cpu.getTotalCycles());
+    }
+
+    @Test
+    public void testBurnCycles_afterRebase() {
+        TestCpu cpu = new TestCpu();
+        cpu.cycles = 29781;
+        Assert.assertEquals(29781, cpu.rebaseCycles());
+        Assert.assertEquals(0, cpu.getCycles());
+        Assert.assertEquals(513, cpu.burnCycles(513));
+        Assert.assertEquals(29781 + 513, cpu.getTotalCycles());
+    }
+
+    /**
+     * A CPU that does nothing, for testing the clock.
+     */
+    private static class TestCpu extends AbstractCpu {
+
+        TestCpu() {
+            super(null, 1_000_000);
+        }
+
+        @Override
+        public void dumpOpcodeCounts() {
+        }
+
+        @Override
+        public int execute(int cycles) {
+            return 0;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+}
\ No newline at end of file
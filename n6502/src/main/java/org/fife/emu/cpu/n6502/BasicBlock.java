@@ -0,0 +1,145 @@
+package org.fife.emu.cpu.n6502;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+
+/**
+ * A straight-line run of 6502 instructions within a single page, ending
+ * either with a branch or jump, or just before an instruction that can't
+ * be compiled.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see BlockGenerator
+ */
+final class BasicBlock {
+
+	/**
+	 * The maximum number of instructions in a block.
+	 */
+	private static final int MAX_INSTRUCTIONS = 64;
+
+	private final int start;
+	private final int end;
+	private final int[] instructions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param start The address of the first instruction.
+	 * @param end The address just past the last instruction.
+	 * @param instructions The decoded instructions, in the format returned
+	 *        by {@link n6502Impl#decode(int)}.
+	 */
+	private BasicBlock(int start, int end, int[] instructions) {
+		this.start = start;
+		this.end = end;
+		this.instructions = instructions;
+	}
+
+	/**
+	 * Decodes the block starting at an address.
+	 *
+	 * @param cpu The CPU whose memory to decode from.  The block's page
+	 *        should be ROM, so that reading it has no side effects.
+	 * @param start The address of the first instruction.
+	 * @return The block, or <code>null</code> if the instruction at
+	 *         <code>start</code> can't be compiled.
+	 */
+	static BasicBlock decode(n6502Impl cpu, int start) {
+
+		int[] instructions = new int[MAX_INSTRUCTIONS];
+		int count = 0;
+		int address = start;
+
+		while (count < MAX_INSTRUCTIONS && (address >> 8) == (start >> 8)) {
+			int opcode = cpu.getCpuContext().readByteSafely(address);
+			int next = address + cpu.instructionLength(opcode);
+			if (!cpu.canCompile(opcode) || ((next - 1) >> 8) != (start >> 8)) {
+				break;
+			}
+			instructions[count++] = cpu.decode(address);
+			address = next;
+			if (BlockGenerator.endsBlock(opcode)) {
+				break;
+			}
+		}
+
+		return count == 0 ? null : new BasicBlock(start, address, Arrays.copyOf(instructions, count));
+
+	}
+
+	/**
+	 * Returns the simple name of the class generated for this block.
+	 * This depends only on the block's address and code, so a block seen
+	 * again (e.g. after a bank switch) maps to the class already compiled
+	 * for it, and a precompiled class can be checked against the code
+	 * actually in memory.
+	 *
+	 * @return The class name.
+	 */
+	String getClassName() {
+		CRC32 crc = new CRC32();
+		for (int instruction : instructions) {
+			crc.update(instruction);
+			crc.update(instruction >> 8);
+			crc.update(instruction >> 16);
+		}
+		return String.format("B%04x_%08x", start, crc.getValue());
+	}
+
+	/**
+	 * Returns the address just past the last instruction in this block.
+	 *
+	 * @return The end address, exclusive.
+	 */
+	int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns an instruction in this block.
+	 *
+	 * @param index The index of the instruction.
+	 * @return The decoded instruction.
+	 */
+	int getInstruction(int index) {
+		return instructions[index];
+	}
+
+	/**
+	 * Returns the number of instructions in this block.
+	 *
+	 * @return The number of instructions.
+	 */
+	int getInstructionCount() {
+		return instructions.length;
+	}
+
+	/**
+	 * Returns the address of the first instruction in this block.
+	 *
+	 * @return The start address.
+	 */
+	int getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns whether this block ends with a branch or jump back to its
+	 * first instruction, i.e. whether it is a loop.
+	 *
+	 * @return Whether this block loops.
+	 */
+	boolean loopsToStart() {
+		int last = instructions[instructions.length - 1];
+		int opcode = last & 0xff;
+		int operand = (last >> 8) & 0xffff;
+		if (opcode == 0x4c || opcode == 0x20) { // JMP, JSR
+			return operand == start;
+		}
+		return (opcode & 0x1f) == 0x10 && end + (byte)operand == start; // Branches
+	}
+
+}
\ No newline at end of file
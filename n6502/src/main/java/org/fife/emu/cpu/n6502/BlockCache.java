@@ -0,0 +1,339 @@
+package org.fife.emu.cpu.n6502;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.fife.emu.CpuContext;
+import org.fife.emu.MemoryMapListener;
+
+
+/**
+ * The compiled blocks of code for an {@link n6502Impl}, keyed by
+ * address.<p>
+ *
+ * Only code in ROM is compiled.  The interpreter tells this cache about
+ * every instruction it is about to run; addresses jumped or branched to
+ * often enough are decoded into a {@link BasicBlock} and handed to the
+ * {@link BlockCompiler}, which compiles them in the background.  Compiled
+ * blocks are installed the next time the CPU starts running, and dropped
+ * when their page is remapped.<p>
+ *
+ * Blocks compiled ahead of time ({@link PrecompiledBlocks}) are checked
+ * against the code in memory and installed whenever their page is mapped
+ * in.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see n6502Impl#setJitEnabled(boolean)
+ * @see n6502Impl#setPrecompiledBlocks(PrecompiledBlocks)
+ */
+final class BlockCache implements MemoryMapListener {
+
+	/**
+	 * The number of pages in the 6502's address space.
+	 */
+	private static final int PAGE_COUNT = 0x100;
+
+	/**
+	 * The number of times an address must be jumped to before the block
+	 * starting there is compiled.
+	 */
+	private static final int COMPILE_THRESHOLD = 64;
+
+	/**
+	 * The package generated classes are put in.
+	 */
+	private static final String PACKAGE = "org.fife.emu.cpu.n6502.jit";
+
+	private static final byte PAGE_UNKNOWN = 0;
+	private static final byte PAGE_ROM = 1;
+	private static final byte PAGE_NOT_ROM = 2;
+
+	private final n6502Impl cpu;
+	private final CpuContext context;
+	private final BlockCompiler compiler;
+	private final PrecompiledBlocks precompiled;
+
+	/**
+	 * The compiled blocks in each page, or <code>null</code> for pages
+	 * with none.
+	 */
+	private final CompiledBlock[][] blocks;
+
+	/**
+	 * For each page, the number of times each address has been jumped
+	 * to.  This is negative for addresses that have been sent to the
+	 * compiler, or that start with an instruction that can't be compiled.
+	 */
+	private final int[][] jumpCounts;
+
+	/**
+	 * Whether each page is ROM, and so may be compiled.
+	 */
+	private final byte[] pageTypes;
+
+	/**
+	 * Incremented each time a page is remapped, so that blocks compiled
+	 * from its old contents aren't installed.
+	 */
+	private final int[] generations;
+
+	/**
+	 * Compiled classes waiting to be installed by the CPU's thread.
+	 */
+	private final Queue<CompileResult> results;
+
+	/**
+	 * The address of the last instruction run by the interpreter, used to
+	 * tell when it jumps.
+	 */
+	private int lastAddress;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cpu The CPU to compile code for.
+	 * @param compiler The compiler to use, or <code>null</code> to only
+	 *        use precompiled blocks.
+	 * @param precompiled Blocks compiled ahead of time.  This may be
+	 *        <code>null</code>.
+	 */
+	BlockCache(n6502Impl cpu, BlockCompiler compiler, PrecompiledBlocks precompiled) {
+		this.cpu = cpu;
+		this.context = cpu.getCpuContext();
+		this.compiler = compiler;
+		this.precompiled = precompiled;
+		blocks = new CompiledBlock[PAGE_COUNT][];
+		jumpCounts = new int[PAGE_COUNT][];
+		pageTypes = new byte[PAGE_COUNT];
+		generations = new int[PAGE_COUNT];
+		results = new ConcurrentLinkedQueue<>();
+		lastAddress = -1;
+	}
+
+	/**
+	 * Called by the compiler when a block has been compiled.  This may
+	 * be called on any thread.
+	 *
+	 * @param address The address of the block.
+	 * @param generation The generation of the block's page when it was
+	 *        decoded.
+	 * @param blockClass The compiled class, or <code>null</code> if the
+	 *        block should be left to the interpreter.
+	 * @see #failed(int, int, String)
+	 */
+	void compiled(int address, int generation, Class<? extends CompiledBlock> blockClass) {
+		results.add(new CompileResult(address, generation, blockClass, null));
+	}
+
+	/**
+	 * Called by the compiler when the source generated for a block
+	 * couldn't be compiled.  This is a bug in {@link BlockGenerator}, so
+	 * rather than quietly interpreting the block, the CPU's thread is told
+	 * about it the next time it installs compiled blocks.  This may be
+	 * called on any thread.
+	 *
+	 * @param address The address of the block.
+	 * @param generation The generation of the block's page when it was
+	 *        decoded.
+	 * @param error Why the block couldn't be compiled, e.g. the
+	 *        compiler's diagnostics.
+	 * @see #installCompiledBlocks()
+	 */
+	void failed(int address, int generation, String error) {
+		results.add(new CompileResult(address, generation, null, error));
+	}
+
+	/**
+	 * Installs any blocks that have finished compiling.  This should be
+	 * called on the CPU's thread, when no compiled block is running.
+	 *
+	 * @throws IllegalStateException If a block couldn't be compiled or
+	 *         created.  The blocks compiled before it are installed, and
+	 *         those after it are installed by the next call.
+	 */
+	void installCompiledBlocks() {
+
+		CompileResult result;
+		while ((result = results.poll()) != null) {
+
+			if (result.error != null) {
+				throw new IllegalStateException(String.format("Couldn't compile block at $%04x: %s",
+					result.address, result.error));
+			}
+
+			int page = result.address >> 8;
+			if (result.generation != generations[page]) {
+				continue; // Page was remapped since the block was decoded
+			}
+			if (result.blockClass == null) {
+				continue; // Leave it to the interpreter
+			}
+
+			install(result.address, result.blockClass);
+
+		}
+
+	}
+
+	/**
+	 * Classifies a page that was just mapped in, and installs any
+	 * precompiled blocks matching the code in it.
+	 *
+	 * @param page The page.
+	 * @throws IllegalStateException If a precompiled block couldn't be
+	 *         created.
+	 */
+	private void classifyPage(int page) {
+
+		if (!context.isROM(page << 8)) {
+			pageTypes[page] = PAGE_NOT_ROM;
+			return;
+		}
+		pageTypes[page] = PAGE_ROM;
+
+		if (precompiled != null) {
+			for (PrecompiledBlocks.Entry entry : precompiled.getBlocks(page)) {
+				int address = entry.getAddress();
+				if (blocks[page] != null && blocks[page][address & 0xff] != null) {
+					continue; // Another bank's version of this block matched
+				}
+				BasicBlock block = BasicBlock.decode(cpu, address);
+				if (block != null && block.getClassName().equals(entry.getBlockClass().getSimpleName())) {
+					install(address, entry.getBlockClass());
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Creates and installs a compiled block.
+	 *
+	 * @param address The address of the block.
+	 * @param blockClass The block's class.
+	 * @throws IllegalStateException If the block couldn't be created.
+	 *         Generated classes always can be, so this is a bug.
+	 */
+	private void install(int address, Class<? extends CompiledBlock> blockClass) {
+
+		CompiledBlock block;
+		try {
+			block = blockClass.getConstructor(n6502Impl.class).newInstance(cpu);
+		} catch (InstantiationException | IllegalAccessException |
+				InvocationTargetException | NoSuchMethodException e) {
+			throw new IllegalStateException(String.format("Couldn't create block at $%04x: %s", address, e), e);
+		}
+
+		int page = address >> 8;
+		if (blocks[page] == null) {
+			blocks[page] = new CompiledBlock[0x100];
+		}
+		blocks[page][address & 0xff] = block;
+
+	}
+
+	/**
+	 * Returns the compiled block starting at an address, if any.  This is
+	 * called by the interpreter before each instruction, and keeps track
+	 * of which addresses are worth compiling.
+	 *
+	 * @param address The address of the next instruction to run.
+	 * @return The compiled block starting at that address, or
+	 *         <code>null</code> if there isn't one.
+	 * @throws IllegalStateException If a precompiled block for the
+	 *         address's page couldn't be created.
+	 */
+	CompiledBlock lookup(int address) {
+
+		int page = address >> 8;
+		if (page >= PAGE_COUNT) {
+			return null;
+		}
+
+		if (pageTypes[page] == PAGE_UNKNOWN) {
+			classifyPage(page);
+		}
+
+		CompiledBlock[] pageBlocks = blocks[page];
+		if (pageBlocks != null) {
+			CompiledBlock block = pageBlocks[address & 0xff];
+			if (block != null) {
+				lastAddress = -1;
+				return block;
+			}
+		}
+
+		int delta = address - lastAddress;
+		lastAddress = address;
+		if (delta > 0 && delta <= 3) {
+			return null; // Not a jump; only jump targets start blocks
+		}
+		if (compiler == null || pageTypes[page] != PAGE_ROM) {
+			return null;
+		}
+
+		int[] counts = jumpCounts[page];
+		if (counts == null) {
+			counts = jumpCounts[page] = new int[0x100];
+		}
+
+		int offset = address & 0xff;
+		if (counts[offset] >= 0 && ++counts[offset] == COMPILE_THRESHOLD) {
+			counts[offset] = -1;
+			BasicBlock block = BasicBlock.decode(cpu, address);
+			if (block != null) {
+				String className = block.getClassName();
+				String source = BlockGenerator.generate(block, PACKAGE, className);
+				compiler.submit(this, address, generations[page], PACKAGE + '.' + className, source);
+			}
+		}
+		return null;
+
+	}
+
+	@Override
+	public void memoryMapChanged(int start, int end) {
+		int last = Math.min((end - 1) >> 8, PAGE_COUNT - 1);
+		for (int page = start >> 8; page <= last; page++) {
+			CompiledBlock[] pageBlocks = blocks[page];
+			if (pageBlocks != null) {
+				for (CompiledBlock block : pageBlocks) {
+					if (block != null) {
+						block.invalidate();
+					}
+				}
+				blocks[page] = null;
+			}
+			jumpCounts[page] = null;
+			pageTypes[page] = PAGE_UNKNOWN;
+			generations[page]++;
+		}
+	}
+
+	@Override
+	public void watchedPageWritten(int start, int end) {
+		// Only ROM is compiled, and writes to ROM are ignored
+	}
+
+	/**
+	 * A compiled block waiting to be installed.
+	 */
+	private static final class CompileResult {
+
+		private final int address;
+		private final int generation;
+		private final Class<? extends CompiledBlock> blockClass;
+		private final String error;
+
+		private CompileResult(int address, int generation, Class<? extends CompiledBlock> blockClass, String error) {
+			this.address = address;
+			this.generation = generation;
+			this.blockClass = blockClass;
+			this.error = error;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,434 @@
+package org.fife.emu.cpu.n6502;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.fife.emu.CpuContext;
+
+
+/**
+ * Compiles the Java source generated for blocks of 6502 code, on a
+ * background thread shared by all CPUs.  Source is compiled in memory via
+ * the platform's Java compiler, and the resulting classes are cached by
+ * name, so a block seen again (e.g. after a bank switch, or by another
+ * CPU running the same ROM) isn't compiled twice.  The cache only keeps
+ * the most recently used classes, so that a game switching through many
+ * banks doesn't keep loading classes for the life of the JVM.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see BlockCache
+ */
+final class BlockCompiler {
+
+	/**
+	 * The maximum number of compiled classes cached.  A class dropped from
+	 * the cache, and its class loader, can be garbage collected once no
+	 * CPU has a block using it installed.
+	 */
+	private static final int MAX_CACHED_CLASSES = 4096;
+
+	private static BlockCompiler instance;
+
+	private final JavaCompiler javac;
+	private final List<String> options;
+	private final BlockingQueue<Request> requests;
+
+	/**
+	 * Compiled classes, least recently used first.  This is only accessed
+	 * on the compiler's thread.
+	 */
+	private final Map<String, CompiledClass> classes;
+
+	/**
+	 * Why the code sources of classes generated source depends on
+	 * couldn't be added to the class path.  If a block then fails to
+	 * compile, this is reported along with the compiler's diagnostics.
+	 */
+	private final List<String> classPathProblems;
+
+	/**
+	 * The number of requests submitted but not yet completed.
+	 */
+	private int pending;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param javac The Java compiler to use.
+	 */
+	private BlockCompiler(JavaCompiler javac) {
+		this.javac = javac;
+		classPathProblems = new ArrayList<>();
+		options = Arrays.asList("-classpath", getClassPath(classPathProblems), "-g:none", "-proc:none", "-nowarn");
+		requests = new LinkedBlockingQueue<>();
+		classes = new LinkedHashMap<String, CompiledClass>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledClass> eldest) {
+				return size() > MAX_CACHED_CLASSES;
+			}
+		};
+	}
+
+	/**
+	 * Waits until all submitted blocks have been compiled.
+	 *
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	synchronized void awaitIdle() throws InterruptedException {
+		while (pending > 0) {
+			wait();
+		}
+	}
+
+	/**
+	 * Compiles a batch of requests and notifies their caches.
+	 *
+	 * @param batch The requests.
+	 */
+	private void compile(List<Request> batch) {
+
+		// Look up cached classes first, as compiling this batch may drop them from the cache
+		Map<String, CompiledClass> batchClasses = new HashMap<>();
+		Map<String, String> sources = new HashMap<>();
+		for (Request request : batch) {
+			CompiledClass compiled = classes.get(request.className);
+			if (compiled != null) {
+				batchClasses.put(request.className, compiled);
+			}
+			else {
+				sources.put(request.className, request.source);
+			}
+		}
+
+		Map<String, String> errors = new HashMap<>();
+		if (!sources.isEmpty() && !compile(sources, batchClasses, errors) && sources.size() > 1) {
+			// Compile each one separately so one bad block doesn't sink the rest
+			for (Map.Entry<String, String> entry : sources.entrySet()) {
+				compile(Collections.singletonMap(entry.getKey(), entry.getValue()), batchClasses, errors);
+			}
+		}
+
+		for (Request request : batch) {
+			String error = errors.get(request.className);
+			if (error != null) {
+				request.cache.failed(request.address, request.generation, error);
+				continue;
+			}
+			CompiledClass compiled = batchClasses.get(request.className);
+			Class<? extends CompiledBlock> blockClass = null;
+			if (compiled != null && compiled.source.equals(request.source)) {
+				blockClass = compiled.blockClass;
+			}
+			request.cache.compiled(request.address, request.generation, blockClass);
+		}
+
+		synchronized (this) {
+			pending -= batch.size();
+			notifyAll();
+		}
+
+	}
+
+	/**
+	 * Compiles source files and caches the resulting classes.
+	 *
+	 * @param sources The source of each class, keyed by class name.
+	 * @param compiled Receives the compiled classes, keyed by class name.
+	 * @param errors Receives why each class that failed couldn't be
+	 *        compiled or loaded, keyed by class name.  If several sources
+	 *        fail to compile together, nothing is added for them, as which
+	 *        is at fault isn't known.
+	 * @return Whether compilation succeeded.
+	 */
+	private boolean compile(Map<String, String> sources, Map<String, CompiledClass> compiled,
+			Map<String, String> errors) {
+
+		List<JavaFileObject> files = new ArrayList<>();
+		for (Map.Entry<String, String> entry : sources.entrySet()) {
+			files.add(new SourceFile(entry.getKey(), entry.getValue()));
+		}
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		StandardJavaFileManager standardFileManager =
+			javac.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8);
+		MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+		if (!javac.getTask(null, fileManager, diagnostics, options, null, files).call()) {
+			if (sources.size() == 1) {
+				String error = diagnostics.getDiagnostics().toString();
+				if (!classPathProblems.isEmpty()) {
+					error += " (class path incomplete: " + String.join(", ", classPathProblems) + ')';
+				}
+				errors.put(sources.keySet().iterator().next(), error);
+			}
+			return false;
+		}
+
+		BlockClassLoader loader = createClassLoader(fileManager.classFiles);
+		for (Map.Entry<String, String> entry : sources.entrySet()) {
+			try {
+				Class<? extends CompiledBlock> blockClass =
+					loader.loadClass(entry.getKey()).asSubclass(CompiledBlock.class);
+				CompiledClass compiledClass = new CompiledClass(entry.getValue(), blockClass);
+				compiled.put(entry.getKey(), compiledClass);
+				classes.put(entry.getKey(), compiledClass);
+			} catch (ClassNotFoundException | ClassCastException e) {
+				errors.put(entry.getKey(), e.toString());
+			}
+		}
+		return true;
+
+	}
+
+	/**
+	 * Creates a class loader for a batch of compiled classes.
+	 *
+	 * @param classFiles The class files, keyed by class name.
+	 * @return The class loader.
+	 */
+	@SuppressFBWarnings(value = "DP_CREATE_CLASSLOADER_INSIDE_DO_PRIVILEGED",
+		justification = "Generated classes only need the permissions of this library")
+	private static BlockClassLoader createClassLoader(Map<String, byte[]> classFiles) {
+		return new BlockClassLoader(CompiledBlock.class.getClassLoader(), classFiles);
+	}
+
+	/**
+	 * Returns a URI for an in-memory class or source file.
+	 *
+	 * @param className The fully qualified class name.
+	 * @param kind The kind of file.
+	 * @return The URI.
+	 */
+	private static URI createUri(String className, JavaFileObject.Kind kind) {
+		return URI.create("mem:///" + className.replace('.', '/') + kind.extension);
+	}
+
+	/**
+	 * Returns the shared compiler, starting it if necessary.
+	 *
+	 * @return The compiler.
+	 * @throws UnsupportedOperationException If no Java compiler is
+	 *         available, e.g. when running on a JRE.
+	 */
+	static synchronized BlockCompiler get() {
+		if (instance == null) {
+			JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+			if (javac == null) {
+				throw new UnsupportedOperationException("No Java compiler is available");
+			}
+			instance = new BlockCompiler(javac);
+			Thread thread = new Thread(instance::run, "n6502 block compiler");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the class path to compile generated source against.
+	 *
+	 * @param problems Receives why the code source of any class generated
+	 *        source depends on couldn't be added.  Such classes may still
+	 *        be found on the JVM's class path.
+	 * @return The class path.
+	 */
+	private static String getClassPath(List<String> problems) {
+		Set<String> entries = new LinkedHashSet<>();
+		for (Class<?> clazz : Arrays.asList(CompiledBlock.class, CpuContext.class)) {
+			CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+			if (codeSource != null && codeSource.getLocation() != null) {
+				try {
+					entries.add(Paths.get(codeSource.getLocation().toURI()).toString());
+				} catch (URISyntaxException | IllegalArgumentException e) {
+					problems.add(clazz.getName() + ": " + e);
+				}
+			}
+		}
+		entries.add(System.getProperty("java.class.path"));
+		return String.join(File.pathSeparator, entries);
+	}
+
+	/**
+	 * Compiles requests as they come in, batching any that arrive while a
+	 * batch is being compiled.
+	 */
+	private void run() {
+		List<Request> batch = new ArrayList<>();
+		while (true) {
+			try {
+				batch.add(requests.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			requests.drainTo(batch);
+			try {
+				compile(batch);
+			} catch (RuntimeException e) {
+				for (Request request : batch) {
+					request.cache.failed(request.address, request.generation, e.toString());
+				}
+				synchronized (this) {
+					pending -= batch.size();
+					notifyAll();
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Queues a block to be compiled.  When done, the cache is notified via
+	 * {@link BlockCache#compiled(int, int, Class)}, or
+	 * {@link BlockCache#failed(int, int, String)} if the generated source
+	 * couldn't be compiled.
+	 *
+	 * @param cache The cache to notify.
+	 * @param address The address of the block.
+	 * @param generation The generation of the block's page.
+	 * @param className The fully qualified name of the generated class.
+	 * @param source The source of the generated class.
+	 */
+	void submit(BlockCache cache, int address, int generation, String className, String source) {
+		synchronized (this) {
+			pending++;
+		}
+		requests.add(new Request(cache, address, generation, className, source));
+	}
+
+	/**
+	 * Loads the classes compiled in a batch.
+	 */
+	private static final class BlockClassLoader extends ClassLoader {
+
+		private final Map<String, byte[]> classFiles;
+
+		private BlockClassLoader(ClassLoader parent, Map<String, byte[]> classFiles) {
+			super(parent);
+			this.classFiles = classFiles;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = classFiles.get(name);
+			if (bytes == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+	}
+
+	/**
+	 * A compiled class and the source it was compiled from.
+	 */
+	private static final class CompiledClass {
+
+		private final String source;
+		private final Class<? extends CompiledBlock> blockClass;
+
+		private CompiledClass(String source, Class<? extends CompiledBlock> blockClass) {
+			this.source = source;
+			this.blockClass = blockClass;
+		}
+
+	}
+
+	/**
+	 * Keeps compiled class files in memory.
+	 */
+	private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		private final Map<String, byte[]> classFiles;
+
+		private MemoryFileManager(StandardJavaFileManager fileManager) {
+			super(fileManager);
+			classFiles = new HashMap<>();
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className,
+				JavaFileObject.Kind kind, FileObject sibling) {
+			return new SimpleJavaFileObject(createUri(className, kind), kind) {
+				@Override
+				public OutputStream openOutputStream() {
+					return new ByteArrayOutputStream() {
+						@Override
+						public void close() {
+							classFiles.put(className, toByteArray());
+						}
+					};
+				}
+			};
+		}
+
+	}
+
+	/**
+	 * A request to compile a block.
+	 */
+	private static final class Request {
+
+		private final BlockCache cache;
+		private final int address;
+		private final int generation;
+		private final String className;
+		private final String source;
+
+		private Request(BlockCache cache, int address, int generation, String className, String source) {
+			this.cache = cache;
+			this.address = address;
+			this.generation = generation;
+			this.className = className;
+			this.source = source;
+		}
+
+	}
+
+	/**
+	 * Source code held in memory.
+	 */
+	private static final class SourceFile extends SimpleJavaFileObject {
+
+		private final String source;
+
+		private SourceFile(String className, String source) {
+			super(createUri(className, Kind.SOURCE), Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+
+	}
+
+}
\ No newline at end of file
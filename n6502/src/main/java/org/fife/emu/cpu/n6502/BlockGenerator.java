@@ -0,0 +1,516 @@
+package org.fife.emu.cpu.n6502;
+
+import java.util.Locale;
+
+
+/**
+ * Generates Java source for a {@link BasicBlock}.  The generated class
+ * extends {@link CompiledBlock}, and its <code>run()</code> method
+ * performs the same memory accesses and cycle accounting, in the same
+ * order, as {@link n6502Impl}'s interpreter would for the same
+ * instructions.  The registers and flags are kept in local variables for
+ * the whole block, in the same deferred form as the interpreter's fields,
+ * and written back to the CPU when it exits.<p>
+ *
+ * Only a subset of opcodes can be compiled; see
+ * {@link #canCompile(int)}.  In particular, instructions that change the
+ * I, D or B flags are left to the interpreter.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+final class BlockGenerator {
+
+	private static final int IMP = InstructionInfo6502.IMPLIED;
+	private static final int ACC = InstructionInfo6502.ACCUMULATOR;
+	private static final int IMM = InstructionInfo6502.IMMEDIATE;
+	private static final int ZP = InstructionInfo6502.ZERO_PAGE;
+	private static final int ZPX = InstructionInfo6502.ZERO_PAGE_X;
+	private static final int ZPY = InstructionInfo6502.ZERO_PAGE_Y;
+	private static final int ABS = InstructionInfo6502.ABSOLUTE;
+	private static final int ABSX = InstructionInfo6502.ABSOLUTE_X;
+	private static final int ABSY = InstructionInfo6502.ABSOLUTE_Y;
+	private static final int INDX = InstructionInfo6502.INDEXED_INDIRECT;
+	private static final int INDY = InstructionInfo6502.INDIRECT_INDEXED;
+	private static final int IND = InstructionInfo6502.INDIRECT;
+	private static final int REL = InstructionInfo6502.RELATIVE;
+
+	/**
+	 * Whether each opcode can be compiled.  Everything else about an
+	 * opcode comes from {@link InstructionInfo6502}.
+	 */
+	private static final boolean[] COMPILABLE = new boolean[256];
+
+	static {
+		int[] opcodes = {
+			0x01, 0x04, 0x05, 0x06, 0x09, 0x0A, 0x0C, 0x0D, 0x0E, 0x10, 0x11, 0x14,
+			0x15, 0x16, 0x18, 0x19, 0x1A, 0x1C, 0x1D, 0x1E, 0x20, 0x21, 0x24, 0x25,
+			0x26, 0x29, 0x2A, 0x2C, 0x2D, 0x2E, 0x30, 0x31, 0x34, 0x35, 0x36, 0x38,
+			0x39, 0x3A, 0x3C, 0x3D, 0x3E, 0x41, 0x44, 0x45, 0x46, 0x48, 0x49, 0x4A,
+			0x4C, 0x4D, 0x4E, 0x50, 0x51, 0x54, 0x55, 0x56, 0x59, 0x5A, 0x5C, 0x5D,
+			0x5E, 0x60, 0x61, 0x64, 0x65, 0x66, 0x68, 0x69, 0x6A, 0x6C, 0x6D, 0x6E,
+			0x70, 0x71, 0x74, 0x75, 0x76, 0x79, 0x7A, 0x7C, 0x7D, 0x7E, 0x80, 0x81,
+			0x82, 0x84, 0x85, 0x86, 0x88, 0x89, 0x8A, 0x8C, 0x8D, 0x8E, 0x90, 0x91,
+			0x94, 0x95, 0x96, 0x98, 0x99, 0x9A, 0x9D, 0xA0, 0xA1, 0xA2, 0xA3, 0xA4,
+			0xA5, 0xA6, 0xA7, 0xA8, 0xA9, 0xAA, 0xAC, 0xAD, 0xAE, 0xAF, 0xB0, 0xB1,
+			0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xB9, 0xBA, 0xBC, 0xBD, 0xBE, 0xBF,
+			0xC0, 0xC1, 0xC2, 0xC4, 0xC5, 0xC6, 0xC8, 0xC9, 0xCA, 0xCC, 0xCD, 0xCE,
+			0xD0, 0xD1, 0xD4, 0xD5, 0xD6, 0xD9, 0xDA, 0xDC, 0xDD, 0xDE, 0xE0, 0xE1,
+			0xE2, 0xE4, 0xE5, 0xE6, 0xE8, 0xE9, 0xEA, 0xEB, 0xEC, 0xED, 0xEE, 0xF0,
+			0xF1, 0xF4, 0xF5, 0xF6, 0xF9, 0xFA, 0xFC, 0xFD, 0xFE,
+		};
+		for (int opcode : opcodes) {
+			COMPILABLE[opcode] = true;
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private BlockGenerator() {
+	}
+
+	/**
+	 * Returns whether an opcode can be compiled.
+	 *
+	 * @param opcode The opcode.
+	 * @return Whether the opcode can be compiled.
+	 * @see #endsBlock(int)
+	 */
+	static boolean canCompile(int opcode) {
+		return COMPILABLE[opcode];
+	}
+
+	/**
+	 * Returns whether an opcode transfers control, and so must be the
+	 * last instruction in a block.
+	 *
+	 * @param opcode The opcode.
+	 * @return Whether the opcode ends a block.
+	 */
+	static boolean endsBlock(int opcode) {
+		int mode = InstructionInfo6502.getAddressingMode(opcode);
+		return mode == REL || mode == IND || opcode == 0x20 || opcode == 0x4c || opcode == 0x60;
+	}
+
+	/**
+	 * Returns the Java source for a block.
+	 *
+	 * @param block The block.
+	 * @param packageName The package to put the generated class in.
+	 * @param className The simple name of the generated class.
+	 * @return The source of the generated class.
+	 */
+	static String generate(BasicBlock block, String packageName, String className) {
+
+		StringBuilder sb = new StringBuilder();
+		int start = block.getStart();
+		sb.append("package ").append(packageName).append(";\n\n");
+		sb.append("import org.fife.emu.cpu.n6502.CompiledBlock;\n");
+		sb.append("import org.fife.emu.cpu.n6502.n6502Impl;\n\n");
+		sb.append("/**\n * Compiled from ").append(hex(start, 4)).append('-');
+		sb.append(hex(block.getEnd() - 1, 4)).append(".\n */\n");
+		sb.append("public final class ").append(className).append(" extends CompiledBlock {\n\n");
+		sb.append("\tpublic ").append(className).append("(n6502Impl cpu) {\n\t\tsuper(cpu);\n\t}\n\n");
+		sb.append("\t@Override\n\tprotected void run() {\n");
+		sb.append("\t\tint a = getA(), x = getX(), y = getY(), s = getS();\n");
+		sb.append("\t\tint c = getC(), nz = getNZ(), v = getV();\n");
+		sb.append("\t\tint m, t;\n");
+
+		String loopBack = block.loopsToStart() ? getLoopBack(block) : null;
+		String indent = "\t\t";
+		if (loopBack != null) {
+			sb.append("\t\twhile (true) {\n");
+			indent = "\t\t\t";
+		}
+
+		int address = start;
+		for (int i = 0; i < block.getInstructionCount(); i++) {
+			int entry = block.getInstruction(i);
+			int opcode = entry & 0xff;
+			int operand = (entry >> 8) & 0xffff;
+			int next = address + (entry >>> 24);
+			if (i > 0) {
+				sb.append(indent).append("if (mustExit()) {\n");
+				appendExit(sb, indent + '\t', hex(address));
+				sb.append(indent).append("}\n");
+			}
+			sb.append(indent).append("// ").append(hex(address, 4)).append(": ");
+			sb.append(InstructionInfo6502.getMnemonic(opcode)).append('\n');
+			appendInstruction(sb, indent, opcode, operand, next, start, loopBack);
+			address = next;
+		}
+
+		if (!endsBlock(block.getInstruction(block.getInstructionCount() - 1) & 0xff)) {
+			appendExit(sb, indent, hex(address));
+		}
+		if (loopBack != null) {
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t}\n\n}\n");
+		return sb.toString();
+
+	}
+
+	/**
+	 * Appends code that reads the effective address of an instruction
+	 * into <code>m</code>, adding any page-crossing cycle.
+	 */
+	private static void appendAddress(StringBuilder sb, String indent, int mode, int operand) {
+		switch (mode) {
+			case ZP:
+			case ABS:
+				sb.append(indent).append("m = ").append(hex(operand)).append(";\n");
+				break;
+			case ZPX:
+				sb.append(indent).append("m = (").append(hex(operand)).append(" + x) & 0xff;\n");
+				break;
+			case ZPY:
+				sb.append(indent).append("m = (").append(hex(operand)).append(" + y) & 0xff;\n");
+				break;
+			case ABSX:
+			case ABSY:
+				sb.append(indent).append("m = ").append(hex(operand)).append(mode == ABSX ? " + x;\n" : " + y;\n");
+				sb.append(indent).append("addCycles(((").append(hex(operand)).append(" ^ m) & 0x100) >> 8);\n");
+				break;
+			case INDX:
+				sb.append(indent).append("m = readWord((").append(hex(operand)).append(" + x) & 0xff);\n");
+				break;
+			case INDY:
+				sb.append(indent).append("t = readWord(").append(hex(operand)).append(");\n");
+				sb.append(indent).append("m = t + y;\n");
+				sb.append(indent).append("addCycles(((t ^ m) & 0x100) >> 8);\n");
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid addressing mode: " + mode);
+		}
+	}
+
+	private static void appendExit(StringBuilder sb, String indent, String pc) {
+		sb.append(indent).append("exit(").append(pc).append(", a, x, y, s, c, nz, v);\n");
+		sb.append(indent).append("return;\n");
+	}
+
+	/**
+	 * Appends the code for a single instruction.
+	 */
+	@SuppressWarnings("checkstyle:MethodLength")
+	private static void appendInstruction(StringBuilder sb, String indent, int opcode, int operand,
+			int next, int start, String loopBack) {
+
+		String mnemonic = InstructionInfo6502.getMnemonic(opcode);
+		int mode = InstructionInfo6502.getAddressingMode(opcode);
+		String value = null; // Expression for the operand's value
+		if (mode == IMM) {
+			value = hex(operand);
+		}
+		else if (mode != IMP && mode != ACC && mode != REL && mode != IND &&
+				!"JMP".equals(mnemonic) && !"JSR".equals(mnemonic) && !"DOP".equals(mnemonic)) {
+			appendAddress(sb, indent, mode, operand);
+			value = "read(m)";
+		}
+
+		switch (mnemonic) {
+			case "ADC":
+				sb.append(indent).append("m = ").append(value).append(";\n");
+				sb.append(indent).append("c = t = a + m + ((c >> 8) & 0x01);\n");
+				sb.append(indent).append("v = ~(a ^ m) & (a ^ t);\n");
+				sb.append(indent).append("nz = a = t & 0xff;\n");
+				break;
+			case "AND":
+				sb.append(indent).append("nz = a &= ").append(value).append(";\n");
+				break;
+			case "ASL":
+			case "LSR":
+			case "ROL":
+			case "ROR":
+			case "INC":
+			case "DEC":
+				appendReadModifyWrite(sb, indent, mnemonic, mode == ACC ? null : "m");
+				break;
+			case "BIT":
+				sb.append(indent).append("m = ").append(value).append(";\n");
+				sb.append(indent).append("nz = ((m & a) > 0 ? 1 : 0) | ((m & 0x80) << 1);\n");
+				sb.append(indent).append("v = m << 1;\n");
+				break;
+			case "BPL":
+				appendBranch(sb, indent, "((nz | (nz >> 1)) & 0x80) == 0", operand, next, start, loopBack);
+				break;
+			case "BMI":
+				appendBranch(sb, indent, "((nz | (nz >> 1)) & 0x80) != 0", operand, next, start, loopBack);
+				break;
+			case "BVC":
+				appendBranch(sb, indent, "(v & 0x80) == 0", operand, next, start, loopBack);
+				break;
+			case "BVS":
+				appendBranch(sb, indent, "(v & 0x80) != 0", operand, next, start, loopBack);
+				break;
+			case "BCC":
+				appendBranch(sb, indent, "(c & 0x100) == 0", operand, next, start, loopBack);
+				break;
+			case "BCS":
+				appendBranch(sb, indent, "(c & 0x100) != 0", operand, next, start, loopBack);
+				break;
+			case "BNE":
+				appendBranch(sb, indent, "(nz & 0xff) != 0", operand, next, start, loopBack);
+				break;
+			case "BEQ":
+				appendBranch(sb, indent, "(nz & 0xff) == 0", operand, next, start, loopBack);
+				break;
+			case "CLC":
+				sb.append(indent).append("c = 0;\n");
+				break;
+			case "CLV":
+				sb.append(indent).append("v = 0;\n");
+				break;
+			case "CMP":
+			case "CPX":
+			case "CPY":
+				String reg = "CMP".equals(mnemonic) ? "a" : "CPX".equals(mnemonic) ? "x" : "y";
+				sb.append(indent).append("t = ").append(reg).append(" - ").append(value).append(";\n");
+				sb.append(indent).append("c = ~t;\n");
+				sb.append(indent).append("nz = t & 0xff;\n");
+				break;
+			case "DEX":
+				sb.append(indent).append("nz = x = (x - 1) & 0xff;\n");
+				break;
+			case "DEY":
+				sb.append(indent).append("nz = y = (y - 1) & 0xff;\n");
+				break;
+			case "EOR":
+				sb.append(indent).append("nz = a ^= ").append(value).append(";\n");
+				break;
+			case "INX":
+				sb.append(indent).append("nz = x = (x + 1) & 0xff;\n");
+				break;
+			case "INY":
+				sb.append(indent).append("nz = y = (y + 1) & 0xff;\n");
+				break;
+			case "JMP":
+				if (mode == IND) {
+					if ((operand & 0xff) == 0xff) {
+						sb.append(indent).append("t = read(").append(hex(operand)).append(") | (read(");
+						sb.append(hex(operand & 0xff00)).append(") << 8);\n");
+					}
+					else {
+						sb.append(indent).append("t = readWord(").append(hex(operand)).append(");\n");
+					}
+					sb.append(indent).append("addCycles(5);\n");
+					appendExit(sb, indent, "t");
+					return;
+				}
+				sb.append(indent).append("addCycles(3);\n");
+				appendJump(sb, indent, operand, start, loopBack);
+				return;
+			case "JSR":
+				sb.append(indent).append("write(0x100 + s, ").append(hex((next - 1) >> 8)).append(");\n");
+				sb.append(indent).append("s = (s - 1) & 0xff;\n");
+				sb.append(indent).append("write(0x100 + s, ").append(hex((next - 1) & 0xff)).append(");\n");
+				sb.append(indent).append("s = (s - 1) & 0xff;\n");
+				sb.append(indent).append("addCycles(6);\n");
+				appendJump(sb, indent, operand, start, loopBack);
+				return;
+			case "LAX":
+				sb.append(indent).append("nz = a = x = ").append(value).append(";\n");
+				break;
+			case "LDA":
+				sb.append(indent).append("nz = a = ").append(value).append(";\n");
+				break;
+			case "LDX":
+				sb.append(indent).append("nz = x = ").append(value).append(";\n");
+				break;
+			case "LDY":
+				sb.append(indent).append("nz = y = ").append(value).append(";\n");
+				break;
+			case "DOP":
+			case "NOP":
+				break;
+			case "TOP":
+				sb.append(indent).append(value).append(";\n");
+				break;
+			case "ORA":
+				sb.append(indent).append("nz = a |= ").append(value).append(";\n");
+				break;
+			case "PHA":
+				sb.append(indent).append("write(0x100 + s, a);\n");
+				sb.append(indent).append("s = (s - 1) & 0xff;\n");
+				break;
+			case "PLA":
+				sb.append(indent).append("s = (s + 1) & 0xff;\n");
+				sb.append(indent).append("nz = a = read(0x100 | s);\n");
+				break;
+			case "RTS":
+				sb.append(indent).append("s = (s + 1) & 0xff;\n");
+				sb.append(indent).append("t = read(0x100 | s);\n");
+				sb.append(indent).append("s = (s + 1) & 0xff;\n");
+				sb.append(indent).append("t |= read(0x100 | s) << 8;\n");
+				sb.append(indent).append("addCycles(6);\n");
+				appendExit(sb, indent, "t + 1");
+				return;
+			case "SBC":
+				sb.append(indent).append("m = ").append(value).append(";\n");
+				sb.append(indent).append("t = a - m - ((~c >> 8) & 0x01);\n");
+				sb.append(indent).append("v = (a ^ m) & (a ^ t);\n");
+				sb.append(indent).append("nz = a = t & 0xff;\n");
+				sb.append(indent).append("c = ~t;\n");
+				break;
+			case "SEC":
+				sb.append(indent).append("c = 0x100;\n");
+				break;
+			case "STA":
+				sb.append(indent).append("write(m, a);\n");
+				break;
+			case "STX":
+				sb.append(indent).append("write(m, x);\n");
+				break;
+			case "STY":
+				sb.append(indent).append("write(m, y);\n");
+				break;
+			case "TAX":
+				sb.append(indent).append("nz = x = a;\n");
+				break;
+			case "TAY":
+				sb.append(indent).append("nz = y = a;\n");
+				break;
+			case "TSX":
+				sb.append(indent).append("nz = x = s;\n");
+				break;
+			case "TXA":
+				sb.append(indent).append("nz = a = x;\n");
+				break;
+			case "TXS":
+				sb.append(indent).append("s = x;\n");
+				break;
+			case "TYA":
+				sb.append(indent).append("nz = a = y;\n");
+				break;
+			default:
+				throw new IllegalArgumentException("Unhandled mnemonic: " + mnemonic);
+		}
+
+		if (mode != REL) {
+			sb.append(indent).append("addCycles(").append(InstructionInfo6502.getCycles(opcode)).append(");\n");
+		}
+
+	}
+
+	private static void appendBranch(StringBuilder sb, String indent, String condition, int offset,
+			int next, int start, String loopBack) {
+		int target = next + (byte)offset;
+		int cycles = 3 + (((next ^ target) & 0x100) >> 8);
+		sb.append(indent).append("if (").append(condition).append(") {\n");
+		sb.append(indent).append("\taddCycles(").append(cycles).append(");\n");
+		appendJump(sb, indent + '\t', target, start, loopBack);
+		sb.append(indent).append("}\n");
+		sb.append(indent).append("addCycles(2);\n");
+		appendExit(sb, indent, hex(next));
+	}
+
+	/**
+	 * Appends a jump to a known address, looping back to the start of
+	 * the block if that's where it goes.
+	 */
+	private static void appendJump(StringBuilder sb, String indent, int target, int start, String loopBack) {
+		if (loopBack != null && target == start) {
+			sb.append(indent).append("if (!mustExit()) {\n");
+			if (!loopBack.isEmpty()) {
+				sb.append(indent).append('\t').append(loopBack).append('\n');
+			}
+			sb.append(indent).append("\tcontinue;\n");
+			sb.append(indent).append("}\n");
+		}
+		appendExit(sb, indent, hex(target));
+	}
+
+	/**
+	 * Appends a shift, rotate, increment or decrement of either the
+	 * accumulator or memory.  Memory is read, written back unchanged,
+	 * then written again with the result, just as the real CPU does.
+	 */
+	private static void appendReadModifyWrite(StringBuilder sb, String indent, String mnemonic, String address) {
+
+		String operand = address == null ? "a" : "t";
+		if (address != null) {
+			sb.append(indent).append("t = read(m);\n");
+			sb.append(indent).append("write(m, t);\n");
+		}
+
+		switch (mnemonic) {
+			case "ASL":
+				sb.append(indent).append("c = ").append(operand).append(" << 1;\n");
+				sb.append(indent).append("nz = ").append(operand).append(" = c & 0xff;\n");
+				break;
+			case "LSR":
+				sb.append(indent).append("c = ").append(operand).append(" << 8;\n");
+				sb.append(indent).append("nz = ").append(operand).append(" = ").append(operand).append(" >> 1;\n");
+				break;
+			case "ROL":
+				sb.append(indent).append("c = (").append(operand).append(" << 1) | ((c >> 8) & 0x01);\n");
+				sb.append(indent).append("nz = ").append(operand).append(" = c & 0xff;\n");
+				break;
+			case "ROR":
+				sb.append(indent).append("nz = (").append(operand).append(" >> 1) | ((c >> 1) & 0x80);\n");
+				sb.append(indent).append("c = ").append(operand).append(" << 8;\n");
+				sb.append(indent).append(operand).append(" = nz;\n");
+				break;
+			case "INC":
+				sb.append(indent).append("nz = ").append(operand).append(" = (").append(operand).append(" + 1) & 0xff;\n");
+				break;
+			default: // DEC
+				sb.append(indent).append("nz = ").append(operand).append(" = (").append(operand).append(" - 1) & 0xff;\n");
+				break;
+		}
+
+		if (address != null) {
+			sb.append(indent).append("write(m, t);\n");
+		}
+
+	}
+
+	private static String hex(int value) {
+		return "0x" + Integer.toHexString(value);
+	}
+
+	/**
+	 * Returns the code to run each time a block loops back to its start.
+	 * For an idle loop (see {@link n6502Impl#skipIdleIterations(int)}),
+	 * this skips the iterations left; otherwise it's empty.
+	 *
+	 * @param block A block that loops back to its start.
+	 * @return The code to run.
+	 */
+	private static String getLoopBack(BasicBlock block) {
+
+		int first = block.getInstruction(0);
+		int opcode = first & 0xff;
+
+		if (block.getInstructionCount() == 1 && opcode == 0x4c) { // JMP *
+			return "skipIdleLoop(-1, 3);";
+		}
+
+		int testCycles = n6502Impl.getIdleTestCycles(opcode);
+		if (block.getInstructionCount() == 2 && testCycles > 0 &&
+				(block.getInstruction(1) & 0x1f) == 0x10) { // Test and branch back
+			int end = block.getEnd();
+			int period = testCycles + 3 + (((end ^ block.getStart()) & 0x100) >> 8);
+			String address = testCycles == 2 ? "-1" : hex((first >> 8) & 0xffff);
+			return "skipIdleLoop(" + address + ", " + period + ");";
+		}
+
+		return "";
+
+	}
+
+	/**
+	 * Formats an address or value the way 6502 assemblers do, e.g.
+	 * <code>$c000</code>.
+	 *
+	 * @param value The value.
+	 * @param digits The number of hex digits.
+	 * @return The formatted value.
+	 */
+	static String hex(int value, int digits) {
+		return String.format(Locale.ROOT, "$%0" + digits + "x", value);
+	}
+
+}
\ No newline at end of file
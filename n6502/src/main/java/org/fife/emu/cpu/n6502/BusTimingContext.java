@@ -0,0 +1,138 @@
+package org.fife.emu.cpu.n6502;
+
+import java.io.Serializable;
+
+import org.fife.emu.CpuContext;
+import org.fife.emu.MemoryMapListener;
+import org.fife.emu.MemoryStorage;
+import org.fife.emu.cpu.Cpu;
+
+
+/**
+ * Wraps a machine's context for an {@link n6502Impl} that ticks its clock
+ * per bus access.  Each byte read or written through it first lets the
+ * CPU tick, which notifies its {@link org.fife.emu.BusListener}; words are
+ * accessed a byte at a time.  Everything else, including reads without
+ * side effects and block transfers (which devices use for DMA, not the
+ * CPU), goes straight to the machine's context.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see n6502Impl#n6502Impl(CpuContext, float, org.fife.emu.BusListener)
+ */
+final class BusTimingContext implements CpuContext, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final CpuContext context;
+	private final n6502Impl cpu;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The machine's context.
+	 * @param cpu The CPU to tick.
+	 */
+	BusTimingContext(CpuContext context, n6502Impl cpu) {
+		this.context = context;
+		this.cpu = cpu;
+	}
+
+	@Override
+	public void addMemoryMapListener(MemoryMapListener listener) {
+		context.addMemoryMapListener(listener);
+	}
+
+	@Override
+	public void copyBlock(int srcAddress, int destAddress, int length) {
+		context.copyBlock(srcAddress, destAddress, length);
+	}
+
+	/**
+	 * Returns the machine's context.
+	 *
+	 * @return The machine's context.
+	 */
+	CpuContext getContext() {
+		return context;
+	}
+
+	@Override
+	public Cpu getCpu() {
+		return context.getCpu();
+	}
+
+	@Override
+	public MemoryStorage getMemory() {
+		return context.getMemory();
+	}
+
+	@Override
+	public boolean isPollStable(int address) {
+		return context.isPollStable(address);
+	}
+
+	@Override
+	public boolean isROM(int address) {
+		return context.isROM(address);
+	}
+
+	@Override
+	public void loadROM(int[] rom) {
+		context.loadROM(rom);
+	}
+
+	@Override
+	public void readBlock(int address, byte[] dest, int offset, int length) {
+		context.readBlock(address, dest, offset, length);
+	}
+
+	@Override
+	public void readBlockSafely(int address, byte[] dest, int offset, int length) {
+		context.readBlockSafely(address, dest, offset, length);
+	}
+
+	@Override
+	public int readByte(int address) {
+		cpu.tickBus(address);
+		return context.readByte(address);
+	}
+
+	@Override
+	public int readByteSafely(int address) {
+		return context.readByteSafely(address);
+	}
+
+	@Override
+	public int readWord(int address) {
+		return readByte(address) | (readByte(address + 1) << 8);
+	}
+
+	@Override
+	public void removeMemoryMapListener(MemoryMapListener listener) {
+		context.removeMemoryMapListener(listener);
+	}
+
+	@Override
+	public boolean watchForWrites(int address) {
+		return context.watchForWrites(address);
+	}
+
+	@Override
+	public void writeByte(int address, int value) {
+		cpu.tickBus(address);
+		context.writeByte(address, value);
+	}
+
+	@Override
+	public void writeBlock(int address, byte[] src, int offset, int length) {
+		context.writeBlock(address, src, offset, length);
+	}
+
+	@Override
+	public void writeWord(int address, int value) {
+		writeByte(address, value);
+		writeByte(address + 1, value >> 8);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,413 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.BusListener;
+import org.fife.emu.CpuContext;
+
+
+/**
+ * The CMOS 65C02, as found in e.g. the Apple IIc and enhanced IIe.
+ * Compared to the NMOS 6502, it:
+ * <ul>
+ *    <li>adds the BRA, PHX, PHY, PLX, PLY, STZ, TRB and TSB instructions,
+ *        INC and DEC on the accumulator, BIT in more addressing modes,
+ *        zero page indirect addressing, and <code>JMP ($4400,X)</code></li>
+ *    <li>runs every undocumented NMOS opcode as a NOP</li>
+ *    <li>sets N and Z correctly in decimal mode, at the cost of an extra
+ *        cycle for ADC and SBC</li>
+ *    <li>fixes <code>JMP ($44FF)</code> reading its high byte from the
+ *        wrong page, taking a cycle longer</li>
+ *    <li>clears the D flag on BRK, IRQ and NMI</li>
+ *    <li>takes one cycle less for ASL, LSR, ROL and ROR absolute,X when
+ *        no page is crossed</li>
+ * </ul>
+ * The Rockwell and WDC bit instructions (RMB, SMB, BBR and BBS) and WDC's
+ * WAI and STP aren't emulated; those opcodes are NOPs, as on the original
+ * 65C02.  The dummy reads and writes done differ from the NMOS 6502's
+ * only in ways that are invisible to ordinary memory.<p>
+ *
+ * Only the instructions that differ from the NMOS 6502 are handled here;
+ * everything else is run by the superclass.  The instructions handled
+ * here are always interpreted.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class Cmos65C02 extends Nmos6502 {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The length of each instruction, in bytes.
+	 */
+	private static final int[] INSTRUCTION_LENGTHS = {
+		1, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // 00
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // 10
+		3, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // 20
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // 30
+		1, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // 40
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // 50
+		1, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // 60
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // 70
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // 80
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // 90
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // A0
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // B0
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // C0
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // D0
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 2, 1, 1, 3, 3, 3, 1, // E0
+		2, 2, 2, 1, 2, 2, 2, 1, 1, 3, 1, 1, 3, 3, 3, 1, // F0
+	};
+
+	/**
+	 * Opcodes that are documented instructions on the NMOS 6502, other
+	 * than those handled here because the 65C02 changes them.
+	 */
+	private static final boolean[] INHERITED = new boolean[256];
+
+	static {
+		int[] documented = {
+			0x01, 0x05, 0x06, 0x08, 0x09, 0x0A, 0x0D, 0x0E,
+			0x10, 0x11, 0x15, 0x16, 0x18, 0x19, 0x1D,
+			0x20, 0x21, 0x24, 0x25, 0x26, 0x28, 0x29, 0x2A, 0x2C, 0x2D, 0x2E,
+			0x30, 0x31, 0x35, 0x36, 0x38, 0x39, 0x3D,
+			0x40, 0x41, 0x45, 0x46, 0x48, 0x49, 0x4A, 0x4C, 0x4D, 0x4E,
+			0x50, 0x51, 0x55, 0x56, 0x58, 0x59, 0x5D,
+			0x60, 0x61, 0x65, 0x66, 0x68, 0x69, 0x6A, 0x6D, 0x6E,
+			0x70, 0x71, 0x75, 0x76, 0x78, 0x79, 0x7D,
+			0x81, 0x84, 0x85, 0x86, 0x88, 0x8A, 0x8C, 0x8D, 0x8E,
+			0x90, 0x91, 0x94, 0x95, 0x96, 0x98, 0x99, 0x9A, 0x9D,
+			0xA0, 0xA1, 0xA2, 0xA4, 0xA5, 0xA6, 0xA8, 0xA9, 0xAA, 0xAC, 0xAD, 0xAE,
+			0xB0, 0xB1, 0xB4, 0xB5, 0xB6, 0xB8, 0xB9, 0xBA, 0xBC, 0xBD, 0xBE,
+			0xC0, 0xC1, 0xC4, 0xC5, 0xC6, 0xC8, 0xC9, 0xCA, 0xCC, 0xCD, 0xCE,
+			0xD0, 0xD1, 0xD5, 0xD6, 0xD8, 0xD9, 0xDD, 0xDE,
+			0xE0, 0xE1, 0xE4, 0xE5, 0xE6, 0xE8, 0xE9, 0xEA, 0xEC, 0xED, 0xEE,
+			0xF0, 0xF1, 0xF5, 0xF6, 0xF8, 0xF9, 0xFD, 0xFE,
+		};
+		for (int opcode : documented) {
+			INHERITED[opcode] = true;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 */
+	public Cmos65C02(CpuContext context, float clockSpeed) {
+		this(context, clockSpeed, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 * @param busListener The listener to notify before each bus access,
+	 *        or <code>null</code> to only count cycles per instruction.
+	 * @see n6502Impl#n6502Impl(CpuContext, float, BusListener)
+	 */
+	public Cmos65C02(CpuContext context, float clockSpeed, BusListener busListener) {
+		super(context, clockSpeed, INSTRUCTION_LENGTHS, busListener);
+	}
+
+	@Override
+	boolean canCompile(int opcode) {
+		return INHERITED[opcode] && super.canCompile(opcode);
+	}
+
+	@Override
+	protected void doADC(int val) {
+		if (flagD == 0) {
+			super.doADC(val);
+		}
+		else {
+			setDecimalResult(DecimalArithmetic.CMOS_ADC[((flagC & 0x100) << 8) | (a << 8) | val]);
+			cycles++;
+		}
+	}
+
+	@Override
+	protected void doSBC(int val) {
+		if (flagD == 0) {
+			super.doSBC(val);
+		}
+		else {
+			setDecimalResult(DecimalArithmetic.CMOS_SBC[((flagC & 0x100) << 8) | (a << 8) | val]);
+			cycles++;
+		}
+	}
+
+	@Override
+	@SuppressWarnings("checkstyle:MethodLength")
+	protected void executeInstruction(int opcode, int operand) {
+
+		if (INHERITED[opcode]) {
+			super.executeInstruction(opcode, operand);
+			return;
+		}
+
+		switch (opcode) {
+
+			case 0x00:    // BRK - Break
+				doBRK();
+				flagD = 0;
+				cycles += 7;
+				break;
+
+			case 0x04:    // TSB $44 - Zero Page
+				zeroPage_Write(operand, doTSB(zeroPage_Read(operand)));
+				cycles += 5;
+				break;
+
+			case 0x0C:    // TSB $4400 - Absolute
+				absolute_Write(operand, doTSB(absolute_Read(operand)));
+				cycles += 6;
+				break;
+
+			case 0x12:    // ORA ($44) - Zero Page Indirect
+				doORA(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0x14:    // TRB $44 - Zero Page
+				zeroPage_Write(operand, doTRB(zeroPage_Read(operand)));
+				cycles += 5;
+				break;
+
+			case 0x1A:    // INC A - Accumulator
+				a = doINC(a);
+				cycles += 2;
+				break;
+
+			case 0x1C:    // TRB $4400 - Absolute
+				absolute_Write(operand, doTRB(absolute_Read(operand)));
+				cycles += 6;
+				break;
+
+			case 0x1E:    // ASL $4400,X - Absolute,X
+				doASLMem(_absIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x32:    // AND ($44) - Zero Page Indirect
+				doAND(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0x34:    // BIT $44,X - Zero Page,X
+				doBIT(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0x3A:    // DEC A - Accumulator
+				a = doDEC(a);
+				cycles += 2;
+				break;
+
+			case 0x3C:    // BIT $4400,X - Absolute,X
+				doBIT(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x3E:    // ROL $4400,X - Absolute,X
+				doROLMem(_absIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x52:    // EOR ($44) - Zero Page Indirect
+				doEOR(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0x5A:    // PHY - Implied
+				context.readByte(pc); // Throw away
+				pushByte(y);
+				cycles += 3;
+				break;
+
+			case 0x5E:    // LSR $4400,X - Absolute,X
+				doLSRMem(_absIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x64:    // STZ $44 - Zero Page
+				zeroPage_Write(operand, 0);
+				cycles += 3;
+				break;
+
+			case 0x6C:    // JMP ($5597) - Indirect
+				pc = context.readWord(operand);
+				cycles += 6;
+				break;
+
+			case 0x72:    // ADC ($44) - Zero Page Indirect
+				doADC(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0x74:    // STZ $44,X - Zero Page,X
+				zeroPageIndexed_Write(operand, x, 0);
+				cycles += 4;
+				break;
+
+			case 0x7A:    // PLY - Implied
+				context.readByte(pc); // Throw away
+				flagNZ = y = popByte();
+				cycles += 4;
+				break;
+
+			case 0x7C:    // JMP ($4400,X) - Absolute Indexed Indirect
+				pc = context.readWord((operand + x) & 0xffff);
+				cycles += 6;
+				break;
+
+			case 0x7E:    // ROR $4400,X - Absolute,X
+				doRORMem(_absIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x80:    // BRA - Relative
+				doBranch(true, operand);
+				break;
+
+			case 0x89:    // BIT #$44 - Immediate; only affects Z
+				setFlagZ((a & operand) == 0);
+				cycles += 2;
+				break;
+
+			case 0x92:    // STA ($44) - Zero Page Indirect
+				context.writeByte(zeroPageIndirect(operand), a);
+				cycles += 5;
+				break;
+
+			case 0x9C:    // STZ $4400 - Absolute
+				absolute_Write(operand, 0);
+				cycles += 4;
+				break;
+
+			case 0x9E:    // STZ $4400,X - Absolute,X
+				absoluteIndex_Write(operand, x, 0);
+				cycles += 5;
+				break;
+
+			case 0xB2:    // LDA ($44) - Zero Page Indirect
+				doLDA(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0xD2:    // CMP ($44) - Zero Page Indirect
+				doCMP(a, context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0xDA:    // PHX - Implied
+				context.readByte(pc); // Throw away
+				pushByte(x);
+				cycles += 3;
+				break;
+
+			case 0xF2:    // SBC ($44) - Zero Page Indirect
+				doSBC(context.readByte(zeroPageIndirect(operand)));
+				cycles += 5;
+				break;
+
+			case 0xFA:    // PLX - Implied
+				context.readByte(pc); // Throw away
+				flagNZ = x = popByte();
+				cycles += 4;
+				break;
+
+			// NOPs; their lengths are in INSTRUCTION_LENGTHS
+
+			case 0x02:
+			case 0x22:
+			case 0x42:
+			case 0x62:
+			case 0x82:
+			case 0xC2:
+			case 0xE2:
+				cycles += 2;
+				break;
+
+			case 0x44:
+				cycles += 3;
+				break;
+
+			case 0x54:
+			case 0xD4:
+			case 0xF4:
+			case 0xDC:
+			case 0xFC:
+				cycles += 4;
+				break;
+
+			case 0x5C:
+				cycles += 8;
+				break;
+
+			default: // Columns 3, 7, B and F
+				cycles += 1;
+				break;
+
+		}
+
+	}
+
+	/**
+	 * Performs a TRB instruction.  The Z flag is updated appropriately.
+	 *
+	 * @param b The byte to test and reset bits in.
+	 * @return The modified byte.
+	 */
+	private int doTRB(int b) {
+		setFlagZ((a & b) == 0);
+		return b & ~a;
+	}
+
+	/**
+	 * Performs a TSB instruction.  The Z flag is updated appropriately.
+	 *
+	 * @param b The byte to test and set bits in.
+	 * @return The modified byte.
+	 */
+	private int doTSB(int b) {
+		setFlagZ((a & b) == 0);
+		return b | a;
+	}
+
+	@Override
+	public void irq() {
+		if (flagI == 0) {
+			super.irq();
+			flagD = 0;
+		}
+	}
+
+	@Override
+	public void nmi() {
+		super.nmi();
+		flagD = 0;
+	}
+
+	/**
+	 * Sets the Z flag, leaving the N flag alone.
+	 *
+	 * @param zero Whether the Z flag should be set.
+	 */
+	private void setFlagZ(boolean zero) {
+		flagNZ = (zero ? 0 : 1) | (getFlagN() << 8);
+	}
+
+	/**
+	 * Returns the address pointed to by a zero-page address.  Unlike on
+	 * the NMOS 6502, the pointer wraps around within the zero page.
+	 *
+	 * @param zp The zero-page address (the instruction's operand).
+	 * @return The address.
+	 */
+	private int zeroPageIndirect(int zp) {
+		return context.readByte(zp) | (context.readByte((zp + 1) & 0xff) << 8);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.CpuContext;
+
+
+/**
+ * Base class for blocks of 6502 code compiled to Java classes.
+ * Subclasses are generated by {@link BlockGenerator}; each one loads the
+ * registers into local variables, runs a block of instructions, and
+ * stores the registers back via {@link #exit(int, int, int, int, int, int, int, int)}.
+ * While a block runs, only the CPU's cycle count is kept up to date, so
+ * memory handlers shouldn't look at any other register.<p>
+ *
+ * Generated code checks {@link #mustExit()} before each instruction
+ * after the first, so that a block stops exactly where the interpreter
+ * would: when the CPU runs out of cycles, or when the block's code has
+ * been remapped out from under it.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see n6502Impl#setJitEnabled(boolean)
+ */
+public abstract class CompiledBlock {
+
+	private final n6502Impl cpu;
+	private final CpuContext context;
+	private boolean valid;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cpu The CPU this block runs on.
+	 */
+	protected CompiledBlock(n6502Impl cpu) {
+		this.cpu = cpu;
+		this.context = cpu.getCpuContext();
+		valid = true;
+	}
+
+	/**
+	 * Adds to the CPU's cycle count.
+	 *
+	 * @param count The number of cycles to add.
+	 */
+	protected final void addCycles(int count) {
+		cpu.addCycles(count);
+	}
+
+	/**
+	 * Stores the registers back into the CPU.  Generated code calls this
+	 * just before returning from {@link #run()}.
+	 *
+	 * @param pc The address of the next instruction to run.
+	 * @param a The A register.
+	 * @param x The X register.
+	 * @param y The Y register.
+	 * @param s The stack pointer.
+	 * @param c The C flag, as stored by {@link n6502Impl}.
+	 * @param nz The N and Z flags, as stored by {@link n6502Impl}.
+	 * @param v The V flag, as stored by {@link n6502Impl}.
+	 */
+	@SuppressWarnings("checkstyle:ParameterNumber")
+	protected final void exit(int pc, int a, int x, int y, int s, int c, int nz, int v) {
+		cpu.restoreRegisters(pc, a, x, y, s, c, nz, v);
+	}
+
+	/**
+	 * Returns the A register.
+	 *
+	 * @return The A register.
+	 */
+	protected final int getA() {
+		return cpu.a;
+	}
+
+	/**
+	 * Returns the C flag, as stored by {@link n6502Impl}, i.e. in bit 8.
+	 *
+	 * @return The C flag.
+	 */
+	protected final int getC() {
+		return cpu.flagC;
+	}
+
+	/**
+	 * Returns the N and Z flags, as stored by {@link n6502Impl}.
+	 *
+	 * @return The N and Z flags.
+	 */
+	protected final int getNZ() {
+		return cpu.flagNZ;
+	}
+
+	/**
+	 * Returns the stack pointer.
+	 *
+	 * @return The stack pointer.
+	 */
+	protected final int getS() {
+		return cpu.getSP();
+	}
+
+	/**
+	 * Returns the V flag, as stored by {@link n6502Impl}, i.e. in bit 7.
+	 *
+	 * @return The V flag.
+	 */
+	protected final int getV() {
+		return cpu.flagV;
+	}
+
+	/**
+	 * Returns the X register.
+	 *
+	 * @return The X register.
+	 */
+	protected final int getX() {
+		return cpu.x;
+	}
+
+	/**
+	 * Returns the Y register.
+	 *
+	 * @return The Y register.
+	 */
+	protected final int getY() {
+		return cpu.y;
+	}
+
+	/**
+	 * Marks this block as invalid, because the memory it was compiled
+	 * from has been remapped.  If it is running, it will exit before its
+	 * next instruction.
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Returns whether this block must stop before its next instruction,
+	 * either because the CPU is out of cycles or because this block is
+	 * no longer valid.
+	 *
+	 * @return Whether to stop.
+	 */
+	protected final boolean mustExit() {
+		return !valid || !cpu.hasCyclesLeft();
+	}
+
+	/**
+	 * Reads a byte from memory.
+	 *
+	 * @param address The address to read.
+	 * @return The byte read.
+	 */
+	protected final int read(int address) {
+		return context.readByte(address);
+	}
+
+	/**
+	 * Reads a word from memory.
+	 *
+	 * @param address The address to read.
+	 * @return The word read.
+	 */
+	protected final int readWord(int address) {
+		return context.readWord(address);
+	}
+
+	/**
+	 * Skips the iterations left of an idle loop.  Generated code calls
+	 * this when a block that is just <code>JMP *</code>, or a load or test
+	 * and a branch back to it, loops back to its start.
+	 *
+	 * @param address The address the loop reads, or <code>-1</code> if it
+	 *        doesn't read memory.  Nothing is skipped if reading it again
+	 *        may return something different.
+	 * @param period The number of cycles each iteration takes.
+	 * @see n6502Impl#skipIdleIterations(int)
+	 */
+	protected final void skipIdleLoop(int address, int period) {
+		if (address < 0 || context.isPollStable(address)) {
+			cpu.skipIdleIterations(period);
+		}
+	}
+
+	/**
+	 * Runs this block.
+	 */
+	protected abstract void run();
+
+	/**
+	 * Writes a byte to memory.
+	 *
+	 * @param address The address to write to.
+	 * @param value The byte to write.
+	 */
+	protected final void write(int address, int value) {
+		context.writeByte(address, value);
+	}
+
+}
\ No newline at end of file
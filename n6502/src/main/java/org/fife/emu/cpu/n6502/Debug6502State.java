@@ -16,7 +16,6 @@ class Debug6502State {
 
 	private CpuContext nes;
 	private n6502Impl cpu;
-	private InstructionInfo6502 instrs;
 
 	private int pc;
 	private int[] bytes;
@@ -29,7 +28,6 @@ class Debug6502State {
 		this.cpu = (n6502Impl)cpu;
 		this.nes = cpu.getCpuContext();
 		bytes = new int[3];
-		instrs = new InstructionInfo6502();
 		w = new PrintWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()));
 	}
 
@@ -62,7 +60,7 @@ class Debug6502State {
 	public void log() throws IOException {
 
 		setInstruction();
-		String inst = instruction != null ? instruction.toString(bytes, nes) : "???";
+		String inst = instruction.toString(bytes, nes);
 
 		String b1 = Util.toHex(bytes[0]);
 		String b2 = bytes[1] < 0 ? "  " : Util.toHex(bytes[1]);
@@ -90,15 +88,13 @@ class Debug6502State {
 
 	private void setInstruction() {
 		pc = nes.getCpu().getPC();
-		int inst = nes.readByte(pc);
-		instruction = instrs.get(inst);
+		int inst = nes.readByteSafely(pc);
+		instruction = InstructionInfo6502.get(inst);
 
 		bytes[0] = inst;
 		bytes[1] = bytes[2] = -1;
-		if (instruction != null) {
-			for (int i = 1; i < instruction.getByteCount(); i++) {
-				bytes[i] = nes.readByte(pc + i);
-			}
+		for (int i = 1; i < instruction.getByteCount(); i++) {
+			bytes[i] = nes.readByteSafely(pc + i);
 		}
 
 	}
@@ -0,0 +1,139 @@
+package org.fife.emu.cpu.n6502;
+
+
+/**
+ * Lookup tables for decimal mode ADC and SBC, indexed by
+ * <code>(C &lt;&lt; 16) | (A &lt;&lt; 8) | operand</code>.  Each entry
+ * holds the new accumulator in bits 0-7, and the C, V, Z and N flags in
+ * bits 8, 9, 10 and 11.  This makes decimal arithmetic as cheap as binary
+ * arithmetic, quirks and all.  The 2A03 has no decimal mode, so the tables
+ * are only built the first time a variant that does runs ADC or SBC with
+ * the D flag set.<p>
+ *
+ * The tables are built from the sequences in Bruce Clark's "Decimal Mode"
+ * tutorial, which match the real chips for every input, including invalid
+ * BCD:
+ * <ul>
+ *    <li>On the NMOS 6502, ADC sets N and V from the sum before its high
+ *        digit is adjusted, and Z from the binary sum.  SBC sets all
+ *        flags as a binary subtraction would.</li>
+ *    <li>On the 65C02, N and Z reflect the result, and SBC adjusts
+ *        invalid BCD differently.</li>
+ * </ul>
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see Nmos6502
+ * @see Cmos65C02
+ */
+final class DecimalArithmetic {
+
+	/**
+	 * The bit of a table entry holding the C flag.
+	 */
+	static final int C_SHIFT = 8;
+
+	/**
+	 * The bit of a table entry holding the V flag.
+	 */
+	static final int V_SHIFT = 9;
+
+	/**
+	 * The bit of a table entry holding the Z flag.
+	 */
+	static final int Z_SHIFT = 10;
+
+	/**
+	 * The bit of a table entry holding the N flag.
+	 */
+	static final int N_SHIFT = 11;
+
+	/**
+	 * Decimal ADC results on the NMOS 6502.
+	 */
+	static final char[] NMOS_ADC = new char[0x20000];
+
+	/**
+	 * Decimal SBC results on the NMOS 6502.
+	 */
+	static final char[] NMOS_SBC = new char[0x20000];
+
+	/**
+	 * Decimal ADC results on the 65C02.
+	 */
+	static final char[] CMOS_ADC = new char[0x20000];
+
+	/**
+	 * Decimal SBC results on the 65C02.
+	 */
+	static final char[] CMOS_SBC = new char[0x20000];
+
+	static {
+		for (int c = 0; c < 2; c++) {
+			for (int a = 0; a < 256; a++) {
+				for (int val = 0; val < 256; val++) {
+					int index = (c << 16) | (a << 8) | val;
+					buildADC(index, a, val, c);
+					buildSBC(index, a, val, c);
+				}
+			}
+		}
+	}
+
+	private DecimalArithmetic() {
+	}
+
+	private static void buildADC(int index, int a, int val, int c) {
+
+		int lo = (a & 0x0f) + (val & 0x0f) + c;
+		if (lo > 0x09) {
+			lo = ((lo + 0x06) & 0x0f) + 0x10;
+		}
+		int sum = (a & 0xf0) + (val & 0xf0) + lo;
+
+		int v = ((~(a ^ val)) & (a ^ sum) & 0x80) >> 7;
+		int n = (sum >> 7) & 0x01;
+		int z = ((a + val + c) & 0xff) == 0 ? 1 : 0;
+
+		int result = sum > 0x9f ? sum + 0x60 : sum;
+		int carry = result > 0xff ? 1 : 0;
+		result &= 0xff;
+
+		NMOS_ADC[index] = entry(result, carry, v, z, n);
+		CMOS_ADC[index] = entry(result, carry, v, result == 0 ? 1 : 0, result >> 7);
+
+	}
+
+	private static void buildSBC(int index, int a, int val, int c) {
+
+		int borrow = c ^ 0x01;
+		int binary = a - val - borrow;
+		int carry = binary < 0 ? 0 : 1;
+		int v = ((a ^ val) & (a ^ binary) & 0x80) >> 7;
+
+		int lo = (a & 0x0f) - (val & 0x0f) - borrow;
+		int nmos = (a & 0xf0) - (val & 0xf0) + (lo < 0 ? ((lo - 0x06) & 0x0f) - 0x10 : lo);
+		if (nmos < 0) {
+			nmos -= 0x60;
+		}
+		nmos &= 0xff;
+		binary &= 0xff;
+		NMOS_SBC[index] = entry(nmos, carry, v, binary == 0 ? 1 : 0, binary >> 7);
+
+		int cmos = a - val - borrow;
+		if (cmos < 0) {
+			cmos -= 0x60;
+		}
+		if (lo < 0) {
+			cmos -= 0x06;
+		}
+		cmos &= 0xff;
+		CMOS_SBC[index] = entry(cmos, carry, v, cmos == 0 ? 1 : 0, cmos >> 7);
+
+	}
+
+	private static char entry(int a, int c, int v, int z, int n) {
+		return (char)(a | (c << C_SHIFT) | (v << V_SHIFT) | (z << Z_SHIFT) | (n << N_SHIFT));
+	}
+
+}
\ No newline at end of file
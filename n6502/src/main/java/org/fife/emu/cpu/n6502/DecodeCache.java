@@ -0,0 +1,159 @@
+package org.fife.emu.cpu.n6502;
+
+import java.io.Serializable;
+
+import org.fife.emu.CpuContext;
+import org.fife.emu.MemoryMapListener;
+
+
+/**
+ * A cache of decoded instructions for an {@link n6502Impl}, keyed by
+ * address.  Only pages the context can watch for writes (ROM and plain
+ * RAM) are cached; instructions on I/O pages, and instructions that
+ * straddle two pages, are always decoded from memory.<p>
+ *
+ * A page's cached instructions are discarded when it is remapped or
+ * written to.  Pages that keep being written to, e.g. because they mix
+ * code and data, eventually stop being cached.<p>
+ *
+ * Cached instructions that start common sequences, such as
+ * <code>DEX/BNE</code>, are marked so the CPU can run the whole sequence
+ * at once (see {@link n6502Impl#fuse(int, int)}).
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see n6502Impl#setDecodeCacheEnabled(boolean)
+ */
+final class DecodeCache implements MemoryMapListener, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of pages in the 6502's address space.
+	 */
+	private static final int PAGE_COUNT = 0x100;
+
+	/**
+	 * The number of times writes can invalidate a page before we stop
+	 * caching it until it is next remapped.
+	 */
+	private static final int MAX_WRITE_INVALIDATIONS = 32;
+
+	private final n6502Impl cpu;
+	private final CpuContext context;
+
+	/**
+	 * The decoded instructions in each page, or <code>null</code> for
+	 * pages not currently cached.  An entry of <code>0</code> means the
+	 * instruction at that address hasn't been decoded yet.
+	 */
+	private final int[][] pages;
+
+	/**
+	 * Whether each page can't be cached.
+	 */
+	private final boolean[] uncacheable;
+
+	/**
+	 * The number of times each page has been invalidated by a write.
+	 */
+	private final int[] writeInvalidations;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cpu The CPU to decode instructions for.
+	 * @param context The CPU's context.
+	 */
+	DecodeCache(n6502Impl cpu, CpuContext context) {
+		this.cpu = cpu;
+		this.context = context;
+		pages = new int[PAGE_COUNT][];
+		uncacheable = new boolean[PAGE_COUNT];
+		writeInvalidations = new int[PAGE_COUNT];
+	}
+
+	/**
+	 * Returns the decoded instruction at an address, decoding and
+	 * caching it if necessary.
+	 *
+	 * @param address The address of the instruction.
+	 * @return The decoded instruction, in the format returned by
+	 *         {@link n6502Impl#decode(int)}.
+	 */
+	int fetch(int address) {
+
+		int page = address >> 8;
+		if (page >= PAGE_COUNT) {
+			return cpu.decode(address);
+		}
+
+		int[] entries = pages[page];
+		if (entries != null) {
+			int entry = entries[address & 0xff];
+			if (entry != 0) {
+				return entry;
+			}
+		}
+
+		int entry = cpu.decode(address);
+		if (entries == null && !uncacheable[page]) {
+			entries = watch(page);
+		}
+		if (entries != null && (address & 0xff) + (entry >>> 24) <= 0x100) {
+			entry = cpu.fuse(address, entry);
+			entries[address & 0xff] = entry;
+		}
+		return entry;
+
+	}
+
+	/**
+	 * Discards the cached instructions in a range of pages.
+	 *
+	 * @param start The starting address, inclusive.
+	 * @param end The ending address, exclusive.
+	 * @param written Whether the pages were written to, as opposed to
+	 *        remapped.
+	 */
+	private void invalidate(int start, int end, boolean written) {
+		int last = Math.min((end - 1) >> 8, PAGE_COUNT - 1);
+		for (int page = start >> 8; page <= last; page++) {
+			pages[page] = null;
+			if (!written) {
+				uncacheable[page] = false;
+				writeInvalidations[page] = 0;
+			}
+			else if (++writeInvalidations[page] >= MAX_WRITE_INVALIDATIONS) {
+				uncacheable[page] = true;
+			}
+		}
+	}
+
+	@Override
+	public void memoryMapChanged(int start, int end) {
+		invalidate(start, end, false);
+	}
+
+	/**
+	 * Starts caching a page, if the context can tell us when it changes.
+	 *
+	 * @param page The page.
+	 * @return The page's (empty) cache, or <code>null</code> if the page
+	 *         can't be cached.
+	 */
+	private int[] watch(int page) {
+		if (context.watchForWrites(page << 8)) {
+			pages[page] = new int[0x100];
+			return pages[page];
+		}
+		uncacheable[page] = true;
+		return null;
+	}
+
+	@Override
+	public void watchedPageWritten(int start, int end) {
+		invalidate(start, end, true);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.fife.emu.cpu.n6502;
+
+
+/**
+ * Called by an {@link n6502Impl} before each instruction it runs, e.g. to
+ * implement breakpoints or a trace.  Setting a hook switches the CPU to
+ * its instrumented loop, which doesn't run compiled or fused code.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see n6502Impl#setInstructionHook(InstructionHook)
+ */
+public interface InstructionHook {
+
+	/**
+	 * Called before an instruction is run.
+	 *
+	 * @param cpu The CPU.
+	 * @param address The address of the instruction.
+	 */
+	void beforeInstruction(n6502Impl cpu, int address);
+
+}
\ No newline at end of file
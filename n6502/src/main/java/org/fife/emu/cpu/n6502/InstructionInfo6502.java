@@ -1,263 +1,528 @@
 package org.fife.emu.cpu.n6502;
 
-import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.fife.emu.CpuContext;
 
+
 /**
- * The set of instructions in the 6502 CPU.
+ * The mnemonic, addressing mode, length and timing of each of the NMOS
+ * 6502's 256 opcodes, including the undocumented ones.  The table is built
+ * once, when this class is loaded, and is shared by the interpreter, the
+ * JIT and the state logger.  Undocumented NOPs are named <code>DOP</code>
+ * and <code>TOP</code> for their two and three byte forms.<p>
+ *
+ * Cycle counts are those of an instruction that doesn't cross a page.
+ * Instructions with a page-crossing penalty take one more cycle when
+ * their indexed address is on a different page than the base address.
+ * Branches take one more cycle when taken, and another if the target is
+ * on a different page.  <code>KIL</code> halts the CPU, so it's given
+ * no cycles.
+ *
+ * @author Robert Futrell
+ * @version 1.0
  */
-public class InstructionInfo6502 implements InstructionSet6502 {
+public final class InstructionInfo6502 {
+
+	/**
+	 * No operand, e.g. <code>CLC</code>.
+	 */
+	public static final int IMPLIED = 0;
+
+	/**
+	 * Operates on the accumulator, e.g. <code>ASL A</code>.
+	 */
+	public static final int ACCUMULATOR = 1;
+
+	/**
+	 * A byte operand, e.g. <code>LDA #$44</code>.
+	 */
+	public static final int IMMEDIATE = 2;
+
+	/**
+	 * A zero page address, e.g. <code>LDA $44</code>.
+	 */
+	public static final int ZERO_PAGE = 3;
+
+	/**
+	 * A zero page address indexed by X, e.g. <code>LDA $44,X</code>.
+	 */
+	public static final int ZERO_PAGE_X = 4;
+
+	/**
+	 * A zero page address indexed by Y, e.g. <code>LDX $44,Y</code>.
+	 */
+	public static final int ZERO_PAGE_Y = 5;
+
+	/**
+	 * An absolute address, e.g. <code>LDA $4400</code>.
+	 */
+	public static final int ABSOLUTE = 6;
+
+	/**
+	 * An absolute address indexed by X, e.g. <code>LDA $4400,X</code>.
+	 */
+	public static final int ABSOLUTE_X = 7;
+
+	/**
+	 * An absolute address indexed by Y, e.g. <code>LDA $4400,Y</code>.
+	 */
+	public static final int ABSOLUTE_Y = 8;
+
+	/**
+	 * A pointer in zero page indexed by X, e.g. <code>LDA ($44,X)</code>.
+	 */
+	public static final int INDEXED_INDIRECT = 9;
+
+	/**
+	 * A pointer in zero page, indexed by Y once read, e.g.
+	 * <code>LDA ($44),Y</code>.
+	 */
+	public static final int INDIRECT_INDEXED = 10;
+
+	/**
+	 * An absolute pointer, i.e. <code>JMP ($4400)</code>.
+	 */
+	public static final int INDIRECT = 11;
+
+	/**
+	 * A branch offset, e.g. <code>BNE $4400</code>.
+	 */
+	public static final int RELATIVE = 12;
 
-	private Map<Integer, Instruction> instructions;
+	/**
+	 * The length of an instruction in each addressing mode, in bytes.
+	 */
+	private static final int[] MODE_LENGTHS = { 1, 1, 2, 2, 2, 2, 3, 3, 3, 2, 2, 3, 2 };
 
+	private static final String[] MNEMONICS = new String[256];
+	private static final byte[] MODES = new byte[256];
+	private static final byte[] CYCLES = new byte[256];
+	private static final boolean[] PAGE_CROSS_PENALTIES = new boolean[256];
+	private static final Instruction[] INSTRUCTIONS = new Instruction[256];
 
-	public InstructionInfo6502() {
-		instructions = new HashMap<>();
-		populateInstructions();
+	static {
+		define(0x00, "BRK", IMPLIED, 7);
+		define(0x01, "ORA", INDEXED_INDIRECT, 6);
+		define(0x02, "KIL", IMPLIED, 0);
+		define(0x03, "SLO", INDEXED_INDIRECT, 8);
+		define(0x04, "DOP", ZERO_PAGE, 3);
+		define(0x05, "ORA", ZERO_PAGE, 3);
+		define(0x06, "ASL", ZERO_PAGE, 5);
+		define(0x07, "SLO", ZERO_PAGE, 5);
+		define(0x08, "PHP", IMPLIED, 3);
+		define(0x09, "ORA", IMMEDIATE, 2);
+		define(0x0A, "ASL", ACCUMULATOR, 2);
+		define(0x0B, "ANC", IMMEDIATE, 2);
+		define(0x0C, "TOP", ABSOLUTE, 4);
+		define(0x0D, "ORA", ABSOLUTE, 4);
+		define(0x0E, "ASL", ABSOLUTE, 6);
+		define(0x0F, "SLO", ABSOLUTE, 6);
+		define(0x10, "BPL", RELATIVE, 2);
+		definePageCross(0x11, "ORA", INDIRECT_INDEXED, 5);
+		define(0x12, "KIL", IMPLIED, 0);
+		define(0x13, "SLO", INDIRECT_INDEXED, 8);
+		define(0x14, "DOP", ZERO_PAGE_X, 4);
+		define(0x15, "ORA", ZERO_PAGE_X, 4);
+		define(0x16, "ASL", ZERO_PAGE_X, 6);
+		define(0x17, "SLO", ZERO_PAGE_X, 6);
+		define(0x18, "CLC", IMPLIED, 2);
+		definePageCross(0x19, "ORA", ABSOLUTE_Y, 4);
+		define(0x1A, "NOP", IMPLIED, 2);
+		define(0x1B, "SLO", ABSOLUTE_Y, 7);
+		definePageCross(0x1C, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0x1D, "ORA", ABSOLUTE_X, 4);
+		define(0x1E, "ASL", ABSOLUTE_X, 7);
+		define(0x1F, "SLO", ABSOLUTE_X, 7);
+		define(0x20, "JSR", ABSOLUTE, 6);
+		define(0x21, "AND", INDEXED_INDIRECT, 6);
+		define(0x22, "KIL", IMPLIED, 0);
+		define(0x23, "RLA", INDEXED_INDIRECT, 8);
+		define(0x24, "BIT", ZERO_PAGE, 3);
+		define(0x25, "AND", ZERO_PAGE, 3);
+		define(0x26, "ROL", ZERO_PAGE, 5);
+		define(0x27, "RLA", ZERO_PAGE, 5);
+		define(0x28, "PLP", IMPLIED, 4);
+		define(0x29, "AND", IMMEDIATE, 2);
+		define(0x2A, "ROL", ACCUMULATOR, 2);
+		define(0x2B, "ANC", IMMEDIATE, 2);
+		define(0x2C, "BIT", ABSOLUTE, 4);
+		define(0x2D, "AND", ABSOLUTE, 4);
+		define(0x2E, "ROL", ABSOLUTE, 6);
+		define(0x2F, "RLA", ABSOLUTE, 6);
+		define(0x30, "BMI", RELATIVE, 2);
+		definePageCross(0x31, "AND", INDIRECT_INDEXED, 5);
+		define(0x32, "KIL", IMPLIED, 0);
+		define(0x33, "RLA", INDIRECT_INDEXED, 8);
+		define(0x34, "DOP", ZERO_PAGE_X, 4);
+		define(0x35, "AND", ZERO_PAGE_X, 4);
+		define(0x36, "ROL", ZERO_PAGE_X, 6);
+		define(0x37, "RLA", ZERO_PAGE_X, 6);
+		define(0x38, "SEC", IMPLIED, 2);
+		definePageCross(0x39, "AND", ABSOLUTE_Y, 4);
+		define(0x3A, "NOP", IMPLIED, 2);
+		define(0x3B, "RLA", ABSOLUTE_Y, 7);
+		definePageCross(0x3C, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0x3D, "AND", ABSOLUTE_X, 4);
+		define(0x3E, "ROL", ABSOLUTE_X, 7);
+		define(0x3F, "RLA", ABSOLUTE_X, 7);
+		define(0x40, "RTI", IMPLIED, 6);
+		define(0x41, "EOR", INDEXED_INDIRECT, 6);
+		define(0x42, "KIL", IMPLIED, 0);
+		define(0x43, "SRE", INDEXED_INDIRECT, 8);
+		define(0x44, "DOP", ZERO_PAGE, 3);
+		define(0x45, "EOR", ZERO_PAGE, 3);
+		define(0x46, "LSR", ZERO_PAGE, 5);
+		define(0x47, "SRE", ZERO_PAGE, 5);
+		define(0x48, "PHA", IMPLIED, 3);
+		define(0x49, "EOR", IMMEDIATE, 2);
+		define(0x4A, "LSR", ACCUMULATOR, 2);
+		define(0x4B, "ALR", IMMEDIATE, 2);
+		define(0x4C, "JMP", ABSOLUTE, 3);
+		define(0x4D, "EOR", ABSOLUTE, 4);
+		define(0x4E, "LSR", ABSOLUTE, 6);
+		define(0x4F, "SRE", ABSOLUTE, 6);
+		define(0x50, "BVC", RELATIVE, 2);
+		definePageCross(0x51, "EOR", INDIRECT_INDEXED, 5);
+		define(0x52, "KIL", IMPLIED, 0);
+		define(0x53, "SRE", INDIRECT_INDEXED, 8);
+		define(0x54, "DOP", ZERO_PAGE_X, 4);
+		define(0x55, "EOR", ZERO_PAGE_X, 4);
+		define(0x56, "LSR", ZERO_PAGE_X, 6);
+		define(0x57, "SRE", ZERO_PAGE_X, 6);
+		define(0x58, "CLI", IMPLIED, 2);
+		definePageCross(0x59, "EOR", ABSOLUTE_Y, 4);
+		define(0x5A, "NOP", IMPLIED, 2);
+		define(0x5B, "SRE", ABSOLUTE_Y, 7);
+		definePageCross(0x5C, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0x5D, "EOR", ABSOLUTE_X, 4);
+		define(0x5E, "LSR", ABSOLUTE_X, 7);
+		define(0x5F, "SRE", ABSOLUTE_X, 7);
+		define(0x60, "RTS", IMPLIED, 6);
+		define(0x61, "ADC", INDEXED_INDIRECT, 6);
+		define(0x62, "KIL", IMPLIED, 0);
+		define(0x63, "RRA", INDEXED_INDIRECT, 8);
+		define(0x64, "DOP", ZERO_PAGE, 3);
+		define(0x65, "ADC", ZERO_PAGE, 3);
+		define(0x66, "ROR", ZERO_PAGE, 5);
+		define(0x67, "RRA", ZERO_PAGE, 5);
+		define(0x68, "PLA", IMPLIED, 4);
+		define(0x69, "ADC", IMMEDIATE, 2);
+		define(0x6A, "ROR", ACCUMULATOR, 2);
+		define(0x6B, "ARR", IMMEDIATE, 2);
+		define(0x6C, "JMP", INDIRECT, 5);
+		define(0x6D, "ADC", ABSOLUTE, 4);
+		define(0x6E, "ROR", ABSOLUTE, 6);
+		define(0x6F, "RRA", ABSOLUTE, 6);
+		define(0x70, "BVS", RELATIVE, 2);
+		definePageCross(0x71, "ADC", INDIRECT_INDEXED, 5);
+		define(0x72, "KIL", IMPLIED, 0);
+		define(0x73, "RRA", INDIRECT_INDEXED, 8);
+		define(0x74, "DOP", ZERO_PAGE_X, 4);
+		define(0x75, "ADC", ZERO_PAGE_X, 4);
+		define(0x76, "ROR", ZERO_PAGE_X, 6);
+		define(0x77, "RRA", ZERO_PAGE_X, 6);
+		define(0x78, "SEI", IMPLIED, 2);
+		definePageCross(0x79, "ADC", ABSOLUTE_Y, 4);
+		define(0x7A, "NOP", IMPLIED, 2);
+		define(0x7B, "RRA", ABSOLUTE_Y, 7);
+		definePageCross(0x7C, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0x7D, "ADC", ABSOLUTE_X, 4);
+		define(0x7E, "ROR", ABSOLUTE_X, 7);
+		define(0x7F, "RRA", ABSOLUTE_X, 7);
+		define(0x80, "DOP", IMMEDIATE, 2);
+		define(0x81, "STA", INDEXED_INDIRECT, 6);
+		define(0x82, "DOP", IMMEDIATE, 2);
+		define(0x83, "SAX", INDEXED_INDIRECT, 6);
+		define(0x84, "STY", ZERO_PAGE, 3);
+		define(0x85, "STA", ZERO_PAGE, 3);
+		define(0x86, "STX", ZERO_PAGE, 3);
+		define(0x87, "SAX", ZERO_PAGE, 3);
+		define(0x88, "DEY", IMPLIED, 2);
+		define(0x89, "DOP", IMMEDIATE, 2);
+		define(0x8A, "TXA", IMPLIED, 2);
+		define(0x8B, "XAA", IMMEDIATE, 2);
+		define(0x8C, "STY", ABSOLUTE, 4);
+		define(0x8D, "STA", ABSOLUTE, 4);
+		define(0x8E, "STX", ABSOLUTE, 4);
+		define(0x8F, "SAX", ABSOLUTE, 4);
+		define(0x90, "BCC", RELATIVE, 2);
+		define(0x91, "STA", INDIRECT_INDEXED, 6);
+		define(0x92, "KIL", IMPLIED, 0);
+		define(0x93, "AHX", INDIRECT_INDEXED, 6);
+		define(0x94, "STY", ZERO_PAGE_X, 4);
+		define(0x95, "STA", ZERO_PAGE_X, 4);
+		define(0x96, "STX", ZERO_PAGE_Y, 4);
+		define(0x97, "SAX", ZERO_PAGE_Y, 4);
+		define(0x98, "TYA", IMPLIED, 2);
+		define(0x99, "STA", ABSOLUTE_Y, 5);
+		define(0x9A, "TXS", IMPLIED, 2);
+		define(0x9B, "TAS", ABSOLUTE_Y, 5);
+		define(0x9C, "SHY", ABSOLUTE_X, 5);
+		define(0x9D, "STA", ABSOLUTE_X, 5);
+		define(0x9E, "SHX", ABSOLUTE_Y, 5);
+		define(0x9F, "AHX", ABSOLUTE_Y, 5);
+		define(0xA0, "LDY", IMMEDIATE, 2);
+		define(0xA1, "LDA", INDEXED_INDIRECT, 6);
+		define(0xA2, "LDX", IMMEDIATE, 2);
+		define(0xA3, "LAX", INDEXED_INDIRECT, 6);
+		define(0xA4, "LDY", ZERO_PAGE, 3);
+		define(0xA5, "LDA", ZERO_PAGE, 3);
+		define(0xA6, "LDX", ZERO_PAGE, 3);
+		define(0xA7, "LAX", ZERO_PAGE, 3);
+		define(0xA8, "TAY", IMPLIED, 2);
+		define(0xA9, "LDA", IMMEDIATE, 2);
+		define(0xAA, "TAX", IMPLIED, 2);
+		define(0xAB, "LXA", IMMEDIATE, 2);
+		define(0xAC, "LDY", ABSOLUTE, 4);
+		define(0xAD, "LDA", ABSOLUTE, 4);
+		define(0xAE, "LDX", ABSOLUTE, 4);
+		define(0xAF, "LAX", ABSOLUTE, 4);
+		define(0xB0, "BCS", RELATIVE, 2);
+		definePageCross(0xB1, "LDA", INDIRECT_INDEXED, 5);
+		define(0xB2, "KIL", IMPLIED, 0);
+		definePageCross(0xB3, "LAX", INDIRECT_INDEXED, 5);
+		define(0xB4, "LDY", ZERO_PAGE_X, 4);
+		define(0xB5, "LDA", ZERO_PAGE_X, 4);
+		define(0xB6, "LDX", ZERO_PAGE_Y, 4);
+		define(0xB7, "LAX", ZERO_PAGE_Y, 4);
+		define(0xB8, "CLV", IMPLIED, 2);
+		definePageCross(0xB9, "LDA", ABSOLUTE_Y, 4);
+		define(0xBA, "TSX", IMPLIED, 2);
+		definePageCross(0xBB, "LAS", ABSOLUTE_Y, 4);
+		definePageCross(0xBC, "LDY", ABSOLUTE_X, 4);
+		definePageCross(0xBD, "LDA", ABSOLUTE_X, 4);
+		definePageCross(0xBE, "LDX", ABSOLUTE_Y, 4);
+		definePageCross(0xBF, "LAX", ABSOLUTE_Y, 4);
+		define(0xC0, "CPY", IMMEDIATE, 2);
+		define(0xC1, "CMP", INDEXED_INDIRECT, 6);
+		define(0xC2, "DOP", IMMEDIATE, 2);
+		define(0xC3, "DCP", INDEXED_INDIRECT, 8);
+		define(0xC4, "CPY", ZERO_PAGE, 3);
+		define(0xC5, "CMP", ZERO_PAGE, 3);
+		define(0xC6, "DEC", ZERO_PAGE, 5);
+		define(0xC7, "DCP", ZERO_PAGE, 5);
+		define(0xC8, "INY", IMPLIED, 2);
+		define(0xC9, "CMP", IMMEDIATE, 2);
+		define(0xCA, "DEX", IMPLIED, 2);
+		define(0xCB, "AXS", IMMEDIATE, 2);
+		define(0xCC, "CPY", ABSOLUTE, 4);
+		define(0xCD, "CMP", ABSOLUTE, 4);
+		define(0xCE, "DEC", ABSOLUTE, 6);
+		define(0xCF, "DCP", ABSOLUTE, 6);
+		define(0xD0, "BNE", RELATIVE, 2);
+		definePageCross(0xD1, "CMP", INDIRECT_INDEXED, 5);
+		define(0xD2, "KIL", IMPLIED, 0);
+		define(0xD3, "DCP", INDIRECT_INDEXED, 8);
+		define(0xD4, "DOP", ZERO_PAGE_X, 4);
+		define(0xD5, "CMP", ZERO_PAGE_X, 4);
+		define(0xD6, "DEC", ZERO_PAGE_X, 6);
+		define(0xD7, "DCP", ZERO_PAGE_X, 6);
+		define(0xD8, "CLD", IMPLIED, 2);
+		definePageCross(0xD9, "CMP", ABSOLUTE_Y, 4);
+		define(0xDA, "NOP", IMPLIED, 2);
+		define(0xDB, "DCP", ABSOLUTE_Y, 7);
+		definePageCross(0xDC, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0xDD, "CMP", ABSOLUTE_X, 4);
+		define(0xDE, "DEC", ABSOLUTE_X, 7);
+		define(0xDF, "DCP", ABSOLUTE_X, 7);
+		define(0xE0, "CPX", IMMEDIATE, 2);
+		define(0xE1, "SBC", INDEXED_INDIRECT, 6);
+		define(0xE2, "DOP", IMMEDIATE, 2);
+		define(0xE3, "ISC", INDEXED_INDIRECT, 8);
+		define(0xE4, "CPX", ZERO_PAGE, 3);
+		define(0xE5, "SBC", ZERO_PAGE, 3);
+		define(0xE6, "INC", ZERO_PAGE, 5);
+		define(0xE7, "ISC", ZERO_PAGE, 5);
+		define(0xE8, "INX", IMPLIED, 2);
+		define(0xE9, "SBC", IMMEDIATE, 2);
+		define(0xEA, "NOP", IMPLIED, 2);
+		define(0xEB, "SBC", IMMEDIATE, 2);
+		define(0xEC, "CPX", ABSOLUTE, 4);
+		define(0xED, "SBC", ABSOLUTE, 4);
+		define(0xEE, "INC", ABSOLUTE, 6);
+		define(0xEF, "ISC", ABSOLUTE, 6);
+		define(0xF0, "BEQ", RELATIVE, 2);
+		definePageCross(0xF1, "SBC", INDIRECT_INDEXED, 5);
+		define(0xF2, "KIL", IMPLIED, 0);
+		define(0xF3, "ISC", INDIRECT_INDEXED, 8);
+		define(0xF4, "DOP", ZERO_PAGE_X, 4);
+		define(0xF5, "SBC", ZERO_PAGE_X, 4);
+		define(0xF6, "INC", ZERO_PAGE_X, 6);
+		define(0xF7, "ISC", ZERO_PAGE_X, 6);
+		define(0xF8, "SED", IMPLIED, 2);
+		definePageCross(0xF9, "SBC", ABSOLUTE_Y, 4);
+		define(0xFA, "NOP", IMPLIED, 2);
+		define(0xFB, "ISC", ABSOLUTE_Y, 7);
+		definePageCross(0xFC, "TOP", ABSOLUTE_X, 4);
+		definePageCross(0xFD, "SBC", ABSOLUTE_X, 4);
+		define(0xFE, "INC", ABSOLUTE_X, 7);
+		define(0xFF, "ISC", ABSOLUTE_X, 7);
 	}
 
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private InstructionInfo6502() {
+	}
 
-	public Instruction get(Integer instr) {
-		return instructions.get(instr);
+	private static void define(int opcode, String mnemonic, int mode, int cycles) {
+		MNEMONICS[opcode] = mnemonic;
+		MODES[opcode] = (byte)mode;
+		CYCLES[opcode] = (byte)cycles;
+		INSTRUCTIONS[opcode] = new InstructionImpl(opcode);
 	}
 
+	private static void definePageCross(int opcode, String mnemonic, int mode, int cycles) {
+		define(opcode, mnemonic, mode, cycles);
+		PAGE_CROSS_PENALTIES[opcode] = true;
+	}
 
-	private void populateInstructions() {
-
-		// Find: int INST_([A-Z]+)(_\w+)? = ([^;]+);
-		// Replace with: instructions.put($3, new InstructionImpl(INST_$1$2, "$1"));
-
-		instructions.put(0x01, new InstructionImpl(INST_ORA_PRE_INDEXED_INDIRECT, "ORA"));
-		instructions.put(0x05, new InstructionImpl(INST_ORA_ZERO_PAGE, "ORA"));
-		instructions.put(0x06, new InstructionImpl(INST_ASL_ZERO_PAGE, "ASL"));
-		instructions.put(0x08, new InstructionImpl(INST_PHP, "PHP"));
-		instructions.put(0x09, new InstructionImpl(INST_ORA_IMMEDIATE, "ORA"));
-		instructions.put(0x0a, new InstructionImpl(INST_ASL_ACCUMULATOR, "ASL"));
-		instructions.put(0x0d, new InstructionImpl(INST_ORA_ABSOLUTE, "ORA"));
-		instructions.put(0x10, new InstructionImpl(INST_BPL, "BPL"));
-		instructions.put(0x11, new InstructionImpl(INST_ORA_POST_INDEXED_INDIRECT, "ORA"));
-		instructions.put(0x15, new InstructionImpl(INST_ORA_ZERO_PAGE_INDEXED, "ORA"));
-		instructions.put(0x18, new InstructionImpl(INST_CLC, "CLC"));
-		instructions.put(0x19, new InstructionImpl(INST_ORA_INDEXED_Y, "ORA"));
-		instructions.put(0x1d, new InstructionImpl(INST_ORA_INDEXED_X, "ORA"));
-		instructions.put(0x20, new InstructionImpl(INST_JSR, "JSR"));
-		instructions.put(0x24, new InstructionImpl(INST_BIT_ZERO_PAGE, "BIT"));
-		instructions.put(0x26, new InstructionImpl(INST_ROL_ZERO_PAGE, "ROL"));
-		instructions.put(0x28, new InstructionImpl(INST_PLP, "PLP"));
-		instructions.put(0x2a, new InstructionImpl(INST_ROL_ACCUMULATOR, "ROL"));
-		instructions.put(0x2c, new InstructionImpl(INST_BIT_ABSOLUTE, "BIT"));
-		instructions.put(0x30, new InstructionImpl(INST_BMI, "BMI"));
-		instructions.put(0x38, new InstructionImpl(INST_SEC, "SEC"));
-		instructions.put(0x41, new InstructionImpl(INST_EOR_PRE_INDEXED_INDIRECT, "EOR"));
-		instructions.put(0x45, new InstructionImpl(INST_EOR_ZERO_PAGE, "EOR"));
-		instructions.put(0X48, new InstructionImpl(INST_PHA, "PHA"));
-		instructions.put(0x49, new InstructionImpl(INST_EOR_IMMEDIATE, "EOR"));
-		instructions.put(0x4a, new InstructionImpl(INST_LSR_ACCUMULATOR, "LSR"));
-		instructions.put(0x4c, new InstructionImpl(INST_JMP_ABSOLUTE, "JMP"));
-		instructions.put(0x4d, new InstructionImpl(INST_EOR_ABSOLUTE, "EOR"));
-		instructions.put(0x51, new InstructionImpl(INST_EOR_POST_INDEXED_INDIRECT, "EOR"));
-		instructions.put(0x59, new InstructionImpl(INST_EOR_INDEXED_Y, "EOR"));
-		instructions.put(0x55, new InstructionImpl(INST_EOR_ZERO_PAGE_INDEXED, "EOR"));
-		instructions.put(0x5d, new InstructionImpl(INST_EOR_INDEXED_X, "EOR"));
-		instructions.put(0x60, new InstructionImpl(INST_RTS, "RTS"));
-		instructions.put(0x61, new InstructionImpl(INST_ADC_PRE_INDEXED_INDIRECT, "ADC"));
-		instructions.put(0x65, new InstructionImpl(INST_ADC_ZERO_PAGE, "ADC"));
-		instructions.put(0x66, new InstructionImpl(INST_ROR_ZERO_PAGE, "ROR"));
-		instructions.put(0x68, new InstructionImpl(INST_PLA, "PLA"));
-		instructions.put(0x69, new InstructionImpl(INST_ADC_IMMEDIATE, "ADC"));
-		instructions.put(0x6a, new InstructionImpl(INST_ROR_ACCUMULATOR, "ROR"));
-		instructions.put(0x6c, new InstructionImpl(INST_JMP_INDIRECT, "JMP"));
-		instructions.put(0x6d, new InstructionImpl(INST_ADC_ABSOLUTE, "ADC"));
-		instructions.put(0x6e, new InstructionImpl(INST_ROR_ABSOLUTE, "ROR"));
-		instructions.put(0x71, new InstructionImpl(INST_ADC_POST_INDEXED_INDIRECT, "ADC"));
-		instructions.put(0x75, new InstructionImpl(INST_ADC_ZERO_PAGE_INDEXED, "ADC"));
-		instructions.put(0x76, new InstructionImpl(INST_ROR_ZERO_PAGE_INDEXED, "ROR"));
-		instructions.put(0x78, new InstructionImpl(INST_SEI, "SEI"));
-		instructions.put(0x79, new InstructionImpl(INST_ADC_INDEXED_Y, "ADC"));
-		instructions.put(0x7d, new InstructionImpl(INST_ADC_INDEXED_X, "ADC"));
-		instructions.put(0x7e, new InstructionImpl(INST_ROR_INDEXED_X, "ROR"));
-		instructions.put(0x81, new InstructionImpl(INST_STA_PRE_INDEXED_INDIRECT, "STA"));
-		instructions.put(0x84, new InstructionImpl(INST_STY_ZERO_PAGE, "STY"));
-		instructions.put(0x85, new InstructionImpl(INST_STA_ZERO_PAGE, "STA"));
-		instructions.put(0x86, new InstructionImpl(INST_STX_ZERO_PAGE, "STX"));
-		instructions.put(0x88, new InstructionImpl(INST_DEY, "DEY"));
-		instructions.put(0x8a, new InstructionImpl(INST_TXA, "TXA"));
-		instructions.put(0x8c, new InstructionImpl(INST_STY_ABSOLUTE, "STY"));
-		instructions.put(0x8d, new InstructionImpl(INST_STA_ABSOLUTE, "STA"));
-		instructions.put(0x8e, new InstructionImpl(INST_STX_ABSOLUTE, "STX"));
-		instructions.put(0x90, new InstructionImpl(INST_BCC, "BCC"));
-		instructions.put(0x91, new InstructionImpl(INST_STA_POST_INDEXED_INDIRECT, "STA"));
-		instructions.put(0x94, new InstructionImpl(INST_STY_ZERO_PAGE_INDEXED, "STY"));
-		instructions.put(0x95, new InstructionImpl(INST_STA_ZERO_PAGE_INDEXED, "STA"));
-		instructions.put(0x98, new InstructionImpl(INST_TYA, "TYA"));
-		instructions.put(0x99, new InstructionImpl(INST_STA_INDEXED_Y, "STA"));
-		instructions.put(0x9a, new InstructionImpl(INST_TXS_IMPLIED, "TXS"));
-		instructions.put(0x9d, new InstructionImpl(INST_STA_INDEXED_X, "STA"));
-		instructions.put(0xa0, new InstructionImpl(INST_LDY_IMMEDIATE, "LDY"));
-		instructions.put(0xa1, new InstructionImpl(INST_LDA_PRE_INDEXED_INDIRECT, "LDA"));
-		instructions.put(0xa2, new InstructionImpl(INST_LDX_IMMEDIATE, "LDX"));
-		instructions.put(0xa4, new InstructionImpl(INST_LDY_ZERO_PAGE, "LDY"));
-		instructions.put(0xa5, new InstructionImpl(INST_LDA_ZERO_PAGE, "LDA"));
-		instructions.put(0xa6, new InstructionImpl(INST_LDX_ZERO_PAGE, "LDX"));
-		instructions.put(0xa8, new InstructionImpl(INST_TAY, "TAY"));
-		instructions.put(0xa9, new InstructionImpl(INST_LDA_IMMEDIATE, "LDA"));
-		instructions.put(0xaa, new InstructionImpl(INST_TAX, "TAX"));
-		instructions.put(0xac, new InstructionImpl(INST_LDY_ABSOLUTE, "LDY"));
-		instructions.put(0xad, new InstructionImpl(INST_LDA_ABSOLUTE, "LDA"));
-		instructions.put(0xae, new InstructionImpl(INST_LDX_ABSOLUTE, "LDX"));
-		instructions.put(0xb0, new InstructionImpl(INST_BCS, "BCS"));
-		instructions.put(0xb1, new InstructionImpl(INST_LDA_POST_INDEXED_INDIRECT, "LDA"));
-		instructions.put(0xb4, new InstructionImpl(INST_LDY_ZERO_PAGE_INDEXED, "LDY"));
-		instructions.put(0xb5, new InstructionImpl(INST_LDA_ZERO_PAGE_INDEXED, "LDA"));
-		instructions.put(0xb6, new InstructionImpl(INST_LDX_ZERO_PAGE_INDEXED, "LDX"));
-		instructions.put(0xb9, new InstructionImpl(INST_LDA_INDEXED_Y, "LDA"));
-		instructions.put(0xba, new InstructionImpl(INST_TSX, "TSX"));
-		instructions.put(0xbc, new InstructionImpl(INST_LDY_INDEXED_X, "LDY"));
-		instructions.put(0xbd, new InstructionImpl(INST_LDA_INDEXED_X, "LDA"));
-		instructions.put(0xbe, new InstructionImpl(INST_LDX_INDEXED_Y, "LDX"));
-		instructions.put(0xc0, new InstructionImpl(INST_CPY_IMMEDIATE, "CPY"));
-		instructions.put(0xc1, new InstructionImpl(INST_CMP_PRE_INDEXED_INDIRECT, "CMP"));
-		instructions.put(0xc4, new InstructionImpl(INST_CPY_ZERO_PAGE, "CPY"));
-		instructions.put(0xc5, new InstructionImpl(INST_CMP_ZERO_PAGE, "CMP"));
-		instructions.put(0xc8, new InstructionImpl(INST_INY, "INY"));
-		instructions.put(0xc9, new InstructionImpl(INST_CMP_IMMEDIATE, "CMP"));
-		instructions.put(0xca, new InstructionImpl(INST_DEX, "DEX"));
-		instructions.put(0xcc, new InstructionImpl(INST_CPY_ABSOLUTE, "CPY"));
-		instructions.put(0xcd, new InstructionImpl(INST_CMP_ABSOLUTE, "CMP"));
-		instructions.put(0xd0, new InstructionImpl(INST_BNE, "BNE"));
-		instructions.put(0xd1, new InstructionImpl(INST_CMP_POST_INDEXED_INDIRECT, "CMP"));
-		instructions.put(0xd5, new InstructionImpl(INST_CMP_ZERO_PAGE_INDEXED, "CMP"));
-		instructions.put(0xd8, new InstructionImpl(INST_CLD, "CLD"));
-		instructions.put(0xd9, new InstructionImpl(INST_CMP_INDEXED_Y, "CMP"));
-		instructions.put(0xdd, new InstructionImpl(INST_CMP_INDEXED_X, "CMP"));
-		instructions.put(0xe0, new InstructionImpl(INST_CPX_IMMEDIATE, "CPX"));
-		instructions.put(0xe4, new InstructionImpl(INST_CPX_ZERO_PAGE, "CPX"));
-		instructions.put(0xe6, new InstructionImpl(INST_INC_ZERO_PAGE, "INC"));
-		instructions.put(0xe8, new InstructionImpl(INST_INX, "INX"));
-		instructions.put(0xe9, new InstructionImpl(INST_SBC_IMMEDIATE, "SBC"));
-		instructions.put(0xec, new InstructionImpl(INST_CPX_ABSOLUTE, "CPX"));
-		instructions.put(0xee, new InstructionImpl(INST_INC_ABSOLUTE, "INC"));
-		instructions.put(0xf0, new InstructionImpl(INST_BEQ, "BEQ"));
-		instructions.put(0xf6, new InstructionImpl(INST_INC_ZERO_PAGE_INDEXED, "INC"));
-		instructions.put(0xf8, new InstructionImpl(INST_SED, "SED"));
-		instructions.put(0xf9, new InstructionImpl(INST_SBC_INDEXED_Y, "SBC"));
-		instructions.put(0xfd, new InstructionImpl(INST_SBC_INDEXED_X, "SBC"));
-		instructions.put(0xfe, new InstructionImpl(INST_INC_INDEXED, "INC"));
+	/**
+	 * Returns an opcode's instruction.
+	 *
+	 * @param opcode The opcode.
+	 * @return The instruction.
+	 */
+	public static Instruction get(int opcode) {
+		return INSTRUCTIONS[opcode];
+	}
 
+	/**
+	 * Returns an opcode's addressing mode.
+	 *
+	 * @param opcode The opcode.
+	 * @return The addressing mode, e.g. {@link #ZERO_PAGE}.
+	 */
+	public static int getAddressingMode(int opcode) {
+		return MODES[opcode];
 	}
 
+	/**
+	 * Returns the length of an opcode's instruction.
+	 *
+	 * @param opcode The opcode.
+	 * @return The length, in bytes.
+	 */
+	public static int getByteCount(int opcode) {
+		return MODE_LENGTHS[MODES[opcode]];
+	}
 
 	/**
-	 * Basic implementation of an {@link Instruction}.
+	 * Returns the cycles an opcode's instruction takes, if it doesn't
+	 * cross a page or branch.
+	 *
+	 * @param opcode The opcode.
+	 * @return The number of cycles.
+	 * @see #hasPageCrossPenalty(int)
 	 */
-	// TODO: This class is a *very* ugly hack to temporarily get better debug logging.
-	// Clean me up!
-	private static class InstructionImpl implements Instruction {
-
-		private int opcode;
-		private String name;
-		//private int bytes;
-		private int cycles;
-
-		private static final Field[] INSTRUCTION_FIELDS = getInstructionFields();
-		private boolean absolute, immediate, zeroPage, branch;
-
-		private static Field[] getInstructionFields() {
-			// TODO: This is a hack and terribly slow as well.  Do things better!
-			try {
-				Class clazz = Class.forName("org.fife.emu.cpu.n6502.InstructionSet6502");
-				return clazz.getDeclaredFields();
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			return null;
-		}
+	public static int getCycles(int opcode) {
+		return CYCLES[opcode];
+	}
 
-		InstructionImpl(int opcode, String name) {
-			this.name = name;
-			this.opcode = opcode;
+	/**
+	 * Returns an opcode's mnemonic.
+	 *
+	 * @param opcode The opcode.
+	 * @return The mnemonic, e.g. <code>"LDA"</code>.
+	 */
+	public static String getMnemonic(int opcode) {
+		return MNEMONICS[opcode];
+	}
 
-			try {
-				for (int i = 0; i < INSTRUCTION_FIELDS.length; i++) {
-					Field field = INSTRUCTION_FIELDS[i];
-					if (opcode == field.getInt(null)) {
-						String fieldName = field.getName();
-						if (fieldName.endsWith("_ABSOLUTE")) {
-							absolute = true;
-							break;
-						}
-						else if (fieldName.endsWith("_IMMEDIATE")) {
-							immediate = true;
-							break;
-						}
-						else if (fieldName.endsWith("_ZERO_PAGE")) {
-							zeroPage = true;
-							break;
-						}
-						else if (fieldName.matches("INST_B\\w\\w")) {
-							branch = true;
-						}
-					}
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+	/**
+	 * Returns whether an opcode's instruction takes another cycle when
+	 * its indexed address crosses a page.
+	 *
+	 * @param opcode The opcode.
+	 * @return Whether crossing a page costs a cycle.
+	 * @see #getCycles(int)
+	 */
+	public static boolean hasPageCrossPenalty(int opcode) {
+		return PAGE_CROSS_PENALTIES[opcode];
+	}
+
+	/**
+	 * An {@link Instruction} backed by the table.
+	 */
+	private static final class InstructionImpl implements Instruction {
+
+		private final int opcode;
 
+		private InstructionImpl(int opcode) {
+			this.opcode = opcode;
 		}
 
+		@Override
 		public int getByteCount() {
-			if (immediate) {
-				return 2;
-			}
-			else if (zeroPage) {
-				return 2;
-			}
-			else if (absolute) {
-				return 3;
-			}
-			else if (branch) {
-				return 2;
-			}
-			return 1;
+			return InstructionInfo6502.getByteCount(opcode);
 		}
 
+		@Override
 		public int getCycles() {
-			return cycles;
+			return CYCLES[opcode];
 		}
 
+		@Override
 		public String getName() {
-			return name;
+			return MNEMONICS[opcode];
 		}
 
+		@Override
 		public int getOpcode() {
 			return opcode;
 		}
 
+		@Override
 		public String toString(int[] bytes, CpuContext context) {
 
 			StringBuilder sb = new StringBuilder(getName());
+			int address = bytes[1] | (getByteCount() > 2 ? bytes[2] << 8 : 0);
 
-			if (immediate) {
-				sb.append(" #$").append(Util.toHex(bytes[1]));
-			}
-			else if (zeroPage) {
-				sb.append(" $").append(Util.toHexWord(bytes[1]));
-				int address = bytes[1];
-				sb.append(" = #$").append(Util.toHex(context.readByteSafely(address)));
-			}
-			else if (absolute) {
-				sb.append(" $").append(Util.toHex(bytes[2])).append(Util.toHex(bytes[1]));
-				int address = bytes[1] | (bytes[2] << 8);
-				sb.append(" = #$").append(Util.toHex(context.readByteSafely(address)));
-			}
-			else if (branch) {
-				int pcAfterReadingInst = context.getCpu().getPC() + 2;
-				sb.append(" $").append(Util.toHexWord(pcAfterReadingInst + (byte)bytes[1]));
+			switch (MODES[opcode]) {
+				case ACCUMULATOR:
+					sb.append(" A");
+					break;
+				case IMMEDIATE:
+					sb.append(" #$").append(Util.toHex(bytes[1]));
+					break;
+				case ZERO_PAGE:
+					sb.append(" $").append(Util.toHexWord(address));
+					sb.append(" = #$").append(Util.toHex(context.readByteSafely(address)));
+					break;
+				case ZERO_PAGE_X:
+					sb.append(" $").append(Util.toHex(address)).append(",X");
+					break;
+				case ZERO_PAGE_Y:
+					sb.append(" $").append(Util.toHex(address)).append(",Y");
+					break;
+				case ABSOLUTE:
+					sb.append(" $").append(Util.toHexWord(address));
+					sb.append(" = #$").append(Util.toHex(context.readByteSafely(address)));
+					break;
+				case ABSOLUTE_X:
+					sb.append(" $").append(Util.toHexWord(address)).append(",X");
+					break;
+				case ABSOLUTE_Y:
+					sb.append(" $").append(Util.toHexWord(address)).append(",Y");
+					break;
+				case INDEXED_INDIRECT:
+					sb.append(" ($").append(Util.toHex(address)).append(",X)");
+					break;
+				case INDIRECT_INDEXED:
+					sb.append(" ($").append(Util.toHex(address)).append("),Y");
+					break;
+				case INDIRECT:
+					sb.append(" ($").append(Util.toHexWord(address)).append(')');
+					break;
+				case RELATIVE:
+					int pcAfterReadingInst = context.getCpu().getPC() + 2;
+					sb.append(" $").append(Util.toHexWord(pcAfterReadingInst + (byte)bytes[1]));
+					break;
+				default: // IMPLIED
+					break;
 			}
+
 			return sb.toString();
+
 		}
 
 	}
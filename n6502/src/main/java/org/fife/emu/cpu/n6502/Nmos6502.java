@@ -0,0 +1,112 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.BusListener;
+import org.fife.emu.CpuContext;
+
+
+/**
+ * The original NMOS 6502, as found in e.g. the Apple II, Commodore 64 and
+ * Atari 8-bit computers.  It differs from the NES's 2A03 only in having a
+ * working decimal mode: when the D flag is set, ADC and SBC (and the
+ * undocumented ISC, which uses SBC) treat their operands as binary coded
+ * decimal.  As on real hardware, only the accumulator and C flag are
+ * valid BCD results; N, V and Z are set as the chip sets them.  Results
+ * are looked up in {@link DecimalArithmetic}'s tables.<p>
+ *
+ * ADC and SBC are always interpreted, since compiled blocks don't
+ * support decimal mode.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ */
+public class Nmos6502 extends n6502Impl {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 */
+	public Nmos6502(CpuContext context, float clockSpeed) {
+		super(context, clockSpeed);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 * @param busListener The listener to notify before each bus access,
+	 *        or <code>null</code> to only count cycles per instruction.
+	 * @see n6502Impl#n6502Impl(CpuContext, float, BusListener)
+	 */
+	public Nmos6502(CpuContext context, float clockSpeed, BusListener busListener) {
+		super(context, clockSpeed, busListener);
+	}
+
+	/**
+	 * Constructor for variants whose instructions have different
+	 * lengths.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 * @param instructionLengths The length of each instruction, in bytes.
+	 * @param busListener The listener to notify before each bus access,
+	 *        or <code>null</code> to only count cycles per instruction.
+	 */
+	protected Nmos6502(CpuContext context, float clockSpeed, int[] instructionLengths, BusListener busListener) {
+		super(context, clockSpeed, instructionLengths, busListener);
+	}
+
+	@Override
+	boolean canCompile(int opcode) {
+		return super.canCompile(opcode) && !isDecimalInstruction(opcode);
+	}
+
+	@Override
+	protected void doADC(int val) {
+		if (flagD == 0) {
+			super.doADC(val);
+		}
+		else {
+			setDecimalResult(DecimalArithmetic.NMOS_ADC[((flagC & 0x100) << 8) | (a << 8) | val]);
+		}
+	}
+
+	@Override
+	protected void doSBC(int val) {
+		if (flagD == 0) {
+			super.doSBC(val);
+		}
+		else {
+			setDecimalResult(DecimalArithmetic.NMOS_SBC[((flagC & 0x100) << 8) | (a << 8) | val]);
+		}
+	}
+
+	/**
+	 * Returns whether an instruction is ADC or SBC, whose results depend
+	 * on the D flag.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether the instruction is ADC or SBC.
+	 */
+	static boolean isDecimalInstruction(int opcode) {
+		return (opcode & 0xe3) == 0x61 || (opcode & 0xe3) == 0xe1 || opcode == 0xEB;
+	}
+
+	/**
+	 * Sets the accumulator and flags from an entry in one of the
+	 * {@link DecimalArithmetic} tables.
+	 *
+	 * @param entry The entry.
+	 */
+	final void setDecimalResult(int entry) {
+		a = entry & 0xff;
+		flagC = (entry >> DecimalArithmetic.C_SHIFT) << 8;
+		flagV = (entry >> DecimalArithmetic.V_SHIFT) << 7;
+		flagNZ = ((~entry >> DecimalArithmetic.Z_SHIFT) & 0x01) | (((entry >> DecimalArithmetic.N_SHIFT) & 0x01) << 8);
+	}
+
+}
\ No newline at end of file
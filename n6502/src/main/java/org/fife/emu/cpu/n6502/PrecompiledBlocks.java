@@ -0,0 +1,109 @@
+package org.fife.emu.cpu.n6502;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Blocks of 6502 code compiled ahead of time by {@link StaticRecompiler}.
+ * The index class the recompiler generates returns one of these, to be
+ * passed to {@link n6502Impl#setPrecompiledBlocks(PrecompiledBlocks)}.<p>
+ *
+ * A precompiled block is only used if the code at its address, when its
+ * page is mapped in, is exactly the code it was compiled from, and that
+ * page is ROM.  Several blocks may be added for the same address, e.g.
+ * from different banks of a cartridge; the one matching what's mapped in
+ * is used.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see StaticRecompiler
+ */
+public final class PrecompiledBlocks {
+
+	/**
+	 * The number of pages in the 6502's address space.
+	 */
+	private static final int PAGE_COUNT = 0x100;
+
+	/**
+	 * The blocks in each page, or <code>null</code> for pages with none.
+	 */
+	private final List<Entry>[] pages;
+
+	private int blockCount;
+
+	/**
+	 * Constructor.
+	 */
+	@SuppressWarnings("unchecked")
+	public PrecompiledBlocks() {
+		pages = (List<Entry>[])new List<?>[PAGE_COUNT];
+	}
+
+	/**
+	 * Adds a precompiled block.
+	 *
+	 * @param address The address of the block's first instruction.
+	 * @param blockClass The block's class, as generated by
+	 *        {@link StaticRecompiler}.
+	 * @throws IllegalArgumentException If <code>address</code> isn't a
+	 *         valid address.
+	 */
+	public void add(int address, Class<? extends CompiledBlock> blockClass) {
+		if (address < 0 || address > 0xffff) {
+			throw new IllegalArgumentException("Invalid address: " + address);
+		}
+		int page = address >> 8;
+		if (pages[page] == null) {
+			pages[page] = new ArrayList<>();
+		}
+		pages[page].add(new Entry(address, blockClass));
+		blockCount++;
+	}
+
+	/**
+	 * Returns the number of blocks added.
+	 *
+	 * @return The number of blocks.
+	 */
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	/**
+	 * Returns the blocks in a page.
+	 *
+	 * @param page The page.
+	 * @return The blocks.  This may be empty.
+	 */
+	List<Entry> getBlocks(int page) {
+		List<Entry> entries = pages[page];
+		return entries == null ? Collections.emptyList() : entries;
+	}
+
+	/**
+	 * A precompiled block and its address.
+	 */
+	static final class Entry {
+
+		private final int address;
+		private final Class<? extends CompiledBlock> blockClass;
+
+		private Entry(int address, Class<? extends CompiledBlock> blockClass) {
+			this.address = address;
+			this.blockClass = blockClass;
+		}
+
+		int getAddress() {
+			return address;
+		}
+
+		Class<? extends CompiledBlock> getBlockClass() {
+			return blockClass;
+		}
+
+	}
+
+}
\ No newline at end of file
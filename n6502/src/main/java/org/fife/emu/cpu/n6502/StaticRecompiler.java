@@ -0,0 +1,334 @@
+package org.fife.emu.cpu.n6502;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.cpu.Cpu;
+
+
+/**
+ * Compiles a ROM image's 6502 code to Java source ahead of time.  Code is
+ * found by recursive descent from the interrupt vectors (if the image
+ * covers them) and any other entry points given, following branches,
+ * jumps and subroutine calls.  Each {@link BasicBlock} found is generated
+ * just as the JIT would generate it, along with an index class that
+ * returns them all as {@link PrecompiledBlocks}.  Compile the output with
+ * the rest of the application, then pass the blocks to
+ * {@link n6502Impl#setPrecompiledBlocks(PrecompiledBlocks)}.<p>
+ *
+ * Targets of indirect jumps, returns and interrupts other than the
+ * vectors can't be found statically.  Code only reached that way is
+ * interpreted, as is any code that doesn't match what was compiled at
+ * runtime (e.g. a different bank being mapped in).  For cartridges with
+ * banked PRG ROM, recompile each bank at the address it is mapped to and
+ * add all the resulting blocks to one {@link PrecompiledBlocks}.<p>
+ *
+ * Usage:
+ * <pre>
+ * java org.fife.emu.cpu.n6502.StaticRecompiler &lt;image&gt; &lt;address&gt; &lt;outputDir&gt; &lt;indexClass&gt; [entryPoint...]
+ * </pre>
+ * where addresses are in hex, and <code>indexClass</code> is the fully
+ * qualified name of the index class to generate.  All generated classes
+ * go in its package.
+ *
+ * @author Robert Futrell
+ * @version 1.0
+ * @see PrecompiledBlocks
+ */
+public final class StaticRecompiler {
+
+	/**
+	 * The maximum number of blocks registered by one method of the index
+	 * class, so it stays well under the JVM's method size limit.
+	 */
+	private static final int BLOCKS_PER_METHOD = 500;
+
+	private final n6502Impl cpu;
+	private final int start;
+	private final int end;
+	private final List<Integer> entryPoints;
+	private final List<BasicBlock> blocks;
+
+	/**
+	 * Constructor.  The interrupt vectors are added as entry points if
+	 * the image covers them.
+	 *
+	 * @param image The ROM image.
+	 * @param address The address the image is mapped to.  This must be
+	 *        at the start of a page.
+	 * @throws IllegalArgumentException If the image doesn't fit in the
+	 *         6502's address space at <code>address</code>.
+	 */
+	public StaticRecompiler(byte[] image, int address) {
+
+		if ((address & 0xff) != 0 || address < 0 || image.length == 0 || address + image.length > 0x10000) {
+			throw new IllegalArgumentException("Invalid image address or size: " + address + ", " + image.length);
+		}
+
+		start = address;
+		end = address + image.length;
+		cpu = new n6502Impl(new RomContext(image, address), 0);
+		entryPoints = new ArrayList<>();
+		blocks = new ArrayList<>();
+
+		if (end == 0x10000 && start <= 0xfffa) {
+			for (int vector = 0xfffa; vector < 0x10000; vector += 2) {
+				addEntryPoint(cpu.getCpuContext().readWord(vector));
+			}
+		}
+
+	}
+
+	/**
+	 * Adds an address to start looking for code at.
+	 *
+	 * @param address The address.  Addresses outside of the image are
+	 *        ignored.
+	 */
+	public void addEntryPoint(int address) {
+		entryPoints.add(address);
+	}
+
+	/**
+	 * Adds the addresses control can go to after an instruction.
+	 *
+	 * @param address The address of the instruction.
+	 * @param instruction The decoded instruction.
+	 * @param work The addresses left to look at.
+	 */
+	private static void addSuccessors(int address, int instruction, Deque<Integer> work) {
+
+		int opcode = instruction & 0xff;
+		int operand = (instruction >> 8) & 0xffff;
+		int next = address + (instruction >>> 24);
+
+		if ((opcode & 0x1f) == 0x10) { // Branches
+			work.push((next + (byte)operand) & 0xffff);
+			work.push(next);
+		}
+		else if (opcode == 0x4c) { // JMP abs
+			work.push(operand);
+		}
+		else if (opcode == 0x20) { // JSR
+			work.push(next);
+			work.push(operand);
+		}
+		else if (opcode != 0x6c && opcode != 0x60) { // Not JMP (ind) or RTS
+			work.push(next);
+		}
+
+	}
+
+	/**
+	 * Returns the number of blocks found by the last call to
+	 * {@link #recompile()}.
+	 *
+	 * @return The number of blocks.
+	 */
+	public int getBlockCount() {
+		return blocks.size();
+	}
+
+	/**
+	 * Returns whether an instruction that can't be compiled falls through
+	 * to the next instruction, once the interpreter has run it.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether the instruction falls through.
+	 */
+	private static boolean isFallThrough(int opcode) {
+		switch (opcode) {
+			case 0x08: // PHP
+			case 0x28: // PLP
+			case 0x58: // CLI
+			case 0x78: // SEI
+			case 0xd8: // CLD
+			case 0xf8: // SED
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Entry point for the command line tool.
+	 *
+	 * @param args The command line arguments.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 4) {
+			System.err.println("Usage: java " + StaticRecompiler.class.getName() +
+				" <image> <address> <outputDir> <indexClass> [entryPoint...]");
+			System.err.println("Addresses are in hex.");
+			return;
+		}
+
+		byte[] image = Files.readAllBytes(Paths.get(args[0]));
+		StaticRecompiler recompiler = new StaticRecompiler(image, Integer.parseInt(args[1], 16));
+		for (int i = 4; i < args.length; i++) {
+			recompiler.addEntryPoint(Integer.parseInt(args[i], 16));
+		}
+		recompiler.recompile();
+		recompiler.write(new File(args[2]), args[3]);
+		System.out.println("Compiled " + recompiler.getBlockCount() + " blocks from " + args[0]);
+
+	}
+
+	/**
+	 * Finds all the code reachable from the entry points.
+	 *
+	 * @return The number of blocks found.
+	 */
+	public int recompile() {
+
+		blocks.clear();
+		BitSet seen = new BitSet(0x10000);
+		Deque<Integer> work = new ArrayDeque<>(entryPoints);
+
+		while (!work.isEmpty()) {
+
+			int address = work.pop();
+			if (address < start || address >= end || seen.get(address)) {
+				continue;
+			}
+			seen.set(address);
+
+			BasicBlock block = BasicBlock.decode(cpu, address);
+			if (block != null) {
+				blocks.add(block);
+				int last = block.getInstructionCount() - 1;
+				int lastAddress = block.getEnd() - (block.getInstruction(last) >>> 24);
+				addSuccessors(lastAddress, block.getInstruction(last), work);
+				continue;
+			}
+
+			// The interpreter will run this instruction
+			int opcode = cpu.getCpuContext().readByteSafely(address);
+			if (cpu.canCompile(opcode)) { // Straddles a page
+				addSuccessors(address, cpu.decode(address), work);
+			}
+			else if (isFallThrough(opcode)) {
+				work.push(address + 1);
+			}
+
+		}
+
+		blocks.sort(Comparator.comparingInt(BasicBlock::getStart));
+		return blocks.size();
+
+	}
+
+	/**
+	 * Writes the source for all the blocks found by {@link #recompile()},
+	 * and their index class.
+	 *
+	 * @param outputDir The root directory to write source to.  Files go
+	 *        in subdirectories matching their package.
+	 * @param indexClassName The fully qualified name of the index class.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void write(File outputDir, String indexClassName) throws IOException {
+
+		int dot = indexClassName.lastIndexOf('.');
+		String pkg = dot > -1 ? indexClassName.substring(0, dot) : "";
+		String simpleName = indexClassName.substring(dot + 1);
+		if (pkg.isEmpty()) {
+			throw new IllegalArgumentException("The index class must be in a package: " + indexClassName);
+		}
+
+		Path dir = outputDir.toPath().resolve(pkg.replace('.', File.separatorChar));
+		Files.createDirectories(dir);
+
+		List<String> classNames = new ArrayList<>();
+		for (BasicBlock block : blocks) {
+			String className = block.getClassName();
+			classNames.add(className);
+			String source = BlockGenerator.generate(block, pkg, className);
+			Files.write(dir.resolve(className + ".java"), source.getBytes(StandardCharsets.UTF_8));
+		}
+
+		String index = generateIndex(pkg, simpleName, classNames);
+		Files.write(dir.resolve(simpleName + ".java"), index.getBytes(StandardCharsets.UTF_8));
+
+	}
+
+	/**
+	 * Generates the source of the index class.
+	 *
+	 * @param pkg The package of the class.
+	 * @param className The simple name of the class.
+	 * @param classNames The names of the block classes, in the same order
+	 *        as {@link #blocks}.
+	 * @return The source.
+	 */
+	private String generateIndex(String pkg, String className, List<String> classNames) {
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(pkg).append(";\n\n");
+		sb.append("import org.fife.emu.cpu.n6502.PrecompiledBlocks;\n\n");
+		sb.append("/**\n");
+		sb.append(" * Blocks precompiled from ").append(BlockGenerator.hex(start, 4)).append('-')
+			.append(BlockGenerator.hex(end - 1, 4)).append(" by the 6502 static recompiler.\n");
+		sb.append(" */\n");
+		sb.append("public final class ").append(className).append(" {\n\n");
+		sb.append("\tprivate ").append(className).append("() {\n\t}\n\n");
+
+		int methodCount = (classNames.size() + BLOCKS_PER_METHOD - 1) / BLOCKS_PER_METHOD;
+		sb.append("\t/**\n\t * Returns the precompiled blocks.\n\t *\n\t * @return The blocks.\n\t */\n");
+		sb.append("\tpublic static PrecompiledBlocks create() {\n");
+		sb.append("\t\tPrecompiledBlocks blocks = new PrecompiledBlocks();\n");
+		for (int i = 0; i < methodCount; i++) {
+			sb.append("\t\tadd").append(i).append("(blocks);\n");
+		}
+		sb.append("\t\treturn blocks;\n\t}\n");
+
+		for (int i = 0; i < methodCount; i++) {
+			sb.append("\n\tprivate static void add").append(i).append("(PrecompiledBlocks blocks) {\n");
+			int last = Math.min(classNames.size(), (i + 1) * BLOCKS_PER_METHOD);
+			for (int j = i * BLOCKS_PER_METHOD; j < last; j++) {
+				sb.append("\t\tblocks.add(0x").append(Integer.toHexString(blocks.get(j).getStart()))
+					.append(", ").append(classNames.get(j)).append(".class);\n");
+			}
+			sb.append("\t}\n");
+		}
+
+		sb.append("\n}\n");
+		return sb.toString();
+
+	}
+
+	/**
+	 * A context with nothing but a ROM image mapped in.
+	 */
+	private static final class RomContext extends AbstractCpuContext {
+
+		private RomContext(byte[] image, int address) {
+			initMemory(0x10000);
+			int size = (image.length + PAGE_SIZE - 1) & -PAGE_SIZE;
+			ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(size);
+			rom.write(0, image, 0, image.length);
+			mapROM(address, address + size, rom, 0);
+		}
+
+		@Override
+		public Cpu getCpu() {
+			return null;
+		}
+
+	}
+
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.fife.emu.cpu.n6502;
 
 import java.io.Serializable;
 
+import org.fife.emu.EventScheduler;
 import org.fife.emu.cpu.*;
 
 
@@ -18,7 +19,8 @@ public interface n6502 extends Cpu, Serializable {
 	/**
 	 * Hook method that can be overridden and called by subclasses
 	 * to implement functionality that occurs at the end of an
-	 * emulated "frame."  The default implementation does nothing.
+	 * emulated "frame."  The default implementation rebases the cycle
+	 * count so that it never overflows.
 	 */
 	void endTimeFrame();
 
@@ -37,4 +39,36 @@ public interface n6502 extends Cpu, Serializable {
 	 */
 	void nmi();
 
+	/**
+	 * Requests an NMI.  It is taken before the next instruction, or
+	 * right away if this CPU isn't running.
+	 *
+	 * @see #nmi()
+	 */
+	void requestNMI();
+
+	/**
+	 * Sets the scheduler whose events this CPU fires.  The CPU then runs
+	 * uninterrupted until the next event is due, fires all the events due,
+	 * and takes any interrupts they requested, rather than the machine
+	 * having to run it in slices that end at each event.  If a device
+	 * schedules an event during a slice, e.g. because a register was
+	 * written, the slice ends early to fire it.
+	 *
+	 * @param scheduler The scheduler, or <code>null</code> for none.
+	 */
+	void setEventScheduler(EventScheduler scheduler);
+
+	/**
+	 * Asserts or releases the IRQ line on behalf of a device.  The line
+	 * is level triggered: an IRQ is taken before the next instruction
+	 * whenever any device is asserting it and the I flag is clear.
+	 *
+	 * @param source The device, as a single bit.  Each device asserting
+	 *        IRQs must use a different bit.
+	 * @param asserted Whether the device is asserting the line.
+	 * @see #irq()
+	 */
+	void setIRQ(int source, boolean asserted);
+
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package org.fife.emu.cpu.n6502;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.fife.emu.*;
@@ -11,7 +13,9 @@ import org.fife.emu.cpu.*;
 
 /**
  * Implementation of a 6502 CPU.  This CPU is what the NES CPU
- * was based on.
+ * was based on.  This class emulates the NES's Ricoh 2A03, which has no
+ * decimal mode; subclasses emulate other variants by overriding only the
+ * instructions that behave differently.
  *
  * @author Robert Futrell
  * @version 1.0
@@ -24,19 +28,13 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	private static final long serialVersionUID = 2920750437770524090L;
 
-	/*
-	 * JLS 14.21 states that most optimizing compilers (such as javac)
-	 * will optimize away "if" statements where conditional is always
-	 * false.
-	 */
-	private static final boolean DEBUG_OPCODE_COUNTS = false;
-	private static final boolean DEBUG_COUNT_EXECUTED_INSTRUCTIONS = true;
-
-	protected int flagC;
+	// C and V, like N and Z, are stored as whatever the last instruction
+	// to set them computed, and only extracted when something reads them
+	protected int flagC;  // Bit 8 (0x100) is C, other bits are garbage
 	protected int flagI;
 	protected int flagD;
 	protected int flagB;
-	protected int flagV;
+	protected int flagV;  // Bit 7 (0x80) is V, other bits are garbage
 	protected int flagNZ; // Use 9 bits (not 8!), 0-6=>Z, 7=>N&Z, 8=>N
 
 	protected int a;  // 8 bits
@@ -45,11 +43,30 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	protected boolean halted;
 
+	/**
+	 * How many times each opcode, and each pair of opcodes, was run, or
+	 * <code>null</code> if profiling was never enabled.
+	 */
 	private long[] opcodeCounts;
+	private long[] opcodePairCounts;
+	private int lastOpcode;
 	private long executedInstructionCount;
-	protected long totCycles;
+	private boolean profiling;
+
+	private transient InstructionHook instructionHook;
+
+	/**
+	 * Whether the current slice is running in the instrumented loop.
+	 *
+	 * @see #execute()
+	 */
+	private boolean instrumented;
 	protected int endCycles;
 
+	/**
+	 * Logs each instruction run while logging state, or <code>null</code>
+	 * if logging was never enabled.
+	 */
 	private Debug6502State stateLogger;
 	private boolean logState;
 
@@ -62,6 +79,78 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	private static final int N_BIT = 0x80;
 
+	/**
+	 * Unofficial instructions that aren't emulated.
+	 */
+	private static final List<String> UNEMULATED = Arrays.asList(
+		"ANC", "RLA", "SRE", "ALR", "RRA", "ARR", "SAX", "XAA",
+		"AHX", "TAS", "SHY", "SHX", "LXA", "DCP", "AXS");
+
+	/**
+	 * The length of each instruction, in bytes.  Opcodes that aren't
+	 * emulated are given a length of 1, so that decoding them doesn't
+	 * read past the opcode before an exception is thrown.
+	 */
+	private static final int[] INSTRUCTION_LENGTHS = new int[256];
+
+	static {
+		for (int opcode = 0; opcode < INSTRUCTION_LENGTHS.length; opcode++) {
+			boolean emulated = !UNEMULATED.contains(InstructionInfo6502.getMnemonic(opcode));
+			INSTRUCTION_LENGTHS[opcode] = emulated ? InstructionInfo6502.getByteCount(opcode) : 1;
+		}
+	}
+
+	/**
+	 * The length of each instruction on this variant of the CPU.
+	 */
+	private final int[] instructionLengths;
+
+	/**
+	 * Set in a decoded instruction by the decode cache if it is followed
+	 * by the tail of a common sequence, e.g. the BNE in <code>DEX/BNE</code>.
+	 *
+	 * @see #fuse(int, int)
+	 */
+	static final int FUSED = 1 << 28;
+
+	/**
+	 * Cache of decoded instructions, or <code>null</code> if disabled.
+	 */
+	private DecodeCache decodeCache;
+
+	/**
+	 * Blocks of code compiled to Java classes, or <code>null</code> if
+	 * neither the JIT nor precompiled blocks are enabled.
+	 */
+	private transient BlockCache blockCache;
+
+	private transient boolean jitEnabled;
+	private transient PrecompiledBlocks precompiledBlocks;
+
+	/**
+	 * Fires the machine's events between slices, or <code>null</code> if
+	 * the machine calls {@link #irq()} and {@link #nmi()} itself.
+	 */
+	private transient EventScheduler scheduler;
+
+	/**
+	 * The sources asserting the IRQ line, one bit each.
+	 */
+	private int irqSources;
+	private boolean nmiPending;
+
+	/**
+	 * Notified before each bus access, or <code>null</code> if cycles are
+	 * only counted per instruction.
+	 */
+	private final BusListener busListener;
+
+	/**
+	 * The bus accesses made so far by the instruction being run, when
+	 * ticking per access.
+	 */
+	private int busAccesses;
+
 	/**
 	 * Constructor.
 	 *
@@ -70,42 +159,94 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 */
 	@SuppressFBWarnings(value = "NM_CLASS_NAMING_CONVENTION", justification = "CPU name is OK for class name")
 	public n6502Impl(CpuContext context, float clockSpeed) {
+		this(context, clockSpeed, INSTRUCTION_LENGTHS, null);
+	}
 
-		super(context, clockSpeed);
+	/**
+	 * Constructor.  If a bus listener is given, this CPU ticks its clock
+	 * once per bus access, i.e. per byte read or written, and lets the
+	 * listener catch devices up before each access.  The rest of each
+	 * instruction's cycles are added once it's done, so it still takes
+	 * the same number of cycles in total.  This is for timing-sensitive
+	 * code, such as test ROMs; it's much slower, since every instruction
+	 * runs through the instrumented loop, and the decode cache and
+	 * compiled blocks aren't used.<p>
+	 *
+	 * Accesses are timed one cycle apart, starting with the opcode fetch
+	 * on the instruction's first cycle, plus one for each page crossed.
+	 * Zero page and absolute instructions, including read-modify-write
+	 * ones, and absolute indexed loads access memory on the same cycles as
+	 * the real chip.  The interpreter doesn't make every dummy read the
+	 * real chip does, though, so accesses after one (e.g. of indexed
+	 * stores, zero page indexed instructions and stack pulls) come a cycle
+	 * or two early.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 * @param busListener The listener to notify before each bus access,
+	 *        or <code>null</code> to only count cycles per instruction.
+	 */
+	public n6502Impl(CpuContext context, float clockSpeed, BusListener busListener) {
+		this(context, clockSpeed, INSTRUCTION_LENGTHS, busListener);
+	}
 
-		if (DEBUG_OPCODE_COUNTS) {
-			opcodeCounts = new long[256];
+	/**
+	 * Constructor for variants whose instructions have different
+	 * lengths.
+	 *
+	 * @param context The CPU context.
+	 * @param clockSpeed The clock speed of this CPU.
+	 * @param instructionLengths The length of each instruction, in bytes.
+	 * @param busListener The listener to notify before each bus access,
+	 *        or <code>null</code> to only count cycles per instruction.
+	 * @see #n6502Impl(CpuContext, float, BusListener)
+	 */
+	protected n6502Impl(CpuContext context, float clockSpeed, int[] instructionLengths, BusListener busListener) {
+
+		super(context, clockSpeed);
+		this.instructionLengths = instructionLengths;
+		this.busListener = busListener;
+		if (busListener != null) {
+			this.context = new BusTimingContext(context, this);
 		}
 
 		//reset();
-		stateLogger = new Debug6502State(this);
 
 	}
 
 	/**
-	 * Utility method that returns the byte at PC as an
-	 * absolute indexed address.
+	 * Adds to the cycle count.  This is called by compiled blocks.
 	 *
+	 * @param count The number of cycles to add.
+	 */
+	void addCycles(int count) {
+		cycles += count;
+	}
+
+	/**
+	 * Utility method that returns an absolute indexed
+	 * address.
+	 *
+	 * @param base  The base address (the instruction's operand).
 	 * @param index The index.
 	 * @return The address.
 	 */
-	private int _absIndexed(int index) {
-		int temp = context.readWord(pc);
-		pc += 2;
-		int address = temp + index;
-		crossingPageBoundary(temp, address);
+	int _absIndexed(int base, int index) {
+		int address = base + index;
+		crossingPageBoundary(base, address);
 		return address;
 	}
 
 	/**
 	 * Utility method that returns the indirect indexed
-	 * address pointed to by PC and Y.
+	 * address pointed to by a zero-page address and Y.
 	 *
+	 * @param zp The zero-page address (the instruction's operand).
 	 * @return The address.
-	 * @see #_preIndIndX()
+	 * @see #_preIndIndX(int)
 	 */
-	private int _postIndIndY() {
-		int temp = context.readWord(context.readByte(pc++));
+	private int _postIndIndY(int zp) {
+		int temp = context.readWord(zp);
 		crossingPageBoundary(temp, temp + y);
 		//return (temp+y)&0xffff;
 		return temp + y;
@@ -113,36 +254,27 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	/**
 	 * Utility method that returns the indexed indirect
-	 * address pointed to by PC and X.
+	 * address pointed to by a zero-page address and X.
 	 *
+	 * @param zp The zero-page address (the instruction's operand).
 	 * @return The address.
-	 * @see #_postIndIndY()
+	 * @see #_postIndIndY(int)
 	 */
-	private int _preIndIndX() {
-		int data = (context.readByte(pc++) + x) & 0xff;
+	private int _preIndIndX(int zp) {
+		int data = (zp + x) & 0xff;
 		return context.readWord(data);
 	}
 
 	/**
-	 * Utility method that returns the byte at PC as a
-	 * zero-page address.
-	 *
-	 * @return The address.
-	 * @see #_zeroPageIndexed(int)
-	 */
-	private int _zeroPage() {
-		return context.readByte(pc++);
-	}
-
-	/**
-	 * Utility method that returns the byte at PC as a
-	 * zero-page indexed address.
+	 * Utility method that returns a zero-page indexed
+	 * address.
 	 *
+	 * @param zp    The zero-page address (the instruction's operand).
+	 * @param index The index.
 	 * @return The address.
-	 * @see #_zeroPage()
 	 */
-	private int _zeroPageIndexed(int index) {
-		return (context.readByte(pc++) + index) & 0xff;
+	private int _zeroPageIndexed(int zp, int index) {
+		return (zp + index) & 0xff;
 	}
 
 	/**
@@ -150,45 +282,46 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * LDY, EOR, AND, ORA, ADC, SBC, CMP, BIT, LAX, LAE,
 	 * SHS, NOP).
 	 *
+	 * @param base  The base address (the instruction's operand).
 	 * @param index The index.
 	 * @return The byte read.
 	 */
-	private int absoluteIndex_Read(int index) {
-		return context.readByte(_absIndexed(index));
+	int absoluteIndex_Read(int base, int index) {
+		return context.readByte(_absIndexed(base, index));
 	}
 
 	/**
 	 * Performs an absolute-index-addressed write
 	 * (STA, STX, STY, SHA, SHX, SHY).
 	 *
+	 * @param base  The base address (the instruction's operand).
 	 * @param index The index.
 	 * @param b     The byte to write.
 	 */
-	private void absoluteIndex_Write(int index, int b) {
-		context.writeByte(_absIndexed(index), b);
+	void absoluteIndex_Write(int base, int index, int b) {
+		context.writeByte(_absIndexed(base, index), b);
 	}
 
 	/**
 	 * Performs an absolute-addressed read (LDA, LDX,
 	 * LDY, EOR, AND, ORA, ADC, SBC, CMP, BIT, LAX, NOP).
 	 *
+	 * @param address The address (the instruction's operand).
 	 * @return The byte read.
 	 */
-	private int absolute_Read() {
-		int val = context.readByte(context.readWord(pc));
-		pc += 2;
-		return val;
+	int absolute_Read(int address) {
+		return context.readByte(address);
 	}
 
 	/**
 	 * Performs an absolute-addressed write (STA, STX,
 	 * STY, SAX).
 	 *
-	 * @param b The byte to write.
+	 * @param address The address (the instruction's operand).
+	 * @param b       The byte to write.
 	 */
-	private void absolute_Write(int b) {
-		context.writeByte(context.readWord(pc), b);
-		pc += 2;
+	void absolute_Write(int address, int b) {
+		context.writeByte(address, b);
 	}
 
 	/**
@@ -204,21 +337,16 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	/**
 	 * Executes an ADC instruction.  All flags are updated
-	 * appropriately.
+	 * appropriately.  The 2A03 has no decimal mode, so the D flag is
+	 * ignored; see {@link Nmos6502} for a CPU that honors it.
 	 *
 	 * @param val The value to ADC to the A register.
 	 */
 	protected void doADC(int val) {
-// TODO: Implement BCD mode.
-//		if (flagD>0) {
-//			throw new InternalError("ADC instruction in BCD mode (not implemented)");
-//		}
-//		else {
-		int temp = a + val + flagC;
-		flagC = (temp & 0x100) >> 8;
-		flagV = ((~(a ^ val)) & (a ^ temp) & 0x80) >> 7;
+		int temp = a + val + ((flagC >> 8) & 0x01);
+		flagC = temp;
+		flagV = ~(a ^ val) & (a ^ temp);
 		flagNZ = a = temp & 0xff;
-//		}
 	}
 
 	/**
@@ -228,7 +356,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param val The value to logically AND to the A
 	 *            register.
 	 */
-	private void doAND(int val) {
+	void doAND(int val) {
 		flagNZ = a &= val;
 	}
 
@@ -240,8 +368,8 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The modified byte.
 	 */
 	private int doASL(int b) {
-		flagC = (b >> 7) & 0x01;
-		return flagNZ = (b << 1) & 0xff;
+		flagC = b << 1;
+		return flagNZ = flagC & 0xff;
 	}
 
 	/**
@@ -250,7 +378,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *
 	 * @param address The address in memory to ASL.
 	 */
-	private void doASLMem(int address) {
+	void doASLMem(int address) {
 		int val = context.readByte(address);
 		context.writeByte(address, val); // Write back
 		val = doASL(val);
@@ -263,28 +391,27 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *
 	 * @param b The byte to test.
 	 */
-	private void doBIT(int b) {
+	void doBIT(int b) {
 		// Z flag set from result ("a&b"), while N flag is set
 		// from just "b".
 		flagNZ = ((b & a) > 0 ? 1 : 0) | ((b & 0x80) << 1);
-		flagV = (b & 0x40) >> 6;            // "V" flag is bit 6.
+		flagV = b << 1;            // "V" flag is bit 6 of b.
 	}
 
 	/**
 	 * Executes one of the branch instructions.  The PC and
 	 * cycle cound are updated appropriately.
 	 *
-	 * @param test Whether the branch condition was met.
-	 * @return The number of cycles used doing the branch.
+	 * @param test   Whether the branch condition was met.
+	 * @param offset The branch offset (the instruction's operand).
 	 */
-	private void doBranch(boolean test) {
+	void doBranch(boolean test, int offset) {
 		if (test) {
 			cycles += 3; // 2 cycles + 1 for branch
-			int offset = (byte)context.readByte(pc++); // Force to -128,127.
+			offset = (byte)offset; // Force to -128,127.
 			crossingPageBoundary(pc, pc + offset); // +1 if on different page
 			pc += offset;
 		} else {
-			pc++; // Skip branch address.
 			cycles += 2;
 		}
 	}
@@ -293,7 +420,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * Performs a BRK instruction.  The program counter and flags
 	 * are updated appropriately.
 	 */
-	private void doBRK() {
+	void doBRK() {
 		context.readByte(pc++); // Throw away
 		pushWord(pc);
 		flagB = 1; // Push P with flag B set.
@@ -310,9 +437,9 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *            <code>x</code> or <code>y</code>).
 	 * @param b   The byte to compare with the register.
 	 */
-	private void doCMP(int reg, int b) {
+	void doCMP(int reg, int b) {
 		int result = reg - b;
-		flagC = (~result >> 8) & 0x01;
+		flagC = ~result;
 		flagNZ = result & 0xff;
 	}
 
@@ -323,7 +450,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param b The byte to decrement.
 	 * @return The decremented byte.
 	 */
-	private int doDEC(int b) {
+	int doDEC(int b) {
 		return flagNZ = (b - 1) & 0xff;
 	}
 
@@ -347,7 +474,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param b The byte to EOR with the <code>a</code>
 	 *          register.
 	 */
-	private void doEOR(int b) {
+	void doEOR(int b) {
 		flagNZ = a ^= b;
 	}
 
@@ -358,7 +485,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param b The byte to increment.
 	 * @return The incremented byte.
 	 */
-	private int doINC(int b) {
+	int doINC(int b) {
 		return flagNZ = (b + 1) & 0xff;
 	}
 
@@ -391,11 +518,15 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	}
 
 	/**
-	 * Performs a KIL/JAM/HLT instruction.
+	 * Performs a KIL/JAM/HLT instruction.  The CPU stops where it is, and
+	 * its clock stops with it; callers that need time to keep passing
+	 * must burn the cycles themselves.
+	 *
+	 * @see #burnCycles(int)
 	 */
 	private void doKIL() {
 		halted = true;
-		cycles = 0;
+		endCycles = cycles;
 	}
 
 	/**
@@ -416,7 +547,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param b The byte to load into the <code>a</code>
 	 *          register.
 	 */
-	private void doLDA(int b) {
+	void doLDA(int b) {
 		flagNZ = a = b;
 	}
 
@@ -449,7 +580,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The modified byte.
 	 */
 	private int doLSR(int b) {
-		flagC = b & 0x01;
+		flagC = b << 8;
 		return flagNZ = b >> 1;
 	}
 
@@ -459,7 +590,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *
 	 * @param address The address in memory to LSR.
 	 */
-	private void doLSRMem(int address) {
+	void doLSRMem(int address) {
 		int val = context.readByte(address);
 		context.writeByte(address, val); // Write back
 		val = doLSR(val);
@@ -473,7 +604,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @param val The value to logically OR to the
 	 *            <code>A</code> register.
 	 */
-	private void doORA(int val) {
+	void doORA(int val) {
 		flagNZ = a |= val;
 	}
 
@@ -484,9 +615,8 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The modified byte.
 	 */
 	private int doROL(int b) {
-		flagNZ = ((b << 1) & 0xff) | flagC;
-		flagC = (b >> 7) & 0x01;
-		return flagNZ;
+		flagC = (b << 1) | ((flagC >> 8) & 0x01);
+		return flagNZ = flagC & 0xff;
 	}
 
 	/**
@@ -495,7 +625,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *
 	 * @param address The address in memory to ROL.
 	 */
-	private void doROLMem(int address) {
+	void doROLMem(int address) {
 		int val = context.readByte(address);
 		context.writeByte(address, val); // Write back
 		val = doROL(val);
@@ -509,8 +639,8 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The modified byte.
 	 */
 	private int doROR(int b) {
-		flagNZ = (b >> 1) | (flagC << 7);
-		flagC = b & 0x01;
+		flagNZ = (b >> 1) | ((flagC >> 1) & 0x80);
+		flagC = b << 8;
 		return flagNZ;
 	}
 
@@ -520,7 +650,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 *
 	 * @param address The address in memory to ROR.
 	 */
-	private void doRORMem(int address) {
+	void doRORMem(int address) {
 		int val = context.readByte(address);
 		context.writeByte(address, val); // Write back
 		val = doROR(val);
@@ -539,22 +669,16 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	/**
 	 * Performs an SBC instruction.  All flags are
-	 * updated appropriately.
+	 * updated appropriately.  As with ADC, the D flag is ignored.
 	 *
 	 * @param b The byte to subtract from the
 	 *          <code>A</code> register.
 	 */
 	protected void doSBC(int b) {
-// TODO: Implement BCD mode.
-//		if (flagD>0) {
-//			throw new InternalError("SBC instruction in bcd mode (not implemented)");
-//		}
-//		else {
-		int temp = a - b - (flagC ^ 0x01);
-		flagV = ((a ^ b) & (a ^ temp) & 0x80) >> 7;
+		int temp = a - b - ((~flagC >> 8) & 0x01);
+		flagV = (a ^ b) & (a ^ temp);
 		flagNZ = a = temp & 0xff;
-		flagC = ((~temp) >> 8) & 0x01;
-//		}
+		flagC = ~temp;
 	}
 
 	/**
@@ -566,25 +690,97 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	private void doSLOMem(int address) {
 		int val = context.readByte(address);
 		context.writeByte(address, val); // Write the value back.
-		flagC = (val >> 7) & 0x01;
+		flagC = val << 1;
 		val = (val << 1) & 0xff;
 		context.writeByte(address, val);
 		flagNZ = a |= val;
 	}
 
+	/**
+	 * Decodes the instruction at an address.  The opcode and its operand
+	 * bytes are read via the context.
+	 *
+	 * @param address The address of the instruction.
+	 * @return The decoded instruction.  Bits 0-7 are the opcode, bits
+	 *         8-23 are the operand (if any), and bits 24-25 are the
+	 *         instruction's length in bytes.  The decode cache may also
+	 *         set {@link #FUSED}.
+	 * @see #setDecodeCacheEnabled(boolean)
+	 */
+	int decode(int address) {
+		int opcode = context.readByte(address);
+		int length = instructionLengths[opcode];
+		int operand = 0;
+		if (length > 1) {
+			operand = context.readByte(address + 1);
+			if (length > 2) {
+				operand |= context.readByte(address + 2) << 8;
+			}
+		}
+		return opcode | (operand << 8) | (length << 24);
+	}
+
+	/**
+	 * Returns a decoded instruction, marked as {@link #FUSED} if it's
+	 * followed by the tail of one of the sequences most common in NES
+	 * code:
+	 * <ul>
+	 *    <li>a step or test followed by a branch, e.g. <code>DEX/BNE</code>
+	 *        or <code>BIT $2002/BPL</code></li>
+	 *    <li>an index step, compare and branch, e.g.
+	 *        <code>INY/CPY #$10/BNE</code></li>
+	 *    <li><code>LDA/STA</code></li>
+	 * </ul>
+	 * This is called by the decode cache, which only caches pages where
+	 * reading has no side effects, and which drops a page's entries when
+	 * it is written to.  The whole sequence must be in the same page, so
+	 * modifying any of it drops the fused entry.
+	 *
+	 * @param address The address of the instruction.
+	 * @param entry The decoded instruction.
+	 * @return The decoded instruction, possibly marked as fused.
+	 * @see #dumpOpcodeCounts()
+	 */
+	int fuse(int address, int entry) {
+
+		int end = (address | 0xff) + 1;
+		int next = address + ((entry >> 24) & 0x3);
+		if (next + 2 > end) {
+			return entry;
+		}
+
+		int opcode = entry & 0xff;
+		int second = context.readByte(next);
+		boolean fused = false;
+
+		if ((second & 0x1f) == 0x10) {
+			fused = isBranchSetup(opcode);
+		}
+		else if (isCompareImmediate(second)) {
+			fused = isIndexStep(opcode) && next + 4 <= end && (context.readByte(next + 2) & 0x1f) == 0x10;
+		}
+		else if (second == 0x85 || second == 0x8D) {
+			fused = (opcode == 0xA9 || opcode == 0xA5 || opcode == 0xAD) && next + INSTRUCTION_LENGTHS[second] <= end;
+		}
+
+		return fused ? entry | FUSED : entry;
+
+	}
+
 	/**
 	 * Dumps the number of times each n6502 instruction was executed
 	 * to a file.<p>
 	 * <p>
-	 * If {@link #DEBUG_OPCODE_COUNTS} is not set to
-	 * <code>true</code>, this method will not dump out instruction
-	 * counts.
+	 * If profiling isn't enabled, this method will not dump out
+	 * instruction counts.
+	 *
+	 * @see #setProfilingEnabled(boolean)
 	 */
 	public void dumpOpcodeCounts() {
 		try {
 			PrintWriter out = new PrintWriter(new File("n6502_opcodeCounts.txt"),
 				Charset.defaultCharset().name());
-			if (!DEBUG_OPCODE_COUNTS) {
+			if (opcodeCounts == null) {
 				out.println("Opcode counting was not enabled for the n6502");
 				out.close();
 				return;
@@ -592,28 +788,61 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 			for (int i = 0; i < 256; i++) {
 				out.println(i + ":\t" + opcodeCounts[i]);
 			}
+			// The most common pairs, the candidates for fusion
+			out.println();
+			Integer[] pairs = new Integer[opcodePairCounts.length];
+			for (int i = 0; i < pairs.length; i++) {
+				pairs[i] = i;
+			}
+			Arrays.sort(pairs, (p1, p2) -> Long.compare(opcodePairCounts[p2], opcodePairCounts[p1]));
+			for (int i = 0; i < 64 && opcodePairCounts[pairs[i]] > 0; i++) {
+				out.println(Util.toHex(pairs[i] >> 8) + " " + Util.toHex(pairs[i] & 0xff) +
+					":\t" + opcodePairCounts[pairs[i]]);
+			}
 			out.close();
 		} catch (IOException ioe) {
 			ioe.printStackTrace();
 		}
 	}
 
-	private int earliestIRQBefore(int time) {
-		if (flagI == 0) {
-			int irqTime = 99999;//apu.earliest_irq();
-			if (irqTime < time) {
-				time = irqTime;
-			}
+	/**
+	 * Returns whether an instruction can be compiled by the JIT or the
+	 * static recompiler for this variant of the CPU.  Variants exclude the
+	 * instructions they implement differently, which are then always
+	 * interpreted.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether the instruction can be compiled.
+	 */
+	boolean canCompile(int opcode) {
+		return BlockGenerator.canCompile(opcode);
+	}
+
+	/**
+	 * Ends the current slice if an IRQ is asserted and the I flag was
+	 * just cleared, so the IRQ is taken before the next instruction.
+	 */
+	private void checkIRQ() {
+		if (irqSources != 0 && flagI == 0) {
+			endCycles = cycles;
 		}
-		return time;
 	}
 
 	/**
 	 * Hook method that can be overridden and called by subclasses
 	 * to implement functionality that occurs at the end of an
-	 * emulated "frame."  The default implementation does nothing.
+	 * emulated "frame."  The default implementation rebases the cycle
+	 * count to <code>0</code>, along with the event scheduler's events,
+	 * so that it never overflows; {@link #getTotalCycles()} keeps
+	 * counting.  This should be called between calls to
+	 * {@link #execute(int)}.
 	 */
 	public void endTimeFrame() {
+		int elapsed = rebaseCycles();
+		endCycles -= elapsed;
+		if (scheduler != null) {
+			scheduler.rebase(elapsed);
+		}
 	}
 
 	/**
@@ -634,13 +863,23 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 			return 0;
 		}
 
-		while (cycles < until) {
+		while (cycles < until && !halted) {
+
 			endCycles = until;
-//			endCycles = earliestIRQBefore(until);
-//			if (endCycles<=cycles) {
-//				irq();
-//				endCycles = until;
-//			}
+			if (scheduler != null) {
+				scheduler.runEvents(cycles);
+				endCycles = Math.min(until, scheduler.getNextEventTime());
+			}
+
+			busAccesses = 0;
+			if (nmiPending) {
+				nmiPending = false;
+				nmi();
+			}
+			else if (irqSources != 0) {
+				irq();
+			}
+			cycles -= busAccesses;
 
 			execute();
 
@@ -650,10 +889,71 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 
 	}
 
-	@SuppressWarnings("checkstyle:MethodLength")
+	/**
+	 * Runs instructions until the end of the current slice.  The fast loop
+	 * is used unless state is being logged, instructions are being
+	 * profiled, an instruction hook is set, or the clock ticks per bus
+	 * access, in which case the instrumented loop is.  Which loop to use
+	 * is decided at the start of each slice, so turning instrumentation on
+	 * or off takes effect at the next one.
+	 *
+	 * @see #setLogState(boolean)
+	 * @see #setProfilingEnabled(boolean)
+	 * @see #setInstructionHook(InstructionHook)
+	 * @see #n6502Impl(CpuContext, float, BusListener)
+	 */
 	protected void execute() {
+		instrumented = logState || profiling || instructionHook != null || busListener != null;
+		if (instrumented) {
+			executeInstrumented();
+		}
+		else {
+			executeFast();
+		}
+	}
+
+	/**
+	 * The production loop: runs compiled blocks and fused instruction
+	 * sequences where it can, and has no per-instruction checks beyond
+	 * that.
+	 */
+	private void executeFast() {
 
-		int addr;
+		BlockCache blocks = blockCache;
+		if (blocks != null) {
+			blocks.installCompiledBlocks();
+		}
+
+		while (cycles < endCycles) {
+
+			if (blocks != null) {
+				CompiledBlock block = blocks.lookup(pc);
+				if (block != null) {
+					block.run();
+					continue;
+				}
+			}
+
+			int entry = decodeCache != null ? decodeCache.fetch(pc) : decode(pc);
+			pc += (entry >> 24) & 0x3;
+			executeInstruction(entry & 0xff, (entry >> 8) & 0xffff);
+
+			if ((entry & FUSED) != 0 && cycles < endCycles) {
+				executeFusedTail(entry);
+			}
+
+		}
+
+	}
+
+	/**
+	 * The instrumented loop: runs every instruction through the
+	 * interpreter, one at a time, logging state, profiling and calling the
+	 * instruction hook as enabled.  When ticking per bus access, the
+	 * decode cache isn't used, so that every fetch is made, and the ticks
+	 * are taken back out once the instruction has added its cycles.
+	 */
+	private void executeInstrumented() {
 
 		while (cycles < endCycles) {
 
@@ -664,8 +964,14 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 					ioe.printStackTrace();
 				}
 			}
+			if (instructionHook != null) {
+				instructionHook.beforeInstruction(this, pc);
+			}
 
-			int opcode = context.readByte(pc++);
+			busAccesses = 0;
+			int entry = decodeCache != null && busListener == null ? decodeCache.fetch(pc) : decode(pc);
+			int opcode = entry & 0xff;
+			pc += (entry >> 24) & 0x3;
 
 //if (org.fife.emu.finnes.Debug.DO_DEBUG) {
 //if ((debugExecutedInstructionCount%200000)==0) {
@@ -682,7 +988,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 //	org.fife.emu.finnes.hw.ppu.ppu2c02 ppu = ((org.fife.emu.finnes.hw.nes.NES)this.context).getPpu();
 //	debugOut.println((pc-1) + " " + sp + " " + opcode + /*" " + cycles + */" | " +
 //				a + " " + x + " " + y + " | " +
-//				getFlagN() + " " + flagV + " " + flagD + " " + flagI + " " + getFlagZ() + " " + flagC + " | " +
+//				getFlagN() + " " + getFlagV() + " " + flagD + " " + flagI + " " + getFlagZ() + " " + getFlagC() + " | " +
 //				ppu.getLatchClean() + " " + ppu.readByteSprRAM(1) + " " +
 //				ppu.getRegisterClean(0x2000) + " " + ppu.getRegisterClean(0x2001) + " " + ppu.getRegisterClean(0x2002)
 //	);
@@ -692,1170 +998,1248 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 //}
 //debugExecutedInstructionCount++;
 //}
-			if (DEBUG_OPCODE_COUNTS) {
+			if (profiling) {
 				opcodeCounts[opcode]++;
-			}
-			if (DEBUG_COUNT_EXECUTED_INSTRUCTIONS) {
+				opcodePairCounts[(lastOpcode << 8) | opcode]++;
+				lastOpcode = opcode;
 				executedInstructionCount++;
-//if (executedInstructionCount%10000==0) {
-//	System.out.println("executedInstructionCount == " + executedInstructionCount);
-//}
 			}
 
-			switch (opcode) {
-
-				case 0x00:    // BRK - Break
-					doBRK();
-					cycles += 7;
-					break;
-
-				case 0x01:    // ORA ($44,X) - Indirect,X
-					doORA(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				case 0x02: // * KIL/JAM/HLT
-				case 0x12:
-				case 0x22:
-				case 0x32:
-				case 0x42:
-				case 0x52:
-				case 0x62:
-				case 0x72:
-				case 0x92:
-				case 0xB2:
-				case 0xD2:
-				case 0xF2:
-					doKIL();
-					break;
-
-				case 0x03: // * SLO ($44),Y - Indirect,Y
-					doSLOMem(_preIndIndX());
-					cycles += 8;
-					break;
-
-				case 0x04:    // * DOP/SKB $44 - Zero Page
-				case 0x44:
-				case 0x64:
-					pc++;
-					cycles += 3;
-					break;
-
-				case 0x05:    // ORA $44 - Zero Page
-					doORA(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0x06:    // ASL $44 - Zero page
-					doASLMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0x07: // * SLO - Zero Page
-					doSLOMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0x08:    // PHP - Immediate (PusH Processor status)
-					context.readByte(pc); // Throw away
-					pushByte(getRegP());
-					cycles += 3;
-					break;
-
-				case 0x09:    // ORA #$44 - Immediate
-					doORA(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0x0A:    // ASL - SHL A
-					a = doASL(a);
-					cycles += 2;
-					break;
-
-				case 0x0B:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x0C:    // * TOP/NOP/SKW - Absolute
-					absolute_Read();
-					cycles += 4;
-					break;
-
-				case 0x0D:    // ORA $4400 - Absolute
-					doORA(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0x0E:    // ASL $4400 - Absolute
-					doASLMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0x0F: // * SLO - Absolute
-					doSLOMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0x10:    // BPL - Branch on PLus
-					doBranch(getFlagN() == 0);
-					break;
-
-				case 0x11:    // ORA ($44),Y - Indirect,Y
-					doORA(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0x12 handled previously
-
-				case 0x13: // * SLO ($44),Y - Indirect,Y
-					doSLOMem(_postIndIndY());
-					cycles += 8;
-					break;
-
-				case 0x14:    // * DOP/SKB $44,X - Zero Page,X
-				case 0x34:
-				case 0x54:
-				case 0x74:
-				case 0xD4:
-				case 0xF4:
-					pc++;
-					cycles += 4;
-					break;
-
-				case 0x15:    // ORA $44,X - Zero Page,X
-					doORA(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0x16:    // ASL $44,X - Zero Page,X
-					doASLMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0x17: // * SLO - Zero Page,X
-					doSLOMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0x18:    // CLC - CLear Carry flag
-					flagC = 0;
-					cycles += 2;
-					break;
-
-				case 0x19:    // ORA $4400,Y - Absolute,Y
-					doORA(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0x1A:    // * NOP - Implied
-				case 0x3A:
-				case 0x5A:
-				case 0x7A:
-				case 0xDA:
-				case 0xEA:
-				case 0xFA:
-					cycles += 2;
-					break;
-
-				case 0x1B: // * SLO - Absolute,Y
-					doSLOMem(_absIndexed(y));
-					cycles += 7;
-					break;
-
-				case 0x1C:    // * TOP/NOP/SKW - Absolute,X
-				case 0x3C:
-				case 0x5C:
-				case 0x7C:
-				case 0xDC:
-				case 0xFC:
-					// NOTE: Nestopia does not add 1 cycles for page boundaries...
-					absoluteIndex_Read(x); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0x1D:    // ORA $4400,X - Absolute,X
-					doORA(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0x1E:    // ASL $4400,X - Absolute,X
-					doASLMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0x1F: // * SLO - Absolute,X
-					doSLOMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0x20:    // JSR - Jump to SubRoutine, Absolute
-					pushWord(pc + 1);
-					pc = context.readWord(pc);
-					cycles += 6;
-					break;
-
-				case 0x21:    // AND ($44,X) - Indirect,X
-					doAND(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				// 0x22 handled previously
-
-				case 0x23:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x24:    // BIT $44 - Zero Page
-					doBIT(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0x25:    // AND $44 - Zero page
-					doAND(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0x26:    // ROL $44 - Zero Page
-					doROLMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0x27:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x28:    // PLP - Immediate (PuLl Processor status)
-					context.readByte(pc); // Throw away
-					setRegP(popByte());
-					cycles += 4;
-					break;
-
-				case 0x29:    // AND #$44 - immediate
-					doAND(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0x2A:    // ROL A - Accumulator
-					a = doROL(a);
-					cycles += 2;
-					break;
-
-				case 0x2B:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x2C:    // BIT $4400 - Absolute
-					doBIT(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0x2D:    // AND $4400 - Absolute
-					doAND(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0x2E:    // ROL $4400 - Absolute
-					doROLMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0x2F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x30:    // BMI - Branch on MInus
-					doBranch(getFlagN() > 0);
-					break;
-
-				case 0x31:    // AND ($44),Y - Indirect,Y
-					doAND(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0x32 handled previously
-
-				case 0x33:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x34 handled previously
-
-				case 0x35:    // AND $44,x - Zero Page,X
-					doAND(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0x36:    // ROL $44,X - Zero Page,X
-					doROLMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0x37:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x38:    // SEC - SEt Carry flag)
-					flagC = 1;
-					cycles += 2;
-					break;
-
-				case 0x39:    // AND $4400,Y - Absolute,Y
-					doAND(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				// 0x3A handled previously
-
-				case 0x3B:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x3C handled previously
-
-				case 0x3D:    // AND $4400,X - Absolute,X
-					doAND(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0x3E:    // ROL $4400 - Absolute,X
-					doROLMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0x3F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x40:    // RTI - Implied
-					doRTI();
-					cycles += 6;
-					break;
-
-				case 0x41:    // EOR ($44,X) - Indirect,X
-					doEOR(indexedIndirect_Read());
-					cycles += 6;
-					break;
+			executeInstruction(opcode, (entry >> 8) & 0xffff);
+			cycles -= busAccesses;
+
+		}
+
+	}
+
+	/**
+	 * Runs a single instruction.  The PC has already been moved past it.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @param operand The instruction's operand, if any.
+	 */
+	@SuppressWarnings("checkstyle:MethodLength")
+	protected void executeInstruction(int opcode, int operand) {
+		switch (opcode) {
+
+			case 0x00:    // BRK - Break
+				doBRK();
+				cycles += 7;
+				break;
+
+			case 0x01:    // ORA ($44,X) - Indirect,X
+				doORA(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			case 0x02: // * KIL/JAM/HLT
+			case 0x12:
+			case 0x22:
+			case 0x32:
+			case 0x42:
+			case 0x52:
+			case 0x62:
+			case 0x72:
+			case 0x92:
+			case 0xB2:
+			case 0xD2:
+			case 0xF2:
+				doKIL();
+				break;
+
+			case 0x03: // * SLO ($44),Y - Indirect,Y
+				doSLOMem(_preIndIndX(operand));
+				cycles += 8;
+				break;
+
+			case 0x04:    // * DOP/SKB $44 - Zero Page
+			case 0x44:
+			case 0x64:
+				cycles += 3;
+				break;
+
+			case 0x05:    // ORA $44 - Zero Page
+				doORA(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0x06:    // ASL $44 - Zero page
+				doASLMem(operand);
+				cycles += 5;
+				break;
+
+			case 0x07: // * SLO - Zero Page
+				doSLOMem(operand);
+				cycles += 5;
+				break;
+
+			case 0x08:    // PHP - Immediate (PusH Processor status)
+				context.readByte(pc); // Throw away
+				pushByte(getRegP());
+				cycles += 3;
+				break;
+
+			case 0x09:    // ORA #$44 - Immediate
+				doORA(operand);
+				cycles += 2;
+				break;
+
+			case 0x0A:    // ASL - SHL A
+				a = doASL(a);
+				cycles += 2;
+				break;
+
+			case 0x0B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x0C:    // * TOP/NOP/SKW - Absolute
+				absolute_Read(operand);
+				cycles += 4;
+				break;
+
+			case 0x0D:    // ORA $4400 - Absolute
+				doORA(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0x0E:    // ASL $4400 - Absolute
+				doASLMem(operand);
+				cycles += 6;
+				break;
+
+			case 0x0F: // * SLO - Absolute
+				doSLOMem(operand);
+				cycles += 6;
+				break;
+
+			case 0x10:    // BPL - Branch on PLus
+				doBranch(getFlagN() == 0, operand);
+				break;
+
+			case 0x11:    // ORA ($44),Y - Indirect,Y
+				doORA(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			// 0x12 handled previously
+
+			case 0x13: // * SLO ($44),Y - Indirect,Y
+				doSLOMem(_postIndIndY(operand));
+				cycles += 8;
+				break;
+
+			case 0x14:    // * DOP/SKB $44,X - Zero Page,X
+			case 0x34:
+			case 0x54:
+			case 0x74:
+			case 0xD4:
+			case 0xF4:
+				cycles += 4;
+				break;
+
+			case 0x15:    // ORA $44,X - Zero Page,X
+				doORA(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0x16:    // ASL $44,X - Zero Page,X
+				doASLMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x17: // * SLO - Zero Page,X
+				doSLOMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x18:    // CLC - CLear Carry flag
+				flagC = 0;
+				cycles += 2;
+				break;
+
+			case 0x19:    // ORA $4400,Y - Absolute,Y
+				doORA(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x1A:    // * NOP - Implied
+			case 0x3A:
+			case 0x5A:
+			case 0x7A:
+			case 0xDA:
+			case 0xEA:
+			case 0xFA:
+				cycles += 2;
+				break;
+
+			case 0x1B: // * SLO - Absolute,Y
+				doSLOMem(_absIndexed(operand, y));
+				cycles += 7;
+				break;
+
+			case 0x1C:    // * TOP/NOP/SKW - Absolute,X
+			case 0x3C:
+			case 0x5C:
+			case 0x7C:
+			case 0xDC:
+			case 0xFC:
+				// NOTE: Nestopia does not add 1 cycles for page boundaries...
+				absoluteIndex_Read(operand, x); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x1D:    // ORA $4400,X - Absolute,X
+				doORA(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x1E:    // ASL $4400,X - Absolute,X
+				doASLMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0x1F: // * SLO - Absolute,X
+				doSLOMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0x20:    // JSR - Jump to SubRoutine, Absolute
+				pushWord(pc - 1);
+				pc = operand;
+				cycles += 6;
+				break;
+
+			case 0x21:    // AND ($44,X) - Indirect,X
+				doAND(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			// 0x22 handled previously
+
+			case 0x23:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x24:    // BIT $44 - Zero Page
+				doBIT(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0x25:    // AND $44 - Zero page
+				doAND(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0x26:    // ROL $44 - Zero Page
+				doROLMem(operand);
+				cycles += 5;
+				break;
+
+			case 0x27:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x28:    // PLP - Immediate (PuLl Processor status)
+				context.readByte(pc); // Throw away
+				setRegP(popByte());
+				cycles += 4;
+				checkIRQ();
+				break;
+
+			case 0x29:    // AND #$44 - immediate
+				doAND(operand);
+				cycles += 2;
+				break;
+
+			case 0x2A:    // ROL A - Accumulator
+				a = doROL(a);
+				cycles += 2;
+				break;
+
+			case 0x2B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x2C:    // BIT $4400 - Absolute
+				doBIT(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0x2D:    // AND $4400 - Absolute
+				doAND(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0x2E:    // ROL $4400 - Absolute
+				doROLMem(operand);
+				cycles += 6;
+				break;
+
+			case 0x2F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x30:    // BMI - Branch on MInus
+				doBranch(getFlagN() > 0, operand);
+				break;
+
+			case 0x31:    // AND ($44),Y - Indirect,Y
+				doAND(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			// 0x32 handled previously
+
+			case 0x33:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0x34 handled previously
+
+			case 0x35:    // AND $44,x - Zero Page,X
+				doAND(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0x36:    // ROL $44,X - Zero Page,X
+				doROLMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x37:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x38:    // SEC - SEt Carry flag)
+				flagC = 0x100;
+				cycles += 2;
+				break;
+
+			case 0x39:    // AND $4400,Y - Absolute,Y
+				doAND(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			// 0x3A handled previously
+
+			case 0x3B:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0x3C handled previously
+
+			case 0x3D:    // AND $4400,X - Absolute,X
+				doAND(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x3E:    // ROL $4400 - Absolute,X
+				doROLMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0x3F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x40:    // RTI - Implied
+				doRTI();
+				cycles += 6;
+				checkIRQ();
+				break;
+
+			case 0x41:    // EOR ($44,X) - Indirect,X
+				doEOR(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			// 0x42 handled previously
+
+			case 0x43:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0x44 handled previously
+
+			case 0x45:    // EOR $44 - Zero Page
+				doEOR(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0x46:    // LSR $44 - Zero Page
+				doLSRMem(operand);
+				cycles += 5;
+				break;
+
+			case 0x47:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x48:    // PHA - Immediate (PusH Accumulator)
+				context.readByte(pc); // Throw away
+				pushByte(a);
+				cycles += 3;
+				break;
+
+			case 0x49:    // EOR #$44 - Immediate
+				doEOR(operand);
+				cycles += 2;
+				break;
+
+			case 0x4A:    // LSR A - Accumulator
+				a = doLSR(a);
+				cycles += 2;
+				break;
+
+			case 0x4B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x4C:    // JMP $5597 - Absolute
+				boolean idle = operand + 3 == pc; // JMP *
+				pc = operand;
+				cycles += 3;
+				if (idle && !instrumented) {
+					skipIdleIterations(3);
+				}
+				break;
+
+			case 0x4D:    // EOR $4400 - Absolute
+				doEOR(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0x4E:    // LSR $4400 - Absolute
+				doLSRMem(operand);
+				cycles += 6;
+				break;
+
+			case 0x4F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x50:    // BVC - Branch on oVerflow Clear
+				doBranch((flagV & 0x80) == 0, operand);
+				break;
 
-				// 0x42 handled previously
+			case 0x51:    // EOR ($44),Y - Indirect,Y
+				doEOR(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
 
-				case 0x43:
-					throw new UnemulatedInstructionException(opcode);
+			// 0x52 handled previously
 
-					// 0x44 handled previously
+			case 0x53:
+				throw new UnemulatedInstructionException(opcode);
 
-				case 0x45:    // EOR $44 - Zero Page
-					doEOR(zeroPage_Read());
-					cycles += 3;
-					break;
+				// 0x54 handled previously
 
-				case 0x46:    // LSR $44 - Zero Page
-					doLSRMem(_zeroPage());
-					cycles += 5;
-					break;
+			case 0x55:    // EOR $44,X - Zero Page,X
+				doEOR(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
 
-				case 0x47:
-					throw new UnemulatedInstructionException(opcode);
+			case 0x56:    // LSR $44,X - Zero Page,X
+				doLSRMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0x57:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x58:    // CLI - CLear Interrupt flag
+				flagI = 0;
+				cycles += 2;
+				checkIRQ();
+				break;
+
+			case 0x59:    // EOR $4400,Y - Absolute,Y
+				doEOR(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			// 0x5A handled previously
+
+			case 0x5B:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0x5C handled previously
+
+			case 0x5D:    // EOR $4400,X - Absolute,X
+				doEOR(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0x5E:    // LSR $4400,X - Absolute,X
+				doLSRMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0x5F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x60:    // RTS - Implied
+				context.readByte(pc); // Throw away
+				pc = popWord() + 1;
+				cycles += 6;
+				break;
+
+			case 0x61:    // ADC ($44,X) - Indirect,X
+				doADC(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			// 0x62 handled previously
+
+			case 0x63:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0x64 handled previously
+
+			case 0x65:    // ADC $44 - Zero page
+				doADC(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0x66:    // ROR $44 - Zero Page
+				doRORMem(operand);
+				cycles += 5;
+				break;
+
+			case 0x67:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x68:    // PLA - Immediate (puLl Accumulator)
+				context.readByte(pc); // Throw away
+				flagNZ = a = popByte();
+				cycles += 4;
+				break;
+
+			case 0x69:    // ADC #$44 - immediate
+				doADC(operand);
+				cycles += 2;
+				break;
+
+			case 0x6A:    // ROR A - Accumulator
+				a = doROR(a);
+				cycles += 2;
+				break;
+
+			case 0x6B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x6C:    // JMP ($5597) - Indirect
+				if ((operand & 0xff) == 0xff) {
+					pc = context.readByte(operand) | (context.readByte(operand & 0xff00) << 8);
+				} else {
+					pc = context.readWord(operand);
+				}
+				cycles += 5;
+				break;
 
-				case 0x48:    // PHA - Immediate (PusH Accumulator)
-					context.readByte(pc); // Throw away
-					pushByte(a);
-					cycles += 3;
-					break;
+			case 0x6D:    // ADC $4400 - Absolute
+				doADC(absolute_Read(operand));
+				cycles += 4;
+				break;
 
-				case 0x49:    // EOR #$44 - Immediate
-					doEOR(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
+			case 0x6E:    // ROR $4400 - Absolute
+				doRORMem(operand);
+				cycles += 6;
+				break;
 
-				case 0x4A:    // LSR A - Accumulator
-					a = doLSR(a);
-					cycles += 2;
-					break;
+			case 0x6F:
+				throw new UnemulatedInstructionException(opcode);
 
-				case 0x4B:
-					throw new UnemulatedInstructionException(opcode);
+			case 0x70:    // BVS - Branch on oVerflow Set
+				doBranch((flagV & 0x80) != 0, operand);
+				break;
 
-				case 0x4C:    // JMP $5597 - Absolute
-					pc = context.readWord(pc);
-					cycles += 3;
-					break;
+			case 0x71:    // ADC ($44),Y - Indirect,Y
+				doADC(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
 
-				case 0x4D:    // EOR $4400 - Absolute
-					doEOR(absolute_Read());
-					cycles += 4;
-					break;
+			// 0x72 handled previously
 
-				case 0x4E:    // LSR $4400 - Absolute
-					doLSRMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
+			case 0x73:
+				throw new UnemulatedInstructionException(opcode);
 
-				case 0x4F:
-					throw new UnemulatedInstructionException(opcode);
+				// 0x74 handled previously
 
-				case 0x50:    // BVC - Branch on oVerflow Clear
-					doBranch(flagV == 0);
-					break;
+			case 0x75:    // ADC $44,X - Zero page, X
+				doADC(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
 
-				case 0x51:    // EOR ($44),Y - Indirect,Y
-					doEOR(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
+			case 0x76:    // ROR $44,X - Zero Page,X
+				doRORMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
 
-				// 0x52 handled previously
+			case 0x77:
+				throw new UnemulatedInstructionException(opcode);
 
-				case 0x53:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x54 handled previously
-
-				case 0x55:    // EOR $44,X - Zero Page,X
-					doEOR(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0x56:    // LSR $44,X - Zero Page,X
-					doLSRMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0x57:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x58:    // CLI - CLear Interrupt flag
-					flagI = 0;
-					cycles += 2;
-					return; // Stop CPU immediately.
-
-				case 0x59:    // EOR $4400,Y - Absolute,Y
-					doEOR(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				// 0x5A handled previously
-
-				case 0x5B:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x5C handled previously
-
-				case 0x5D:    // EOR $4400,X - Absolute,X
-					doEOR(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0x5E:    // LSR $4400,X - Absolute,X
-					doLSRMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0x5F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x60:    // RTS - Implied
-					context.readByte(pc); // Throw away
-					pc = popWord() + 1;
-					cycles += 6;
-					break;
-
-				case 0x61:    // ADC ($44,X) - Indirect,X
-					doADC(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				// 0x62 handled previously
-
-				case 0x63:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x64 handled previously
-
-				case 0x65:    // ADC $44 - Zero page
-					doADC(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0x66:    // ROR $44 - Zero Page
-					doRORMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0x67:
-					throw new UnemulatedInstructionException(opcode);
+			case 0x78: // SEI - SEt Interrupt flag
+				flagI = 1;
+				cycles += 2;
+				break;
 
-				case 0x68:    // PLA - Immediate (puLl Accumulator)
-					context.readByte(pc); // Throw away
-					flagNZ = a = popByte();
-					cycles += 4;
-					break;
+			case 0x79:    // ADC $4400,Y - Absolute,Y
+				doADC(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
 
-				case 0x69:    // ADC #$44 - immediate
-					doADC(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0x6A:    // ROR A - Accumulator
-					a = doROR(a);
-					cycles += 2;
-					break;
-
-				case 0x6B:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x6C:    // JMP ($5597) - Indirect
-					addr = context.readWord(pc);
-					if ((addr & 0xff) == 0xff) {
-						pc = context.readByte(addr) | (context.readByte(addr & 0xff00) << 8);
-					} else {
-						pc = context.readWord(addr);
-					}
-					cycles += 5;
-					break;
-
-				case 0x6D:    // ADC $4400 - Absolute
-					doADC(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0x6E:    // ROR $4400 - Absolute
-					doRORMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0x6F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x70:    // BVS - Branch on oVerflow Set
-					doBranch(flagV > 0);
-					break;
-
-				case 0x71:    // ADC ($44),Y - Indirect,Y
-					doADC(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0x72 handled previously
-
-				case 0x73:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x74 handled previously
-
-				case 0x75:    // ADC $44,X - Zero page, X
-					doADC(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0x76:    // ROR $44,X - Zero Page,X
-					doRORMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0x77:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x78: // SEI - SEt Interrupt flag
-					flagI = 1;
-					cycles += 2;
-					break;
-
-				case 0x79:    // ADC $4400,Y - Absolute,Y
-					doADC(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				// 0x7A handled previously
-
-				case 0x7B:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0x7C handled previously
-
-				case 0x7D:    // ADC $4400,X - Absolute, X
-					doADC(absoluteIndex_Read(x));
-					cycles += 4;
-					break;
-
-				case 0x7E:    // ROR $4400,X - Absolute,X
-					doRORMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0x7F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x80:    // * DOP/SKB #$44 - Immediate
-				case 0x82:
-				case 0x89:
-				case 0xC2:
-				case 0xE2:
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0x81:    // STA ($44,X) - Indirect,X
-					indexedIndirect_Write(a);
-					cycles += 6;
-					break;
-
-				// 0x82 handled previously
-
-				case 0x83:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x84:    // STY $44 - Zero Page
-					zeroPage_Write(y);
-					cycles += 3;
-					break;
-
-				case 0x85:    // STA $44 - Zero Page
-					zeroPage_Write(a);
-					cycles += 3;
-					break;
-
-				case 0x86:    // STX $44 - Zero Page
-					zeroPage_Write(x);
-					cycles += 3;
-					break;
+			// 0x7A handled previously
 
-				case 0x87:
-					throw new UnemulatedInstructionException(opcode);
+			case 0x7B:
+				throw new UnemulatedInstructionException(opcode);
 
-				case 0x88:    // DEY - Immediate
-					flagNZ = y = (y - 1) & 0xff;
-					cycles += 2;
-					break;
-
-				// 0x89 handled previously
-
-				case 0x8A:    // TXA - Immediate
-					flagNZ = a = x;
-					cycles += 2;
-					break;
-
-				case 0x8B:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x8C:    // STY $4400 - Absolute
-					absolute_Write(y);
-					cycles += 4;
-					break;
-
-				case 0x8D:    // STA $4400 - Absolute
-					absolute_Write(a);
-					cycles += 4;
-					break;
-
-				case 0x8E:    // STX $4400 - Absolute
-					absolute_Write(x);
-					cycles += 4;
-					break;
-
-				case 0x8F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x90:    // BCC - Branch on Carry Clear
-					doBranch(flagC == 0);
-					break;
-
-				case 0x91:    // STA ($44),Y - Indirect,Y
-					indirectIndexed_Write(a);
-					cycles += 6;
-					break;
-
-				// 0x92 handled previously
-
-				case 0x93:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x94:    // STY $44,X - Zero Page,X
-					zeroPageIndexed_Write(x, y);
-					cycles += 4;
-					break;
-
-				case 0x95:    // STA $44,X - Zero Page,X
-					zeroPageIndexed_Write(x, a);
-					cycles += 4;
-					break;
-
-				case 0x96:    // STX $44,Y - Zero Page,Y
-					zeroPageIndexed_Write(y, x);
-					cycles += 4;
-					break;
-
-				case 0x97:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x98:    // TYA - Immediate
-					flagNZ = a = y;
-					cycles += 2;
-					break;
-
-				case 0x99:    // STA $4400,Y - Absolute,Y
-					absoluteIndex_Write(y, a);
-					cycles += 5;
-					break;
-
-				case 0x9A:    // TXS - Implied
-					sp = x;
-					cycles += 2;
-					break;
-
-				case 0x9B:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x9C:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x9D:    // STA $4400,X - Absolute,X
-					absoluteIndex_Write(x, a);
-					cycles += 5;
-					break;
-
-				case 0x9E:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0x9F:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xA0:    // LDY #$44 - Immediate
-					doLDY(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xA1:    // LDA ($44,X) - Indirect,X
-					doLDA(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				case 0xA2:    // LDX #$44 - Immediate
-					doLDX(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xA3:    // * LAX ($44,X) - Indirect,X
-					doLAX(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				case 0xA4:    // LDY $44 - Zero Page
-					doLDY(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xA5:    // LDA $44 - Zero Page
-					doLDA(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xA6:    // LDX $44 - Zero Page
-					doLDX(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xA7: // * LAX $44 - Zero Page
-					doLAX(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xA8:    // TAY - Immediate
-					flagNZ = y = a;
-					cycles += 2;
-					break;
-
-				case 0xA9:    // LDA #$44 - Immediate
-					doLDA(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xAA:    // TAX - Immediate
-					flagNZ = x = a;
-					cycles += 2;
-					break;
-
-				case 0xAB:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xAC:    // LDY $4400 - Absolute
-					doLDY(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xAD:    // LDA $4400 - Absolute
-					doLDA(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xAE:    // LDX $4400 - Absolute
-					doLDX(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xAF: // * LAX $4400 - Absolute
-					doLAX(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xB0:    // BCS - Branch on Carry Set
-					doBranch(flagC > 0);
-					break;
-
-				case 0xB1:    // LDA ($44),Y - Indirect,Y
-					doLDA(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0xB2 handled previously
-
-				case 0xB3:    // * LAX ($44),Y - Indirect,Y
-					doLAX(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				case 0xB4:    // LDY $44,X - Zero Page,X
-					doLDY(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0xB5:    // LDA $44,X - Zero Page,X
-					doLDA(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0xB6:    // LDX $44,Y - Zero Page,Y
-					doLDX(zeroPageIndexed_Read(y));
-					cycles += 4;
-					break;
-
-				case 0xB7: // * LAX $44 - Zero Page,Y
-					doLAX(zeroPageIndexed_Read(y));
-					cycles += 4;
-					break;
-
-				case 0xB8:    // CLV - CLear oVerflow flag
-					flagV = 0;
-					cycles += 2;
-					break;
-
-				case 0xB9:    // LDA $4400,Y - Absolute,Y
-					doLDA(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xBA:    // TSX
-					flagNZ = x = sp;
-					cycles += 2;
-					break;
-
-				case 0xBB: // * LAR/LAE/LAS arg,Y - Absolute,Y
-					flagNZ = x = sp = a = absoluteIndex_Read(y) & sp;
-					cycles += 4;
-					break;
-
-				case 0xBC:    // LDY $4400,X - Absolute,X
-					doLDY(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xBD:    // LDA $4400,X - Absolute,X
-					doLDA(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xBE:    // LDX $4400,Y - Absolute,Y
-					doLDX(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xBF: // * LAX $4400 - Absolute,Y
-					doLAX(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xC0:    // CPY #$44 - Immediate
-					doCMP(y, context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xC1:    // CMP ($44,X) - Indirect,X
-					doCMP(a, indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				// 0xC2 handled previously
-
-				case 0xC3:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xC4:    // CPY $44 - Zero Page
-					doCMP(y, zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xC5:    // CMP $44 - Zero Page
-					doCMP(a, zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xC6:    // DEC $44 - Zero Page
-					doDECMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0xC7:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xC8:    // INY - Immediate
-					flagNZ = y = (y + 1) & 0xff;
-					cycles += 2;
-					break;
-
-				case 0xC9:    // CMP #$44 - Compare immediate
-					doCMP(a, context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xCA:    // DEX - Immediate
-					flagNZ = x = (x - 1) & 0xff;
-					cycles += 2;
-					break;
-
-				case 0xCB:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xCC:    // CPY $4400 - Absolute
-					doCMP(y, absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xCD:    // CMP $4400 - Absolute
-					doCMP(a, absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xCE:    // DEC $4400 - Absolute
-					doDECMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0xCF:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xD0:    // BNE - Branch on Not Equal
-					doBranch(getFlagZ() == 0);
-					break;
-
-				case 0xD1:    // CMP ($44),Y - Indirect,Y
-					doCMP(a, indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0xD2 handled previously
-
-				case 0xD3:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0xD4 handled previously
-
-				case 0xD5:    // CMP $44,X - Zero Page,X
-					doCMP(a, zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0xD6:    // DEC $44,X - Zero Page,X
-					doDECMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0xD7:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xD8:    // CLD - CLear Decimal flag
-					flagD = 0;
-					cycles += 2;
-					break;
-
-				case 0xD9:    // CMP $4400,Y - Absolute,Y
-					doCMP(a, absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				// 0xDA handled previously
-
-				case 0xDB:
-					throw new UnemulatedInstructionException(opcode);
-
-					// 0xDC handled previously
-
-				case 0xDD:    // CMP $4400,X - Absolute,X
-					doCMP(a, absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xDE:    // DEC $4400,X - Absolute,X
-					doDECMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0xDF:
-					throw new UnemulatedInstructionException(opcode);
-
-				case 0xE0:    // CPX #$44 - Immediate
-					doCMP(x, context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xE1:    // SBC ($44,X) - Indirect,X
-					doSBC(indexedIndirect_Read());
-					cycles += 6;
-					break;
-
-				// 0xE2 handled previously
-
-				case 0xE3: // * ISC ($44,X) - Indirect,X
-					doISCMem(_preIndIndX());
-					cycles += 8;
-					break;
-
-				case 0xE4:    // CPX $44 - Zero Page
-					doCMP(x, zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xE5:    // SBC $44 - Zero Page
-					doSBC(zeroPage_Read());
-					cycles += 3;
-					break;
-
-				case 0xE6:    // INC $44 - Zero Page
-					doINCMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0xE7: // * ISC $44 - Zero Page
-					doISCMem(_zeroPage());
-					cycles += 5;
-					break;
-
-				case 0xE8:    // INX - Immediate
-					flagNZ = x = (x + 1) & 0xff;
-					cycles += 2;
-					break;
-
-				case 0xE9:    // SBC #$44 - Immediate
-					doSBC(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				// 0xEA handled previously
-
-				case 0xEB: // * SBC #$44 - Immediate
-					doSBC(context.readByte(pc));
-					pc++;
-					cycles += 2;
-					break;
-
-				case 0xEC:    // CPX $4400 - Absolute
-					doCMP(x, absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xED:    // SBC $4400 - Absolute
-					doSBC(absolute_Read());
-					cycles += 4;
-					break;
-
-				case 0xEE:    // INC $4400 - Absolute
-					doINCMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0xEF: // * ISC $4400 - Absolute
-					doISCMem(context.readWord(pc));
-					pc += 2;
-					cycles += 6;
-					break;
-
-				case 0xF0:    // BEQ - Branch on EQual
-					doBranch(getFlagZ() > 0);
-					break;
-
-				case 0xF1:    // SBC ($44),Y - Indirect,Y
-					doSBC(indirectIndexed_Read()); // cycles-- if page boundary crossed.
-					cycles += 5;
-					break;
-
-				// 0xF2 handled previously
-
-				case 0xF3: // * ISC ($44),Y - Indirect,Y
-					doISCMem(_postIndIndY());
-					cycles += 8;
-					break;
-
-				// 0xF4 handled previously
-
-				case 0xF5:    // SBC $44,X - Zero Page,X
-					doSBC(zeroPageIndexed_Read(x));
-					cycles += 4;
-					break;
-
-				case 0xF6:    // INC $44,X - Zero Page,X
-					doINCMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0xF7: // * ISC $44,X - Zero Page,X
-					doISCMem(_zeroPageIndexed(x));
-					cycles += 6;
-					break;
-
-				case 0xF8:    // SED - SEt Decimal flag
-					flagD = 1;
-					cycles += 2;
-					break;
-
-				case 0xF9:    // SBC $4400,Y - Absolute,Y
-					doSBC(absoluteIndex_Read(y)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				// 0xFA handled previously
-
-				case 0xFB: // * ISC $4400,Y - Absolute,Y
-					doISCMem(_absIndexed(y));
-					cycles += 7;
-					break;
-
-				// 0xFC handled previously
-
-				case 0xFD:    // SBC $4400,X - Absolute,X
-					doSBC(absoluteIndex_Read(x)); // cycles-- if page boundary crossed.
-					cycles += 4;
-					break;
-
-				case 0xFE:    // INC $4400,X - Absolute,X
-					doINCMem(_absIndexed(x));
-					cycles += 7;
-					break;
-
-				case 0xFF: // * ISC $4400,X - Absolute,X
-					doISCMem(_absIndexed(x));
-					cycles += 7;
-					break;
+				// 0x7C handled previously
 
+			case 0x7D:    // ADC $4400,X - Absolute, X
+				doADC(absoluteIndex_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0x7E:    // ROR $4400,X - Absolute,X
+				doRORMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0x7F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x80:    // * DOP/SKB #$44 - Immediate
+			case 0x82:
+			case 0x89:
+			case 0xC2:
+			case 0xE2:
+				cycles += 2;
+				break;
+
+			case 0x81:    // STA ($44,X) - Indirect,X
+				indexedIndirect_Write(operand, a);
+				cycles += 6;
+				break;
+
+			// 0x82 handled previously
+
+			case 0x83:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x84:    // STY $44 - Zero Page
+				zeroPage_Write(operand, y);
+				cycles += 3;
+				break;
+
+			case 0x85:    // STA $44 - Zero Page
+				zeroPage_Write(operand, a);
+				cycles += 3;
+				break;
+
+			case 0x86:    // STX $44 - Zero Page
+				zeroPage_Write(operand, x);
+				cycles += 3;
+				break;
+
+			case 0x87:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x88:    // DEY - Immediate
+				flagNZ = y = (y - 1) & 0xff;
+				cycles += 2;
+				break;
+
+			// 0x89 handled previously
+
+			case 0x8A:    // TXA - Immediate
+				flagNZ = a = x;
+				cycles += 2;
+				break;
+
+			case 0x8B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x8C:    // STY $4400 - Absolute
+				absolute_Write(operand, y);
+				cycles += 4;
+				break;
+
+			case 0x8D:    // STA $4400 - Absolute
+				absolute_Write(operand, a);
+				cycles += 4;
+				break;
+
+			case 0x8E:    // STX $4400 - Absolute
+				absolute_Write(operand, x);
+				cycles += 4;
+				break;
+
+			case 0x8F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x90:    // BCC - Branch on Carry Clear
+				doBranch((flagC & 0x100) == 0, operand);
+				break;
+
+			case 0x91:    // STA ($44),Y - Indirect,Y
+				indirectIndexed_Write(operand, a);
+				cycles += 6;
+				break;
+
+			// 0x92 handled previously
+
+			case 0x93:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x94:    // STY $44,X - Zero Page,X
+				zeroPageIndexed_Write(operand, x, y);
+				cycles += 4;
+				break;
+
+			case 0x95:    // STA $44,X - Zero Page,X
+				zeroPageIndexed_Write(operand, x, a);
+				cycles += 4;
+				break;
+
+			case 0x96:    // STX $44,Y - Zero Page,Y
+				zeroPageIndexed_Write(operand, y, x);
+				cycles += 4;
+				break;
+
+			case 0x97:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x98:    // TYA - Immediate
+				flagNZ = a = y;
+				cycles += 2;
+				break;
+
+			case 0x99:    // STA $4400,Y - Absolute,Y
+				absoluteIndex_Write(operand, y, a);
+				cycles += 5;
+				break;
+
+			case 0x9A:    // TXS - Implied
+				sp = x;
+				cycles += 2;
+				break;
+
+			case 0x9B:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x9C:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x9D:    // STA $4400,X - Absolute,X
+				absoluteIndex_Write(operand, x, a);
+				cycles += 5;
+				break;
+
+			case 0x9E:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0x9F:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xA0:    // LDY #$44 - Immediate
+				doLDY(operand);
+				cycles += 2;
+				break;
+
+			case 0xA1:    // LDA ($44,X) - Indirect,X
+				doLDA(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			case 0xA2:    // LDX #$44 - Immediate
+				doLDX(operand);
+				cycles += 2;
+				break;
+
+			case 0xA3:    // * LAX ($44,X) - Indirect,X
+				doLAX(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			case 0xA4:    // LDY $44 - Zero Page
+				doLDY(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xA5:    // LDA $44 - Zero Page
+				doLDA(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xA6:    // LDX $44 - Zero Page
+				doLDX(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xA7: // * LAX $44 - Zero Page
+				doLAX(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xA8:    // TAY - Immediate
+				flagNZ = y = a;
+				cycles += 2;
+				break;
+
+			case 0xA9:    // LDA #$44 - Immediate
+				doLDA(operand);
+				cycles += 2;
+				break;
+
+			case 0xAA:    // TAX - Immediate
+				flagNZ = x = a;
+				cycles += 2;
+				break;
+
+			case 0xAB:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xAC:    // LDY $4400 - Absolute
+				doLDY(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xAD:    // LDA $4400 - Absolute
+				doLDA(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xAE:    // LDX $4400 - Absolute
+				doLDX(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xAF: // * LAX $4400 - Absolute
+				doLAX(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xB0:    // BCS - Branch on Carry Set
+				doBranch((flagC & 0x100) != 0, operand);
+				break;
+
+			case 0xB1:    // LDA ($44),Y - Indirect,Y
+				doLDA(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			// 0xB2 handled previously
+
+			case 0xB3:    // * LAX ($44),Y - Indirect,Y
+				doLAX(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			case 0xB4:    // LDY $44,X - Zero Page,X
+				doLDY(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0xB5:    // LDA $44,X - Zero Page,X
+				doLDA(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0xB6:    // LDX $44,Y - Zero Page,Y
+				doLDX(zeroPageIndexed_Read(operand, y));
+				cycles += 4;
+				break;
+
+			case 0xB7: // * LAX $44 - Zero Page,Y
+				doLAX(zeroPageIndexed_Read(operand, y));
+				cycles += 4;
+				break;
+
+			case 0xB8:    // CLV - CLear oVerflow flag
+				flagV = 0;
+				cycles += 2;
+				break;
+
+			case 0xB9:    // LDA $4400,Y - Absolute,Y
+				doLDA(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xBA:    // TSX
+				flagNZ = x = sp;
+				cycles += 2;
+				break;
+
+			case 0xBB: // * LAR/LAE/LAS arg,Y - Absolute,Y
+				flagNZ = x = sp = a = absoluteIndex_Read(operand, y) & sp;
+				cycles += 4;
+				break;
+
+			case 0xBC:    // LDY $4400,X - Absolute,X
+				doLDY(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xBD:    // LDA $4400,X - Absolute,X
+				doLDA(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xBE:    // LDX $4400,Y - Absolute,Y
+				doLDX(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xBF: // * LAX $4400 - Absolute,Y
+				doLAX(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xC0:    // CPY #$44 - Immediate
+				doCMP(y, operand);
+				cycles += 2;
+				break;
+
+			case 0xC1:    // CMP ($44,X) - Indirect,X
+				doCMP(a, indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			// 0xC2 handled previously
+
+			case 0xC3:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xC4:    // CPY $44 - Zero Page
+				doCMP(y, zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xC5:    // CMP $44 - Zero Page
+				doCMP(a, zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xC6:    // DEC $44 - Zero Page
+				doDECMem(operand);
+				cycles += 5;
+				break;
+
+			case 0xC7:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xC8:    // INY - Immediate
+				flagNZ = y = (y + 1) & 0xff;
+				cycles += 2;
+				break;
+
+			case 0xC9:    // CMP #$44 - Compare immediate
+				doCMP(a, operand);
+				cycles += 2;
+				break;
+
+			case 0xCA:    // DEX - Immediate
+				flagNZ = x = (x - 1) & 0xff;
+				cycles += 2;
+				break;
+
+			case 0xCB:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xCC:    // CPY $4400 - Absolute
+				doCMP(y, absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xCD:    // CMP $4400 - Absolute
+				doCMP(a, absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xCE:    // DEC $4400 - Absolute
+				doDECMem(operand);
+				cycles += 6;
+				break;
+
+			case 0xCF:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xD0:    // BNE - Branch on Not Equal
+				doBranch(getFlagZ() == 0, operand);
+				break;
+
+			case 0xD1:    // CMP ($44),Y - Indirect,Y
+				doCMP(a, indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			// 0xD2 handled previously
+
+			case 0xD3:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0xD4 handled previously
+
+			case 0xD5:    // CMP $44,X - Zero Page,X
+				doCMP(a, zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0xD6:    // DEC $44,X - Zero Page,X
+				doDECMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0xD7:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xD8:    // CLD - CLear Decimal flag
+				flagD = 0;
+				cycles += 2;
+				break;
+
+			case 0xD9:    // CMP $4400,Y - Absolute,Y
+				doCMP(a, absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			// 0xDA handled previously
+
+			case 0xDB:
+				throw new UnemulatedInstructionException(opcode);
+
+				// 0xDC handled previously
+
+			case 0xDD:    // CMP $4400,X - Absolute,X
+				doCMP(a, absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xDE:    // DEC $4400,X - Absolute,X
+				doDECMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0xDF:
+				throw new UnemulatedInstructionException(opcode);
+
+			case 0xE0:    // CPX #$44 - Immediate
+				doCMP(x, operand);
+				cycles += 2;
+				break;
+
+			case 0xE1:    // SBC ($44,X) - Indirect,X
+				doSBC(indexedIndirect_Read(operand));
+				cycles += 6;
+				break;
+
+			// 0xE2 handled previously
+
+			case 0xE3: // * ISC ($44,X) - Indirect,X
+				doISCMem(_preIndIndX(operand));
+				cycles += 8;
+				break;
+
+			case 0xE4:    // CPX $44 - Zero Page
+				doCMP(x, zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xE5:    // SBC $44 - Zero Page
+				doSBC(zeroPage_Read(operand));
+				cycles += 3;
+				break;
+
+			case 0xE6:    // INC $44 - Zero Page
+				doINCMem(operand);
+				cycles += 5;
+				break;
+
+			case 0xE7: // * ISC $44 - Zero Page
+				doISCMem(operand);
+				cycles += 5;
+				break;
+
+			case 0xE8:    // INX - Immediate
+				flagNZ = x = (x + 1) & 0xff;
+				cycles += 2;
+				break;
+
+			case 0xE9:    // SBC #$44 - Immediate
+				doSBC(operand);
+				cycles += 2;
+				break;
+
+			// 0xEA handled previously
+
+			case 0xEB: // * SBC #$44 - Immediate
+				doSBC(operand);
+				cycles += 2;
+				break;
+
+			case 0xEC:    // CPX $4400 - Absolute
+				doCMP(x, absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xED:    // SBC $4400 - Absolute
+				doSBC(absolute_Read(operand));
+				cycles += 4;
+				break;
+
+			case 0xEE:    // INC $4400 - Absolute
+				doINCMem(operand);
+				cycles += 6;
+				break;
+
+			case 0xEF: // * ISC $4400 - Absolute
+				doISCMem(operand);
+				cycles += 6;
+				break;
+
+			case 0xF0:    // BEQ - Branch on EQual
+				doBranch(getFlagZ() > 0, operand);
+				break;
+
+			case 0xF1:    // SBC ($44),Y - Indirect,Y
+				doSBC(indirectIndexed_Read(operand)); // cycles-- if page boundary crossed.
+				cycles += 5;
+				break;
+
+			// 0xF2 handled previously
+
+			case 0xF3: // * ISC ($44),Y - Indirect,Y
+				doISCMem(_postIndIndY(operand));
+				cycles += 8;
+				break;
+
+			// 0xF4 handled previously
+
+			case 0xF5:    // SBC $44,X - Zero Page,X
+				doSBC(zeroPageIndexed_Read(operand, x));
+				cycles += 4;
+				break;
+
+			case 0xF6:    // INC $44,X - Zero Page,X
+				doINCMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0xF7: // * ISC $44,X - Zero Page,X
+				doISCMem(_zeroPageIndexed(operand, x));
+				cycles += 6;
+				break;
+
+			case 0xF8:    // SED - SEt Decimal flag
+				flagD = 1;
+				cycles += 2;
+				break;
+
+			case 0xF9:    // SBC $4400,Y - Absolute,Y
+				doSBC(absoluteIndex_Read(operand, y)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			// 0xFA handled previously
+
+			case 0xFB: // * ISC $4400,Y - Absolute,Y
+				doISCMem(_absIndexed(operand, y));
+				cycles += 7;
+				break;
+
+			// 0xFC handled previously
+
+			case 0xFD:    // SBC $4400,X - Absolute,X
+				doSBC(absoluteIndex_Read(operand, x)); // cycles-- if page boundary crossed.
+				cycles += 4;
+				break;
+
+			case 0xFE:    // INC $4400,X - Absolute,X
+				doINCMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+			case 0xFF: // * ISC $4400,X - Absolute,X
+				doISCMem(_absIndexed(operand, x));
+				cycles += 7;
+				break;
+
+		}
+
+	}
+
+	/**
+	 * Runs the instructions after a fused one, i.e. the tail of a common
+	 * sequence such as the BNE in <code>DEX/BNE</code> or the STA in
+	 * <code>LDA/STA</code>, without going back through the main loop.
+	 * Each instruction is checked against what's expected, since the first
+	 * instruction may have modified the code after it; anything unexpected
+	 * is left to the main loop.  As in the main loop, no instruction is
+	 * started once this CPU is out of cycles.<p>
+	 *
+	 * If the sequence turns out to be an idle loop, e.g.
+	 * <code>wait: BIT $2002 / BPL wait</code> polling an address that
+	 * can't change until the end of this time slice, the iterations left
+	 * are skipped.
+	 *
+	 * @param first The first instruction of the sequence, which has just
+	 *        been run.
+	 * @see #fuse(int, int)
+	 * @see #skipIdleIterations(int)
+	 */
+	private void executeFusedTail(int first) {
+
+		int start = pc - ((first >> 24) & 0x3);
+		int entry = decodeCache.fetch(pc);
+		int opcode = entry & 0xff;
+		int operand = (entry >> 8) & 0xffff;
+
+		if (isCompareImmediate(opcode)) {
+			doCMP(opcode == 0xC9 ? a : (opcode == 0xC0 ? y : x), operand);
+			cycles += 2;
+			pc += 2;
+			if (cycles >= endCycles) {
+				return;
 			}
+			entry = decodeCache.fetch(pc);
+			opcode = entry & 0xff;
+			operand = (entry >> 8) & 0xffff;
+		}
 
+		if ((opcode & 0x1f) == 0x10) { // Conditional branches
+			pc += 2;
+			int before = cycles;
+			doBranch(isBranchTaken(opcode), operand);
+			if (pc == start) {
+				int testCycles = getIdleTestCycles(first & 0xff);
+				// Immediate tests (2 cycles) don't read memory
+				if (testCycles > 0 && (testCycles == 2 || context.isPollStable((first >> 8) & 0xffff))) {
+					skipIdleIterations(testCycles + cycles - before);
+				}
+			}
 		}
+		else if (opcode == 0x85) { // STA $44
+			pc += 2;
+			zeroPage_Write(operand, a);
+			cycles += 3;
+		}
+		else if (opcode == 0x8D) { // STA $4400
+			pc += 3;
+			absolute_Write(operand, a);
+			cycles += 4;
+		}
+
+	}
 
+	/**
+	 * Returns the machine's context.  When ticking per bus access, this is
+	 * the context this CPU was built with, not the wrapper it accesses
+	 * memory through.
+	 *
+	 * @return The CPU context.
+	 */
+	@Override
+	public CpuContext getCpuContext() {
+		return busListener != null ? ((BusTimingContext)context).getContext() : context;
+	}
+
+	/**
+	 * Returns the number of instructions run while profiling was enabled.
+	 *
+	 * @return The number of instructions.
+	 * @see #setProfilingEnabled(boolean)
+	 */
+	public long getExecutedInstructionCount() {
+		return executedInstructionCount;
 	}
 
 	/**
@@ -1873,7 +2257,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The C flag.
 	 */
 	public int getFlagC() {
-		return flagC;
+		return (flagC >> 8) & 0x01;
 	}
 
 	/**
@@ -1912,7 +2296,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @return The V flag.
 	 */
 	public int getFlagV() {
-		return flagV;
+		return (flagV >> 7) & 0x01;
 	}
 
 	/**
@@ -1953,12 +2337,12 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 		// NOTE: Flag Z is stored "opposite" as we use flaNZ the "opposite"
 		// way of having a Z flag (e.g., it being "0" => Z flag is "set,"
 		// it being "!= 0" => Z flag "clear."
-		return flagC |
+		return ((flagC >> 8) & 0x01) |
 				/*getFlagZ()>0?0x02:0x00*/((flagNZ & 0xff) > 0 ? 0x00 : 0x02) |
 			(flagI << 2) |
 			(flagD << 3) |
 			(flagB << 4) |
-			(flagV << 6) |
+			((flagV >> 1) & 0x40) |
 				/*getFlagN()<<7;*/((flagNZ | (flagNZ >> 1)) & N_BIT);
 	}
 
@@ -2017,40 +2401,44 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * Performs an indexed-indirect-addressed read
 	 * (LDA, ORA, EOR, AND, ADC, CMP, SBC, LAX).
 	 *
+	 * @param zp The zero-page address (the instruction's operand).
 	 * @return The byte read.
 	 */
-	private int indexedIndirect_Read() {
-		return context.readByte(_preIndIndX());
+	private int indexedIndirect_Read(int zp) {
+		return context.readByte(_preIndIndX(zp));
 	}
 
 	/**
 	 * Performs an indexed-indirect-addressed write
 	 * (STA, SAX).
 	 *
-	 * @param b The byte to write.
+	 * @param zp The zero-page address (the instruction's operand).
+	 * @param b  The byte to write.
 	 */
-	private void indexedIndirect_Write(int b) {
-		context.writeByte(_preIndIndX(), b);
+	private void indexedIndirect_Write(int zp, int b) {
+		context.writeByte(_preIndIndX(zp), b);
 	}
 
 	/**
 	 * Performs an indirect-indexed-addressed read
 	 * (LDA, EOR, AND, ORA, ADC, SBC, CMP).
 	 *
+	 * @param zp The zero-page address (the instruction's operand).
 	 * @return The byte read.
 	 */
-	private int indirectIndexed_Read() {
-		return context.readByte(_postIndIndY());
+	private int indirectIndexed_Read(int zp) {
+		return context.readByte(_postIndIndY(zp));
 	}
 
 	/**
 	 * Performs an indirect-indexed-addressed write
 	 * (STA, SHA).
 	 *
-	 * @param b The byte to write.
+	 * @param zp The zero-page address (the instruction's operand).
+	 * @param b  The byte to write.
 	 */
-	private void indirectIndexed_Write(int b) {
-		context.writeByte(_postIndIndY(), b);
+	private void indirectIndexed_Write(int zp, int b) {
+		context.writeByte(_postIndIndY(zp), b);
 	}
 
 	/**
@@ -2069,6 +2457,182 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 		}
 	}
 
+	/**
+	 * Returns the cycles taken by an instruction that does the same thing
+	 * every time it's run, as long as what it reads doesn't change: a load,
+	 * test or compare.  Such an instruction followed by a branch back to
+	 * it is an idle loop.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return The instruction's cycles, or <code>0</code> if it isn't such
+	 *         an instruction.  Immediate instructions, which don't read
+	 *         memory, take 2 cycles; the others take more.
+	 * @see #skipIdleIterations(int)
+	 */
+	static int getIdleTestCycles(int opcode) {
+		switch (opcode) {
+			case 0x29: // AND #$44
+			case 0xC0: // CPY #$44
+			case 0xC9: // CMP #$44
+			case 0xE0: // CPX #$44
+				return 2;
+			case 0x24: // BIT $44
+			case 0xA5: // LDA $44
+				return 3;
+			case 0x2C: // BIT $4400
+			case 0xAD: // LDA $4400
+				return 4;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Returns the length of an instruction on the 2A03.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return The length of the instruction, in bytes.
+	 * @see #instructionLength(int)
+	 */
+	static int getInstructionLength(int opcode) {
+		return INSTRUCTION_LENGTHS[opcode];
+	}
+
+	/**
+	 * Returns the length of an instruction on this variant of the CPU.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return The instruction's length, in bytes.
+	 * @see #getInstructionLength(int)
+	 */
+	int instructionLength(int opcode) {
+		return instructionLengths[opcode];
+	}
+
+	/**
+	 * Returns the blocks of code compiled ahead of time being used.
+	 *
+	 * @return The precompiled blocks, or <code>null</code> for none.
+	 * @see #setPrecompiledBlocks(PrecompiledBlocks)
+	 */
+	public PrecompiledBlocks getPrecompiledBlocks() {
+		return precompiledBlocks;
+	}
+
+	/**
+	 * Returns whether this CPU has cycles left to run before it must
+	 * return from {@link #execute(int)}.  This is called by compiled
+	 * blocks.
+	 *
+	 * @return Whether there are cycles left.
+	 */
+	boolean hasCyclesLeft() {
+		return cycles < endCycles;
+	}
+
+	/**
+	 * Returns whether a conditional branch is taken.
+	 *
+	 * @param opcode The branch's opcode.
+	 * @return Whether the branch is taken.
+	 */
+	private boolean isBranchTaken(int opcode) {
+		switch (opcode) {
+			case 0x10: // BPL
+				return getFlagN() == 0;
+			case 0x30: // BMI
+				return getFlagN() > 0;
+			case 0x50: // BVC
+				return (flagV & 0x80) == 0;
+			case 0x70: // BVS
+				return (flagV & 0x80) != 0;
+			case 0x90: // BCC
+				return (flagC & 0x100) == 0;
+			case 0xB0: // BCS
+				return (flagC & 0x100) != 0;
+			case 0xD0: // BNE
+				return getFlagZ() == 0;
+			default: // BEQ
+				return getFlagZ() > 0;
+		}
+	}
+
+	/**
+	 * Returns whether an instruction commonly sets the flags for a
+	 * branch right after it.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether to fuse it with a following branch.
+	 * @see #fuse(int, int)
+	 */
+	private static boolean isBranchSetup(int opcode) {
+		switch (opcode) {
+			case 0x24: // BIT $44
+			case 0x29: // AND #$44
+			case 0x2C: // BIT $4400
+			case 0xA5: // LDA $44
+			case 0xAD: // LDA $4400
+			case 0xC0: // CPY #$44
+			case 0xC6: // DEC $44
+			case 0xC9: // CMP #$44
+			case 0xE0: // CPX #$44
+			case 0xE6: // INC $44
+				return true;
+			default:
+				return isIndexStep(opcode);
+		}
+	}
+
+	/**
+	 * Returns whether an instruction is CMP, CPX or CPY immediate.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether it's an immediate compare.
+	 */
+	private static boolean isCompareImmediate(int opcode) {
+		return opcode == 0xC9 || opcode == 0xC0 || opcode == 0xE0;
+	}
+
+	/**
+	 * Returns whether an instruction is INX, INY, DEX or DEY.
+	 *
+	 * @param opcode The instruction's opcode.
+	 * @return Whether it steps an index register.
+	 */
+	private static boolean isIndexStep(int opcode) {
+		return opcode == 0xE8 || opcode == 0xC8 || opcode == 0xCA || opcode == 0x88;
+	}
+
+	/**
+	 * Returns whether decoded instructions are cached.
+	 *
+	 * @return Whether the decode cache is enabled.
+	 * @see #setDecodeCacheEnabled(boolean)
+	 */
+	public boolean isDecodeCacheEnabled() {
+		return decodeCache != null;
+	}
+
+	/**
+	 * Returns whether hot blocks of code are compiled to Java classes.
+	 *
+	 * @return Whether the JIT is enabled.
+	 * @see #setJitEnabled(boolean)
+	 */
+	public boolean isJitEnabled() {
+		return jitEnabled;
+	}
+
+	/**
+	 * Returns whether instructions are being profiled.
+	 *
+	 * @return Whether instructions are being profiled.
+	 * @see #setProfilingEnabled(boolean)
+	 */
+	public boolean isProfilingEnabled() {
+		return profiling;
+	}
+
 	/**
 	 * Performs an NMI (non-maskable interrupt).
 	 *
@@ -2082,6 +2646,18 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 		cycles += 7;
 	}
 
+	/**
+	 * Called when an event is scheduled before all others.  If it's due
+	 * during the current slice, the slice ends then.
+	 *
+	 * @param time The time of the event.
+	 */
+	private void nextEventScheduled(int time) {
+		if (time < endCycles) {
+			endCycles = time;
+		}
+	}
+
 	/**
 	 * Returns the next byte that would be popped from the stack, without
 	 * modifying the stack pointer.  Useful for debugging.
@@ -2103,7 +2679,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @see #pushByte(int)
 	 * @see #popWord()
 	 */
-	private int popByte() {
+	int popByte() {
 		sp = (sp + 1) & 0xff;
 		return context.readByte(STACK_BOTTOM | sp);
 	}
@@ -2134,7 +2710,7 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @see #popByte()
 	 * @see #pushWord(int)
 	 */
-	private void pushByte(int b) {
+	void pushByte(int b) {
 		context.writeByte(STACK_BOTTOM + sp, b);
 		sp = (sp - 1) & 0xff;
 	}
@@ -2147,28 +2723,208 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 * @see #popWord()
 	 * @see #pushByte(int)
 	 */
-	private void pushWord(int word) {
+	void pushWord(int word) {
 		context.writeByte(STACK_BOTTOM + sp, (word >> 8) & 0xff);
 		sp = (sp - 1) & 0xff;
 		context.writeByte(STACK_BOTTOM + sp, word & 0xff);
 		sp = (sp - 1) & 0xff;
 	}
 
+	/**
+	 * Requests an NMI.  It is taken before the next instruction, or
+	 * right away if this CPU isn't running.
+	 *
+	 * @see #nmi()
+	 */
+	public void requestNMI() {
+		nmiPending = true;
+		endCycles = cycles;
+	}
+
 	/**
 	 * Performs a reset.
 	 */
 	public void reset() {
-		totCycles = 0;
+		nmiPending = false;
+		cycleBase = 0;
 		cycles = 0; // ???
 		a = x = y = 0;
 		flagI = 1;
 		flagB = flagC = flagD = flagNZ = flagV = 0;
+		busAccesses = 0;
 		pc = context.readWord(0xfffc);
+		cycles -= busAccesses;
 		sp = 0xfd;//0xff; // "Stack" starts at 0x1ff and goes down to 0x100.
 	}
 
+	/**
+	 * Stores the registers after a compiled block runs.
+	 *
+	 * @param pc The address of the next instruction to run.
+	 * @param a The A register.
+	 * @param x The X register.
+	 * @param y The Y register.
+	 * @param sp The stack pointer.
+	 * @param c The C flag, in bit 8.
+	 * @param nz The N and Z flags.
+	 * @param v The V flag, in bit 7.
+	 */
+	@SuppressWarnings("checkstyle:ParameterNumber")
+	void restoreRegisters(int pc, int a, int x, int y, int sp, int c, int nz, int v) {
+		this.pc = pc;
+		this.a = a;
+		this.x = x;
+		this.y = y;
+		this.sp = sp;
+		flagC = c;
+		flagNZ = nz;
+		flagV = v;
+	}
+
+	/**
+	 * Toggles whether decoded instructions are cached.  When enabled,
+	 * each instruction executed from ROM or plain RAM is decoded only
+	 * once; later executions skip fetching the opcode and operand from
+	 * memory.  Cached instructions are discarded when the memory map
+	 * changes or the RAM holding them is written to, so self-modifying
+	 * code still works, but memory written directly to the context's
+	 * storage (bypassing {@link CpuContext#writeByte(int, int)}) must
+	 * not contain code.<p>
+	 *
+	 * The cache also lets common instruction sequences such as
+	 * <code>DEX/BNE</code> run as a unit (see {@link #fuse(int, int)}).
+	 *
+	 * @param enabled Whether to cache decoded instructions.
+	 * @see #isDecodeCacheEnabled()
+	 */
+	public void setDecodeCacheEnabled(boolean enabled) {
+		if (enabled != isDecodeCacheEnabled()) {
+			if (enabled) {
+				decodeCache = new DecodeCache(this, context);
+				context.addMemoryMapListener(decodeCache);
+			}
+			else {
+				context.removeMemoryMapListener(decodeCache);
+				decodeCache = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the scheduler whose events this CPU fires.  Each call to
+	 * {@link #execute(int)} then runs until the next event is due, fires
+	 * the events due, takes any interrupts they requested, and repeats.
+	 *
+	 * @param scheduler The scheduler, or <code>null</code> for none.
+	 */
+	public void setEventScheduler(EventScheduler scheduler) {
+		if (this.scheduler != null) {
+			this.scheduler.setNextEventListener(null);
+		}
+		this.scheduler = scheduler;
+		if (scheduler != null) {
+			scheduler.setNextEventListener(this::nextEventScheduled);
+		}
+	}
+
+	/**
+	 * Asserts or releases the IRQ line on behalf of a device.
+	 *
+	 * @param source The device, as a single bit.
+	 * @param asserted Whether the device is asserting the line.
+	 * @see #irq()
+	 */
+	public void setIRQ(int source, boolean asserted) {
+		if (asserted) {
+			irqSources |= source;
+			checkIRQ();
+		}
+		else {
+			irqSources &= ~source;
+		}
+	}
+
+	/**
+	 * Sets the hook called before each instruction is run.  While a hook
+	 * is set, the instrumented loop is used, starting with the next slice.
+	 *
+	 * @param hook The hook, or <code>null</code> for none.
+	 * @see #execute()
+	 */
+	public void setInstructionHook(InstructionHook hook) {
+		instructionHook = hook;
+	}
+
+	/**
+	 * Toggles whether hot blocks of code are compiled to Java classes.
+	 * Only code in ROM (see {@link CpuContext#isROM(int)}) is compiled.
+	 * Blocks are compiled on a background thread, and start being used
+	 * the next time this CPU is run after they're ready.  A compiled block
+	 * checks whether this CPU has run out of cycles after each instruction,
+	 * so timing is the same as when interpreting.  Blocks are only run by
+	 * the fast loop, i.e. not while logging state, profiling, or with an
+	 * instruction hook set (see {@link #execute()}).<p>
+	 *
+	 * If the source generated for a block can't be compiled, which is a
+	 * bug, {@link #execute(int)} throws an
+	 * <code>IllegalStateException</code> at the start of the next slice,
+	 * so between two instructions.
+	 *
+	 * @param enabled Whether to compile hot blocks.
+	 * @throws UnsupportedOperationException If enabling the JIT, and no
+	 *         Java compiler is available (e.g. when running on a JRE).
+	 * @see #isJitEnabled()
+	 */
+	public void setJitEnabled(boolean enabled) {
+		if (enabled != jitEnabled) {
+			BlockCompiler compiler = enabled ? BlockCompiler.get() : null;
+			jitEnabled = enabled;
+			updateBlockCache(compiler);
+		}
+	}
+
+	/**
+	 * Sets the blocks of code compiled ahead of time to use.  A block is
+	 * only used if its page is ROM, and the code in memory is the code
+	 * it was compiled from; everything else is interpreted (or compiled
+	 * at runtime, if the JIT is also enabled).  Like JIT-compiled blocks,
+	 * precompiled blocks are only run by the fast loop.
+	 *
+	 * @param blocks The precompiled blocks, or <code>null</code> for none.
+	 * @see #getPrecompiledBlocks()
+	 * @see StaticRecompiler
+	 */
+	public void setPrecompiledBlocks(PrecompiledBlocks blocks) {
+		if (blocks != precompiledBlocks) {
+			precompiledBlocks = blocks;
+			updateBlockCache(jitEnabled ? BlockCompiler.get() : null);
+		}
+	}
+
+	/**
+	 * Toggles whether instructions are profiled, i.e. how many times each
+	 * opcode and each pair of opcodes is run is counted, for
+	 * {@link #dumpOpcodeCounts()}.  While profiling, the instrumented loop
+	 * is used, starting with the next slice.  Counts are kept when
+	 * profiling is disabled, and added to if it is enabled again.
+	 *
+	 * @param enabled Whether to profile instructions.
+	 * @see #isProfilingEnabled()
+	 * @see #getExecutedInstructionCount()
+	 */
+	public void setProfilingEnabled(boolean enabled) {
+		if (enabled && opcodeCounts == null) {
+			opcodeCounts = new long[256];
+			opcodePairCounts = new long[256 * 256];
+		}
+		profiling = enabled;
+	}
+
 	public void setLogState(boolean logState) {
 		this.logState = logState;
+		if (stateLogger == null) {
+			stateLogger = new Debug6502State(this);
+		}
 		stateLogger.setLog(Paths.get(new java.io.File("output_oldfinnes.log").toURI()));
 	}
 
@@ -2180,61 +2936,117 @@ public class n6502Impl extends AbstractCpu implements n6502, Serializable {
 	 */
 	public void setRegP(int p) {
 		flagNZ = ((p & N_BIT) << 1) | (~p & 0x02);//((p&0x02)>>1);
-		flagV = (p & 0x40) >> 6;
+		flagV = p << 1;
 		flagB = (p & 0x10) >> 4;
 		flagD = (p & 0x08) >> 3;
 		flagI = (p & 0x04) >> 2;
-		flagC = p & 0x01;
+		flagC = p << 8;
+	}
+
+	/**
+	 * Skips the iterations left of an idle loop, i.e. a loop that does
+	 * exactly the same thing every time through until this time slice
+	 * ends, such as <code>JMP *</code> or a loop polling an address that
+	 * can't change.  This is called with the PC at the start of the loop,
+	 * right after running it once.  Every iteration that would have
+	 * started before the end of the slice is skipped but the last, which
+	 * is left to actually run, so the registers and cycle count end up
+	 * exactly as if all had been run.
+	 *
+	 * @param period The number of cycles each iteration takes.
+	 * @see CpuContext#isPollStable(int)
+	 */
+	void skipIdleIterations(int period) {
+		int skipped = (endCycles - 1 - cycles) / period;
+		if (skipped > 0) {
+			cycles += skipped * period;
+		}
 	}
 
 	/**
 	 * Stops this CPU.
 	 */
 	public void stop() {
+		setJitEnabled(false);
 		if (debugOut != null) {
 			debugOut.close();
 		}
 	}
 
+	/**
+	 * Called before each bus access when ticking per access.  The listener
+	 * catches up to the current cycle, then the clock ticks.
+	 *
+	 * @param address The address about to be accessed.
+	 * @see BusTimingContext
+	 */
+	void tickBus(int address) {
+		busListener.beforeAccess(address, cycles);
+		cycles++;
+		busAccesses++;
+	}
+
+	/**
+	 * Replaces the block cache after the JIT or precompiled blocks are
+	 * toggled.  Blocks compiled so far are discarded.
+	 *
+	 * @param compiler The compiler to use, or <code>null</code> if the JIT
+	 *        is disabled.
+	 */
+	private void updateBlockCache(BlockCompiler compiler) {
+		if (blockCache != null) {
+			context.removeMemoryMapListener(blockCache);
+			blockCache = null;
+		}
+		if (compiler != null || precompiledBlocks != null) {
+			blockCache = new BlockCache(this, compiler, precompiledBlocks);
+			context.addMemoryMapListener(blockCache);
+		}
+	}
+
 	/**
 	 * Performs a zero-page-addressed read (LDA, LDX, LDY,
 	 * EOR, AND, ORA, ADC, SBC, CMP, BIT, LAX, NOP).
 	 *
+	 * @param zp The zero-page address (the instruction's operand).
 	 * @return The byte read.
 	 */
-	private int zeroPage_Read() {
-		return context.readByte(_zeroPage());
+	int zeroPage_Read(int zp) {
+		return context.readByte(zp);
 	}
 
 	/**
 	 * Performs a zero-page-addressed write (STA, STX, STY, SAX).
 	 *
-	 * @param b The byte to write.
+	 * @param zp The zero-page address (the instruction's operand).
+	 * @param b  The byte to write.
 	 */
-	private void zeroPage_Write(int b) {
-		context.writeByte(_zeroPage(), b);
+	void zeroPage_Write(int zp, int b) {
+		context.writeByte(zp, b);
 	}
 
 	/**
 	 * Performs a zero-page-indexed-addressed read (LDA, LDX, LDY,
 	 * EOR, AND, ORA, ADC, SBC, CMP, BIT, LAX, NOP).
 	 *
+	 * @param zp    The zero-page address (the instruction's operand).
 	 * @param index The index.
 	 * @return The byte read.
 	 */
-	private int zeroPageIndexed_Read(int index) {
-		return context.readByte(_zeroPageIndexed(index));
+	int zeroPageIndexed_Read(int zp, int index) {
+		return context.readByte(_zeroPageIndexed(zp, index));
 	}
 
 	/**
 	 * Performs a zero-page-indexed-addressed write
 	 * (STA, STX, STY, SAX).
 	 *
+	 * @param zp    The zero-page address (the instruction's operand).
 	 * @param index The index.
 	 * @param b     The byte to write.
 	 */
-	private void zeroPageIndexed_Write(int index, int b) {
-		context.writeByte(_zeroPageIndexed(index), b);
+	void zeroPageIndexed_Write(int zp, int index, int b) {
+		context.writeByte(_zeroPageIndexed(zp, index), b);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package org.fife.emu.cpu.n6502;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BusTimingTest {
+
+    private static final int[] PROGRAM = {
+        0xAD, 0x00, 0x03, // LDA $0300
+        0xA2, 0x01,       // LDX #$01
+        0xBD, 0xFF, 0x02, // LDA $02FF,X (crosses a page)
+        0xEE, 0x10, 0x03, // INC $0310
+    };
+
+    private TestContext context;
+    private List<String> accesses;
+
+    @Before
+    public void setUp() {
+        context = new TestContext();
+        for (int i = 0; i < PROGRAM.length; i++) {
+            context.writeByte(0x200 + i, PROGRAM[i]);
+        }
+        context.writeByte(0xfffc, 0x00);
+        context.writeByte(0xfffd, 0x02);
+        accesses = new ArrayList<>();
+    }
+
+    @Test
+    public void testAccessCycles() {
+
+        n6502Impl cpu = new n6502Impl(context, 1789773f,
+                (address, cycle) -> accesses.add(Integer.toHexString(address) + "@" + cycle));
+        cpu.reset();
+        Assert.assertEquals(0, cpu.getCycles());
+        accesses.clear();
+
+        cpu.execute(17);
+
+        List<String> expected = Arrays.asList(
+            "200@0", "201@1", "202@2", "300@3",
+            "203@4", "204@5",
+            "205@6", "206@7", "207@8", "300@10",
+            "208@11", "209@12", "20a@13", "310@14", "310@15", "310@16");
+        Assert.assertEquals(expected, accesses);
+        Assert.assertEquals(17, cpu.getCycles());
+        Assert.assertEquals(1, context.readByte(0x310));
+
+    }
+
+    @Test
+    public void testSameCyclesAsPerInstruction() {
+
+        n6502Impl timed = new n6502Impl(context, 1789773f, (address, cycle) -> { });
+        timed.reset();
+        timed.execute(17);
+
+        setUp();
+        n6502Impl untimed = new n6502Impl(context, 1789773f);
+        untimed.reset();
+        untimed.execute(17);
+
+        Assert.assertEquals(untimed.getCycles(), timed.getCycles());
+        Assert.assertEquals(untimed.getPC(), timed.getPC());
+        Assert.assertEquals(untimed.getRegA(), timed.getRegA());
+
+    }
+
+    @Test
+    public void testGetCpuContext() {
+        n6502Impl cpu = new n6502Impl(context, 1789773f, (address, cycle) -> { });
+        Assert.assertSame(context, cpu.getCpuContext());
+    }
+
+    /**
+     * A context with 64 KB of RAM.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext() {
+            initMemory(0x10000);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file
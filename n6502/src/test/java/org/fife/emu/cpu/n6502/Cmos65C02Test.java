@@ -0,0 +1,340 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Cmos65C02Test {
+
+    private TestContext context;
+
+    @Before
+    public void setUp() {
+        context = new TestContext();
+        context.writeByte(0xfffa, 0x00); // NMI handler at $0400
+        context.writeByte(0xfffb, 0x04);
+        context.writeByte(0xfffe, 0x00); // IRQ/BRK handler at $0500
+        context.writeByte(0xffff, 0x05);
+    }
+
+    private void load(int origin, int... program) {
+        for (int i = 0; i < program.length; i++) {
+            context.writeByte(origin + i, program[i]);
+        }
+        context.writeByte(0xfffc, origin & 0xff);
+        context.writeByte(0xfffd, origin >> 8);
+    }
+
+    private Cmos65C02 createCpu(int origin, int... program) {
+        load(origin, program);
+        Cmos65C02 cpu = new Cmos65C02(context, 1789773f);
+        cpu.reset();
+        return cpu;
+    }
+
+    @Test
+    public void testBra() {
+
+        Cmos65C02 cpu = createCpu(0x200,
+            0x80, 0x02, // BRA $0204
+            0xE8,       // INX
+            0xE8,       // INX
+            0xC8);      // INY
+
+        cpu.execute(3);
+        Assert.assertEquals(3, cpu.getCycles());
+        Assert.assertEquals(0x204, cpu.getPC());
+        cpu.execute(2);
+        Assert.assertEquals(0, cpu.getRegX());
+        Assert.assertEquals(1, cpu.getRegY());
+
+    }
+
+    @Test
+    public void testBra_pageCrossed() {
+        Cmos65C02 cpu = createCpu(0x2fc,
+            0x80, 0x03); // BRA $0301
+        cpu.execute(1);
+        Assert.assertEquals(4, cpu.getCycles());
+        Assert.assertEquals(0x301, cpu.getPC());
+    }
+
+    @Test
+    public void testStz() {
+
+        for (int address : new int[] { 0x10, 0x11, 0x300, 0x301 }) {
+            context.writeByte(address, 0xff);
+        }
+        Cmos65C02 cpu = createCpu(0x200,
+            0xA2, 0x01,       // LDX #$01
+            0xA9, 0x80,       // LDA #$80
+            0x64, 0x10,       // STZ $10
+            0x74, 0x10,       // STZ $10,X
+            0x9C, 0x00, 0x03, // STZ $0300
+            0x9E, 0x00, 0x03);// STZ $0300,X
+
+        cpu.execute(20);
+        Assert.assertEquals(20, cpu.getCycles());
+        for (int address : new int[] { 0x10, 0x11, 0x300, 0x301 }) {
+            Assert.assertEquals(0, context.readByte(address));
+        }
+        // Neither A nor the flags are affected
+        Assert.assertEquals(0x80, cpu.getRegA());
+        Assert.assertEquals(1, cpu.getFlagN());
+        Assert.assertEquals(0, cpu.getFlagZ());
+
+    }
+
+    @Test
+    public void testTsbTrb() {
+
+        context.writeByte(0x10, 0x3c);
+        context.writeByte(0x11, 0x70);
+        Cmos65C02 cpu = createCpu(0x200,
+            0xA9, 0x8F,       // LDA #$8F
+            0x04, 0x10,       // TSB $10
+            0x14, 0x11,       // TRB $11
+            0x0C, 0x00, 0x03, // TSB $0300
+            0x1C, 0x10, 0x00);// TRB $0010
+
+        cpu.execute(7);
+        Assert.assertEquals(0xbf, context.readByte(0x10));
+        Assert.assertEquals(0, cpu.getFlagZ()); // $8F & $3C != 0
+
+        cpu.execute(5);
+        Assert.assertEquals(0x70, context.readByte(0x11));
+        Assert.assertEquals(1, cpu.getFlagZ()); // $8F & $70 == 0
+
+        cpu.execute(6);
+        Assert.assertEquals(0x8f, context.readByte(0x300));
+        Assert.assertEquals(1, cpu.getFlagZ());
+
+        cpu.execute(6);
+        Assert.assertEquals(24, cpu.getCycles());
+        Assert.assertEquals(0x30, context.readByte(0x10));
+        Assert.assertEquals(0, cpu.getFlagZ());
+
+        // N is left alone, and A unchanged
+        Assert.assertEquals(1, cpu.getFlagN());
+        Assert.assertEquals(0x8f, cpu.getRegA());
+
+    }
+
+    @Test
+    public void testZeroPageIndirect() {
+
+        context.writeByte(0x10, 0x00); // ($10) = $0300
+        context.writeByte(0x11, 0x03);
+        context.writeByte(0x12, 0x10); // ($12) = $0310
+        context.writeByte(0x13, 0x03);
+        context.writeByte(0x300, 0x0f);
+        context.writeByte(0x310, 0xff);
+        Cmos65C02 cpu = createCpu(0x200,
+            0xA9, 0xF0, // LDA #$F0
+            0x12, 0x10, // ORA ($10)
+            0x32, 0x10, // AND ($10)
+            0x52, 0x10, // EOR ($10)
+            0x18,       // CLC
+            0x72, 0x10, // ADC ($10)
+            0x38,       // SEC
+            0xF2, 0x10, // SBC ($10)
+            0x92, 0x12, // STA ($12)
+            0xD2, 0x10, // CMP ($10)
+            0xB2, 0x10);// LDA ($10)
+
+        cpu.execute(7);
+        Assert.assertEquals(0xff, cpu.getRegA());
+        cpu.execute(5);
+        Assert.assertEquals(0x0f, cpu.getRegA());
+        cpu.execute(5);
+        Assert.assertEquals(0x00, cpu.getRegA());
+        Assert.assertEquals(1, cpu.getFlagZ());
+        cpu.execute(7);
+        Assert.assertEquals(0x0f, cpu.getRegA());
+        cpu.execute(7);
+        Assert.assertEquals(0x00, cpu.getRegA());
+        Assert.assertEquals(1, cpu.getFlagC());
+        cpu.execute(5);
+        Assert.assertEquals(0x00, context.readByte(0x310));
+        cpu.execute(5);
+        Assert.assertEquals(0, cpu.getFlagC());
+        Assert.assertEquals(1, cpu.getFlagN());
+        cpu.execute(5);
+        Assert.assertEquals(0x0f, cpu.getRegA());
+        Assert.assertEquals(46, cpu.getCycles());
+
+    }
+
+    @Test
+    public void testZeroPageIndirect_wraps() {
+
+        context.writeByte(0xff, 0x20); // ($FF) = $0320, not $0120
+        context.writeByte(0x00, 0x03);
+        context.writeByte(0x100, 0x01);
+        context.writeByte(0x320, 0x42);
+        Cmos65C02 cpu = createCpu(0x200,
+            0xB2, 0xFF); // LDA ($FF)
+
+        cpu.execute(5);
+        Assert.assertEquals(0x42, cpu.getRegA());
+
+    }
+
+    @Test
+    public void testJmpAbsoluteIndexedIndirect() {
+
+        context.writeByte(0x302, 0x34);
+        context.writeByte(0x303, 0x12);
+        Cmos65C02 cpu = createCpu(0x200,
+            0xA2, 0x02,        // LDX #$02
+            0x7C, 0x00, 0x03); // JMP ($0300,X)
+
+        cpu.execute(8);
+        Assert.assertEquals(8, cpu.getCycles());
+        Assert.assertEquals(0x1234, cpu.getPC());
+
+    }
+
+    @Test
+    public void testJmpIndirect_pageWrapFixed() {
+
+        context.writeByte(0x3ff, 0x34);
+        context.writeByte(0x400, 0x12);
+        context.writeByte(0x300, 0x56); // Where the NMOS 6502 reads the high byte
+        load(0x200,
+            0x6C, 0xFF, 0x03); // JMP ($03FF)
+
+        Cmos65C02 cmos = new Cmos65C02(context, 1789773f);
+        cmos.reset();
+        cmos.execute(1);
+        Assert.assertEquals(6, cmos.getCycles());
+        Assert.assertEquals(0x1234, cmos.getPC());
+
+        Nmos6502 nmos = new Nmos6502(context, 1789773f);
+        nmos.reset();
+        nmos.execute(1);
+        Assert.assertEquals(5, nmos.getCycles());
+        Assert.assertEquals(0x5634, nmos.getPC());
+
+    }
+
+    @Test
+    public void testIrqClearsDecimalFlag() {
+
+        load(0x200,
+            0xF8,             // SED
+            0x58,             // CLI
+            0x4C, 0x02, 0x02);// JMP $0202
+
+        Cmos65C02 cmos = new Cmos65C02(context, 1789773f);
+        cmos.reset();
+        cmos.execute(7);
+        cmos.setIRQ(1, true);
+        cmos.execute(1);
+        Assert.assertEquals(0x500, cmos.getPC());
+        Assert.assertEquals(0, cmos.getFlagD());
+        Assert.assertEquals(1, cmos.getFlagI());
+        Assert.assertEquals(0x08, context.readByte(0x1fb) & 0x08); // Pushed P still has D
+
+        Nmos6502 nmos = new Nmos6502(context, 1789773f);
+        nmos.reset();
+        nmos.execute(7);
+        nmos.setIRQ(1, true);
+        nmos.execute(1);
+        Assert.assertEquals(0x500, nmos.getPC());
+        Assert.assertEquals(1, nmos.getFlagD());
+
+    }
+
+    @Test
+    public void testNmiClearsDecimalFlag() {
+
+        load(0x200,
+            0xF8,             // SED
+            0x4C, 0x01, 0x02);// JMP $0201
+
+        Cmos65C02 cmos = new Cmos65C02(context, 1789773f);
+        cmos.reset();
+        cmos.execute(5);
+        cmos.requestNMI();
+        cmos.execute(1);
+        Assert.assertEquals(0x400, cmos.getPC());
+        Assert.assertEquals(0, cmos.getFlagD());
+        Assert.assertEquals(0x08, context.readByte(0x1fb) & 0x08);
+
+        Nmos6502 nmos = new Nmos6502(context, 1789773f);
+        nmos.reset();
+        nmos.execute(5);
+        nmos.requestNMI();
+        nmos.execute(1);
+        Assert.assertEquals(0x400, nmos.getPC());
+        Assert.assertEquals(1, nmos.getFlagD());
+
+    }
+
+    @Test
+    public void testBrkClearsDecimalFlag() {
+        Cmos65C02 cpu = createCpu(0x200,
+            0xF8,       // SED
+            0x00, 0x00);// BRK
+        cpu.execute(9);
+        Assert.assertEquals(0x500, cpu.getPC());
+        Assert.assertEquals(0, cpu.getFlagD());
+    }
+
+    @Test
+    public void testCanCompile() {
+
+        Cmos65C02 cpu = new Cmos65C02(context, 1789773f);
+
+        // Inherited NMOS instructions can be compiled...
+        Assert.assertTrue(cpu.canCompile(0xA9)); // LDA #$44
+        Assert.assertTrue(cpu.canCompile(0x85)); // STA $44
+        Assert.assertTrue(cpu.canCompile(0xD0)); // BNE
+
+        // ...but not those the 65C02 adds or changes, nor decimal ones
+        int[] vetoed = {
+            0x80, // BRA
+            0x64, 0x74, 0x9C, 0x9E, // STZ
+            0x04, 0x0C, 0x14, 0x1C, // TSB, TRB
+            0xB2, 0x92, // LDA ($44), STA ($44)
+            0x6C, 0x7C, // JMP ($4400), JMP ($4400,X)
+            0x1A, 0x3A, // INC A, DEC A
+            0x1E, 0x3E, 0x5E, 0x7E, // Shifts abs,X
+            0x69, 0xE9, // ADC, SBC
+            0x03, 0xA7, // Undocumented NMOS opcodes, NOPs here
+        };
+        for (int opcode : vetoed) {
+            Assert.assertFalse(Integer.toHexString(opcode), cpu.canCompile(opcode));
+        }
+
+        // A block stops just before the first instruction it can't compile
+        load(0x200,
+            0xA9, 0x01, // LDA #$01
+            0x64, 0x10, // STZ $10
+            0xD0, 0xFA);// BNE $0200
+        BasicBlock block = BasicBlock.decode(cpu, 0x200);
+        Assert.assertEquals(1, block.getInstructionCount());
+        Assert.assertEquals(0x202, block.getEnd());
+
+    }
+
+    /**
+     * 64 KB of RAM.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext() {
+            initMemory(0x10000);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,161 @@
+package org.fife.emu.cpu.n6502;
+
+import javax.tools.ToolProvider;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class CompiledBlockTest {
+
+    private static final int[] PROGRAM = {
+        0xA2, 0x05,       // $8000: LDX #$05
+        0x8A,             // $8002: TXA
+        0x0A,             //        ASL A
+        0x65, 0x10,       //        ADC $10
+        0x85, 0x10,       //        STA $10
+        0x66, 0x11,       //        ROR $11
+        0xCA,             //        DEX
+        0xD0, 0xF5,       //        BNE $8002
+        0xE6, 0x12,       //        INC $12
+        0x4C, 0x00, 0x80, //        JMP $8000
+    };
+
+    private static n6502Impl createCpu(TestContext context) {
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.setDecodeCacheEnabled(false);
+        cpu.reset();
+        return cpu;
+    }
+
+    private static void assertSameState(n6502Impl expected, n6502Impl actual) {
+        Assert.assertEquals(expected.getCycles(), actual.getCycles());
+        Assert.assertEquals(expected.getPC(), actual.getPC());
+        Assert.assertEquals(expected.getRegA(), actual.getRegA());
+        Assert.assertEquals(expected.getRegX(), actual.getRegX());
+        Assert.assertEquals(expected.getRegY(), actual.getRegY());
+        Assert.assertEquals(expected.getRegP(), actual.getRegP());
+        Assert.assertEquals(expected.getSP(), actual.getSP());
+        for (int address = 0x10; address <= 0x12; address++) {
+            Assert.assertEquals(expected.getCpuContext().readByte(address), actual.getCpuContext().readByte(address));
+        }
+    }
+
+    @Test
+    public void testCompiledBlockMatchesInterpreter() throws InterruptedException {
+
+        Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        TestContext interpretedContext = new TestContext();
+        n6502Impl interpreted = createCpu(interpretedContext);
+        TestContext compiledContext = new TestContext();
+        n6502Impl compiled = createCpu(compiledContext);
+        compiled.setJitEnabled(true);
+
+        // Jump to both blocks often enough to compile them
+        interpreted.execute(10000);
+        compiled.execute(10000);
+        assertSameState(interpreted, compiled);
+        BlockCompiler.get().awaitIdle();
+
+        // Odd slices, so some end in the middle of a block
+        compiledContext.loopReads = 0;
+        for (int i = 0; i < 50; i++) {
+            interpreted.execute(777);
+            compiled.execute(777);
+            assertSameState(interpreted, compiled);
+        }
+        Assert.assertEquals(0, compiledContext.loopReads);
+
+    }
+
+    @Test
+    public void testCompileFailureIsReported() throws InterruptedException {
+
+        Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        n6502Impl cpu = createCpu(new TestContext());
+        BlockCache cache = new BlockCache(cpu, BlockCompiler.get(), null);
+        BlockCompiler.get().submit(cache, 0x8000, 0, "org.fife.emu.cpu.n6502.jit.Broken",
+                "package org.fife.emu.cpu.n6502.jit; class Broken {");
+        BlockCompiler.get().awaitIdle();
+
+        try {
+            cache.installCompiledBlocks();
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage().startsWith("Couldn't compile block at $8000: "));
+        }
+
+        // The failure is only reported once
+        cache.installCompiledBlocks();
+
+    }
+
+    @Test
+    public void testBlockCreationFailureIsReported() {
+
+        n6502Impl cpu = createCpu(new TestContext());
+        BlockCache cache = new BlockCache(cpu, null, null);
+        cache.compiled(0x8000, 0, AbstractBlock.class);
+
+        try {
+            cache.installCompiledBlocks();
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage().startsWith("Couldn't create block at $8000: "));
+        }
+        Assert.assertNull(cache.lookup(0x8000));
+
+    }
+
+    /**
+     * A block class that can't be instantiated.
+     */
+    public abstract static class AbstractBlock extends CompiledBlock {
+
+        public AbstractBlock(n6502Impl cpu) {
+            super(cpu);
+        }
+
+    }
+
+    /**
+     * A ROM page holding {@link #PROGRAM} at <code>$8000</code>, and RAM
+     * everywhere else.  Counts the reads of the loop's first opcode, which
+     * the interpreter makes but a compiled block doesn't.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private int loopReads;
+
+        private TestContext() {
+            initMemory(0x10000);
+            byte[] rom = new byte[0x100];
+            for (int i = 0; i < PROGRAM.length; i++) {
+                rom[i] = (byte)PROGRAM[i];
+            }
+            mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(rom), 0);
+            writeByte(0xfffc, 0x00);
+            writeByte(0xfffd, 0x80);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+        @Override
+        public int readByte(int address) {
+            if (address == 0x8002) {
+                loopReads++;
+            }
+            return super.readByte(address);
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package org.fife.emu.cpu.n6502;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DecimalArithmeticTest {
+
+    /**
+     * Asserts a table entry holds the expected result, with flags given
+     * as a string of the set ones, e.g. <code>"CN"</code>.
+     */
+    private static void assertEntry(char[] table, int a, int val, int c, int expectedA, String expectedFlags) {
+        int entry = table[(c << 16) | (a << 8) | val];
+        String flags = "";
+        flags += ((entry >> DecimalArithmetic.C_SHIFT) & 1) != 0 ? "C" : "";
+        flags += ((entry >> DecimalArithmetic.V_SHIFT) & 1) != 0 ? "V" : "";
+        flags += ((entry >> DecimalArithmetic.Z_SHIFT) & 1) != 0 ? "Z" : "";
+        flags += ((entry >> DecimalArithmetic.N_SHIFT) & 1) != 0 ? "N" : "";
+        Assert.assertEquals(expectedA, entry & 0xff);
+        Assert.assertEquals(expectedFlags, flags);
+    }
+
+    @Test
+    public void testNmosADC() {
+        assertEntry(DecimalArithmetic.NMOS_ADC, 0x12, 0x34, 0, 0x46, "");
+        assertEntry(DecimalArithmetic.NMOS_ADC, 0x58, 0x46, 1, 0x05, "CVN");
+        assertEntry(DecimalArithmetic.NMOS_ADC, 0x81, 0x92, 0, 0x73, "CV");
+        assertEntry(DecimalArithmetic.NMOS_ADC, 0x79, 0x00, 1, 0x80, "VN");
+        // Z comes from the binary sum, N from the unadjusted high digit
+        assertEntry(DecimalArithmetic.NMOS_ADC, 0x99, 0x01, 0, 0x00, "CN");
+    }
+
+    @Test
+    public void testNmosSBC() {
+        assertEntry(DecimalArithmetic.NMOS_SBC, 0x46, 0x12, 1, 0x34, "C");
+        assertEntry(DecimalArithmetic.NMOS_SBC, 0x32, 0x02, 0, 0x29, "C");
+        assertEntry(DecimalArithmetic.NMOS_SBC, 0x12, 0x21, 1, 0x91, "N");
+        assertEntry(DecimalArithmetic.NMOS_SBC, 0x00, 0x01, 1, 0x99, "N");
+        assertEntry(DecimalArithmetic.NMOS_SBC, 0x01, 0x01, 1, 0x00, "CZ");
+    }
+
+    @Test
+    public void testCmosADC() {
+        assertEntry(DecimalArithmetic.CMOS_ADC, 0x12, 0x34, 0, 0x46, "");
+        assertEntry(DecimalArithmetic.CMOS_ADC, 0x79, 0x00, 1, 0x80, "VN");
+        // Unlike the NMOS 6502, N and Z reflect the result
+        assertEntry(DecimalArithmetic.CMOS_ADC, 0x99, 0x01, 0, 0x00, "CZ");
+    }
+
+    @Test
+    public void testCmosSBC() {
+        assertEntry(DecimalArithmetic.CMOS_SBC, 0x46, 0x12, 1, 0x34, "C");
+        assertEntry(DecimalArithmetic.CMOS_SBC, 0x00, 0x01, 1, 0x99, "N");
+        assertEntry(DecimalArithmetic.CMOS_SBC, 0x01, 0x01, 1, 0x00, "CZ");
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DecodeCacheTest {
+
+    /**
+     * Increments the operand of its own <code>LDA #</code> each time
+     * through, taking 13 cycles per iteration.
+     */
+    private static final int[] SELF_MODIFYING = {
+        0xA9, 0x01,       // LDA #$01
+        0x18,             // CLC
+        0x69, 0x01,       // ADC #$01
+        0x8D, 0x01, 0x02, // STA $0201
+        0x4C, 0x00, 0x02, // JMP $0200
+    };
+
+    private static TestContext createContext(int[] program) {
+        TestContext context = new TestContext();
+        for (int i = 0; i < program.length; i++) {
+            context.writeByte(0x200 + i, program[i]);
+        }
+        context.writeByte(0xfffc, 0x00);
+        context.writeByte(0xfffd, 0x02);
+        return context;
+    }
+
+    private static n6502Impl createCpu(TestContext context, boolean decodeCache) {
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.setDecodeCacheEnabled(decodeCache);
+        cpu.reset();
+        return cpu;
+    }
+
+    private static void assertSameState(n6502Impl expected, n6502Impl actual) {
+        Assert.assertEquals(expected.getCycles(), actual.getCycles());
+        Assert.assertEquals(expected.getPC(), actual.getPC());
+        Assert.assertEquals(expected.getRegA(), actual.getRegA());
+        Assert.assertEquals(expected.getRegX(), actual.getRegX());
+        Assert.assertEquals(expected.getRegY(), actual.getRegY());
+        Assert.assertEquals(expected.getRegP(), actual.getRegP());
+    }
+
+    @Test
+    public void testSelfModifyingCode() {
+
+        n6502Impl uncached = createCpu(createContext(SELF_MODIFYING), false);
+        n6502Impl cached = createCpu(createContext(SELF_MODIFYING), true);
+        uncached.execute(13 * 20);
+        cached.execute(13 * 20);
+
+        assertSameState(uncached, cached);
+        Assert.assertEquals(21, cached.getRegA());
+
+    }
+
+    @Test
+    public void testWriteThroughMirror() {
+
+        int[] program = SELF_MODIFYING.clone();
+        program[7] = 0x0A; // STA $0A01, a mirror of $0201
+
+        TestContext uncachedContext = createContext(program);
+        uncachedContext.mapMirror(0x0800, 0x1800, 0x07ff);
+        n6502Impl uncached = createCpu(uncachedContext, false);
+        TestContext cachedContext = createContext(program);
+        cachedContext.mapMirror(0x0800, 0x1800, 0x07ff);
+        n6502Impl cached = createCpu(cachedContext, true);
+
+        uncached.execute(13 * 20);
+        cached.execute(13 * 20);
+
+        assertSameState(uncached, cached);
+        Assert.assertEquals(21, cached.getRegA());
+
+    }
+
+    @Test
+    public void testRemap() {
+
+        byte[] banks = new byte[0x200];
+        int[] bank0 = { 0xE8, 0x4C, 0x00, 0x80 }; // INX, JMP $8000
+        int[] bank1 = { 0xC8, 0x4C, 0x00, 0x80 }; // INY, JMP $8000
+        for (int i = 0; i < bank0.length; i++) {
+            banks[i] = (byte)bank0[i];
+            banks[0x100 + i] = (byte)bank1[i];
+        }
+        ByteArrayMemoryStorage rom = new ByteArrayMemoryStorage(banks);
+
+        TestContext context = new TestContext();
+        context.writeByte(0xfffc, 0x00);
+        context.writeByte(0xfffd, 0x80);
+        context.mapROM(0x8000, 0x8100, rom, 0);
+        n6502Impl cpu = createCpu(context, true);
+
+        cpu.execute(5 * 10);
+        Assert.assertEquals(10, cpu.getRegX());
+        Assert.assertEquals(0, cpu.getRegY());
+
+        context.mapROM(0x8000, 0x8100, rom, 0x100);
+        cpu.execute(5 * 10);
+        Assert.assertEquals(10, cpu.getRegX());
+        Assert.assertEquals(10, cpu.getRegY());
+        Assert.assertEquals(0x8000, cpu.getPC());
+
+    }
+
+    @Test
+    public void testMaxWriteInvalidations() {
+
+        TestContext uncachedContext = createContext(SELF_MODIFYING);
+        n6502Impl uncached = createCpu(uncachedContext, false);
+        TestContext context = createContext(SELF_MODIFYING);
+        n6502Impl cpu = createCpu(context, true);
+
+        // Every iteration writes to the page, so it's watched again after
+        // each of the first 31 writes, then no longer cached
+        uncached.execute(13 * 100);
+        cpu.execute(13 * 100);
+        assertSameState(uncached, cpu);
+        Assert.assertEquals(32, context.watches[2]);
+
+        uncached.execute(13 * 100);
+        cpu.execute(13 * 100);
+        assertSameState(uncached, cpu);
+        Assert.assertEquals(32, context.watches[2]);
+
+        // Remapping the page lets it be cached again, so it's watched
+        // when next run, and again after that iteration's write
+        context.unmap(0x0200, 0x0300);
+        cpu.execute(13);
+        Assert.assertEquals(34, context.watches[2]);
+
+    }
+
+    /**
+     * 64 KB of RAM that counts the watches set on each page.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private final int[] watches;
+
+        private TestContext() {
+            initMemory(0x10000);
+            watches = new int[0x100];
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+        @Override
+        public boolean watchForWrites(int address) {
+            watches[address >> 8]++;
+            return super.watchForWrites(address);
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FusionTest {
+
+    private static final int[] DEX_BNE = {
+        0xA2, 0x03,       // $0200: LDX #$03
+        0xCA,             // $0202: DEX
+        0xD0, 0xFD,       //        BNE $0202
+        0xC8,             //        INY
+        0x4C, 0x00, 0x02, //        JMP $0200
+    };
+
+    private static final int[] INY_CPY_BNE = {
+        0xA0, 0x00,       // $0200: LDY #$00
+        0xC8,             // $0202: INY
+        0xC0, 0x04,       //        CPY #$04
+        0xD0, 0xFB,       // $0205: BNE $0202
+        0xE8,             //        INX
+        0x4C, 0x00, 0x02, //        JMP $0200
+    };
+
+    private static final int[] LDA_STA = {
+        0xA9, 0x42,       // $0200: LDA #$42
+        0x85, 0x10,       //        STA $10
+        0xE6, 0x10,       // $0204: INC $10
+        0xA5, 0x10,       //        LDA $10
+        0x8D, 0x00, 0x03, //        STA $0300
+        0x4C, 0x04, 0x02, //        JMP $0204
+    };
+
+    /**
+     * Code in the zero page whose first instruction, <code>INC $03</code>,
+     * changes the offset of the branch fused with it from 0 to 1.
+     */
+    private static final int[] MODIFIES_TAIL = {
+        0xE6, 0x03,       // $0000: INC $03
+        0xD0, 0x00,       //        BNE $0004 (BNE $0005 once modified)
+        0xE8,             // $0004: INX
+        0xC8,             // $0005: INY
+        0x4C, 0x06, 0x00, //        JMP $0006
+    };
+
+    private static n6502Impl createCpu(int[] program, int origin, boolean decodeCache) {
+        TestContext context = new TestContext();
+        for (int i = 0; i < program.length; i++) {
+            context.writeByte(origin + i, program[i]);
+        }
+        context.writeByte(0xfffc, origin & 0xff);
+        context.writeByte(0xfffd, origin >> 8);
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.setDecodeCacheEnabled(decodeCache);
+        cpu.reset();
+        return cpu;
+    }
+
+    private static void assertSameState(n6502Impl expected, n6502Impl actual) {
+        Assert.assertEquals(expected.getCycles(), actual.getCycles());
+        Assert.assertEquals(expected.getPC(), actual.getPC());
+        Assert.assertEquals(expected.getRegA(), actual.getRegA());
+        Assert.assertEquals(expected.getRegX(), actual.getRegX());
+        Assert.assertEquals(expected.getRegY(), actual.getRegY());
+        Assert.assertEquals(expected.getRegP(), actual.getRegP());
+        for (int address : new int[] { 0x03, 0x10, 0x300 }) {
+            Assert.assertEquals(expected.getCpuContext().readByte(address), actual.getCpuContext().readByte(address));
+        }
+    }
+
+    /**
+     * Asserts that running a program with the decode cache, and so with
+     * fusion, ends up exactly as running it without, for every budget up
+     * to a limit, so that each budget ends at a different point in (or
+     * just after) a fused sequence.
+     */
+    private static void assertSameAsUnfused(int[] program, int origin, int maxCycles) {
+        for (int budget = 1; budget <= maxCycles; budget++) {
+            n6502Impl unfused = createCpu(program, origin, false);
+            n6502Impl fused = createCpu(program, origin, true);
+            unfused.execute(budget);
+            fused.execute(budget);
+            assertSameState(unfused, fused);
+            // And again, resuming from wherever the budget ran out
+            unfused.execute(budget);
+            fused.execute(budget);
+            assertSameState(unfused, fused);
+        }
+    }
+
+    private static boolean isFused(int[] program, int origin, int address) {
+        n6502Impl cpu = createCpu(program, origin, false);
+        return (cpu.fuse(address, cpu.decode(address)) & n6502Impl.FUSED) != 0;
+    }
+
+    @Test
+    public void testDexBne() {
+        Assert.assertTrue(isFused(DEX_BNE, 0x200, 0x202));
+        assertSameAsUnfused(DEX_BNE, 0x200, 100);
+    }
+
+    @Test
+    public void testInyCpyBne() {
+        Assert.assertTrue(isFused(INY_CPY_BNE, 0x200, 0x202));
+        assertSameAsUnfused(INY_CPY_BNE, 0x200, 100);
+    }
+
+    @Test
+    public void testInyCpyBne_budgetEndsBeforeBranch() {
+
+        // LDY (2 cycles), then INY (2) and CPY (2) end the budget
+        n6502Impl cpu = createCpu(INY_CPY_BNE, 0x200, true);
+        cpu.execute(6);
+        Assert.assertEquals(6, cpu.getCycles());
+        Assert.assertEquals(0x205, cpu.getPC());
+        Assert.assertEquals(1, cpu.getRegY());
+        Assert.assertEquals(0, cpu.getFlagC());
+        Assert.assertEquals(0, cpu.getFlagZ());
+        Assert.assertEquals(1, cpu.getFlagN());
+
+        // The branch runs first thing next time
+        cpu.execute(3);
+        Assert.assertEquals(9, cpu.getCycles());
+        Assert.assertEquals(0x202, cpu.getPC());
+
+    }
+
+    @Test
+    public void testLdaSta() {
+        Assert.assertTrue(isFused(LDA_STA, 0x200, 0x200));
+        Assert.assertTrue(isFused(LDA_STA, 0x200, 0x206));
+        assertSameAsUnfused(LDA_STA, 0x200, 100);
+    }
+
+    @Test
+    public void testFirstInstructionModifiesTail() {
+
+        Assert.assertTrue(isFused(MODIFIES_TAIL, 0x0000, 0x0000));
+        assertSameAsUnfused(MODIFIES_TAIL, 0x0000, 40);
+
+        n6502Impl cpu = createCpu(MODIFIES_TAIL, 0x0000, true);
+        cpu.execute(40);
+        Assert.assertEquals(0, cpu.getRegX());
+        Assert.assertEquals(1, cpu.getRegY());
+        Assert.assertEquals(0x0006, cpu.getPC());
+
+    }
+
+    /**
+     * 64 KB of RAM.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext() {
+            initMemory(0x10000);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file
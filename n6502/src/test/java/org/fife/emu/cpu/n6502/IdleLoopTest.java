@@ -0,0 +1,216 @@
+package org.fife.emu.cpu.n6502;
+
+import javax.tools.ToolProvider;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.MemoryReadHandler;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class IdleLoopTest {
+
+    private static final int[] JMP_SELF = {
+        0x4C, 0x00, 0x80, // $8000: JMP $8000
+    };
+
+    private static final int[] LDA_ZP_BPL = {
+        0xA5, 0x10,       // $8000: LDA $10
+        0x10, 0xFC,       //        BPL $8000
+    };
+
+    private static final int[] POLL_IO = {
+        0xAD, 0x00, 0x40, // $8000: LDA $4000
+        0x10, 0xFB,       //        BPL $8000
+        0xE8,             //        INX
+        0x4C, 0x06, 0x80, // $8006: JMP $8006
+    };
+
+    private static final int[] BUDGETS = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 97, 998, 999, 1000, 5003 };
+
+    /**
+     * Creates a CPU running a program in ROM at <code>$8000</code>.
+     *
+     * @param skip Whether to use the fast loop, which skips idle
+     *        iterations.  Otherwise, an instruction hook is set, so every
+     *        instruction is run.
+     */
+    private static n6502Impl createCpu(int[] program, PollHandler handler, boolean skip) {
+        TestContext context = new TestContext(program, handler);
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.setDecodeCacheEnabled(skip);
+        if (!skip) {
+            cpu.setInstructionHook((c, address) -> { });
+        }
+        cpu.reset();
+        return cpu;
+    }
+
+    private static void assertSameState(n6502Impl expected, n6502Impl actual) {
+        Assert.assertEquals(expected.getCycles(), actual.getCycles());
+        Assert.assertEquals(expected.getPC(), actual.getPC());
+        Assert.assertEquals(expected.getRegA(), actual.getRegA());
+        Assert.assertEquals(expected.getRegX(), actual.getRegX());
+        Assert.assertEquals(expected.getRegY(), actual.getRegY());
+        Assert.assertEquals(expected.getRegP(), actual.getRegP());
+    }
+
+    /**
+     * Asserts that a program ends up exactly the same with and without
+     * idle iterations skipped, for a range of budgets.
+     *
+     * @param stable Whether the I/O register polled is stable.
+     * @param readyAt The number of reads of the I/O register that return
+     *        <code>0</code> before it returns <code>$80</code>.
+     * @return The I/O register reads made while skipping, for the last
+     *         budget.
+     */
+    private static int assertSameAsNoSkip(int[] program, boolean stable, int readyAt) {
+        int reads = 0;
+        for (int budget : BUDGETS) {
+            PollHandler expectedHandler = new PollHandler(stable, readyAt);
+            PollHandler actualHandler = new PollHandler(stable, readyAt);
+            n6502Impl expected = createCpu(program, expectedHandler, false);
+            n6502Impl actual = createCpu(program, actualHandler, true);
+            for (int i = 0; i < 3; i++) {
+                expected.execute(budget);
+                actual.execute(budget);
+                assertSameState(expected, actual);
+                if (!stable) {
+                    Assert.assertEquals(expectedHandler.reads, actualHandler.reads);
+                }
+            }
+            reads = actualHandler.reads;
+        }
+        return reads;
+    }
+
+    @Test
+    public void testJmpSelf() {
+        assertSameAsNoSkip(JMP_SELF, true, Integer.MAX_VALUE);
+        n6502Impl cpu = createCpu(JMP_SELF, new PollHandler(true, 0), true);
+        cpu.execute(1000);
+        Assert.assertEquals(1002, cpu.getCycles());
+        Assert.assertEquals(0x8000, cpu.getPC());
+    }
+
+    @Test
+    public void testLdaZpBpl() {
+        assertSameAsNoSkip(LDA_ZP_BPL, true, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testPollStableHandler() {
+        // Skipping is only worth it if it avoids most of the reads
+        int reads = assertSameAsNoSkip(POLL_IO, true, Integer.MAX_VALUE);
+        Assert.assertTrue("Too many reads: " + reads, reads < 10);
+    }
+
+    @Test
+    public void testPollUnstableHandler() {
+        // Every read must be made, and the loop left on the right one
+        assertSameAsNoSkip(POLL_IO, false, 50);
+        PollHandler handler = new PollHandler(false, 50);
+        n6502Impl cpu = createCpu(POLL_IO, handler, true);
+        cpu.execute(1000);
+        Assert.assertEquals(51, handler.reads);
+        Assert.assertEquals(1, cpu.getRegX());
+        Assert.assertEquals(0x8006, cpu.getPC());
+    }
+
+    @Test
+    public void testCompiledBlocks() throws InterruptedException {
+
+        Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        int[][] programs = { JMP_SELF, LDA_ZP_BPL, POLL_IO, POLL_IO };
+        boolean[] stable = { true, true, true, false };
+
+        for (int i = 0; i < programs.length; i++) {
+
+            // A stable register never changes, so never goes ready
+            int readyAt = stable[i] ? Integer.MAX_VALUE : 5000;
+            PollHandler expectedHandler = new PollHandler(stable[i], readyAt);
+            PollHandler actualHandler = new PollHandler(stable[i], readyAt);
+            n6502Impl expected = createCpu(programs[i], expectedHandler, false);
+            n6502Impl actual = createCpu(programs[i], actualHandler, true);
+            actual.setJitEnabled(true);
+
+            // Enough slices for each loop to be compiled, and for the
+            // unstable poll to see its register go ready
+            for (int slice = 0; slice < 100; slice++) {
+                expected.execute(1001);
+                actual.execute(1001);
+                assertSameState(expected, actual);
+                if (!stable[i]) {
+                    Assert.assertEquals(expectedHandler.reads, actualHandler.reads);
+                }
+                BlockCompiler.get().awaitIdle();
+            }
+
+        }
+
+    }
+
+    /**
+     * An I/O register that reads <code>0</code> a number of times, then
+     * <code>$80</code>.
+     */
+    private static final class PollHandler implements MemoryReadHandler {
+
+        private final boolean stable;
+        private final int readyAt;
+        private int reads;
+
+        private PollHandler(boolean stable, int readyAt) {
+            this.stable = stable;
+            this.readyAt = readyAt;
+        }
+
+        @Override
+        public boolean isPollStable(int address) {
+            return stable;
+        }
+
+        @Override
+        public int peek(int address) {
+            return reads >= readyAt ? 0x80 : 0;
+        }
+
+        @Override
+        public int read(int address) {
+            int value = peek(address);
+            reads++;
+            return value;
+        }
+
+    }
+
+    /**
+     * A program in ROM at <code>$8000</code>, an I/O register at
+     * <code>$4000</code>, and RAM everywhere else.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext(int[] program, PollHandler handler) {
+            initMemory(0x10000);
+            byte[] rom = new byte[0x100];
+            for (int i = 0; i < program.length; i++) {
+                rom[i] = (byte)program[i];
+            }
+            mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(rom), 0);
+            mapReadHandler(0x4000, 0x4100, handler);
+            writeByte(0xfffc, 0x00);
+            writeByte(0xfffd, 0x80);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package org.fife.emu.cpu.n6502;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InstructionInfo6502Test {
+
+    @Test
+    public void testEveryOpcodeIsDescribed() {
+        for (int opcode = 0; opcode < 256; opcode++) {
+            Instruction instruction = InstructionInfo6502.get(opcode);
+            Assert.assertEquals(opcode, instruction.getOpcode());
+            Assert.assertNotNull(instruction.getName());
+            Assert.assertSame(instruction, InstructionInfo6502.get(opcode));
+        }
+    }
+
+    @Test
+    public void testMetadata() {
+
+        Assert.assertEquals("LDA", InstructionInfo6502.getMnemonic(0xad));
+        Assert.assertEquals(InstructionInfo6502.ABSOLUTE, InstructionInfo6502.getAddressingMode(0xad));
+        Assert.assertEquals(3, InstructionInfo6502.getByteCount(0xad));
+        Assert.assertEquals(4, InstructionInfo6502.getCycles(0xad));
+
+        Assert.assertEquals(InstructionInfo6502.INDIRECT_INDEXED, InstructionInfo6502.getAddressingMode(0xb1));
+        Assert.assertEquals(2, InstructionInfo6502.getByteCount(0xb1));
+        Assert.assertEquals(1, InstructionInfo6502.getByteCount(0x0a));
+        Assert.assertEquals(7, InstructionInfo6502.getCycles(0x00));
+
+        // Loads pay for crossing a page, stores always take the extra cycle
+        Assert.assertTrue(InstructionInfo6502.hasPageCrossPenalty(0xbd));
+        Assert.assertFalse(InstructionInfo6502.hasPageCrossPenalty(0x9d));
+        Assert.assertEquals(5, InstructionInfo6502.getCycles(0x9d));
+
+    }
+
+    @Test
+    public void testToString() {
+
+        TestContext context = new TestContext();
+        context.writeByte(0x44, 0x12);
+
+        Assert.assertEquals("LDA #$44", InstructionInfo6502.get(0xa9).toString(new int[] { 0xa9, 0x44, -1 }, context));
+        Assert.assertEquals("LDA $0044 = #$12", InstructionInfo6502.get(0xa5).toString(new int[] { 0xa5, 0x44, -1 }, context));
+        Assert.assertEquals("STA $4400,X", InstructionInfo6502.get(0x9d).toString(new int[] { 0x9d, 0x00, 0x44 }, context));
+        Assert.assertEquals("LDA ($44),Y", InstructionInfo6502.get(0xb1).toString(new int[] { 0xb1, 0x44, -1 }, context));
+        Assert.assertEquals("JMP ($4400)", InstructionInfo6502.get(0x6c).toString(new int[] { 0x6c, 0x00, 0x44 }, context));
+        Assert.assertEquals("ASL A", InstructionInfo6502.get(0x0a).toString(new int[] { 0x0a, -1, -1 }, context));
+
+    }
+
+    /**
+     * A context with 64 KB of RAM.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext() {
+            initMemory(0x10000);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file
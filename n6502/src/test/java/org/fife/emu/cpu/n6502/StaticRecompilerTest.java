@@ -0,0 +1,238 @@
+package org.fife.emu.cpu.n6502;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class StaticRecompilerTest {
+
+    private static final String INDEX_CLASS = "org.fife.emu.cpu.n6502.precompiled.TestBlocks";
+
+    private static final int[] BANK0 = {
+        0xA2, 0x05,       // $8000: LDX #$05
+        0x8A,             // $8002: TXA
+        0x0A,             //        ASL A
+        0x65, 0x10,       //        ADC $10
+        0x85, 0x10,       //        STA $10
+        0x66, 0x11,       //        ROR $11
+        0xCA,             //        DEX
+        0xD0, 0xF5,       //        BNE $8002
+        0xE6, 0x12,       //        INC $12
+        0x4C, 0x00, 0x80, //        JMP $8000
+    };
+
+    /**
+     * The same code as {@link #BANK0}, but with <code>ROL $11</code> in
+     * place of <code>ROR $11</code>.
+     */
+    private static final int[] BANK1;
+
+    static {
+        BANK1 = BANK0.clone();
+        BANK1[8] = 0x26;
+    }
+
+    private static byte[] toBank(int[] program) {
+        byte[] bank = new byte[0x100];
+        for (int i = 0; i < program.length; i++) {
+            bank[i] = (byte)program[i];
+        }
+        return bank;
+    }
+
+    private static n6502Impl createCpu(TestContext context) {
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.setDecodeCacheEnabled(false);
+        cpu.reset();
+        return cpu;
+    }
+
+    private static void assertSameState(n6502Impl expected, n6502Impl actual) {
+        Assert.assertEquals(expected.getCycles(), actual.getCycles());
+        Assert.assertEquals(expected.getPC(), actual.getPC());
+        Assert.assertEquals(expected.getRegA(), actual.getRegA());
+        Assert.assertEquals(expected.getRegX(), actual.getRegX());
+        Assert.assertEquals(expected.getRegP(), actual.getRegP());
+        for (int address = 0x10; address <= 0x12; address++) {
+            Assert.assertEquals(expected.getCpuContext().readByte(address), actual.getCpuContext().readByte(address));
+        }
+    }
+
+    private static void runBoth(n6502Impl interpreted, n6502Impl precompiled) {
+        // Odd slices, so some end in the middle of a block
+        for (int i = 0; i < 20; i++) {
+            interpreted.execute(777);
+            precompiled.execute(777);
+            assertSameState(interpreted, precompiled);
+        }
+    }
+
+    /**
+     * Compiles the source written by the recompiler and returns the blocks
+     * its index class creates.
+     */
+    private static PrecompiledBlocks compile(Path sourceDir, Path classDir, ClassLoaderHolder holder) throws Exception {
+
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classDir.toString());
+        args.add("-classpath");
+        args.add(System.getProperty("java.class.path"));
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            args.addAll(files.filter(p -> p.toString().endsWith(".java")).map(Path::toString)
+                    .collect(Collectors.toList()));
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        Assert.assertEquals(0, javac.run(null, null, null, args.toArray(new String[0])));
+
+        holder.loader = new URLClassLoader(new URL[] { classDir.toUri().toURL() },
+                StaticRecompilerTest.class.getClassLoader());
+        Class<?> index = holder.loader.loadClass(INDEX_CLASS);
+        return (PrecompiledBlocks)index.getMethod("create").invoke(null);
+
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRecompile() {
+        StaticRecompiler recompiler = new StaticRecompiler(toBank(BANK0), 0x8000);
+        recompiler.addEntryPoint(0x8000);
+        // The entry point, the branch target, and the code after the branch
+        Assert.assertEquals(3, recompiler.recompile());
+        Assert.assertEquals(3, recompiler.getBlockCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_imageNotPageAligned() {
+        new StaticRecompiler(toBank(BANK0), 0x8001);
+    }
+
+    @Test
+    public void testPrecompiledBlocksRoundTrip() throws Exception {
+
+        Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        Path tempDir = Files.createTempDirectory("n6502");
+        ClassLoaderHolder holder = new ClassLoaderHolder();
+        try {
+
+            StaticRecompiler recompiler = new StaticRecompiler(toBank(BANK0), 0x8000);
+            recompiler.addEntryPoint(0x8000);
+            recompiler.recompile();
+            Path sourceDir = tempDir.resolve("src");
+            Path classDir = Files.createDirectories(tempDir.resolve("classes"));
+            recompiler.write(sourceDir.toFile(), INDEX_CLASS);
+            Assert.assertTrue(new File(sourceDir.toFile(), INDEX_CLASS.replace('.', '/') + ".java").isFile());
+
+            PrecompiledBlocks blocks = compile(sourceDir, classDir, holder);
+            Assert.assertEquals(3, blocks.getBlockCount());
+
+            TestContext interpretedContext = new TestContext();
+            n6502Impl interpreted = createCpu(interpretedContext);
+            TestContext precompiledContext = new TestContext();
+            n6502Impl precompiled = createCpu(precompiledContext);
+            precompiled.setPrecompiledBlocks(blocks);
+            Assert.assertSame(blocks, precompiled.getPrecompiledBlocks());
+
+            // The code in memory is the code the blocks were compiled from.
+            // The loop's first opcode is only read to check the two blocks
+            // holding it against memory when the page is mapped in.
+            runBoth(interpreted, precompiled);
+            Assert.assertEquals(2, precompiledContext.loopReads);
+
+            // A bank with different code at the same addresses doesn't match
+            interpretedContext.mapBank(1);
+            precompiledContext.mapBank(1);
+            precompiledContext.loopReads = 0;
+            runBoth(interpreted, precompiled);
+            Assert.assertTrue(precompiledContext.loopReads > 100);
+
+            // Switching back to the bank they were compiled from uses them again
+            interpretedContext.mapBank(0);
+            precompiledContext.mapBank(0);
+            precompiledContext.loopReads = 0;
+            runBoth(interpreted, precompiled);
+            Assert.assertEquals(2, precompiledContext.loopReads);
+
+        } finally {
+            if (holder.loader != null) {
+                holder.loader.close();
+            }
+            deleteRecursively(tempDir);
+        }
+
+    }
+
+    /**
+     * Holds the class loader for the compiled blocks, so it can be closed.
+     */
+    private static final class ClassLoaderHolder {
+        private URLClassLoader loader;
+    }
+
+    /**
+     * Either of two ROM banks at <code>$8000</code>, and RAM everywhere
+     * else.  Counts the reads of the loop's first opcode, which the
+     * interpreter makes each time through but a precompiled block
+     * doesn't.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private final ByteArrayMemoryStorage rom;
+        private int loopReads;
+
+        private TestContext() {
+            initMemory(0x10000);
+            rom = new ByteArrayMemoryStorage(0x200);
+            rom.write(0, toBank(BANK0), 0, 0x100);
+            rom.write(0x100, toBank(BANK1), 0, 0x100);
+            mapBank(0);
+            writeByte(0xfffc, 0x00);
+            writeByte(0xfffd, 0x80);
+        }
+
+        private void mapBank(int bank) {
+            mapROM(0x8000, 0x8100, rom, bank << 8);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+        @Override
+        public int readByte(int address) {
+            if (address == 0x8002) {
+                loopReads++;
+            }
+            return super.readByte(address);
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,457 @@
+package org.fife.emu.cpu.n6502;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import javax.tools.ToolProvider;
+
+import org.fife.emu.AbstractCpuContext;
+import org.fife.emu.ByteArrayMemoryStorage;
+import org.fife.emu.cpu.Cpu;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class n6502ImplTest {
+
+    /**
+     * The CPUs whose binary arithmetic and flags behave the same.
+     */
+    private static final List<Function<TestContext, n6502Impl>> VARIANTS = Arrays.asList(
+        context -> new n6502Impl(context, 1789773f),
+        context -> new Nmos6502(context, 1789773f),
+        context -> new Cmos65C02(context, 1789773f));
+
+    /**
+     * The conditional branches, in opcode order: BPL, BMI, BVC, BVS, BCC,
+     * BCS, BNE and BEQ.
+     */
+    private static final int[] BRANCHES = { 0x10, 0x30, 0x50, 0x70, 0x90, 0xB0, 0xD0, 0xF0 };
+
+    private TestContext context;
+
+    @Before
+    public void setUp() {
+        context = new TestContext();
+        context.writeByte(0xfffc, 0x00);
+        context.writeByte(0xfffd, 0x02);
+    }
+
+    private n6502Impl createCpu(int... program) {
+        for (int i = 0; i < program.length; i++) {
+            context.writeByte(0x200 + i, program[i]);
+        }
+        n6502Impl cpu = new n6502Impl(context, 1789773f);
+        cpu.reset();
+        return cpu;
+    }
+
+    @Test
+    public void testKil_stopsClock() {
+
+        n6502Impl cpu = createCpu(
+            0xA9, 0x01, // LDA #$01
+            0x02,       // KIL
+            0xE8);      // INX
+
+        cpu.execute(100);
+        Assert.assertEquals(2, cpu.getCycles());
+        Assert.assertEquals(2, cpu.getTotalCycles());
+        Assert.assertEquals(1, cpu.getRegA());
+        Assert.assertEquals(0, cpu.getRegX());
+
+        // Stays jammed
+        cpu.execute(100);
+        Assert.assertEquals(2, cpu.getCycles());
+        Assert.assertEquals(0, cpu.getRegX());
+
+    }
+
+    @Test
+    public void testKil_doesNotRewindTotalCycles() {
+
+        int[] program = new int[101];
+        for (int i = 0; i < 100; i++) {
+            program[i] = 0xEA; // NOP
+        }
+        program[100] = 0x02; // KIL
+        n6502Impl cpu = createCpu(program);
+
+        cpu.execute(150);
+        cpu.endTimeFrame();
+        cpu.execute(150);
+        Assert.assertEquals(200, cpu.getTotalCycles());
+
+        // Time only passes if the caller burns it, as NES.runFrame() does
+        cpu.burnCycles(50);
+        Assert.assertEquals(250, cpu.getTotalCycles());
+
+    }
+
+    /**
+     * Returns the C, V, Z and N flags as a string of the set ones, e.g.
+     * <code>"CN"</code>.
+     */
+    private static String getFlags(int p) {
+        String flags = "";
+        flags += (p & 0x01) != 0 ? "C" : "";
+        flags += (p & 0x40) != 0 ? "V" : "";
+        flags += (p & 0x02) != 0 ? "Z" : "";
+        flags += (p & 0x80) != 0 ? "N" : "";
+        return flags;
+    }
+
+    private static String getFlags(n6502Impl cpu) {
+        int p = cpu.getFlagC() | (cpu.getFlagV() << 6) | (cpu.getFlagZ() << 1) | (cpu.getFlagN() << 7);
+        return getFlags(p);
+    }
+
+    /**
+     * Runs a program at <code>$0200</code>, followed by <code>JMP *</code>,
+     * on each variant of the CPU, with and without the decode cache.
+     *
+     * @return The CPUs, stopped in the <code>JMP *</code>.
+     */
+    private static n6502Impl[] run(int... program) {
+        n6502Impl[] cpus = new n6502Impl[VARIANTS.size() * 2];
+        for (int i = 0; i < cpus.length; i++) {
+            TestContext context = new TestContext();
+            for (int j = 0; j < program.length; j++) {
+                context.writeByte(0x200 + j, program[j]);
+            }
+            context.writeByte(0x200 + program.length, 0x4C);
+            context.writeByte(0x201 + program.length, program.length);
+            context.writeByte(0x202 + program.length, 0x02);
+            context.writeByte(0xfffc, 0x00);
+            context.writeByte(0xfffd, 0x02);
+            cpus[i] = VARIANTS.get(i / 2).apply(context);
+            cpus[i].setDecodeCacheEnabled(i % 2 == 1);
+            cpus[i].reset();
+            cpus[i].execute(200);
+        }
+        return cpus;
+    }
+
+    private static String describe(n6502Impl cpu) {
+        return cpu.getClass().getSimpleName() + (cpu.isDecodeCacheEnabled() ? " with decode cache" : "");
+    }
+
+    /**
+     * Asserts the A register and the C, V, Z and N flags a program leaves,
+     * both as returned individually and in the P register.
+     *
+     * @param expectedFlags The flags expected to be set, e.g.
+     *        <code>"CN"</code>.
+     */
+    private static void assertResult(int expectedA, String expectedFlags, int... program) {
+        for (n6502Impl cpu : run(program)) {
+            Assert.assertEquals(describe(cpu), expectedA, cpu.getRegA());
+            Assert.assertEquals(describe(cpu), expectedFlags, getFlags(cpu));
+            Assert.assertEquals(describe(cpu), expectedFlags, getFlags(cpu.getRegP()));
+        }
+    }
+
+    private static void assertAdc(int a, int val, int c, int expectedA, String expectedFlags) {
+        assertResult(expectedA, expectedFlags,
+            c != 0 ? 0x38 : 0x18, // SEC or CLC
+            0xA9, a,              // LDA #a
+            0x69, val);           // ADC #val
+    }
+
+    private static void assertSbc(int a, int val, int c, int expectedA, String expectedFlags) {
+        assertResult(expectedA, expectedFlags,
+            c != 0 ? 0x38 : 0x18, // SEC or CLC
+            0xA9, a,              // LDA #a
+            0xE9, val);           // SBC #val
+    }
+
+    @Test
+    public void testAdc() {
+        assertAdc(0x50, 0x10, 0, 0x60, "");
+        assertAdc(0x50, 0x50, 0, 0xa0, "VN");
+        assertAdc(0x50, 0x90, 0, 0xe0, "N");
+        assertAdc(0x50, 0xd0, 0, 0x20, "C");
+        assertAdc(0xd0, 0x10, 0, 0xe0, "N");
+        assertAdc(0xd0, 0x50, 0, 0x20, "C");
+        assertAdc(0xd0, 0x90, 0, 0x60, "CV");
+        assertAdc(0xd0, 0xd0, 0, 0xa0, "CN");
+        // Carry in
+        assertAdc(0xff, 0x00, 1, 0x00, "CZ");
+        assertAdc(0x7f, 0x00, 1, 0x80, "VN");
+        assertAdc(0x00, 0x00, 0, 0x00, "Z");
+    }
+
+    @Test
+    public void testSbc() {
+        assertSbc(0x50, 0xf0, 1, 0x60, "");
+        assertSbc(0x50, 0xb0, 1, 0xa0, "VN");
+        assertSbc(0x50, 0x70, 1, 0xe0, "N");
+        assertSbc(0x50, 0x30, 1, 0x20, "C");
+        assertSbc(0xd0, 0xf0, 1, 0xe0, "N");
+        assertSbc(0xd0, 0xb0, 1, 0x20, "C");
+        assertSbc(0xd0, 0x70, 1, 0x60, "CV");
+        assertSbc(0xd0, 0x30, 1, 0xa0, "CN");
+        // Borrow in
+        assertSbc(0x01, 0x01, 1, 0x00, "CZ");
+        assertSbc(0x01, 0x00, 0, 0x00, "CZ");
+        assertSbc(0x00, 0x00, 0, 0xff, "N");
+        assertSbc(0x80, 0x00, 0, 0x7f, "CV");
+    }
+
+    @Test
+    public void testCmp() {
+
+        int[][] cases = {
+            // A, value, expected flags
+            { 0x40, 0x40, 0 }, // CZ
+            { 0x40, 0x41, 1 }, // N
+            { 0x40, 0x3f, 2 }, // C
+            { 0x00, 0x80, 1 }, // N
+            { 0xff, 0x01, 3 }, // CN
+            { 0x80, 0x00, 3 }, // CN
+        };
+        String[] flags = { "CZ", "N", "C", "CN" };
+
+        String[] flagsWithV = { "CVZ", "VN", "CV", "CVN" };
+
+        for (int[] test : cases) {
+            // CMP, CPX and CPY leave the register, and V, alone
+            assertResult(test[0], flagsWithV[test[2]],
+                0x18,             // CLC
+                0xA9, 0x40,       // LDA #$40
+                0x69, 0x40,       // ADC #$40 (sets V)
+                0xA9, test[0],    // LDA #a
+                0xC9, test[1]);   // CMP #val
+            assertResult(test[0], flags[test[2]],
+                0xA9, test[0],    // LDA #a
+                0xAA,             // TAX
+                0xE0, test[1]);   // CPX #val
+            assertResult(test[0], flags[test[2]],
+                0xA9, test[0],    // LDA #a
+                0xA8,             // TAY
+                0xC0, test[1]);   // CPY #val
+        }
+
+    }
+
+    @Test
+    public void testRolRor() {
+
+        // The carry goes in one end and comes out the other
+        assertResult(0x01, "C", 0x38, 0xA9, 0x80, 0x2A);  // SEC, LDA #$80, ROL A
+        assertResult(0x00, "CZ", 0x18, 0xA9, 0x80, 0x2A); // CLC, LDA #$80, ROL A
+        assertResult(0x81, "N", 0x38, 0xA9, 0x40, 0x2A);  // SEC, LDA #$40, ROL A
+        assertResult(0x80, "CN", 0x38, 0xA9, 0x01, 0x6A); // SEC, LDA #$01, ROR A
+        assertResult(0x00, "CZ", 0x18, 0xA9, 0x01, 0x6A); // CLC, LDA #$01, ROR A
+        assertResult(0x81, "N", 0x38, 0xA9, 0x02, 0x6A);  // SEC, LDA #$02, ROR A
+
+        // And on into the next rotate
+        assertResult(0x03, "", 0x38, 0xA9, 0x80, 0x2A, 0x2A);  // SEC, LDA #$80, ROL A, ROL A
+        assertResult(0xc0, "N", 0x38, 0xA9, 0x01, 0x6A, 0x6A); // SEC, LDA #$01, ROR A, ROR A
+
+        // In memory
+        assertResult(0x03, "",
+            0xA9, 0x80, 0x85, 0x10, // LDA #$80, STA $10
+            0x38,                   // SEC
+            0x26, 0x10, 0x26, 0x10, // ROL $10, ROL $10
+            0xA5, 0x10);            // LDA $10
+        assertResult(0xc0, "CN",
+            0xA9, 0x03, 0x85, 0x10, // LDA #$03, STA $10
+            0x38,                   // SEC
+            0x66, 0x10, 0x6E, 0x10, 0x00, // ROR $10, ROR $0010
+            0xA5, 0x10);            // LDA $10
+
+    }
+
+    @Test
+    public void testBit() {
+
+        // N and V come from memory, Z from A & memory; A and C are kept
+        assertResult(0x01, "CVZN",
+            0xA9, 0xC0, 0x85, 0x10, // LDA #$C0, STA $10
+            0xA9, 0x01,             // LDA #$01
+            0x38,                   // SEC
+            0x24, 0x10);            // BIT $10
+        assertResult(0x01, "",
+            0xA9, 0x3F, 0x85, 0x10, // LDA #$3F, STA $10
+            0xA9, 0x01,             // LDA #$01
+            0x18,                   // CLC
+            0x2C, 0x10, 0x00);      // BIT $0010
+        assertResult(0x80, "VN",
+            0xA9, 0xC0, 0x85, 0x10, // LDA #$C0, STA $10
+            0xA9, 0x80,             // LDA #$80
+            0x24, 0x10);            // BIT $10
+
+    }
+
+    @Test
+    public void testPhpPlp() {
+        for (int p : new int[] { 0x00, 0xff, 0xc3, 0x3c, 0x81, 0x42, 0x01, 0x80 }) {
+            // Round trip P through the stack and back into A
+            n6502Impl[] cpus = run(
+                0xA9, p, // LDA #p
+                0x48,    // PHA
+                0x28,    // PLP
+                0x08,    // PHP
+                0x68);   // PLA
+            for (n6502Impl cpu : cpus) {
+                // N, V, D, I, Z and C survive; B and bit 5 only exist on the stack
+                Assert.assertEquals(describe(cpu), p & 0xcf, cpu.getRegA() & 0xcf);
+            }
+            // PLA sets N and Z from the pulled byte, so check P before that
+            cpus = run(0xA9, p, 0x48, 0x28); // LDA #p, PHA, PLP
+            for (n6502Impl cpu : cpus) {
+                Assert.assertEquals(describe(cpu), p & 0xcf, cpu.getRegP() & 0xcf);
+                Assert.assertEquals(describe(cpu), getFlags(p), getFlags(cpu));
+            }
+        }
+    }
+
+    @Test
+    public void testSetRegP() {
+        n6502Impl cpu = new n6502Impl(new TestContext(), 1789773f);
+        for (int p = 0; p < 0x100; p++) {
+            cpu.setRegP(p);
+            Assert.assertEquals(p & 0xdf, cpu.getRegP());
+            Assert.assertEquals(getFlags(p), getFlags(cpu));
+        }
+    }
+
+    @Test
+    public void testBranchTaken() {
+
+        int[][] compares = { { 0x40, 0x40 }, { 0x40, 0x41 }, { 0x40, 0x3f } };
+
+        for (int v = 0; v < 2; v++) {
+            for (int[] compare : compares) {
+                for (int i = 0; i < BRANCHES.length; i++) {
+
+                    // CMP/Bxx is fused when the decode cache is enabled
+                    n6502Impl[] cpus = run(
+                        0x18,                   // CLC
+                        0xA9, 0x40,             // LDA #$40
+                        0x69, v == 1 ? 0x40 : 0,// ADC #$40 sets V, ADC #$00 clears it
+                        0xA9, compare[0],       // LDA #a
+                        0xC9, compare[1],       // CMP #val
+                        BRANCHES[i], 0x02,      // Bxx over the STA
+                        0x85, 0x20);            // STA $20 (leaves the flags alone)
+
+                    for (n6502Impl cpu : cpus) {
+                        int flag;
+                        switch (i >> 1) {
+                            case 0: flag = cpu.getFlagN(); break;
+                            case 1: flag = cpu.getFlagV(); break;
+                            case 2: flag = cpu.getFlagC(); break;
+                            default: flag = cpu.getFlagZ(); break;
+                        }
+                        boolean taken = flag == (i & 1);
+                        Assert.assertEquals(describe(cpu) + ", " + Integer.toHexString(BRANCHES[i]),
+                                taken ? 0 : compare[0], cpu.getCpuContext().readByte(0x20));
+                    }
+
+                }
+            }
+        }
+
+    }
+
+    @Test
+    public void testCompiledFlagsMatchInterpreter() throws InterruptedException {
+
+        Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+
+        int[] program = {
+            0x38,             // SEC
+            0xA9, 0x50,       // LDA #$50
+            0x69, 0x50,       // ADC #$50
+            0x18,             // CLC
+            0x69, 0xD0,       // ADC #$D0
+            0xE9, 0x70,       // SBC #$70
+            0x38,             // SEC
+            0xE9, 0x30,       // SBC #$30
+            0xC9, 0x40,       // CMP #$40
+            0xC9, 0xA0,       // CMP #$A0
+            0x2A,             // ROL A
+            0x2A,             // ROL A
+            0x6A,             // ROR A
+            0x66, 0x10,       // ROR $10
+            0x26, 0x10,       // ROL $10
+            0x24, 0x10,       // BIT $10
+            0xA9, 0xC0,       // LDA #$C0
+            0x85, 0x11,       // STA $11
+            0x2C, 0x11, 0x00, // BIT $0011
+            0xE6, 0x12,       // INC $12
+            0xA5, 0x12,       // LDA $12
+            0x65, 0x10,       // ADC $10
+            0x85, 0x10,       // STA $10
+            0xC5, 0x12,       // CMP $12
+            0x70, 0x02,       // BVS +2
+            0xA2, 0x01,       // LDX #$01
+            0xB0, 0x02,       // BCS +2
+            0xA0, 0x01,       // LDY #$01
+            0xF0, 0x02,       // BEQ +2
+            0xE6, 0x13,       // INC $13
+            0x30, 0x02,       // BMI +2
+            0xE6, 0x14,       // INC $14
+            0x4C, 0x00, 0x80, // JMP $8000
+        };
+        byte[] rom = new byte[0x100];
+        for (int i = 0; i < program.length; i++) {
+            rom[i] = (byte)program[i];
+        }
+
+        n6502Impl[] cpus = new n6502Impl[2];
+        for (int i = 0; i < cpus.length; i++) {
+            TestContext context = new TestContext();
+            context.mapROM(0x8000, 0x8100, new ByteArrayMemoryStorage(rom), 0);
+            context.writeByte(0xfffc, 0x00);
+            context.writeByte(0xfffd, 0x80);
+            cpus[i] = new n6502Impl(context, 1789773f);
+            cpus[i].reset();
+        }
+        n6502Impl interpreted = cpus[0];
+        n6502Impl compiled = cpus[1];
+        compiled.setJitEnabled(true);
+
+        // Slices of 1 to 7 cycles stop compiled blocks after almost every
+        // instruction, so the flags are compared all the way through
+        for (int slice = 0; slice < 20000; slice++) {
+            int budget = slice < 10000 ? 100 : 1 + slice % 7;
+            interpreted.execute(budget);
+            compiled.execute(budget);
+            Assert.assertEquals(interpreted.getCycles(), compiled.getCycles());
+            Assert.assertEquals(interpreted.getPC(), compiled.getPC());
+            Assert.assertEquals(interpreted.getRegA(), compiled.getRegA());
+            Assert.assertEquals(interpreted.getRegX(), compiled.getRegX());
+            Assert.assertEquals(interpreted.getRegY(), compiled.getRegY());
+            Assert.assertEquals(getFlags(interpreted), getFlags(compiled));
+            Assert.assertEquals(interpreted.getRegP(), compiled.getRegP());
+            for (int address = 0x10; address <= 0x14; address++) {
+                Assert.assertEquals(interpreted.getCpuContext().readByte(address),
+                        compiled.getCpuContext().readByte(address));
+            }
+            if (slice == 100) {
+                BlockCompiler.get().awaitIdle();
+            }
+        }
+
+    }
+
+    /**
+     * 64 KB of RAM.
+     */
+    private static final class TestContext extends AbstractCpuContext {
+
+        private TestContext() {
+            initMemory(0x10000);
+        }
+
+        @Override
+        public Cpu getCpu() {
+            return null;
+        }
+
+    }
+
+}
\ No newline at end of file